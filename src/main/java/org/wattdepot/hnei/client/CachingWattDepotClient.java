@@ -0,0 +1,584 @@
+package org.wattdepot.hnei.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import javax.xml.bind.JAXBException;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.client.BadXmlException;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.NotAuthorizedException;
+import org.wattdepot.client.OverwriteAttemptedException;
+import org.wattdepot.client.ResourceNotFoundException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * A WattDepotClient that keeps the results of read requests in memory. The cache is bounded by the
+ * estimated size of the results in bytes, and the least recently used results are evicted first.
+ * Each type of request has its own time to live, so that results that can change, like the list of
+ * sources, are fetched again after a short time. Storing or deleting a source or sensor data
+ * invalidates the cached results for that source, and a result that was being fetched while a
+ * source was invalidated or the cache was cleared is not cached, since it may be stale. Lists
+ * returned by this client are copies, but the
+ * objects in them are shared and should not be modified.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class CachingWattDepotClient extends ForwardingWattDepotClient {
+
+  /** Default maximum estimated size of the cache in bytes. */
+  public static final long DEFAULT_MAX_WEIGHT = 64L << 20;
+
+  /** Estimated size in bytes of a cache entry without its value. */
+  private static final long ENTRY_WEIGHT = 128;
+
+  /** Estimated size in bytes of a property. */
+  private static final long PROPERTY_WEIGHT = 128;
+
+  /**
+   * Types of requests whose results are cached.
+   */
+  public enum Method {
+    /** getSources(). */
+    SOURCES(5 * EpochTime.MILLIS_PER_MINUTE),
+    /** getSource(String). */
+    SOURCE(5 * EpochTime.MILLIS_PER_MINUTE),
+    /** getSensorDatas(String, XMLGregorianCalendar, XMLGregorianCalendar). */
+    SENSOR_DATAS(EpochTime.MILLIS_PER_HOUR),
+    /** getEnergy(String, XMLGregorianCalendar, XMLGregorianCalendar, int). */
+    ENERGY(EpochTime.MILLIS_PER_HOUR),
+    /** getEnergyConsumed(String, XMLGregorianCalendar, XMLGregorianCalendar, int). */
+    ENERGY_CONSUMED(EpochTime.MILLIS_PER_HOUR);
+
+    /** Default time to live in milliseconds. */
+    private final long defaultTtl;
+
+    /**
+     * Creates a new Method.
+     *
+     * @param defaultTtl Default time to live in milliseconds.
+     */
+    Method(long defaultTtl) {
+      this.defaultTtl = defaultTtl;
+    }
+  }
+
+  /**
+   * A cached result.
+   */
+  private static final class CacheEntry {
+
+    /** The result. */
+    private final Object value;
+
+    /** Estimated size of the entry in bytes. */
+    private final long weight;
+
+    /** Time in milliseconds after which the entry is no longer valid. */
+    private final long expires;
+
+    /**
+     * Creates a new CacheEntry object.
+     *
+     * @param value The result.
+     * @param weight Estimated size of the entry in bytes.
+     * @param expires Time in milliseconds after which the entry is no longer valid.
+     */
+    private CacheEntry(Object value, long weight, long expires) {
+      this.value = value;
+      this.weight = weight;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * Fetches a result from the server.
+   *
+   * @param <T> Type of the result.
+   */
+  private interface Loader<T> {
+
+    /**
+     * Fetches a result from the server.
+     *
+     * @return The result.
+     * @throws NotAuthorizedException if the client is not authorized.
+     * @throws ResourceNotFoundException if the resource is not found.
+     * @throws BadXmlException if the server returns bad XML.
+     * @throws MiscClientException if there are any other problems.
+     */
+    T load() throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+        MiscClientException;
+  }
+
+  /** Cached results in least recently used order. */
+  private final LinkedHashMap<List<Object>, CacheEntry> entries;
+
+  /** Maximum estimated size of the cache in bytes. */
+  private final long maxWeight;
+
+  /** Estimated size of the cache in bytes. */
+  private long weight;
+
+  /** Time to live in milliseconds for each type of request; 0 disables caching. */
+  private final Map<Method, Long> ttls;
+
+  /** Number of hits for each type of request. */
+  private final long[] hits;
+
+  /** Number of misses for each type of request. */
+  private final long[] misses;
+
+  /** Number of entries evicted to keep the cache under its maximum size. */
+  private long evictions;
+
+  /** Incremented whenever cached results are invalidated or cleared. */
+  private long generation;
+
+  /**
+   * Creates a new CachingWattDepotClient object with the default maximum size.
+   *
+   * @param client Client used to fetch results that are not in the cache.
+   */
+  public CachingWattDepotClient(WattDepotClient client) {
+    this(client, DEFAULT_MAX_WEIGHT);
+  }
+
+  /**
+   * Creates a new CachingWattDepotClient object.
+   *
+   * @param client Client used to fetch results that are not in the cache.
+   * @param maxWeight Maximum estimated size of the cache in bytes.
+   */
+  public CachingWattDepotClient(WattDepotClient client, long maxWeight) {
+    super(client);
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.maxWeight = maxWeight;
+    this.weight = 0;
+    this.ttls = new EnumMap<>(Method.class);
+    for (Method m : Method.values()) {
+      this.ttls.put(m, m.defaultTtl);
+    }
+    this.hits = new long[Method.values().length];
+    this.misses = new long[Method.values().length];
+    this.evictions = 0;
+  }
+
+  /**
+   * Sets the time to live for a type of request.
+   *
+   * @param method Type of request.
+   * @param ttl Time to live in milliseconds, or 0 to not cache results of this type.
+   */
+  public synchronized void setTtl(Method method, long ttl) {
+    this.ttls.put(method, ttl);
+  }
+
+  /**
+   * Returns a cached result, or fetches it from the server and caches it.
+   *
+   * @param <T> Type of the result.
+   * @param method Type of request.
+   * @param key Key of the result.
+   * @param loader Fetches the result from the server.
+   * @param weigher Estimates the size of the result in bytes.
+   * @return The result.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T get(Method method, List<Object> key, Loader<T> loader, ToLongFunction<T> weigher)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException, MiscClientException {
+    long ttl;
+    long loadGeneration;
+    synchronized (this) {
+      ttl = this.ttls.get(method);
+      loadGeneration = this.generation;
+      CacheEntry entry = this.entries.get(key);
+      if (entry != null && entry.expires > System.currentTimeMillis()) {
+        this.hits[method.ordinal()]++;
+        return (T) entry.value;
+      }
+      else if (entry != null) {
+        this.remove(key);
+      }
+      this.misses[method.ordinal()]++;
+    }
+
+    T value = loader.load();
+    if (ttl <= 0 || value == null) {
+      return value;
+    }
+    long entryWeight = ENTRY_WEIGHT + weigher.applyAsLong(value);
+    synchronized (this) {
+      // Skip the result if anything was invalidated while it was being fetched.
+      if (loadGeneration == this.generation && entryWeight <= this.maxWeight) {
+        this.remove(key);
+        this.entries.put(key, new CacheEntry(value, entryWeight, System.currentTimeMillis() + ttl));
+        this.weight += entryWeight;
+        Iterator<CacheEntry> i = this.entries.values().iterator();
+        while (this.weight > this.maxWeight && i.hasNext()) {
+          this.weight -= i.next().weight;
+          i.remove();
+          this.evictions++;
+        }
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Removes a cached result.
+   *
+   * @param key Key of the result.
+   */
+  private void remove(List<Object> key) {
+    CacheEntry entry = this.entries.remove(key);
+    if (entry != null) {
+      this.weight -= entry.weight;
+    }
+  }
+
+  /**
+   * Removes all cached results for a source, as well as the list of sources.
+   *
+   * @param sourceName Name of a source.
+   */
+  private synchronized void invalidate(String sourceName) {
+    this.generation++;
+    Iterator<Map.Entry<List<Object>, CacheEntry>> i = this.entries.entrySet().iterator();
+    while (i.hasNext()) {
+      Map.Entry<List<Object>, CacheEntry> e = i.next();
+      List<Object> key = e.getKey();
+      if (key.get(0) == Method.SOURCES || (key.size() > 1 && key.get(1).equals(sourceName))) {
+        this.weight -= e.getValue().weight;
+        i.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public synchronized void clear() {
+    this.generation++;
+    this.entries.clear();
+    this.weight = 0;
+  }
+
+  /**
+   * Estimates the size of a source in bytes.
+   *
+   * @param source A source.
+   * @return Estimated size in bytes.
+   */
+  private static long weigh(Source source) {
+    int numProperties =
+        source.getProperties() == null ? 0 : source.getProperties().getProperty().size();
+    return 512 + PROPERTY_WEIGHT * numProperties;
+  }
+
+  /**
+   * Estimates the size of sensor data in bytes.
+   *
+   * @param data Sensor data.
+   * @return Estimated size in bytes.
+   */
+  private static long weigh(SensorData data) {
+    int numProperties = data.getProperties() == null ? 0 : data.getProperties().getProperty().size();
+    return 256 + PROPERTY_WEIGHT * numProperties;
+  }
+
+  /**
+   * Returns all sources, which are cached for a short time.
+   *
+   * @return A copy of the list of sources.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<Source> getSources() throws NotAuthorizedException, BadXmlException,
+      MiscClientException {
+    try {
+      return new ArrayList<>(this.get(Method.SOURCES, Arrays.asList(Method.SOURCES),
+          this.client::getSources, sources -> {
+            long total = 0;
+            for (Source s : sources) {
+              total += weigh(s);
+            }
+            return total;
+          }));
+    }
+    catch (ResourceNotFoundException e) {
+      throw new MiscClientException(e.getStatus(), e);
+    }
+  }
+
+  /**
+   * Returns a source, which is cached for a short time.
+   *
+   * @param sourceName Name of a source.
+   * @return The source.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public Source getSource(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.get(Method.SOURCE, Arrays.asList(Method.SOURCE, sourceName),
+        () -> this.client.getSource(sourceName), CachingWattDepotClient::weigh);
+  }
+
+  /**
+   * Returns the sensor data for a source between two timestamps.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return A copy of the list of sensor data.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    List<Object> key =
+        Arrays.asList(Method.SENSOR_DATAS, sourceName, EpochTime.toMillis(startTime),
+            EpochTime.toMillis(endTime));
+    return new ArrayList<>(this.get(Method.SENSOR_DATAS, key,
+        () -> this.client.getSensorDatas(sourceName, startTime, endTime), datas -> {
+          long total = 0;
+          for (SensorData d : datas) {
+            total += weigh(d);
+          }
+          return total;
+        }));
+  }
+
+  /**
+   * Returns the energy for a source between two timestamps.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The energy.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getEnergy(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    List<Object> key =
+        Arrays.asList(Method.ENERGY, sourceName, EpochTime.toMillis(startTime),
+            EpochTime.toMillis(endTime), samplingInterval);
+    return this.get(Method.ENERGY, key,
+        () -> this.client.getEnergy(sourceName, startTime, endTime, samplingInterval),
+        CachingWattDepotClient::weigh);
+  }
+
+  /**
+   * Returns the energy consumed by a source between two timestamps.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The energy consumed.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getEnergyConsumed(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    List<Object> key =
+        Arrays.asList(Method.ENERGY_CONSUMED, sourceName, EpochTime.toMillis(startTime),
+            EpochTime.toMillis(endTime), samplingInterval);
+    return this.get(Method.ENERGY_CONSUMED, key,
+        () -> this.client.getEnergyConsumed(sourceName, startTime, endTime, samplingInterval),
+        value -> 16);
+  }
+
+  /**
+   * Stores a source and removes all cached results for it.
+   *
+   * @param source Source to store.
+   * @param overwrite True to overwrite an existing source.
+   * @return The result from the wrapped client.
+   * @throws JAXBException if the source cannot be marshalled.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws OverwriteAttemptedException if the source already exists and cannot be overwritten.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean storeSource(Source source, boolean overwrite) throws JAXBException,
+      NotAuthorizedException, BadXmlException, OverwriteAttemptedException, MiscClientException {
+    try {
+      return this.client.storeSource(source, overwrite);
+    }
+    finally {
+      this.invalidate(source.getName());
+    }
+  }
+
+  /**
+   * Stores sensor data and removes all cached results for its source.
+   *
+   * @param sensorData Sensor data to store.
+   * @return The result from the wrapped client.
+   * @throws JAXBException if the sensor data cannot be marshalled.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws OverwriteAttemptedException if the sensor data already exists.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean storeSensorData(SensorData sensorData) throws JAXBException,
+      NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      OverwriteAttemptedException, MiscClientException {
+    try {
+      return this.client.storeSensorData(sensorData);
+    }
+    finally {
+      String uri = sensorData.getSource();
+      this.invalidate(uri == null ? "" : uri.substring(uri.lastIndexOf('/') + 1));
+    }
+  }
+
+  /**
+   * Deletes sensor data and removes all cached results for its source.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean deleteSensorData(String sourceName, XMLGregorianCalendar timestamp)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    try {
+      return this.client.deleteSensorData(sourceName, timestamp);
+    }
+    finally {
+      this.invalidate(sourceName);
+    }
+  }
+
+  /**
+   * Deletes all sensor data for a source and removes all cached results for it.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean deleteAllSensorData(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    try {
+      return this.client.deleteAllSensorData(sourceName);
+    }
+    finally {
+      this.invalidate(sourceName);
+    }
+  }
+
+  /**
+   * Deletes a source and removes all cached results for it.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean deleteSource(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, MiscClientException {
+    try {
+      return this.client.deleteSource(sourceName);
+    }
+    finally {
+      this.invalidate(sourceName);
+    }
+  }
+
+  /**
+   * Returns the number of hits for a type of request.
+   *
+   * @param method Type of request.
+   * @return The number of hits.
+   */
+  public synchronized long getHits(Method method) {
+    return this.hits[method.ordinal()];
+  }
+
+  /**
+   * Returns the number of misses for a type of request.
+   *
+   * @param method Type of request.
+   * @return The number of misses.
+   */
+  public synchronized long getMisses(Method method) {
+    return this.misses[method.ordinal()];
+  }
+
+  /**
+   * Returns the estimated size of the cache in bytes.
+   *
+   * @return The estimated size of the cache in bytes.
+   */
+  public synchronized long getWeight() {
+    return this.weight;
+  }
+
+  /**
+   * Returns a table of hits and misses for each type of request, and the size of the cache.
+   *
+   * @return Cache statistics.
+   */
+  public synchronized String getStats() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("%-16s %10s %10s %8s%n", "Request", "Hits", "Misses", "Hit %"));
+    for (Method m : Method.values()) {
+      long h = this.hits[m.ordinal()];
+      long total = h + this.misses[m.ordinal()];
+      builder.append(String.format("%-16s %10d %10d %7.1f%%%n", m, h, this.misses[m.ordinal()],
+          total == 0 ? 0.0 : 100.0 * h / total));
+    }
+    builder.append(String.format("Entries: %d, Size: %.1f of %.1f MB, Evictions: %d%n",
+        this.entries.size(), this.weight / 1048576.0, this.maxWeight / 1048576.0, this.evictions));
+    return builder.toString();
+  }
+
+}
@@ -0,0 +1,273 @@
+package org.wattdepot.hnei.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.client.BadXmlException;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.NotAuthorizedException;
+import org.wattdepot.client.ResourceNotFoundException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * A WattDepotClient that splits <code>getSensorDatas</code> range requests into chunks of a fixed
+ * length (a week by default) and fetches the chunks concurrently, so that no single request returns
+ * a huge response or times out however wide the range is. The results of a range are always in
+ * chunk order. {@link #iterateSensorDatas} returns the same data as an iterator that keeps only a
+ * few chunks in memory at a time.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class ChunkingWattDepotClient extends ForwardingWattDepotClient {
+
+  /** System property that contains the length of a chunk in days; 0 disables chunking. */
+  public static final String CHUNK_DAYS_PROPERTY = "hireap.chunk.days";
+
+  /** Default length of a chunk in milliseconds. */
+  public static final long DEFAULT_CHUNK_SIZE = 7 * EpochTime.MILLIS_PER_DAY;
+
+  /** Default maximum number of chunks that are fetched at the same time. */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+  /** Length of a chunk in milliseconds. */
+  private final long chunkSize;
+
+  /** Maximum number of chunks that are fetched or buffered at the same time by an iterator. */
+  private final int maxInFlight;
+
+  /** Fetches chunks; shared by all requests, so it also limits the load on the server. */
+  private final ExecutorService pool;
+
+  /**
+   * Creates a new ChunkingWattDepotClient object.
+   *
+   * @param client Client that fetches each chunk.
+   * @param chunkSize Length of a chunk in milliseconds.
+   * @param maxInFlight Maximum number of chunks that are fetched at the same time.
+   */
+  public ChunkingWattDepotClient(WattDepotClient client, long chunkSize, int maxInFlight) {
+    super(client);
+    if (chunkSize <= 0 || maxInFlight <= 0) {
+      throw new IllegalArgumentException("Chunk size and number of chunks must be positive.");
+    }
+    this.chunkSize = chunkSize;
+    this.maxInFlight = maxInFlight;
+    this.pool = Executors.newFixedThreadPool(maxInFlight, r -> {
+      Thread thread = new Thread(r, "ChunkingWattDepotClient");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Wraps a client in a ChunkingWattDepotClient unless the {@value #CHUNK_DAYS_PROPERTY} system
+   * property is 0. Chunks are one week long unless the property says otherwise.
+   *
+   * @param client Client to wrap.
+   * @return A ChunkingWattDepotClient, or <code>client</code> if chunking is disabled.
+   */
+  public static WattDepotClient wrapIfEnabled(WattDepotClient client) {
+    long chunkSize = DEFAULT_CHUNK_SIZE;
+    String days = System.getProperty(CHUNK_DAYS_PROPERTY);
+    if (days != null && !days.isEmpty()) {
+      try {
+        chunkSize = Long.parseLong(days) * EpochTime.MILLIS_PER_DAY;
+      }
+      catch (NumberFormatException e) {
+        System.err.println("Invalid value for " + CHUNK_DAYS_PROPERTY + ": " + days);
+      }
+    }
+    if (chunkSize <= 0) {
+      return client;
+    }
+    return new ChunkingWattDepotClient(client, chunkSize, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * Starts fetching one chunk.
+   *
+   * @param sourceName Name of a source.
+   * @param boundaries Boundaries of the chunks.
+   * @param index Index of the chunk.
+   * @param zone Time zone offset of the timestamps in minutes.
+   * @return The sensor data in the chunk.
+   */
+  private Future<List<SensorData>> submit(String sourceName, long[] boundaries, int index,
+      int zone) {
+    XMLGregorianCalendar from = EpochTime.toTimestamp(boundaries[index], zone);
+    XMLGregorianCalendar to = EpochTime.toTimestamp(boundaries[index + 1] - 1, zone);
+    return this.pool.submit(() -> this.client.getSensorDatas(sourceName, from, to));
+  }
+
+  /**
+   * Waits for a chunk and rethrows the exception of a failed request as the same type.
+   *
+   * @param chunk Chunk that is being fetched.
+   * @return The sensor data in the chunk.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems, or if the thread is interrupted.
+   */
+  private static List<SensorData> await(Future<List<SensorData>> chunk)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    try {
+      return chunk.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MiscClientException("Interrupted while fetching sensor data.", e);
+    }
+    catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  /**
+   * Fetches the range in chunks concurrently and returns all sensor data in order.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return The sensor data in the range.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    long start = EpochTime.toMillis(startTime);
+    long[] boundaries = EpochTime.split(start, EpochTime.toMillis(endTime), this.chunkSize);
+    if (boundaries.length <= 2) {
+      return this.client.getSensorDatas(sourceName, startTime, endTime);
+    }
+    int zone = EpochTime.zoneOffset(startTime);
+    List<Future<List<SensorData>>> chunks = new ArrayList<>();
+    for (int i = 0; i < boundaries.length - 1; i++) {
+      chunks.add(this.submit(sourceName, boundaries, i, zone));
+    }
+    List<SensorData> result = new ArrayList<>();
+    try {
+      for (Future<List<SensorData>> chunk : chunks) {
+        result.addAll(await(chunk));
+      }
+    }
+    finally {
+      for (Future<List<SensorData>> chunk : chunks) {
+        chunk.cancel(true);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns true; ranges are streamed in chunks.
+   *
+   * @return True.
+   */
+  @Override
+  protected boolean canStream() {
+    return true;
+  }
+
+  /**
+   * Returns the sensor data in a range in order, fetching up to <code>maxInFlight</code> chunks
+   * ahead of the one being read. A request that fails is reported by <code>hasNext</code> or
+   * <code>next</code> as an IllegalStateException whose cause is the WattDepotClientException.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return An iterator over the sensor data in the range.
+   */
+  @Override
+  public Iterator<SensorData> iterateSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) {
+    long start = EpochTime.toMillis(startTime);
+    long[] boundaries = EpochTime.split(start, EpochTime.toMillis(endTime), this.chunkSize);
+    int zone = EpochTime.zoneOffset(startTime);
+    return new Iterator<SensorData>() {
+
+      /** Chunks that are being fetched or have not been read yet, in order. */
+      private final Deque<Future<List<SensorData>>> pending = new ArrayDeque<>();
+
+      /** Index of the next chunk to submit. */
+      private int nextChunk;
+
+      /** Data in the chunk that is being read. */
+      private Iterator<SensorData> current = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!this.current.hasNext()) {
+          while (this.pending.size() < maxInFlight && this.nextChunk < boundaries.length - 1) {
+            this.pending.add(submit(sourceName, boundaries, this.nextChunk++, zone));
+          }
+          if (this.pending.isEmpty()) {
+            return false;
+          }
+          try {
+            this.current = await(this.pending.remove()).iterator();
+          }
+          catch (WattDepotClientException e) {
+            for (Future<List<SensorData>> chunk : this.pending) {
+              chunk.cancel(true);
+            }
+            this.pending.clear();
+            this.nextChunk = boundaries.length;
+            throw new IllegalStateException("Unable to fetch sensor data for " + sourceName + ".",
+                e);
+          }
+        }
+        return true;
+      }
+
+      @Override
+      public SensorData next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return this.current.next();
+      }
+    };
+  }
+
+  /**
+   * Returns an iterator over the sensor data in a range, which streams the data in chunks if the
+   * client is a ChunkingWattDepotClient or wraps one, however deeply, and otherwise fetches the
+   * whole range at once.
+   *
+   * @param client Client used to fetch sensor data.
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return An iterator over the sensor data in the range.
+   * @throws WattDepotClientException if the range is fetched at once and the request fails.
+   */
+  public static Iterator<SensorData> iterate(WattDepotClient client, String sourceName,
+      XMLGregorianCalendar startTime, XMLGregorianCalendar endTime)
+      throws WattDepotClientException {
+    if (client instanceof ForwardingWattDepotClient) {
+      return ((ForwardingWattDepotClient) client).iterateSensorDatas(sourceName, startTime,
+          endTime);
+    }
+    return client.getSensorDatas(sourceName, startTime, endTime).iterator();
+  }
+
+}
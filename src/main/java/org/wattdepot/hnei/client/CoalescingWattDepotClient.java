@@ -0,0 +1,239 @@
+package org.wattdepot.hnei.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.client.BadXmlException;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.NotAuthorizedException;
+import org.wattdepot.client.ResourceNotFoundException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * A WattDepotClient that sends only one request at a time for identical read requests. If a
+ * request is made while an identical one is still in flight on another thread, the second caller
+ * waits for the first request and gets its result (or its exception) instead of sending its own.
+ * Nothing is kept after a request completes; use a CachingWattDepotClient for that. Lists returned
+ * by this client are copies, but the objects in them are shared and should not be modified.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class CoalescingWattDepotClient extends ForwardingWattDepotClient {
+
+  /**
+   * Types of requests that are coalesced.
+   */
+  public enum Method {
+    /** getSource(String). */
+    SOURCE,
+    /** getSensorDatas(String, XMLGregorianCalendar, XMLGregorianCalendar). */
+    SENSOR_DATAS,
+    /** getEnergy(String, XMLGregorianCalendar, XMLGregorianCalendar, int). */
+    ENERGY
+  }
+
+  /**
+   * Fetches a result from the server.
+   *
+   * @param <T> Type of the result.
+   */
+  private interface Loader<T> {
+
+    /**
+     * Fetches a result from the server.
+     *
+     * @return The result.
+     * @throws NotAuthorizedException if the client is not authorized.
+     * @throws ResourceNotFoundException if the resource is not found.
+     * @throws BadXmlException if the server returns bad XML.
+     * @throws MiscClientException if there are any other problems.
+     */
+    T load() throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+        MiscClientException;
+  }
+
+  /** Requests that are in flight, by key. */
+  private final ConcurrentHashMap<List<Object>, CompletableFuture<Object>> inFlight;
+
+  /** Number of calls for each type of request. */
+  private final AtomicLongArray calls;
+
+  /** Number of calls for each type of request that shared a request already in flight. */
+  private final AtomicLongArray coalesced;
+
+  /**
+   * Creates a new CoalescingWattDepotClient object.
+   *
+   * @param client Client used to send requests.
+   */
+  public CoalescingWattDepotClient(WattDepotClient client) {
+    super(client);
+    this.inFlight = new ConcurrentHashMap<>();
+    this.calls = new AtomicLongArray(Method.values().length);
+    this.coalesced = new AtomicLongArray(Method.values().length);
+  }
+
+  /**
+   * Returns the result of an identical request that is in flight, or sends the request on this
+   * thread and shares its result with any identical requests made while it is in flight.
+   *
+   * @param <T> Type of the result.
+   * @param method Type of request.
+   * @param key Key of the request.
+   * @param loader Sends the request.
+   * @return The result.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems, or if the thread is interrupted
+   * while waiting.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T get(Method method, List<Object> key, Loader<T> loader)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException, MiscClientException {
+    this.calls.incrementAndGet(method.ordinal());
+    CompletableFuture<Object> request = new CompletableFuture<>();
+    CompletableFuture<Object> leader = this.inFlight.putIfAbsent(key, request);
+    if (leader != null) {
+      this.coalesced.incrementAndGet(method.ordinal());
+      try {
+        return (T) leader.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MiscClientException("Interrupted while waiting for " + method + " request.", e);
+      }
+      catch (ExecutionException e) {
+        throw rethrow(e.getCause());
+      }
+    }
+
+    try {
+      T value = loader.load();
+      request.complete(value);
+      return value;
+    }
+    catch (Throwable t) {
+      request.completeExceptionally(t);
+      throw t;
+    }
+    finally {
+      this.inFlight.remove(key, request);
+    }
+  }
+
+  /**
+   * Returns a source, sharing the request with identical concurrent calls.
+   *
+   * @param sourceName Name of a source.
+   * @return The source.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public Source getSource(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.get(Method.SOURCE, Arrays.asList(Method.SOURCE, sourceName),
+        () -> this.client.getSource(sourceName));
+  }
+
+  /**
+   * Returns the sensor data for a source between two timestamps, sharing the request with
+   * identical concurrent calls.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return A copy of the list of sensor data.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    List<Object> key =
+        Arrays.asList(Method.SENSOR_DATAS, sourceName, EpochTime.toMillis(startTime),
+            EpochTime.toMillis(endTime));
+    return new ArrayList<>(this.get(Method.SENSOR_DATAS, key,
+        () -> this.client.getSensorDatas(sourceName, startTime, endTime)));
+  }
+
+  /**
+   * Returns the energy for a source between two timestamps, sharing the request with identical
+   * concurrent calls.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The energy.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getEnergy(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    List<Object> key =
+        Arrays.asList(Method.ENERGY, sourceName, EpochTime.toMillis(startTime),
+            EpochTime.toMillis(endTime), samplingInterval);
+    return this.get(Method.ENERGY, key,
+        () -> this.client.getEnergy(sourceName, startTime, endTime, samplingInterval));
+  }
+
+  /**
+   * Returns the number of calls for a type of request.
+   *
+   * @param method Type of request.
+   * @return The number of calls.
+   */
+  public long getCalls(Method method) {
+    return this.calls.get(method.ordinal());
+  }
+
+  /**
+   * Returns the number of calls for a type of request that shared a request already in flight,
+   * i.e. the number of requests that were not sent.
+   *
+   * @param method Type of request.
+   * @return The number of coalesced calls.
+   */
+  public long getCoalesced(Method method) {
+    return this.coalesced.get(method.ordinal());
+  }
+
+  /**
+   * Returns a table of calls and coalesced calls for each type of request.
+   *
+   * @return Coalescing statistics.
+   */
+  public String getStats() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("%-16s %10s %10s %8s%n", "Request", "Calls", "Coalesced",
+        "Saved %"));
+    for (Method m : Method.values()) {
+      long c = this.getCalls(m);
+      long saved = this.getCoalesced(m);
+      builder.append(String.format("%-16s %10d %10d %7.1f%%%n", m, c, saved,
+          c == 0 ? 0.0 : 100.0 * saved / c));
+    }
+    builder.append(String.format("In flight: %d%n", this.inFlight.size()));
+    return builder.toString();
+  }
+
+}
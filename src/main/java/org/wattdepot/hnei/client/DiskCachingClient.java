@@ -0,0 +1,329 @@
+package org.wattdepot.hnei.client;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.client.BadXmlException;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.NotAuthorizedException;
+import org.wattdepot.client.ResourceNotFoundException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * A WattDepotClient that serves <code>getSensorDatas</code> range requests from a persistent cache
+ * on disk. The range is split into days (UTC); days that are in the cache are read from disk, and
+ * consecutive days that are not are fetched from the server with a single request and then stored
+ * in the cache. Only closed days, i.e. days that ended more than <code>closedDelay</code>
+ * milliseconds ago, are cached; they never change, so they never need to be revalidated. Days
+ * without data are not cached, since their data may still be imported late. Data for days that
+ * are still open is always fetched from the server. <code>iterateSensorDatas</code> reads
+ * a range one window at a time through the cache, so a long range is streamed rather than held in
+ * memory.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class DiskCachingClient extends ForwardingWattDepotClient {
+
+  /** System property that contains the directory of the cache; caching is disabled if not set. */
+  public static final String CACHE_DIR_PROPERTY = "hireap.cache.dir";
+
+  /** Default time after the end of a day before the day is considered closed. */
+  public static final long DEFAULT_CLOSED_DELAY = 2 * EpochTime.MILLIS_PER_DAY;
+
+  /** Cache that stores sensor data on disk. */
+  private final SensorDataDiskCache cache;
+
+  /** Time after the end of a day before the day is considered closed. */
+  private final long closedDelay;
+
+  /** Length of the windows in which <code>iterateSensorDatas</code> reads a range. */
+  private long windowSize;
+
+  /** Number of chunks read from the cache. */
+  private final AtomicLong hits;
+
+  /** Number of chunks fetched from the server. */
+  private final AtomicLong misses;
+
+  /**
+   * Creates a new DiskCachingClient object.
+   *
+   * @param client Client used to fetch data that is not in the cache.
+   * @param cache Cache that stores sensor data on disk.
+   * @param closedDelay Time in milliseconds after the end of a day before the day is cached.
+   */
+  public DiskCachingClient(WattDepotClient client, SensorDataDiskCache cache, long closedDelay) {
+    super(client);
+    this.cache = cache;
+    this.closedDelay = closedDelay;
+    this.windowSize = ChunkingWattDepotClient.DEFAULT_CHUNK_SIZE;
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+  }
+
+  /**
+   * Wraps a client in a DiskCachingClient if the {@value #CACHE_DIR_PROPERTY} system property is
+   * set.
+   *
+   * @param client Client to wrap.
+   * @return A DiskCachingClient, or <code>client</code> if caching is disabled or the cache cannot
+   * be opened.
+   */
+  public static WattDepotClient wrapIfEnabled(WattDepotClient client) {
+    String directory = System.getProperty(CACHE_DIR_PROPERTY);
+    if (directory == null || directory.isEmpty()) {
+      return client;
+    }
+    try {
+      SensorDataDiskCache cache = new SensorDataDiskCache(Paths.get(directory));
+      return new DiskCachingClient(client, cache, DEFAULT_CLOSED_DELAY);
+    }
+    catch (IOException e) {
+      System.err.println("Unable to open cache in " + directory + ": " + e.getMessage());
+      return client;
+    }
+  }
+
+  /**
+   * Returns the sensor data for a source between two timestamps, inclusive, sorted by timestamp.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return Sensor data between the two timestamps.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    long start = EpochTime.toMillis(startTime);
+    long end = EpochTime.toMillis(endTime);
+    long openDay = EpochTime.localDay(System.currentTimeMillis() - this.closedDelay, 0);
+    long firstDay = EpochTime.localDay(start, 0);
+    long lastDay = Math.min(EpochTime.localDay(end, 0), openDay - 1);
+
+    List<SensorData> result = new ArrayList<>();
+    long missingFrom = -1;
+    for (long day = firstDay; day <= lastDay; day++) {
+      List<SensorData> chunk = null;
+      try {
+        chunk = this.cache.get(sourceName, day);
+      }
+      catch (IOException e) {
+        System.err.println("Unable to read cache: " + e.getMessage());
+      }
+      if (chunk == null) {
+        this.misses.incrementAndGet();
+        if (missingFrom < 0) {
+          missingFrom = day;
+        }
+        continue;
+      }
+      this.hits.incrementAndGet();
+      if (missingFrom >= 0) {
+        this.fetchDays(sourceName, missingFrom, day - 1, start, end, result);
+        missingFrom = -1;
+      }
+      addInRange(chunk, start, end, result);
+    }
+    if (missingFrom >= 0) {
+      this.fetchDays(sourceName, missingFrom, lastDay, start, end, result);
+    }
+
+    long openStart = openDay * EpochTime.MILLIS_PER_DAY;
+    if (end >= openStart) {
+      XMLGregorianCalendar from = startTime;
+      if (start < openStart) {
+        from = EpochTime.toTimestamp(openStart, EpochTime.zoneOffset(startTime));
+      }
+      result.addAll(this.client.getSensorDatas(sourceName, from, endTime));
+    }
+    return result;
+  }
+
+  /**
+   * Returns true; ranges are streamed in windows.
+   *
+   * @return True.
+   */
+  @Override
+  protected boolean canStream() {
+    return true;
+  }
+
+  /**
+   * Returns the sensor data in a range in order, reading one window of <code>windowSize</code>
+   * milliseconds at a time with {@link #getSensorDatas}, so that cached days are still read from
+   * disk and missing days are still fetched from the wrapped client. A request that fails is
+   * reported by <code>hasNext</code> or <code>next</code> as an IllegalStateException whose cause
+   * is the WattDepotClientException.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return An iterator over the sensor data in the range.
+   */
+  @Override
+  public Iterator<SensorData> iterateSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) {
+    long[] boundaries = EpochTime.split(EpochTime.toMillis(startTime),
+        EpochTime.toMillis(endTime), this.windowSize);
+    int zone = EpochTime.zoneOffset(startTime);
+    return new Iterator<SensorData>() {
+
+      /** Index of the next window to read. */
+      private int nextWindow;
+
+      /** Data in the window that is being read. */
+      private Iterator<SensorData> current = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!this.current.hasNext()) {
+          if (this.nextWindow >= boundaries.length - 1) {
+            return false;
+          }
+          int i = this.nextWindow++;
+          try {
+            this.current = getSensorDatas(sourceName, EpochTime.toTimestamp(boundaries[i], zone),
+                EpochTime.toTimestamp(boundaries[i + 1] - 1, zone)).iterator();
+          }
+          catch (WattDepotClientException e) {
+            this.nextWindow = boundaries.length;
+            throw new IllegalStateException("Unable to fetch sensor data for " + sourceName + ".",
+                e);
+          }
+        }
+        return true;
+      }
+
+      @Override
+      public SensorData next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return this.current.next();
+      }
+    };
+  }
+
+  /**
+   * Sets the length of the windows in which <code>iterateSensorDatas</code> reads a range.
+   *
+   * @param windowSize Length of a window in milliseconds.
+   */
+  public void setWindowSize(long windowSize) {
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+    }
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Fetches a range of days from the server with one request, stores each day that has data in the
+   * cache, and adds the data between <code>start</code> and <code>end</code> to
+   * <code>result</code>.
+   *
+   * @param sourceName Name of a source.
+   * @param fromDay First day to fetch.
+   * @param toDay Last day to fetch.
+   * @param start Start of the requested range in milliseconds.
+   * @param end End of the requested range in milliseconds.
+   * @param result List to add sensor data to.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the source is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  private void fetchDays(String sourceName, long fromDay, long toDay, long start, long end,
+      List<SensorData> result) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    List<SensorData> datas =
+        this.client.getSensorDatas(sourceName,
+            EpochTime.toTimestamp(fromDay * EpochTime.MILLIS_PER_DAY, 0),
+            EpochTime.toTimestamp((toDay + 1) * EpochTime.MILLIS_PER_DAY - 1, 0));
+    List<List<SensorData>> days = new ArrayList<>();
+    for (long day = fromDay; day <= toDay; day++) {
+      days.add(new ArrayList<>());
+    }
+    for (SensorData data : datas) {
+      long day = EpochTime.localDay(EpochTime.toMillis(data.getTimestamp()), 0);
+      if (day >= fromDay && day <= toDay) {
+        days.get((int) (day - fromDay)).add(data);
+      }
+    }
+    for (int i = 0; i < days.size(); i++) {
+      List<SensorData> chunk = days.get(i);
+      chunk.sort((d1, d2) -> Long.compare(EpochTime.toMillis(d1.getTimestamp()),
+          EpochTime.toMillis(d2.getTimestamp())));
+      if (!chunk.isEmpty()) {
+        try {
+          this.cache.put(sourceName, fromDay + i, chunk);
+        }
+        catch (IOException e) {
+          System.err.println("Unable to write cache: " + e.getMessage());
+        }
+      }
+      addInRange(chunk, start, end, result);
+    }
+  }
+
+  /**
+   * Adds the sensor data between <code>start</code> and <code>end</code>, inclusive, to a list.
+   *
+   * @param datas Sensor data sorted by timestamp.
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param result List to add sensor data to.
+   */
+  private static void addInRange(List<SensorData> datas, long start, long end,
+      List<SensorData> result) {
+    for (SensorData data : datas) {
+      long time = EpochTime.toMillis(data.getTimestamp());
+      if (time >= start && time <= end) {
+        result.add(data);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of daily chunks that were read from the cache.
+   *
+   * @return The number of chunks read from the cache.
+   */
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  /**
+   * Returns the number of daily chunks that had to be fetched from the server.
+   *
+   * @return The number of chunks fetched from the server.
+   */
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  /**
+   * Returns the cache that stores sensor data on disk.
+   *
+   * @return The cache.
+   */
+  public SensorDataDiskCache getCache() {
+    return this.cache;
+  }
+
+}
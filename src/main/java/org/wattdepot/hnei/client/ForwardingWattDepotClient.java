@@ -0,0 +1,889 @@
+package org.wattdepot.hnei.client;
+
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.bind.JAXBException;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.restlet.resource.ClientResource;
+import org.wattdepot.client.BadXmlException;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.NotAuthorizedException;
+import org.wattdepot.client.OverwriteAttemptedException;
+import org.wattdepot.client.ResourceNotFoundException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.sensordata.jaxb.SensorDataIndex;
+import org.wattdepot.resource.sensordata.jaxb.SensorDataRef;
+import org.wattdepot.resource.source.jaxb.Source;
+import org.wattdepot.resource.source.jaxb.SourceIndex;
+import org.wattdepot.resource.source.jaxb.SourceRef;
+import org.wattdepot.resource.source.summary.jaxb.SourceSummary;
+import org.wattdepot.resource.user.jaxb.User;
+import org.wattdepot.resource.user.jaxb.UserIndex;
+import org.wattdepot.resource.user.jaxb.UserRef;
+
+/**
+ * A WattDepotClient that forwards every request to another WattDepotClient. Subclasses override
+ * only the methods whose behavior they change, e.g. to cache results, and can be used anywhere a
+ * WattDepotClient is expected. Wrappers can be stacked.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class ForwardingWattDepotClient extends WattDepotClient {
+
+  /** Client that requests are forwarded to. */
+  protected final WattDepotClient client;
+
+  /**
+   * Creates a new ForwardingWattDepotClient object.
+   *
+   * @param client Client that requests are forwarded to.
+   */
+  public ForwardingWattDepotClient(WattDepotClient client) {
+    super(client.getWattDepotUri());
+    this.client = client;
+  }
+
+  /**
+   * Rethrows the exception of a request that failed on another thread as the same type, so that
+   * callers can handle it as if the request had been made on their own thread.
+   *
+   * @param cause Exception thrown by the request.
+   * @return An exception to throw if <code>cause</code> is not one of the client exceptions.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other client problems.
+   */
+  protected static MiscClientException rethrow(Throwable cause) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    if (cause instanceof NotAuthorizedException) {
+      throw (NotAuthorizedException) cause;
+    }
+    if (cause instanceof ResourceNotFoundException) {
+      throw (ResourceNotFoundException) cause;
+    }
+    if (cause instanceof BadXmlException) {
+      throw (BadXmlException) cause;
+    }
+    if (cause instanceof MiscClientException) {
+      throw (MiscClientException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    return new MiscClientException("Request failed.", cause);
+  }
+
+  /**
+   * Returns the client that requests are forwarded to.
+   *
+   * @return The wrapped client.
+   */
+  public WattDepotClient getWrappedClient() {
+    return this.client;
+  }
+
+  /**
+   * Returns true if this client, or a client that it wraps, streams the sensor data of a range
+   * instead of fetching the whole range at once.
+   *
+   * @return True if {@link #iterateSensorDatas} streams the data, false otherwise.
+   */
+  protected boolean canStream() {
+    return this.client instanceof ForwardingWattDepotClient
+        && ((ForwardingWattDepotClient) this.client).canStream();
+  }
+
+  /**
+   * Returns an iterator over the sensor data in a range. Wrappers that can stream a range, such as
+   * ChunkingWattDepotClient, override this method; the others pass it on to the wrapped client if
+   * that client can stream, so that streaming is not lost however the wrappers are stacked, and
+   * otherwise fetch the range with {@link #getSensorDatas}.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return An iterator over the sensor data in the range.
+   * @throws WattDepotClientException if the range is fetched at once and the request fails.
+   */
+  public Iterator<SensorData> iterateSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) throws WattDepotClientException {
+    if (this.canStream()) {
+      return ((ForwardingWattDepotClient) this.client).iterateSensorDatas(sourceName, startTime,
+          endTime);
+    }
+    return this.getSensorDatas(sourceName, startTime, endTime).iterator();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param requestString Request string.
+   * @return The result from the wrapped client.
+   */
+  @Override
+  public ClientResource makeClient(String requestString) {
+    return this.client.makeClient(requestString);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   */
+  @Override
+  public boolean isHealthy() {
+    return this.client.isHealthy();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   */
+  @Override
+  public String getHealthString() {
+    return this.client.getHealthString();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   */
+  @Override
+  public boolean isAuthenticated() {
+    return this.client.isAuthenticated();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorDataIndex getSensorDataIndex(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getSensorDataIndex(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorDataIndex getSensorDataIndex(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getSensorDataIndex(sourceName, startTime, endTime);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorDataIndex getSensorDataIndex(String sourceName,
+      XMLGregorianCalendar timestamp) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getSensorDataIndex(sourceName, timestamp);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getSensorDatas(sourceName, startTime, endTime);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar timestamp)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    return this.client.getSensorDatas(sourceName, timestamp);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getSensorData(String sourceName, XMLGregorianCalendar timestamp)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    return this.client.getSensorData(sourceName, timestamp);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getLatestSensorData(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getLatestSensorData(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getLatestPowerGenerated(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getLatestPowerGenerated(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getLatestPowerConsumed(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getLatestPowerConsumed(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getLatestEnergyGeneratedToDate(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getLatestEnergyGeneratedToDate(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getLatestEnergyConsumedToDate(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getLatestEnergyConsumedToDate(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getPower(String sourceName, XMLGregorianCalendar timestamp)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    return this.client.getPower(sourceName, timestamp);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getPowerGenerated(String sourceName, XMLGregorianCalendar timestamp)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    return this.client.getPowerGenerated(sourceName, timestamp);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getPowerConsumed(String sourceName, XMLGregorianCalendar timestamp)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    return this.client.getPowerConsumed(sourceName, timestamp);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getEnergy(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getEnergy(sourceName, startTime, endTime, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getEnergy(String sourceName, XMLGregorianCalendar timestamp,
+      int samplingInterval) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getEnergy(sourceName, timestamp, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getEnergyGenerated(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getEnergyGenerated(sourceName, startTime, endTime, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getEnergyGenerated(String sourceName, XMLGregorianCalendar timestamp,
+      int samplingInterval) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getEnergyGenerated(sourceName, timestamp, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getEnergyConsumed(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getEnergyConsumed(sourceName, startTime, endTime, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getEnergyConsumed(String sourceName, XMLGregorianCalendar timestamp,
+      int samplingInterval) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getEnergyConsumed(sourceName, timestamp, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getCarbon(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getCarbon(sourceName, startTime, endTime, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getCarbon(String sourceName, XMLGregorianCalendar timestamp,
+      int samplingInterval) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getCarbon(sourceName, timestamp, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param startTime Start timestamp.
+   * @param endTime End timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getCarbonEmitted(String sourceName, XMLGregorianCalendar startTime,
+      XMLGregorianCalendar endTime, int samplingInterval) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getCarbonEmitted(sourceName, startTime, endTime, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @param samplingInterval Sampling interval in minutes.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public double getCarbonEmitted(String sourceName, XMLGregorianCalendar timestamp,
+      int samplingInterval) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getCarbonEmitted(sourceName, timestamp, samplingInterval);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sensorDataRef Reference to sensor data.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SensorData getSensorData(SensorDataRef sensorDataRef) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getSensorData(sensorDataRef);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sensorData Sensor data to store.
+   * @return The result from the wrapped client.
+   * @throws JAXBException if the resource cannot be marshalled.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws OverwriteAttemptedException if the resource already exists and cannot be overwritten.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean storeSensorData(SensorData sensorData) throws JAXBException,
+      NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      OverwriteAttemptedException, MiscClientException {
+    return this.client.storeSensorData(sensorData);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @param timestamp Timestamp.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean deleteSensorData(String sourceName, XMLGregorianCalendar timestamp)
+      throws NotAuthorizedException, ResourceNotFoundException, BadXmlException,
+      MiscClientException {
+    return this.client.deleteSensorData(sourceName, timestamp);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean deleteAllSensorData(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.deleteAllSensorData(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public UserIndex getUserIndex() throws NotAuthorizedException, BadXmlException,
+      MiscClientException {
+    return this.client.getUserIndex();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<User> getUsers() throws NotAuthorizedException, BadXmlException, MiscClientException {
+    return this.client.getUsers();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param username Name of a user.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public User getUser(String username) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getUser(username);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param user User to store.
+   * @return The result from the wrapped client.
+   * @throws JAXBException if the resource cannot be marshalled.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws OverwriteAttemptedException if the resource already exists and cannot be overwritten.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean storeUser(User user) throws JAXBException, NotAuthorizedException,
+      BadXmlException, OverwriteAttemptedException, MiscClientException {
+    return this.client.storeUser(user);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param userRef Reference to a user.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public User getUser(UserRef userRef) throws NotAuthorizedException, ResourceNotFoundException,
+      BadXmlException, MiscClientException {
+    return this.client.getUser(userRef);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param username Name of a user.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean deleteUser(String username) throws NotAuthorizedException,
+      ResourceNotFoundException, MiscClientException {
+    return this.client.deleteUser(username);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SourceIndex getSourceIndex() throws NotAuthorizedException, BadXmlException,
+      MiscClientException {
+    return this.client.getSourceIndex();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public List<Source> getSources() throws NotAuthorizedException, BadXmlException,
+      MiscClientException {
+    return this.client.getSources();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public Source getSource(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getSource(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param source Source to store.
+   * @param overwrite True to overwrite an existing source.
+   * @return The result from the wrapped client.
+   * @throws JAXBException if the resource cannot be marshalled.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws OverwriteAttemptedException if the resource already exists and cannot be overwritten.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean storeSource(Source source, boolean overwrite) throws JAXBException,
+      NotAuthorizedException, BadXmlException, OverwriteAttemptedException, MiscClientException {
+    return this.client.storeSource(source, overwrite);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceRef Reference to a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public Source getSource(SourceRef sourceRef) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getSource(sourceRef);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws BadXmlException if the server returns bad XML.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public SourceSummary getSourceSummary(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, BadXmlException, MiscClientException {
+    return this.client.getSourceSummary(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @param sourceName Name of a source.
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws ResourceNotFoundException if the resource is not found.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean deleteSource(String sourceName) throws NotAuthorizedException,
+      ResourceNotFoundException, MiscClientException {
+    return this.client.deleteSource(sourceName);
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   * @throws NotAuthorizedException if the client is not authorized.
+   * @throws MiscClientException if there are any other problems.
+   */
+  @Override
+  public boolean makeSnapshot() throws NotAuthorizedException, MiscClientException {
+    return this.client.makeSnapshot();
+  }
+
+  /**
+   * Forwards to the wrapped client.
+   *
+   * @return The result from the wrapped client.
+   */
+  @Override
+  public String getWattDepotUri() {
+    return this.client.getWattDepotUri();
+  }
+
+}
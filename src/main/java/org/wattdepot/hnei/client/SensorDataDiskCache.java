@@ -0,0 +1,410 @@
+package org.wattdepot.hnei.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Properties;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * A persistent cache of sensor data on disk. Data is stored in chunks, one chunk per source per day.
+ * Chunks are appended to segment files that are never modified, and an open-addressing hash table
+ * in a memory-mapped index file maps each (source, day) pair to the location of its chunk. Each
+ * chunk has a checksum; a chunk that is corrupt is treated as if it were not in the cache.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class SensorDataDiskCache implements Closeable {
+
+  /** Maximum size of a segment file before a new one is started. */
+  public static final long MAX_SEGMENT_SIZE = 64L << 20;
+
+  /** Magic number at the start of the index file. */
+  private static final int INDEX_MAGIC = 0x49434448;
+
+  /** Size of the index file header in bytes: magic number, capacity, and number of entries. */
+  private static final int INDEX_HEADER_SIZE = 16;
+
+  /**
+   * Size of a slot in the index in bytes: source hash, day, segment number plus one (0 if the slot
+   * is empty), chunk length, and chunk offset.
+   */
+  private static final int SLOT_SIZE = 32;
+
+  /** Initial number of slots in the index. */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Name of the index file. */
+  private static final String INDEX_FILE = "index.dat";
+
+  /** Directory that contains the cache. */
+  private final Path directory;
+
+  /** Index file. */
+  private FileChannel indexChannel;
+
+  /** Memory-mapped contents of the index file. */
+  private MappedByteBuffer index;
+
+  /** Number of slots in the index; always a power of two. */
+  private int capacity;
+
+  /** Number of slots in use. */
+  private int size;
+
+  /** Segment file that chunks are appended to. */
+  private FileChannel segment;
+
+  /** Number of the segment file that chunks are appended to. */
+  private int segmentNumber;
+
+  /** Segment files that have been opened for reading. */
+  private final Map<Integer, FileChannel> readers;
+
+  /**
+   * Opens the cache in a directory, creating it if it does not exist.
+   *
+   * @param directory Directory that contains the cache.
+   * @throws IOException if the cache cannot be opened.
+   */
+  public SensorDataDiskCache(Path directory) throws IOException {
+    this.directory = directory;
+    this.readers = new HashMap<>();
+    Files.createDirectories(directory);
+
+    Path indexFile = directory.resolve(INDEX_FILE);
+    if (Files.exists(indexFile)) {
+      this.openIndex(indexFile);
+    }
+    else {
+      createIndex(indexFile, INITIAL_CAPACITY);
+      this.openIndex(indexFile);
+    }
+
+    this.segmentNumber = 0;
+    while (Files.exists(this.segmentFile(this.segmentNumber + 1))) {
+      this.segmentNumber++;
+    }
+    this.openSegment(Math.max(1, this.segmentNumber));
+  }
+
+  /**
+   * Returns the path of a segment file.
+   *
+   * @param number Number of the segment.
+   * @return The path of the segment file.
+   */
+  private Path segmentFile(int number) {
+    return this.directory.resolve(String.format("segment-%06d.dat", number));
+  }
+
+  /**
+   * Opens a segment file for appending.
+   *
+   * @param number Number of the segment.
+   * @throws IOException if the segment cannot be opened.
+   */
+  private void openSegment(int number) throws IOException {
+    if (this.segment != null) {
+      this.segment.close();
+    }
+    this.segmentNumber = number;
+    this.segment =
+        FileChannel.open(this.segmentFile(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Creates an empty index file.
+   *
+   * @param file Index file.
+   * @param slots Number of slots.
+   * @throws IOException if the file cannot be created.
+   */
+  private static void createIndex(Path file, int slots) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+      header.putInt(INDEX_MAGIC).putInt(slots).putInt(0).putInt(0).flip();
+      channel.write(header, 0);
+      channel.write(ByteBuffer.allocate(1), INDEX_HEADER_SIZE + (long) slots * SLOT_SIZE - 1);
+    }
+  }
+
+  /**
+   * Opens and maps an index file.
+   *
+   * @param file Index file.
+   * @throws IOException if the file cannot be opened or is not an index file.
+   */
+  private void openIndex(Path file) throws IOException {
+    if (this.indexChannel != null) {
+      this.indexChannel.close();
+    }
+    this.indexChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.index = this.indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.indexChannel.size());
+    if (this.index.getInt(0) != INDEX_MAGIC) {
+      throw new IOException(file + " is not a cache index.");
+    }
+    this.capacity = this.index.getInt(4);
+    this.size = this.index.getInt(8);
+  }
+
+  /**
+   * Returns a 64-bit hash of a source name that is never 0.
+   *
+   * @param source Name of a source.
+   * @return Hash of the source name.
+   */
+  static long hash(String source) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < source.length(); i++) {
+      hash ^= source.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash == 0 ? 1 : hash;
+  }
+
+  /**
+   * Returns the slot that holds a chunk, or the empty slot where it should be stored.
+   *
+   * @param buffer Index to search.
+   * @param slots Number of slots in the index.
+   * @param sourceHash Hash of the source name.
+   * @param day Day of the chunk.
+   * @return Byte offset of the slot in the index.
+   */
+  private static int findSlot(ByteBuffer buffer, int slots, long sourceHash, long day) {
+    long mixed = (sourceHash ^ (day * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+    int i = (int) (mixed ^ (mixed >>> 32)) & (slots - 1);
+    while (true) {
+      int offset = INDEX_HEADER_SIZE + i * SLOT_SIZE;
+      if (buffer.getInt(offset + 16) == 0
+          || (buffer.getLong(offset) == sourceHash && buffer.getLong(offset + 8) == day)) {
+        return offset;
+      }
+      i = (i + 1) & (slots - 1);
+    }
+  }
+
+  /**
+   * Returns the sensor data for a source on a day, or null if the chunk is not in the cache.
+   *
+   * @param source Name of a source.
+   * @param day Number of days since January 1, 1970 UTC.
+   * @return Sensor data sorted by timestamp, or null if the chunk is not in the cache.
+   * @throws IOException if the chunk cannot be read.
+   */
+  public synchronized List<SensorData> get(String source, long day) throws IOException {
+    long sourceHash = hash(source);
+    int slot = findSlot(this.index, this.capacity, sourceHash, day);
+    int segmentPlusOne = this.index.getInt(slot + 16);
+    if (segmentPlusOne == 0) {
+      return null;
+    }
+    int length = this.index.getInt(slot + 20);
+    long offset = this.index.getLong(slot + 24);
+
+    FileChannel reader = this.readers.get(segmentPlusOne - 1);
+    if (reader == null) {
+      reader = FileChannel.open(this.segmentFile(segmentPlusOne - 1), StandardOpenOption.READ);
+      this.readers.put(segmentPlusOne - 1, reader);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (reader.read(buffer, offset + buffer.position()) < 0) {
+        return null;
+      }
+    }
+    return decode(buffer.array(), source, day);
+  }
+
+  /**
+   * Stores the sensor data for a source on a day. The data should be complete for the day.
+   *
+   * @param source Name of a source.
+   * @param day Number of days since January 1, 1970 UTC.
+   * @param datas Sensor data sorted by timestamp.
+   * @throws IOException if the chunk cannot be stored.
+   */
+  public synchronized void put(String source, long day, List<SensorData> datas) throws IOException {
+    byte[] record = encode(source, day, datas);
+    if (this.segment.size() + record.length > MAX_SEGMENT_SIZE && this.segment.size() > 0) {
+      this.openSegment(this.segmentNumber + 1);
+    }
+    long offset = this.segment.size();
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    while (buffer.hasRemaining()) {
+      this.segment.write(buffer);
+    }
+
+    if ((this.size + 1) * 2 > this.capacity) {
+      this.growIndex();
+    }
+    long sourceHash = hash(source);
+    int slot = findSlot(this.index, this.capacity, sourceHash, day);
+    if (this.index.getInt(slot + 16) == 0) {
+      this.size++;
+      this.index.putInt(8, this.size);
+    }
+    this.index.putLong(slot, sourceHash);
+    this.index.putLong(slot + 8, day);
+    this.index.putInt(slot + 20, record.length);
+    this.index.putLong(slot + 24, offset);
+    this.index.putInt(slot + 16, this.segmentNumber + 1);
+  }
+
+  /**
+   * Doubles the number of slots in the index by writing a new index file and replacing the old one.
+   *
+   * @throws IOException if the index cannot be written.
+   */
+  private void growIndex() throws IOException {
+    Path indexFile = this.directory.resolve(INDEX_FILE);
+    Path temp = this.directory.resolve(INDEX_FILE + ".tmp");
+    int newCapacity = this.capacity * 2;
+    createIndex(temp, newCapacity);
+    try (FileChannel channel =
+        FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+      for (int i = 0; i < this.capacity; i++) {
+        int offset = INDEX_HEADER_SIZE + i * SLOT_SIZE;
+        if (this.index.getInt(offset + 16) != 0) {
+          int slot =
+              findSlot(buffer, newCapacity, this.index.getLong(offset), this.index.getLong(offset + 8));
+          for (int j = 0; j < SLOT_SIZE; j += 8) {
+            buffer.putLong(slot + j, this.index.getLong(offset + j));
+          }
+        }
+      }
+      buffer.putInt(8, this.size);
+      buffer.force();
+    }
+    Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    this.openIndex(indexFile);
+  }
+
+  /**
+   * Returns the number of chunks in the cache.
+   *
+   * @return The number of chunks in the cache.
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+
+  /**
+   * Encodes a chunk as a record: length, checksum, and then the source name, day, and sensor data.
+   *
+   * @param source Name of a source.
+   * @param day Day of the chunk.
+   * @param datas Sensor data.
+   * @return The encoded record.
+   * @throws IOException if the chunk cannot be encoded.
+   */
+  static byte[] encode(String source, long day, List<SensorData> datas) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeLong(0);
+    out.writeUTF(source);
+    out.writeLong(day);
+    out.writeInt(datas.size());
+    for (SensorData data : datas) {
+      out.writeLong(EpochTime.toMillis(data.getTimestamp()));
+      out.writeInt(EpochTime.zoneOffset(data.getTimestamp()));
+      out.writeUTF(data.getTool() == null ? "" : data.getTool());
+      out.writeUTF(data.getSource() == null ? "" : data.getSource());
+      List<Property> properties =
+          data.getProperties() == null ? new ArrayList<>() : data.getProperties().getProperty();
+      out.writeInt(properties.size());
+      for (Property p : properties) {
+        out.writeUTF(p.getKey());
+        out.writeUTF(p.getValue());
+      }
+    }
+    out.flush();
+    byte[] record = bytes.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(record, 12, record.length - 12);
+    ByteBuffer.wrap(record).putInt(record.length).putLong(crc.getValue());
+    return record;
+  }
+
+  /**
+   * Decodes a record.
+   *
+   * @param record Record to decode.
+   * @param source Expected name of the source.
+   * @param day Expected day.
+   * @return The sensor data in the record, or null if the record is corrupt or is for a different
+   * source or day.
+   * @throws IOException if the record cannot be decoded.
+   */
+  static List<SensorData> decode(byte[] record, String source, long day) throws IOException {
+    ByteBuffer header = ByteBuffer.wrap(record);
+    if (record.length < 12 || header.getInt() != record.length) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record, 12, record.length - 12);
+    if (header.getLong() != crc.getValue()) {
+      return null;
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 12, record.length - 12));
+    if (!in.readUTF().equals(source) || in.readLong() != day) {
+      return null;
+    }
+    int count = in.readInt();
+    List<SensorData> datas = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      long time = in.readLong();
+      int zone = in.readInt();
+      String tool = in.readUTF();
+      String sourceUri = in.readUTF();
+      Properties properties = new Properties();
+      int numProperties = in.readInt();
+      for (int j = 0; j < numProperties; j++) {
+        properties.getProperty().add(new Property(in.readUTF(), in.readUTF()));
+      }
+      datas.add(new SensorData(EpochTime.toTimestamp(time, zone), tool, sourceUri, properties));
+    }
+    return datas;
+  }
+
+  /**
+   * Closes all files used by the cache.
+   *
+   * @throws IOException if there are problems closing the files.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    this.index.force();
+    this.indexChannel.close();
+    this.segment.close();
+    for (FileChannel reader : this.readers.values()) {
+      reader.close();
+    }
+    this.readers.clear();
+  }
+
+}
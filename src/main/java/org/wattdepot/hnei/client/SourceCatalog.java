@@ -0,0 +1,314 @@
+package org.wattdepot.hnei.client;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * An in-memory catalog of the sources on the WattDepot server. The sources are loaded once and then
+ * reloaded in the background; each load builds a new immutable snapshot with the sources sorted by
+ * name and secondary indexes on {@link #INDEXED_PROPERTIES} and the MTU ID (the part of a source
+ * name before the first dash), so that lookups, prefix queries, and filters do not contact the
+ * server. Queries always see a complete snapshot, even while a reload is in progress.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class SourceCatalog implements Closeable {
+
+  /** Default time between reloads in milliseconds. */
+  public static final long DEFAULT_REFRESH_INTERVAL = 5 * 60 * 1000L;
+
+  /** Name of the pseudo-property that filters sources by MTU ID. */
+  public static final String MTU = "mtu";
+
+  /** Properties that have secondary indexes. */
+  public static final List<String> INDEXED_PROPERTIES =
+      Collections.unmodifiableList(Arrays.asList("samplingInterval", "meterType", "accountNumber"));
+
+  /**
+   * Sources and indexes from one load.
+   */
+  private static final class Snapshot {
+
+    /** Sources by name. */
+    private final NavigableMap<String, Source> byName;
+
+    /** Sources by property value for each indexed property and the MTU ID, sorted by name. */
+    private final Map<String, Map<String, List<Source>>> indexes;
+
+    /** Time of the load in milliseconds. */
+    private final long loadTime;
+
+    /**
+     * Creates a new Snapshot object and builds its indexes.
+     *
+     * @param sources Sources to index.
+     * @param loadTime Time of the load in milliseconds.
+     */
+    private Snapshot(List<Source> sources, long loadTime) {
+      this.byName = new TreeMap<>();
+      for (Source s : sources) {
+        this.byName.put(s.getName(), s);
+      }
+      this.indexes = new HashMap<>();
+      List<String> keys = new ArrayList<>(INDEXED_PROPERTIES);
+      keys.add(MTU);
+      for (String key : keys) {
+        this.indexes.put(key, new HashMap<>());
+      }
+      for (Source s : this.byName.values()) {
+        for (String key : keys) {
+          String value = getProperty(s, key);
+          if (value != null) {
+            this.indexes.get(key).computeIfAbsent(value, v -> new ArrayList<>()).add(s);
+          }
+        }
+      }
+      this.loadTime = loadTime;
+    }
+  }
+
+  /** Used to load sources from the WattDepot server. */
+  private final WattDepotClient client;
+
+  /** Time between reloads in milliseconds. */
+  private final long refreshInterval;
+
+  /** Most recent snapshot, or null if the sources have not been loaded yet. */
+  private volatile Snapshot snapshot;
+
+  /** Reloads the sources in the background, or null if it has not been started. */
+  private ScheduledExecutorService refresher;
+
+  /**
+   * Creates a new SourceCatalog object. The sources are loaded when they are first needed, or when
+   * {@link #start()} is called.
+   *
+   * @param client Used to load sources from the WattDepot server.
+   * @param refreshInterval Time between reloads in milliseconds.
+   */
+  public SourceCatalog(WattDepotClient client, long refreshInterval) {
+    this.client = client;
+    this.refreshInterval = refreshInterval;
+  }
+
+  /**
+   * Returns the value of a property of a source, or the MTU ID of the source if <code>key</code> is
+   * {@link #MTU}.
+   *
+   * @param source A source.
+   * @param key Name of a property.
+   * @return The value of the property, or null if the source does not have it.
+   */
+  public static String getProperty(Source source, String key) {
+    if (MTU.equals(key)) {
+      String name = source.getName();
+      int dash = name.indexOf('-');
+      return dash < 0 ? name : name.substring(0, dash);
+    }
+    if (source.getProperties() == null) {
+      return null;
+    }
+    for (Property p : source.getProperties().getProperty()) {
+      if (key.equals(p.getKey())) {
+        return p.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Loads the sources from the WattDepot server and replaces the snapshot.
+   *
+   * @throws WattDepotClientException if the sources cannot be loaded.
+   */
+  public void refresh() throws WattDepotClientException {
+    this.load(this.client.getSources());
+  }
+
+  /**
+   * Replaces the snapshot with the given sources, e.g. sources that were already loaded.
+   *
+   * @param sources Sources to put in the catalog.
+   */
+  public void load(List<Source> sources) {
+    this.snapshot = new Snapshot(sources, System.currentTimeMillis());
+  }
+
+  /**
+   * Loads the sources now, and then reloads them in the background every
+   * <code>refreshInterval</code> milliseconds. If a reload fails, the previous snapshot is kept.
+   *
+   * @throws WattDepotClientException if the sources cannot be loaded the first time.
+   */
+  public synchronized void start() throws WattDepotClientException {
+    if (this.snapshot == null) {
+      this.refresh();
+    }
+    if (this.refresher != null) {
+      return;
+    }
+    this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "SourceCatalog");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.refresher.scheduleWithFixedDelay(() -> {
+      try {
+        this.refresh();
+      }
+      catch (WattDepotClientException e) {
+        System.err.println("Unable to refresh sources: " + e);
+      }
+    }, this.refreshInterval, this.refreshInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops reloading the sources in the background.
+   */
+  @Override
+  public synchronized void close() {
+    if (this.refresher != null) {
+      this.refresher.shutdownNow();
+      this.refresher = null;
+    }
+  }
+
+  /**
+   * Returns the most recent snapshot, loading the sources if they have not been loaded yet.
+   *
+   * @return The most recent snapshot.
+   * @throws WattDepotClientException if the sources cannot be loaded.
+   */
+  private Snapshot getSnapshot() throws WattDepotClientException {
+    Snapshot current = this.snapshot;
+    if (current == null) {
+      synchronized (this) {
+        if (this.snapshot == null) {
+          this.refresh();
+        }
+        current = this.snapshot;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Returns the time at which the sources were last loaded.
+   *
+   * @return The time in milliseconds, or 0 if the sources have not been loaded yet.
+   */
+  public long getLoadTime() {
+    Snapshot current = this.snapshot;
+    return current == null ? 0 : current.loadTime;
+  }
+
+  /**
+   * Returns a source.
+   *
+   * @param name Name of the source.
+   * @return The source, or null if there is no source with that name.
+   * @throws WattDepotClientException if the sources cannot be loaded.
+   */
+  public Source get(String name) throws WattDepotClientException {
+    return this.getSnapshot().byName.get(name);
+  }
+
+  /**
+   * Returns all sources sorted by name.
+   *
+   * @return An unmodifiable list of sources.
+   * @throws WattDepotClientException if the sources cannot be loaded.
+   */
+  public List<Source> getAll() throws WattDepotClientException {
+    return Collections.unmodifiableList(new ArrayList<>(this.getSnapshot().byName.values()));
+  }
+
+  /**
+   * Returns the number of sources.
+   *
+   * @return The number of sources.
+   * @throws WattDepotClientException if the sources cannot be loaded.
+   */
+  public int size() throws WattDepotClientException {
+    return this.getSnapshot().byName.size();
+  }
+
+  /**
+   * Returns the sources whose names start with a prefix and that have the given property values,
+   * sorted by name. Filters on indexed properties and {@link #MTU} use the indexes; the most
+   * selective one is used to find candidates, which are then checked against the other filters.
+   *
+   * @param prefix Prefix of the source names, or null or empty for all sources.
+   * @param filters Required value of each property; may be empty.
+   * @return The matching sources.
+   * @throws WattDepotClientException if the sources cannot be loaded.
+   */
+  public List<Source> query(String prefix, Map<String, String> filters)
+      throws WattDepotClientException {
+    Snapshot current = this.getSnapshot();
+    Collection<Source> candidates = null;
+    for (Map.Entry<String, String> filter : filters.entrySet()) {
+      Map<String, List<Source>> index = current.indexes.get(filter.getKey());
+      if (index != null) {
+        List<Source> matches = index.getOrDefault(filter.getValue(), Collections.emptyList());
+        if (candidates == null || matches.size() < candidates.size()) {
+          candidates = matches;
+        }
+      }
+    }
+    if (prefix != null && !prefix.isEmpty()) {
+      Collection<Source> named =
+          current.byName.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+      if (candidates == null || named.size() < candidates.size()) {
+        candidates = named;
+      }
+    }
+    if (candidates == null) {
+      candidates = current.byName.values();
+    }
+
+    List<Source> result = new ArrayList<>();
+    for (Source s : candidates) {
+      if (matches(s, prefix, filters)) {
+        result.add(s);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if a source matches a prefix and filters.
+   *
+   * @param source A source.
+   * @param prefix Prefix of the source name, or null or empty to match any name.
+   * @param filters Required value of each property.
+   * @return True if the source matches, false otherwise.
+   */
+  private static boolean matches(Source source, String prefix, Map<String, String> filters) {
+    if (prefix != null && !source.getName().startsWith(prefix)) {
+      return false;
+    }
+    for (Map.Entry<String, String> filter : filters.entrySet()) {
+      if (!filter.getValue().equals(getProperty(source, filter.getKey()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
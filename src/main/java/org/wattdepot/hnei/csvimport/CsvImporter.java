@@ -1,16 +1,20 @@
 package org.wattdepot.hnei.csvimport;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.wattdepot.hnei.csvimport.hnei.AccountMtuAnalyzer;
+import org.wattdepot.hnei.csvimport.hnei.HneiImporter;
 
 /**
  * This class uses reflection to call the appropriate processCsvFile method to process a CSV file
@@ -20,6 +24,15 @@ import org.apache.commons.cli.Options;
  */
 public class CsvImporter {
 
+  /** Spool that the importers append data to instead of storing it on the server; null if none. */
+  private SensorDataSpool spool;
+
+  /** Looks up and stores the sources of all files imported in a run. */
+  private SourceRegistry registry;
+
+  /** Results of the account/MTU analysis of all HNEI files imported in a run. */
+  private final AccountMtuAnalyzer mtuAnalyzer = new AccountMtuAnalyzer();
+
   /**
    * Recursive method used to find all classes in a given directory and sub-directories.
    * 
@@ -54,20 +67,30 @@ public class CsvImporter {
   }
 
   /**
-   * Command-line program that reads in the first two rows of a CSV file to determine which method
-   * to call to process the CSV file; uses reflection to call the appropriate method.
+   * Returns the class whose annotation names the type of CSV file to import.
    * 
-   * @param args Contains server URI, username, password, and type of CSV file to process (Egauge,
-   * HNEI, or Hobo).
+   * @param classes Classes to search.
+   * @param csvFileType Type of CSV file, e.g. Hnei.
+   * @return The class that imports the CSV file, or null if none is found.
    */
-  public static void main(String[] args) {
-    if (args.length < 3) {
-      System.err.print("Expected at least 4 command-line arguments: [-s server_uri] [-u username]");
-      System.err.println("[-p password] [-d (egauge | hnei | hobo)] [-x] [-m]");
-      System.err.println("Please try again.");
-      System.exit(1);
+  private static Class<?> findImporterClass(List<Class<?>> classes, String csvFileType) {
+    Class<?> cls = null;
+    for (Class<?> c : classes) {
+      for (Annotation a : c.getAnnotations()) {
+        if (a.toString().contains(csvFileType)) {
+          cls = c;
+        }
+      }
     }
+    return cls;
+  }
 
+  /**
+   * Returns the command-line options.
+   * 
+   * @return The command-line options.
+   */
+  private static Options createOptions() {
     Options options = new Options();
     options.addOption("s", true, "Server URI.");
     options.addOption("u", true, "Username.");
@@ -77,16 +100,102 @@ public class CsvImporter {
     String msg = "If specified, ask user if next file in current directory should be imported;";
     msg += " otherwise, import all files automatically.";
     options.addOption("m", false, msg);
+    msg = "If specified, append data to a spool in this directory instead of storing it on the";
+    msg += " server; run SpoolDrainer to ship the spool.";
+    options.addOption("spool", true, msg);
+    return options;
+  }
+
+  /**
+   * Creates the source registry and, if a spool directory is given, opens the spool that is shared
+   * by all files imported in a run.
+   * 
+   * @param cl Command-line options.
+   * @throws IOException if the spool cannot be opened.
+   */
+  private void setUp(CommandLine cl) throws IOException {
+    this.registry = new SourceRegistry(cl.getOptionValue("s"), cl.getOptionValue("u"));
+    if (cl.hasOption("spool")) {
+      this.spool = new SensorDataSpool(Paths.get(cl.getOptionValue("spool")));
+    }
+  }
+
+  /**
+   * Imports a CSV file with the shared spool and registry, and merges the account/MTU analysis of
+   * an HNEI file into the results of the run.
+   * 
+   * @param cls Class that imports the CSV file.
+   * @param obj Importer for the CSV file.
+   * @return True if successful, false otherwise.
+   * @throws IllegalAccessException if a method of the importer cannot be called.
+   * @throws InvocationTargetException if a method of the importer throws an exception.
+   * @throws NoSuchMethodException if the importer does not have the expected methods.
+   */
+  private boolean importFile(Class<?> cls, Object obj) throws IllegalAccessException,
+      InvocationTargetException, NoSuchMethodException {
+    ((Importer) obj).setSpool(this.spool);
+    if (obj instanceof HneiImporter) {
+      ((HneiImporter) obj).setRegistry(this.registry);
+    }
+    Method processCsvFile = cls.getDeclaredMethod("processCsvFile", (Class<?>[]) null);
+    if (!((Boolean) processCsvFile.invoke(obj, (Object[]) null)).booleanValue()) {
+      return false;
+    }
+    Method closeLogger = cls.getMethod("closeLogger", (Class<?>[]) null);
+    if (!((Boolean) closeLogger.invoke(obj, (Object[]) null)).booleanValue()) {
+      return false;
+    }
+    if (obj instanceof HneiImporter) {
+      this.mtuAnalyzer.merge(((HneiImporter) obj).getMtuAnalyzer());
+    }
+    return true;
+  }
+
+  /**
+   * Closes the spool, if any, and prints the number of records in it.
+   * 
+   * @throws IOException if the spool cannot be closed.
+   */
+  private void closeSpool() throws IOException {
+    if (this.spool != null) {
+      this.spool.close();
+      System.out.println(this.spool.getNumRecords() + " records spooled to "
+          + this.spool.getDirectory() + ".");
+    }
+  }
+
+  /**
+   * Prints the account/MTU report if any HNEI rows were analyzed.
+   */
+  private void printReport() {
+    if (this.mtuAnalyzer.getNumRows() > 0 || this.mtuAnalyzer.getNumRejectedRows() > 0) {
+      System.out.print("\n" + this.mtuAnalyzer.getReport());
+    }
+  }
+
+  /**
+   * Command-line program that reads in the first two rows of a CSV file to determine which method
+   * to call to process the CSV file; uses reflection to call the appropriate method.
+   * 
+   * @param args Contains server URI, username, password, and type of CSV file to process (Egauge,
+   * HNEI, or Hobo).
+   */
+  public static void main(String[] args) {
+    if (args.length < 3) {
+      System.err.print("Expected at least 4 command-line arguments: [-s server_uri] [-u username]");
+      System.err.println("[-p password] [-d (egauge | hnei | hobo)] [-x] [-m] [-spool dir]");
+      System.err.println("Please try again.");
+      System.exit(1);
+    }
 
     BasicParser parser = new BasicParser();
     CommandLine cl = null;
     boolean autoMode = true;
     boolean skipFirstRow = false;
     try {
-      cl = parser.parse(options, args);
+      cl = parser.parse(createOptions(), args);
       if (!cl.hasOption("s") || !cl.hasOption("u") || !cl.hasOption("p") || !cl.hasOption("d")) {
-        msg = "At least one of the required options was not specified.";
-        System.err.println(msg);
+        System.err.println("At least one of the required options was not specified.");
         System.exit(1);
       }
       if (cl.hasOption("x")) {
@@ -128,28 +237,26 @@ public class CsvImporter {
     }
 
     // Use reflection to find class that has appropriate processCsvFile method to call.
-    Annotation[] annotations = null;
-    Class<?> cls = null;
     CsvImporter importer = new CsvImporter();
     List<Class<?>> classes = importer.findClasses(System.getProperty("user.dir"), packageName);
     if (classes == null) {
       System.err.println("Directory not specified.");
       System.exit(1);
     }
-
-    for (Class<?> c : classes) {
-      annotations = c.getAnnotations();
-      for (Annotation a : annotations) {
-        if (a.toString().contains(csvFileType)) {
-          cls = c;
-        }
-      }
-    }
+    Class<?> cls = findImporterClass(classes, csvFileType);
     if (cls == null) {
       System.err.println("Unable to find Java class to process CSV file.");
       System.exit(1);
     }
 
+    try {
+      importer.setUp(cl);
+    }
+    catch (IOException e) {
+      System.err.println("Unable to open spool: " + e.getMessage());
+      System.exit(1);
+    }
+
     // Call processCsvFile method in appropriate class.
     long startTime = 0;
     long endTime = 0;
@@ -168,10 +275,6 @@ public class CsvImporter {
           cls.getConstructor(String.class, String.class, String.class, String.class, Boolean.TYPE);
 
       Object obj = null;
-      Method processCsvFile = null;
-      Method closeLogger = null;
-      Boolean isSuccessful = null;
-
       String file = null;
 
       startTime = Calendar.getInstance().getTimeInMillis();
@@ -183,15 +286,7 @@ public class CsvImporter {
           obj =
               constructor.newInstance(file, cl.getOptionValue("s"), cl.getOptionValue("u"),
                   cl.getOptionValue("p"), skipFirstRow);
-          processCsvFile = cls.getDeclaredMethod("processCsvFile", (Class<?>[]) null);
-          isSuccessful = (Boolean) processCsvFile.invoke(obj, (Object[]) null);
-          if (!isSuccessful.booleanValue()) {
-            System.err.println("The method failed to terminate successfully.");
-            System.exit(1);
-          }
-          closeLogger = cls.getMethod("closeLogger", (Class<?>[]) null);
-          isSuccessful = (Boolean) closeLogger.invoke(obj, (Object[]) null);
-          if (!isSuccessful.booleanValue()) {
+          if (!importer.importFile(cls, obj)) {
             System.err.println("The method failed to terminate successfully.");
             System.exit(1);
           }
@@ -214,12 +309,18 @@ public class CsvImporter {
           }
         }
       }
+      importer.closeSpool();
       endTime = Calendar.getInstance().getTimeInMillis();
+      importer.printReport();
     }
     catch (IllegalAccessException | InstantiationException | InvocationTargetException | NoSuchMethodException e) {
       e.printStackTrace();
       System.exit(1);
     }
+    catch (IOException e) {
+      System.err.println("Unable to close spool: " + e.getMessage());
+      System.exit(1);
+    }
 
     String runtime = Importer.getRuntime(startTime, endTime);
     System.out.println("Bulk import successful!\n\nBulk import runtime: " + runtime);
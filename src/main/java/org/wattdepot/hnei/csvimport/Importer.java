@@ -97,6 +97,12 @@ public abstract class Importer {
   /** End time in seconds to import data from CSV file. */
   protected long importEndTime;
 
+  /** Spool that sources and sensor data are appended to instead of being stored, or null. */
+  protected SensorDataSpool spool;
+
+  /** Counts number of data appended to the spool. */
+  protected int numSpooledData;
+
   /**
    * Returns the parser used to get rows from CSV files.
    * 
@@ -106,6 +112,59 @@ public abstract class Importer {
     return this.parser;
   }
 
+  /**
+   * Sets the spool that sources and sensor data are appended to instead of being stored on the
+   * WattDepot server, so that the import runs at the speed of the disk. A SpoolDrainer ships the
+   * spool to the server later.
+   * 
+   * @param spool Spool to append to, or null to store data on the server directly.
+   */
+  public void setSpool(SensorDataSpool spool) {
+    this.spool = spool;
+  }
+
+  /**
+   * Returns a client for the WattDepot server. The server is not contacted if data is being
+   * spooled, since it is not needed until the spool is drained.
+   * 
+   * @return The client, or null if the server is not available.
+   */
+  protected WattDepotClient connect() {
+    WattDepotClient client = new WattDepotClient(this.serverUri, this.username, this.password);
+    if (this.spool != null) {
+      System.out.println("Spooling data to " + this.spool.getDirectory() + ".");
+    }
+    else if (client.isHealthy() && client.isAuthenticated()) {
+      System.out.println("Successfully connected to " + client.getWattDepotUri() + ".");
+    }
+    else {
+      System.err.println("Unable to connect to WattDepot server.");
+      return null;
+    }
+    return client;
+  }
+
+  /**
+   * Appends a source and/or sensor data to the spool.
+   * 
+   * @param source Source to store if it does not exist yet, or null.
+   * @param data Sensor data to store, or null.
+   * @return True if successful, false otherwise.
+   */
+  private boolean append(Source source, SensorData data) {
+    try {
+      this.spool.append(source, data);
+    }
+    catch (IOException e) {
+      log.log(Level.SEVERE, e.toString());
+      return false;
+    }
+    if (data != null) {
+      this.numSpooledData++;
+    }
+    return true;
+  }
+
   /**
    * Sets up the logger and file handler.
    * 
@@ -155,6 +214,9 @@ public abstract class Importer {
     try {
       Source source = new Source(sourceName, this.username, true);
       source.addProperty(new Property(Source.SUPPORTS_ENERGY_COUNTERS, "true"));
+      if (this.spool != null) {
+        return this.append(source, null);
+      }
       client.storeSource(source, false);
     }
     catch (OverwriteAttemptedException e) {
@@ -169,6 +231,18 @@ public abstract class Importer {
     return true;
   }
 
+  /**
+   * Marks a source as supporting energy counters, unless it already is, so that a source can be
+   * processed more than once without repeating the property.
+   * 
+   * @param source Source that is described by the sensor data.
+   */
+  private static void supportEnergyCounters(Source source) {
+    if (source.getProperty(Source.SUPPORTS_ENERGY_COUNTERS) == null) {
+      source.addProperty(new Property(Source.SUPPORTS_ENERGY_COUNTERS, "true"));
+    }
+  }
+
   /**
    * Stores a source on a WattDepot server if it does not exist yet and then stores sensor data for
    * that source.
@@ -180,9 +254,14 @@ public abstract class Importer {
    * otherwise.
    */
   public boolean process(WattDepotClient client, Source source, SensorData data) {
+    if (this.spool != null) {
+      supportEnergyCounters(source);
+      this.numTotalSources++;
+      return this.append(source, data);
+    }
     try {
       try {
-        source.addProperty(new Property(Source.SUPPORTS_ENERGY_COUNTERS, "true"));
+        supportEnergyCounters(source);
         client.storeSource(source, false);
         this.numNewSources++;
       }
@@ -215,9 +294,14 @@ public abstract class Importer {
    * @return True if successful, false otherwise.
    */
   public boolean process(WattDepotClient client, Source source) {
+    if (this.spool != null) {
+      supportEnergyCounters(source);
+      this.numTotalSources++;
+      return this.append(source, null);
+    }
     try {
       try {
-        source.addProperty(new Property(Source.SUPPORTS_ENERGY_COUNTERS, "true"));
+        supportEnergyCounters(source);
         client.storeSource(source, false);
         this.numNewSources++;
       }
@@ -242,6 +326,9 @@ public abstract class Importer {
    * @return True if successful, false otherwise.
    */
   public boolean process(WattDepotClient client, SensorData data) {
+    if (this.spool != null) {
+      return this.append(null, data);
+    }
     try {
       client.storeSensorData(data);
       this.numNewData++;
@@ -0,0 +1,73 @@
+package org.wattdepot.hnei.csvimport;
+
+import java.util.Arrays;
+import org.wattdepot.hnei.export.SamplingInterval;
+import org.wattdepot.hnei.util.EpochTime;
+
+/**
+ * Infers the sampling interval of a source (hourly, daily, weekly, or monthly) from the median time
+ * between consecutive data points. The median is used so that a few missing or duplicate readings
+ * do not change the result.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public final class SamplingIntervalClassifier {
+
+  /** Sources whose median interval is less than this are hourly sources. */
+  public static final long HOURLY_THRESHOLD = 12 * EpochTime.MILLIS_PER_HOUR;
+
+  /** Sources whose median interval is less than this are daily sources. */
+  public static final long DAILY_THRESHOLD = 84 * EpochTime.MILLIS_PER_HOUR;
+
+  /** Sources whose median interval is less than this are weekly sources. */
+  public static final long WEEKLY_THRESHOLD = 18 * EpochTime.MILLIS_PER_DAY;
+
+  /**
+   * Prevents this class from being instantiated.
+   */
+  private SamplingIntervalClassifier() {
+  }
+
+  /**
+   * Returns the median time between consecutive timestamps.
+   *
+   * @param times Timestamps in milliseconds, sorted in ascending order.
+   * @return The median time between timestamps in milliseconds, or -1 if there are fewer than two
+   * timestamps.
+   */
+  public static long medianDelta(long[] times) {
+    if (times.length < 2) {
+      return -1;
+    }
+    long[] deltas = new long[times.length - 1];
+    for (int i = 1; i < times.length; i++) {
+      deltas[i - 1] = times[i] - times[i - 1];
+    }
+    Arrays.sort(deltas);
+    return deltas[deltas.length / 2];
+  }
+
+  /**
+   * Returns the sampling interval for a list of timestamps.
+   *
+   * @param times Timestamps in milliseconds, sorted in ascending order.
+   * @return One of the values in SamplingInterval, or null if there are fewer than two timestamps.
+   */
+  public static String classify(long[] times) {
+    long median = medianDelta(times);
+    if (median < 0) {
+      return null;
+    }
+    if (median < HOURLY_THRESHOLD) {
+      return SamplingInterval.HOURLY;
+    }
+    else if (median < DAILY_THRESHOLD) {
+      return SamplingInterval.DAILY;
+    }
+    else if (median < WEEKLY_THRESHOLD) {
+      return SamplingInterval.WEEKLY;
+    }
+    return SamplingInterval.MONTHLY;
+  }
+
+}
@@ -0,0 +1,531 @@
+package org.wattdepot.hnei.csvimport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Properties;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * A write-ahead spool of sources and sensor data on local disk. Importers append records to the
+ * spool at the speed of the disk, and a {@link SpoolDrainer} ships them to the WattDepot server
+ * later, at whatever rate the server sustains. Records are appended to a segment file named
+ * <code>spool-NNNNNN.open</code>; when the segment is full or the spool is closed, the segment is
+ * sealed by renaming it to <code>spool-NNNNNN.seg</code>. Only sealed segments are drained, and a
+ * segment is deleted once all of its records have been stored on the server. Each record has a
+ * length and a checksum; a segment that was left open by a crash is truncated after its last
+ * complete record and sealed the next time the spool is opened.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class SensorDataSpool implements Closeable {
+
+  /** Default maximum size of a segment file before it is sealed and a new one is started. */
+  public static final long DEFAULT_MAX_SEGMENT_SIZE = 16L << 20;
+
+  /** Extension of a segment that is being written. */
+  static final String OPEN_EXTENSION = ".open";
+
+  /** Extension of a sealed segment. */
+  static final String SEALED_EXTENSION = ".seg";
+
+  /** Magic number at the start of a segment file. */
+  private static final int MAGIC = 0x4853504C;
+
+  /** Version of the segment file format. */
+  private static final int VERSION = 1;
+
+  /** Size of the segment header in bytes: magic number and version. */
+  private static final int HEADER_SIZE = 8;
+
+  /** Size of the record header in bytes: length and checksum. */
+  private static final int RECORD_HEADER_SIZE = 12;
+
+  /** Largest record that is accepted when reading, to detect corrupt lengths. */
+  private static final int MAX_RECORD_SIZE = 1 << 20;
+
+  /** Flag in a record that is set if the record contains a source. */
+  private static final int HAS_SOURCE = 1;
+
+  /** Flag in a record that is set if the record contains sensor data. */
+  private static final int HAS_SENSOR_DATA = 2;
+
+  /** Directory that contains the spool. */
+  private final Path directory;
+
+  /** Maximum size of a segment file in bytes. */
+  private final long maxSegmentSize;
+
+  /** Segment file that records are appended to, or null if no segment is open. */
+  private FileOutputStream segmentFile;
+
+  /** Buffered stream over the segment file. */
+  private DataOutputStream segment;
+
+  /** Number of the open segment, or of the last segment if none is open. */
+  private int segmentNumber;
+
+  /** Size of the open segment in bytes. */
+  private long segmentSize;
+
+  /** Number of records appended since the spool was opened. */
+  private long numRecords;
+
+  /**
+   * A record in the spool: a source to store if it does not exist yet, sensor data to store, or
+   * both, in which case the source is stored first.
+   */
+  public static final class Record {
+
+    /** Source to store, or null. */
+    private final Source source;
+
+    /** Sensor data to store, or null. */
+    private final SensorData sensorData;
+
+    /**
+     * Creates a new Record object.
+     *
+     * @param source Source to store, or null.
+     * @param sensorData Sensor data to store, or null.
+     */
+    Record(Source source, SensorData sensorData) {
+      this.source = source;
+      this.sensorData = sensorData;
+    }
+
+    /**
+     * Returns the source to store.
+     *
+     * @return The source, or null if the record contains only sensor data.
+     */
+    public Source getSource() {
+      return this.source;
+    }
+
+    /**
+     * Returns the sensor data to store.
+     *
+     * @return The sensor data, or null if the record contains only a source.
+     */
+    public SensorData getSensorData() {
+      return this.sensorData;
+    }
+  }
+
+  /**
+   * Reads the records in a segment in order.
+   */
+  public static final class Reader implements Closeable {
+
+    /** Segment file. */
+    private final Path file;
+
+    /** Stream over the segment file. */
+    private final DataInputStream in;
+
+    /** Offset just past the last record that was read. */
+    private long offset;
+
+    /**
+     * Opens a segment for reading.
+     *
+     * @param file Segment file.
+     * @throws IOException if the segment cannot be opened or is not a spool segment.
+     */
+    public Reader(Path file) throws IOException {
+      this.file = file;
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+      try {
+        if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+          throw new IOException(file + " is not a spool segment.");
+        }
+      }
+      catch (IOException e) {
+        this.in.close();
+        throw e;
+      }
+      this.offset = HEADER_SIZE;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return The next record, or null if there are no more records.
+     * @throws IOException if the next record is incomplete or corrupt, or cannot be read.
+     */
+    public Record next() throws IOException {
+      int length;
+      try {
+        length = this.in.readInt();
+      }
+      catch (EOFException e) {
+        return null;
+      }
+      if (length < RECORD_HEADER_SIZE || length > MAX_RECORD_SIZE) {
+        throw new IOException("Corrupt record in " + this.file + " at offset " + this.offset + ".");
+      }
+      byte[] record = new byte[length];
+      ByteBuffer.wrap(record).putInt(length);
+      try {
+        this.in.readFully(record, 4, length - 4);
+      }
+      catch (EOFException e) {
+        throw new IOException("Incomplete record in " + this.file + " at offset " + this.offset
+            + ".", e);
+      }
+      Record result = decode(record);
+      if (result == null) {
+        throw new IOException("Corrupt record in " + this.file + " at offset " + this.offset + ".");
+      }
+      this.offset += length;
+      return result;
+    }
+
+    /**
+     * Returns the offset just past the last record that was read successfully.
+     *
+     * @return The offset in bytes.
+     */
+    public long getOffset() {
+      return this.offset;
+    }
+
+    /**
+     * Closes the segment.
+     *
+     * @throws IOException if there are problems closing the segment.
+     */
+    @Override
+    public void close() throws IOException {
+      this.in.close();
+    }
+  }
+
+  /**
+   * Opens the spool in a directory with the default maximum segment size.
+   *
+   * @param directory Directory that contains the spool.
+   * @throws IOException if the spool cannot be opened.
+   */
+  public SensorDataSpool(Path directory) throws IOException {
+    this(directory, DEFAULT_MAX_SEGMENT_SIZE);
+  }
+
+  /**
+   * Opens the spool in a directory, creating it if it does not exist, and seals any segments that
+   * were left open.
+   *
+   * @param directory Directory that contains the spool.
+   * @param maxSegmentSize Maximum size of a segment file in bytes.
+   * @throws IOException if the spool cannot be opened.
+   */
+  public SensorDataSpool(Path directory, long maxSegmentSize) throws IOException {
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize;
+    Files.createDirectories(directory);
+    this.segmentNumber = 0;
+    for (Path file : listSegments(directory, OPEN_EXTENSION)) {
+      recover(file);
+    }
+    for (Path file : listSegments(directory, SEALED_EXTENSION)) {
+      this.segmentNumber = Math.max(this.segmentNumber, segmentNumber(file));
+    }
+  }
+
+  /**
+   * Returns the segments in a directory with an extension, in the order in which they were written.
+   *
+   * @param directory Directory that contains the spool.
+   * @param extension Extension of the segments.
+   * @return The segment files.
+   * @throws IOException if the directory cannot be read.
+   */
+  private static List<Path> listSegments(Path directory, String extension) throws IOException {
+    List<Path> files = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return files;
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "spool-*" + extension)) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  /**
+   * Returns the sealed segments in a spool directory, which are ready to be drained, in the order
+   * in which they were written.
+   *
+   * @param directory Directory that contains the spool.
+   * @return The sealed segment files.
+   * @throws IOException if the directory cannot be read.
+   */
+  public static List<Path> getSealedSegments(Path directory) throws IOException {
+    return listSegments(directory, SEALED_EXTENSION);
+  }
+
+  /**
+   * Returns the number of a segment from its file name.
+   *
+   * @param file Segment file.
+   * @return The number of the segment.
+   */
+  private static int segmentNumber(Path file) {
+    String name = file.getFileName().toString();
+    return Integer.parseInt(name.substring("spool-".length(), name.lastIndexOf('.')));
+  }
+
+  /**
+   * Returns the path of a segment file.
+   *
+   * @param number Number of the segment.
+   * @param extension Extension of the segment.
+   * @return The path of the segment file.
+   */
+  private Path segmentFile(int number, String extension) {
+    return this.directory.resolve(String.format("spool-%06d%s", number, extension));
+  }
+
+  /**
+   * Truncates a segment that was left open after its last complete record and seals it, or
+   * deletes it if it has no complete records.
+   *
+   * @param file Segment file.
+   * @throws IOException if the segment cannot be recovered.
+   */
+  private void recover(Path file) throws IOException {
+    int number = segmentNumber(file);
+    this.segmentNumber = Math.max(this.segmentNumber, number);
+    long validLength = 0;
+    int count = 0;
+    try (Reader reader = new Reader(file)) {
+      validLength = reader.getOffset();
+      while (reader.next() != null) {
+        validLength = reader.getOffset();
+        count++;
+      }
+    }
+    catch (IOException e) {
+      System.err.println("Recovered " + count + " records from " + file + ": " + e.getMessage());
+    }
+    if (count == 0) {
+      Files.delete(file);
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(validLength);
+      channel.force(true);
+    }
+    Files.move(file, this.segmentFile(number, SEALED_EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Appends a record to the spool, starting a new segment if necessary.
+   *
+   * @param source Source to store if it does not exist yet, or null.
+   * @param sensorData Sensor data to store, or null.
+   * @throws IOException if the record cannot be written.
+   */
+  public synchronized void append(Source source, SensorData sensorData) throws IOException {
+    byte[] record = encode(source, sensorData);
+    if (this.segment == null) {
+      this.segmentNumber++;
+      this.segmentFile =
+          new FileOutputStream(this.segmentFile(this.segmentNumber, OPEN_EXTENSION).toFile());
+      this.segment = new DataOutputStream(new BufferedOutputStream(this.segmentFile, 1 << 16));
+      this.segment.writeInt(MAGIC);
+      this.segment.writeInt(VERSION);
+      this.segmentSize = HEADER_SIZE;
+    }
+    this.segment.write(record);
+    this.segmentSize += record.length;
+    this.numRecords++;
+    if (this.segmentSize >= this.maxSegmentSize) {
+      this.seal();
+    }
+  }
+
+  /**
+   * Writes the open segment to disk and seals it, so that it can be drained. The next record is
+   * appended to a new segment.
+   *
+   * @throws IOException if the segment cannot be written or renamed.
+   */
+  public synchronized void seal() throws IOException {
+    if (this.segment == null) {
+      return;
+    }
+    try {
+      this.segment.flush();
+      this.segmentFile.getFD().sync();
+    }
+    finally {
+      this.segment.close();
+      this.segment = null;
+      this.segmentFile = null;
+    }
+    Files.move(this.segmentFile(this.segmentNumber, OPEN_EXTENSION),
+        this.segmentFile(this.segmentNumber, SEALED_EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Returns the number of records appended since the spool was opened.
+   *
+   * @return The number of records.
+   */
+  public synchronized long getNumRecords() {
+    return this.numRecords;
+  }
+
+  /**
+   * Returns the directory that contains the spool.
+   *
+   * @return The directory.
+   */
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * Seals the open segment.
+   *
+   * @throws IOException if the segment cannot be written or renamed.
+   */
+  @Override
+  public void close() throws IOException {
+    this.seal();
+  }
+
+  /**
+   * Writes the properties of a source or sensor data.
+   *
+   * @param out Stream to write to.
+   * @param properties Properties, or null.
+   * @throws IOException if the properties cannot be written.
+   */
+  private static void writeProperties(DataOutputStream out, Properties properties)
+      throws IOException {
+    List<Property> list = properties == null ? new ArrayList<>() : properties.getProperty();
+    out.writeInt(list.size());
+    for (Property p : list) {
+      out.writeUTF(p.getKey());
+      out.writeUTF(p.getValue());
+    }
+  }
+
+  /**
+   * Reads the properties of a source or sensor data.
+   *
+   * @param in Stream to read from.
+   * @return The properties.
+   * @throws IOException if the properties cannot be read.
+   */
+  private static Properties readProperties(DataInputStream in) throws IOException {
+    Properties properties = new Properties();
+    int numProperties = in.readInt();
+    for (int i = 0; i < numProperties; i++) {
+      properties.getProperty().add(new Property(in.readUTF(), in.readUTF()));
+    }
+    return properties;
+  }
+
+  /**
+   * Encodes a record: length, checksum, flags, and then the source and the sensor data.
+   *
+   * @param source Source, or null.
+   * @param data Sensor data, or null.
+   * @return The encoded record.
+   * @throws IOException if the record cannot be encoded.
+   */
+  static byte[] encode(Source source, SensorData data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeLong(0);
+    out.writeByte((source == null ? 0 : HAS_SOURCE) | (data == null ? 0 : HAS_SENSOR_DATA));
+    if (source != null) {
+      out.writeUTF(source.getName());
+      out.writeUTF(source.getOwner() == null ? "" : source.getOwner());
+      out.writeBoolean(source.isPublic());
+      writeProperties(out, source.getProperties());
+    }
+    if (data != null) {
+      out.writeLong(EpochTime.toMillis(data.getTimestamp()));
+      out.writeInt(EpochTime.zoneOffset(data.getTimestamp()));
+      out.writeUTF(data.getTool() == null ? "" : data.getTool());
+      out.writeUTF(data.getSource() == null ? "" : data.getSource());
+      writeProperties(out, data.getProperties());
+    }
+    out.flush();
+    byte[] record = bytes.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+    ByteBuffer.wrap(record).putInt(record.length).putLong(crc.getValue());
+    return record;
+  }
+
+  /**
+   * Decodes a record.
+   *
+   * @param record Record to decode.
+   * @return The record, or null if the record is corrupt.
+   * @throws IOException if the record cannot be decoded.
+   */
+  static Record decode(byte[] record) throws IOException {
+    ByteBuffer header = ByteBuffer.wrap(record);
+    if (record.length < RECORD_HEADER_SIZE + 1 || header.getInt() != record.length) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+    if (header.getLong() != crc.getValue()) {
+      return null;
+    }
+
+    InputStream bytes = new ByteArrayInputStream(record, RECORD_HEADER_SIZE,
+        record.length - RECORD_HEADER_SIZE);
+    DataInputStream in = new DataInputStream(bytes);
+    int flags = in.readByte();
+    Source source = null;
+    if ((flags & HAS_SOURCE) != 0) {
+      source = new Source(in.readUTF(), in.readUTF(), in.readBoolean());
+      source.setProperties(readProperties(in));
+    }
+    SensorData data = null;
+    if ((flags & HAS_SENSOR_DATA) != 0) {
+      long time = in.readLong();
+      int zone = in.readInt();
+      String tool = in.readUTF();
+      String sourceUri = in.readUTF();
+      data = new SensorData(EpochTime.toTimestamp(time, zone), tool, sourceUri,
+          readProperties(in));
+    }
+    return new Record(source, data);
+  }
+
+}
@@ -4,14 +4,23 @@ import static org.wattdepot.datainput.DataInputClientProperties.WATTDEPOT_PASSWO
 import static org.wattdepot.datainput.DataInputClientProperties.WATTDEPOT_URI_KEY;
 import static org.wattdepot.datainput.DataInputClientProperties.WATTDEPOT_USERNAME_KEY;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.bind.JAXBException;
 import javax.xml.datatype.XMLGregorianCalendar;
 
@@ -19,20 +28,30 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.wattdepot.client.WattDepotClient;
 import org.wattdepot.client.WattDepotClientException;
 import org.wattdepot.datainput.DataInputClientProperties;
+import org.wattdepot.hnei.client.ChunkingWattDepotClient;
+import org.wattdepot.hnei.client.CoalescingWattDepotClient;
+import org.wattdepot.hnei.client.DiskCachingClient;
 import org.wattdepot.hnei.export.SamplingInterval;
+import org.wattdepot.hnei.util.EpochTime;
 import org.wattdepot.resource.property.jaxb.Property;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 import org.wattdepot.resource.source.jaxb.Source;
 import org.wattdepot.util.tstamp.Tstamp;
 
 /**
- * This class contains a main method that will store the type of data (daily or hourly) for a source
- * in the list of properties for that source.
+ * This class contains a main method that will store the type of data (hourly, daily, weekly, or
+ * monthly) for a source in the list of properties for that source.
  * 
  * @author BJ Peter DeLaCruz
  */
 public class SensorDataTypeSetter {
 
+  /** Default number of sources to process at the same time. */
+  public static final int DEFAULT_NUM_THREADS = 8;
+
+  /** Default name of the file containing the last classified timestamp for each source. */
+  public static final String STATE_FILE = "samplingIntervals.properties";
+
   /** Used to connect to the WattDepot server. */
   private WattDepotClient client;
 
@@ -48,12 +67,19 @@ public class SensorDataTypeSetter {
   /** List of WattDepot sources. */
   private List<Source> sources;
 
+  /** Number of sources to process at the same time. */
+  private int numThreads;
+
+  /** File containing the timestamp of the last data point classified for each source. */
+  private File stateFile;
+
   /**
    * Creates a new SensorDataTypeSetter object.
    */
   public SensorDataTypeSetter() {
     this.formatDate = new SimpleDateFormat("MM/dd/yyyy", Locale.US);
     this.sources = new ArrayList<>();
+    this.numThreads = DEFAULT_NUM_THREADS;
   }
 
   /**
@@ -120,6 +146,9 @@ public class SensorDataTypeSetter {
       System.out.println("Is healthy? " + this.client.isHealthy());
       return false;
     }
+    this.client = ChunkingWattDepotClient.wrapIfEnabled(this.client);
+    this.client = DiskCachingClient.wrapIfEnabled(this.client);
+    this.client = new CoalescingWattDepotClient(this.client);
     try {
       this.sources = this.client.getSources();
     }
@@ -131,50 +160,128 @@ public class SensorDataTypeSetter {
   }
 
   /**
-   * Sets the type of data (daily or hourly) for a source and then updates the source stored on the
-   * WattDepot server.
+   * Sets the number of sources to process at the same time.
+   * 
+   * @param numThreads Number of sources to process at the same time.
+   */
+  public void setNumThreads(int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1.");
+    }
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * Sets the file in which the timestamp of the last data point classified for each source is
+   * stored. If set, only data newer than the last classification is retrieved for each source.
+   * 
+   * @param stateFile File containing the last classified timestamp for each source, or null to
+   * classify all data between the start and end dates.
+   */
+  public void setStateFile(File stateFile) {
+    this.stateFile = stateFile;
+  }
+
+  /**
+   * Sets the type of data (hourly, daily, weekly, or monthly) for each source and then updates the
+   * source stored on the WattDepot server if its type has changed. Sources are processed
+   * concurrently.
    * 
    * @return True if successful, false otherwise.
    */
   public boolean processSources() {
-    try {
-      // List<Source> sources = this.client.getSources();
-      for (Source s : this.sources) {
-        System.out.println("Setting type of data stored on " + s.getName() + "...");
-        List<SensorData> datas =
-            this.client.getSensorDatas(s.getName(), this.startTimestamp, this.endTimestamp);
-
-        // Remove old property.
-        for (Property prop : s.getProperties().getProperty()) {
-          if (prop.getKey().equals(SamplingInterval.SAMPLING_INTERVAL)) {
-            s.getProperties().getProperty().remove(prop);
-            break;
-          }
-        }
+    Properties state = this.loadState();
+    if (state == null) {
+      return false;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.numThreads,
+        Math.max(1, this.sources.size())));
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (Source s : this.sources) {
+      results.add(pool.submit(() -> this.processSource(s, state)));
+    }
+    pool.shutdown();
 
-        int numDays = 0;
-        if (!datas.isEmpty()) {
-          XMLGregorianCalendar start = datas.get(0).getTimestamp();
-          XMLGregorianCalendar end = datas.get(datas.size() - 1).getTimestamp();
-          numDays = Tstamp.daysBetween(start, end) + 1;
-        }
+    boolean success = true;
+    for (Future<Boolean> result : results) {
+      try {
+        success &= result.get();
+      }
+      catch (InterruptedException e) {
+        pool.shutdownNow();
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      catch (ExecutionException e) {
+        e.getCause().printStackTrace();
+        success = false;
+      }
+    }
+    return this.saveState(state) && success;
+  }
 
-        // Create new property.
-        if (datas.size() > numDays) {
-          s.addProperty(new Property(SamplingInterval.SAMPLING_INTERVAL, SamplingInterval.HOURLY));
-          System.out.println(s.getName() + ": [" + SamplingInterval.HOURLY + "]");
-        }
-        else if (datas.size() <= numDays && !datas.isEmpty()) {
-          s.addProperty(new Property(SamplingInterval.SAMPLING_INTERVAL, SamplingInterval.DAILY));
-          System.out.println(s.getName() + ": [" + SamplingInterval.DAILY + "]");
+  /**
+   * Sets the type of data for a source. Only data newer than the last classification recorded in
+   * <code>state</code> is retrieved, and the source is stored only if its type has changed.
+   * 
+   * @param source Source to process.
+   * @param state Timestamp of the last data point classified for each source.
+   * @return True if successful, false otherwise.
+   */
+  private boolean processSource(Source source, Properties state) {
+    String name = source.getName();
+    long start = EpochTime.toMillis(this.startTimestamp);
+    long end = EpochTime.toMillis(this.endTimestamp);
+    String lastClassified = state.getProperty(name);
+    if (lastClassified != null) {
+      // Include the last data point so that the delta to the first new data point is counted.
+      start = Math.max(start, Long.parseLong(lastClassified));
+      if (start >= end) {
+        return true;
+      }
+    }
+
+    try {
+      int zone = EpochTime.zoneOffset(this.startTimestamp);
+      List<SensorData> datas = this.client.getSensorDatas(name, EpochTime.toTimestamp(start, zone),
+          this.endTimestamp);
+      long[] times = new long[datas.size()];
+      for (int i = 0; i < times.length; i++) {
+        times[i] = EpochTime.toMillis(datas.get(i).getTimestamp());
+      }
+
+      String oldInterval = source.getProperty(SamplingInterval.SAMPLING_INTERVAL);
+      String newInterval = SamplingIntervalClassifier.classify(times);
+      if (newInterval == null) {
+        if (oldInterval != null && !SamplingInterval.NOT_AVAILABLE.equals(oldInterval)) {
+          // Not enough new data to reclassify the source.
+          newInterval = oldInterval;
         }
-        else if (datas.isEmpty()) {
-          s.addProperty(new Property(SamplingInterval.SAMPLING_INTERVAL,
-              SamplingInterval.NOT_AVAILABLE));
-          System.out.println("No sensor data exists for " + s.getName());
+        else {
+          newInterval = times.length == 0 ? SamplingInterval.NOT_AVAILABLE : SamplingInterval.DAILY;
         }
+      }
+      if (newInterval.equals(oldInterval)) {
+        setLastClassified(state, name, times);
+        return true;
+      }
 
-        this.client.storeSource(s, true);
+      // Replace old property.
+      for (Property prop : source.getProperties().getProperty()) {
+        if (prop.getKey().equals(SamplingInterval.SAMPLING_INTERVAL)) {
+          source.getProperties().getProperty().remove(prop);
+          break;
+        }
+      }
+      source.addProperty(new Property(SamplingInterval.SAMPLING_INTERVAL, newInterval));
+      this.client.storeSource(source, true);
+      // Only data whose classification has been stored counts as classified.
+      setLastClassified(state, name, times);
+      if (SamplingInterval.NOT_AVAILABLE.equals(newInterval)) {
+        System.out.println("No sensor data exists for " + name);
+      }
+      else {
+        System.out.println(name + ": [" + newInterval + "]");
       }
     }
     catch (JAXBException | WattDepotClientException e) {
@@ -183,6 +290,59 @@ public class SensorDataTypeSetter {
     return true;
   }
 
+  /**
+   * Records the timestamp of the last data point classified for a source.
+   * 
+   * @param state Timestamp of the last data point classified for each source.
+   * @param name Name of the source.
+   * @param times Timestamps of the data points that were classified.
+   */
+  private static void setLastClassified(Properties state, String name, long[] times) {
+    if (times.length > 0) {
+      state.setProperty(name, Long.toString(times[times.length - 1]));
+    }
+  }
+
+  /**
+   * Loads the timestamp of the last data point classified for each source from the state file.
+   * 
+   * @return Last classified timestamp for each source, or null if the state file could not be read.
+   */
+  private Properties loadState() {
+    Properties state = new Properties();
+    if (this.stateFile == null || !this.stateFile.exists()) {
+      return state;
+    }
+    try (InputStream in = Files.newInputStream(this.stateFile.toPath())) {
+      state.load(in);
+    }
+    catch (IOException e) {
+      System.err.println("Unable to read " + this.stateFile + ": " + e.getMessage());
+      return null;
+    }
+    return state;
+  }
+
+  /**
+   * Saves the timestamp of the last data point classified for each source to the state file.
+   * 
+   * @param state Last classified timestamp for each source.
+   * @return True if successful, false otherwise.
+   */
+  private boolean saveState(Properties state) {
+    if (this.stateFile == null) {
+      return true;
+    }
+    try (OutputStream out = Files.newOutputStream(this.stateFile.toPath())) {
+      state.store(out, "Timestamp of last data point classified for each source");
+    }
+    catch (IOException e) {
+      System.err.println("Unable to write " + this.stateFile + ": " + e.getMessage());
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Gets a date from the user via the command-line.
    * 
@@ -217,10 +377,20 @@ public class SensorDataTypeSetter {
    * This command-line program will update the type of data that is stored for a source in the list
    * of properties for a source.
    * 
-   * @param args None.
+   * @param args [number of threads].
    */
   public static void main(String[] args) {
     SensorDataTypeSetter setter = new SensorDataTypeSetter();
+    if (args.length == 1) {
+      try {
+        setter.setNumThreads(Integer.parseInt(args[0]));
+      }
+      catch (IllegalArgumentException e) {
+        System.err.println("Invalid number of threads: " + args[0]);
+        System.exit(1);
+      }
+    }
+    setter.setStateFile(new File(STATE_FILE));
     if (!setter.setup() || !setter.getDate() || !setter.processSources()) {
       System.exit(1);
     }
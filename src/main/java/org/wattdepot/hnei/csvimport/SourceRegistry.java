@@ -0,0 +1,180 @@
+package org.wattdepot.hnei.csvimport;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * Assigns a dense id to each source that is identified by an MTU and a port in a CSV file, and
+ * keeps the name, URI, and Source object of each source, so that a parser and an importer can
+ * look them up for every row without building new strings or objects. Lookups do not allocate:
+ * sources are found by the MTU and port strings of a row rather than by their concatenation.
+ * The registry also remembers which sources have been stored on the server, so that an importer
+ * only stores each source once.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class SourceRegistry {
+
+  /** URI of the WattDepot server. */
+  private final String serverUri;
+
+  /** Owner of the sources. */
+  private final String owner;
+
+  /** Ids of sources, by MTU and then by port. */
+  private final Map<String, Map<String, Integer>> ids;
+
+  /** Names of sources, by id. */
+  private String[] names;
+
+  /** URIs of sources, by id. */
+  private String[] uris;
+
+  /** Sources, by id, which are created when they are first requested. */
+  private Source[] sources;
+
+  /** Ids of sources that have been stored on the server. */
+  private final BitSet stored;
+
+  /** Number of sources. */
+  private int size;
+
+  /**
+   * Creates a new SourceRegistry object.
+   *
+   * @param serverUri URI of the WattDepot server.
+   * @param owner Owner of the sources.
+   */
+  public SourceRegistry(String serverUri, String owner) {
+    this.serverUri = serverUri;
+    this.owner = owner;
+    this.ids = new HashMap<>();
+    this.names = new String[16];
+    this.uris = new String[16];
+    this.sources = new Source[16];
+    this.stored = new BitSet();
+  }
+
+  /**
+   * Returns the id of a source, adding the source if it has not been seen before.
+   *
+   * @param mtu MTU ID of the source.
+   * @param port Port of the MTU.
+   * @return The id of the source.
+   */
+  public synchronized int register(String mtu, String port) {
+    Map<String, Integer> ports = this.ids.get(mtu);
+    if (ports == null) {
+      ports = new HashMap<>();
+      this.ids.put(mtu, ports);
+    }
+    Integer id = ports.get(port);
+    if (id != null) {
+      return id;
+    }
+    if (this.size == this.names.length) {
+      this.names = Arrays.copyOf(this.names, this.size * 2);
+      this.uris = Arrays.copyOf(this.uris, this.size * 2);
+      this.sources = Arrays.copyOf(this.sources, this.size * 2);
+    }
+    String name = mtu + "-" + port;
+    this.names[this.size] = name;
+    this.uris[this.size] = Source.sourceToUri(name, this.serverUri);
+    ports.put(port, this.size);
+    return this.size++;
+  }
+
+  /**
+   * Returns the id of a source.
+   *
+   * @param mtu MTU ID of the source.
+   * @param port Port of the MTU.
+   * @return The id of the source, or -1 if it has not been registered.
+   */
+  public synchronized int getId(String mtu, String port) {
+    Map<String, Integer> ports = this.ids.get(mtu);
+    Integer id = ports == null ? null : ports.get(port);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Checks that an id belongs to a registered source.
+   *
+   * @param id Id of a source.
+   */
+  private void checkId(int id) {
+    if (id < 0 || id >= this.size) {
+      throw new IllegalArgumentException("Unknown source id: " + id);
+    }
+  }
+
+  /**
+   * Returns the name of a source, which is its MTU ID and port separated by a hyphen.
+   *
+   * @param id Id of the source.
+   * @return The name of the source.
+   */
+  public synchronized String getName(int id) {
+    this.checkId(id);
+    return this.names[id];
+  }
+
+  /**
+   * Returns the URI of a source on the WattDepot server.
+   *
+   * @param id Id of the source.
+   * @return The URI of the source.
+   */
+  public synchronized String getUri(int id) {
+    this.checkId(id);
+    return this.uris[id];
+  }
+
+  /**
+   * Returns the public Source object of a source, creating it without properties the first time it
+   * is requested. The same object is returned every time.
+   *
+   * @param id Id of the source.
+   * @return The source.
+   */
+  public synchronized Source getSource(int id) {
+    this.checkId(id);
+    if (this.sources[id] == null) {
+      this.sources[id] = new Source(this.names[id], this.owner, true);
+    }
+    return this.sources[id];
+  }
+
+  /**
+   * Returns true if a source has been stored on the server.
+   *
+   * @param id Id of the source.
+   * @return True if the source has been stored, false otherwise.
+   */
+  public synchronized boolean isStored(int id) {
+    return this.stored.get(id);
+  }
+
+  /**
+   * Records that a source has been stored on the server.
+   *
+   * @param id Id of the source.
+   */
+  public synchronized void setStored(int id) {
+    this.checkId(id);
+    this.stored.set(id);
+  }
+
+  /**
+   * Returns the number of sources.
+   *
+   * @return The number of sources.
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+
+}
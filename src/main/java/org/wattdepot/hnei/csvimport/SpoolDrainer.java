@@ -0,0 +1,491 @@
+package org.wattdepot.hnei.csvimport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.bind.JAXBException;
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.NotAuthorizedException;
+import org.wattdepot.client.OverwriteAttemptedException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * Ships the records in a {@link SensorDataSpool} to a WattDepot server. Sealed segments are drained
+ * in the order in which they were written, in batches; the sensor data in a batch is stored
+ * concurrently, and records that fail because the server is unavailable are sent again after a
+ * delay that doubles up to one minute, so an outage only pauses the drainer. A segment is deleted
+ * once every record in it has been stored or was already on the server, or has been copied to the
+ * {@value #FAILED_DIRECTORY} spool because the server rejected it; those records can be drained
+ * again from there once the cause has been fixed. Each source is stored at most once per run.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class SpoolDrainer {
+
+  /** Default number of records in a batch. */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /** Default number of records that are stored at the same time. */
+  public static final int DEFAULT_NUM_THREADS = 4;
+
+  /** Default time to wait for new segments when following the spool. */
+  public static final long DEFAULT_POLL_INTERVAL = 10 * EpochTime.MILLIS_PER_SECOND;
+
+  /** Delay before the first retry of a batch. */
+  private static final long INITIAL_BACKOFF = EpochTime.MILLIS_PER_SECOND;
+
+  /** Maximum delay between retries of a batch. */
+  private static final long MAX_BACKOFF = EpochTime.MILLIS_PER_MINUTE;
+
+  /** Subdirectory of the spool that holds the records that the server rejected. */
+  public static final String FAILED_DIRECTORY = "failed";
+
+  /** Extension given to a segment that contains a corrupt record after it has been drained. */
+  private static final String CORRUPT_EXTENSION = ".corrupt";
+
+  /**
+   * Result of storing a record.
+   */
+  private enum Outcome {
+    /** The record was stored. */
+    STORED,
+    /** The record was already on the server. */
+    EXISTING,
+    /** The record was rejected and will never be stored. */
+    FAILED,
+    /** The server is unavailable; the record should be sent again. */
+    RETRY,
+    /** The client is not authorized; draining should stop. */
+    UNAUTHORIZED
+  }
+
+  /** Used to store data on the WattDepot server. */
+  private final WattDepotClient client;
+
+  /** Directory that contains the spool. */
+  private final Path directory;
+
+  /** Number of records in a batch. */
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  /** Number of records that are stored at the same time. */
+  private int numThreads = DEFAULT_NUM_THREADS;
+
+  /** Names of the sources that have been stored or were already on the server. */
+  private final Set<String> storedSources = ConcurrentHashMap.newKeySet();
+
+  /** Number of sensor data stored. */
+  private final AtomicLong numNewData = new AtomicLong();
+
+  /** Number of sensor data that were already on the server. */
+  private final AtomicLong numExistingData = new AtomicLong();
+
+  /** Number of records that were rejected by the server. */
+  private final AtomicLong numFailed = new AtomicLong();
+
+  /** Number of sources stored. */
+  private final AtomicLong numNewSources = new AtomicLong();
+
+  /** Message of the last error that caused a retry. */
+  private volatile String lastError;
+
+  /**
+   * Creates a new SpoolDrainer object.
+   *
+   * @param client Used to store data on the WattDepot server.
+   * @param directory Directory that contains the spool.
+   */
+  public SpoolDrainer(WattDepotClient client, Path directory) {
+    this.client = client;
+    this.directory = directory;
+  }
+
+  /**
+   * Sets the number of records in a batch.
+   *
+   * @param batchSize Number of records.
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Sets the number of records that are stored at the same time.
+   *
+   * @param numThreads Number of threads.
+   */
+  public void setNumThreads(int numThreads) {
+    if (numThreads <= 0) {
+      throw new IllegalArgumentException("Number of threads must be positive: " + numThreads);
+    }
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * Stores a source unless it has already been stored during this run.
+   *
+   * @param source Source to store.
+   * @return The result of storing the source.
+   */
+  private Outcome storeSource(Source source) {
+    if (this.storedSources.contains(source.getName())) {
+      return Outcome.EXISTING;
+    }
+    Outcome outcome;
+    try {
+      this.client.storeSource(source, false);
+      this.numNewSources.incrementAndGet();
+      outcome = Outcome.STORED;
+    }
+    catch (OverwriteAttemptedException e) {
+      outcome = Outcome.EXISTING;
+    }
+    catch (NotAuthorizedException e) {
+      return Outcome.UNAUTHORIZED;
+    }
+    catch (MiscClientException e) {
+      this.lastError = e.toString();
+      return Outcome.RETRY;
+    }
+    catch (WattDepotClientException | JAXBException e) {
+      System.err.println("Unable to store source " + source.getName() + ": " + e);
+      return Outcome.FAILED;
+    }
+    this.storedSources.add(source.getName());
+    return outcome;
+  }
+
+  /**
+   * Stores sensor data.
+   *
+   * @param data Sensor data to store.
+   * @return The result of storing the sensor data.
+   */
+  private Outcome storeSensorData(SensorData data) {
+    try {
+      this.client.storeSensorData(data);
+      return Outcome.STORED;
+    }
+    catch (OverwriteAttemptedException e) {
+      return Outcome.EXISTING;
+    }
+    catch (NotAuthorizedException e) {
+      return Outcome.UNAUTHORIZED;
+    }
+    catch (MiscClientException e) {
+      this.lastError = e.toString();
+      return Outcome.RETRY;
+    }
+    catch (WattDepotClientException | JAXBException e) {
+      System.err.println("Unable to store data at " + data.getTimestamp() + " for "
+          + data.getSource() + ": " + e);
+      return Outcome.FAILED;
+    }
+  }
+
+  /**
+   * Ships a batch of records, sending records again until every record has been acknowledged.
+   * Sources are stored first on this thread, then the sensor data is stored concurrently.
+   *
+   * @param batch Records to ship.
+   * @param pool Thread pool that stores the sensor data.
+   * @param failed Receives the records that the server rejected.
+   * @return True if every record was acknowledged or rejected, false if the client is not
+   * authorized.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  private boolean ship(List<SensorDataSpool.Record> batch, ExecutorService pool,
+      Set<SensorDataSpool.Record> failed) throws InterruptedException {
+    List<SensorDataSpool.Record> pending = batch;
+    long backoff = INITIAL_BACKOFF;
+    while (true) {
+      List<SensorDataSpool.Record> retry = new ArrayList<>();
+      for (SensorDataSpool.Record r : pending) {
+        if (r.getSource() == null) {
+          continue;
+        }
+        Outcome outcome = this.storeSource(r.getSource());
+        if (outcome == Outcome.UNAUTHORIZED) {
+          System.err.println("Not authorized to store sources.");
+          return false;
+        }
+        if (outcome == Outcome.RETRY) {
+          retry = pending;
+          break;
+        }
+        if (outcome == Outcome.FAILED && r.getSensorData() == null) {
+          // Records with sensor data are kept if storing the data fails, which it will.
+          failed.add(r);
+        }
+      }
+
+      if (retry.isEmpty()) {
+        List<Callable<Outcome>> tasks = new ArrayList<>();
+        for (SensorDataSpool.Record r : pending) {
+          if (r.getSensorData() != null) {
+            tasks.add(() -> this.storeSensorData(r.getSensorData()));
+          }
+        }
+        List<Future<Outcome>> results = pool.invokeAll(tasks);
+        int index = 0;
+        for (SensorDataSpool.Record r : pending) {
+          if (r.getSensorData() == null) {
+            continue;
+          }
+          Outcome outcome;
+          try {
+            outcome = results.get(index++).get();
+          }
+          catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            outcome = Outcome.FAILED;
+          }
+          switch (outcome) {
+          case STORED:
+            this.numNewData.incrementAndGet();
+            break;
+          case EXISTING:
+            this.numExistingData.incrementAndGet();
+            break;
+          case RETRY:
+            retry.add(r);
+            break;
+          case UNAUTHORIZED:
+            System.err.println("Not authorized to store sensor data.");
+            return false;
+          default:
+            this.numFailed.incrementAndGet();
+            failed.add(r);
+            break;
+          }
+        }
+      }
+
+      if (retry.isEmpty()) {
+        return true;
+      }
+      System.err.println("Server unavailable (" + this.lastError + "); sending " + retry.size()
+          + " records again in " + backoff / EpochTime.MILLIS_PER_SECOND + " s.");
+      Thread.sleep(backoff);
+      backoff = Math.min(2 * backoff, MAX_BACKOFF);
+      pending = retry;
+    }
+  }
+
+  /**
+   * Copies records that the server rejected to a new sealed segment in the
+   * {@value #FAILED_DIRECTORY} spool.
+   *
+   * @param records The rejected records.
+   * @throws IOException if the records cannot be written.
+   */
+  private void keepFailed(Set<SensorDataSpool.Record> records) throws IOException {
+    try (SensorDataSpool spool = new SensorDataSpool(this.directory.resolve(FAILED_DIRECTORY))) {
+      for (SensorDataSpool.Record r : records) {
+        spool.append(r.getSource(), r.getSensorData());
+      }
+    }
+  }
+
+  /**
+   * Ships every record in a segment and deletes the segment. Records that the server rejects are
+   * copied to the {@value #FAILED_DIRECTORY} spool first. If the segment contains a corrupt
+   * record, the records before it are shipped and the segment is renamed so that it is not drained
+   * again.
+   *
+   * @param file Segment file.
+   * @param pool Thread pool that stores the sensor data.
+   * @return True if every record in the segment was acknowledged, false if the client is not
+   * authorized or the server rejected some records.
+   * @throws IOException if the segment cannot be read or deleted.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  private boolean drainSegment(Path file, ExecutorService pool) throws IOException,
+      InterruptedException {
+    long start = System.currentTimeMillis();
+    long before = this.numNewData.get() + this.numExistingData.get();
+    boolean corrupt = false;
+    Set<SensorDataSpool.Record> failed = new LinkedHashSet<>();
+    try (SensorDataSpool.Reader reader = new SensorDataSpool.Reader(file)) {
+      List<SensorDataSpool.Record> batch = new ArrayList<>(this.batchSize);
+      while (true) {
+        SensorDataSpool.Record record;
+        try {
+          record = reader.next();
+        }
+        catch (IOException e) {
+          System.err.println(e.getMessage());
+          corrupt = true;
+          record = null;
+        }
+        if (record != null) {
+          batch.add(record);
+        }
+        if (record == null || batch.size() == this.batchSize) {
+          if (!this.ship(batch, pool, failed)) {
+            return false;
+          }
+          batch.clear();
+        }
+        if (record == null) {
+          break;
+        }
+      }
+    }
+
+    if (!failed.isEmpty()) {
+      this.keepFailed(failed);
+      System.err.println("The server rejected " + failed.size() + " records in "
+          + file.getFileName() + "; they were moved to the " + FAILED_DIRECTORY + " spool.");
+    }
+    if (corrupt) {
+      Path target = file.resolveSibling(file.getFileName() + CORRUPT_EXTENSION);
+      Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+      System.err.println("Moved " + file.getFileName() + " to " + target.getFileName() + ".");
+    }
+    else {
+      Files.delete(file);
+    }
+    long count = this.numNewData.get() + this.numExistingData.get() - before;
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    System.out.println(String.format("Drained %s: %d readings in %s (%.0f readings/s).",
+        file.getFileName(), count, Importer.getRuntime(start, start + elapsed),
+        count * 1000.0 / elapsed));
+    return failed.isEmpty();
+  }
+
+  /**
+   * Drains every sealed segment in the spool once.
+   *
+   * @return True if successful, false otherwise.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  public boolean drain() throws InterruptedException {
+    ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+    try {
+      for (Path file : SensorDataSpool.getSealedSegments(this.directory)) {
+        if (!this.drainSegment(file, pool)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    catch (IOException e) {
+      System.err.println("Unable to drain spool in " + this.directory + ": " + e.getMessage());
+      return false;
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Drains the spool, then waits for new segments and drains them as they are sealed, until the
+   * thread is interrupted or draining fails.
+   *
+   * @param pollInterval Time to wait for new segments in milliseconds.
+   * @return False if draining fails.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  public boolean follow(long pollInterval) throws InterruptedException {
+    while (this.drain()) {
+      Thread.sleep(pollInterval);
+    }
+    return false;
+  }
+
+  /**
+   * Returns a summary of what has been drained.
+   *
+   * @return A summary.
+   */
+  public String getStats() {
+    return "New Data: " + this.numNewData.get() + ", Existing Data: " + this.numExistingData.get()
+        + ", Failed: " + this.numFailed.get() + ", New Sources: " + this.numNewSources.get();
+  }
+
+  /**
+   * Drains a spool written by CsvImporter with the <code>-spool</code> option.
+   *
+   * @param args Contains server URI, username, password, spool directory, and optionally the batch
+   * size, number of threads, and whether to keep waiting for new segments.
+   */
+  public static void main(String[] args) {
+    Options options = new Options();
+    options.addOption("s", true, "Server URI.");
+    options.addOption("u", true, "Username.");
+    options.addOption("p", true, "Password.");
+    options.addOption("d", true, "Spool directory.");
+    options.addOption("b", true, "Number of records in a batch.");
+    options.addOption("t", true, "Number of records stored at the same time.");
+    options.addOption("f", false, "If specified, keep waiting for new segments.");
+
+    BasicParser parser = new BasicParser();
+    CommandLine cl = null;
+    try {
+      cl = parser.parse(options, args);
+    }
+    catch (org.apache.commons.cli.ParseException e) {
+      System.err.println(e.getMessage() + ". Please try again.");
+      System.exit(1);
+    }
+    if (!cl.hasOption("s") || !cl.hasOption("u") || !cl.hasOption("p") || !cl.hasOption("d")) {
+      System.err.print("Usage: SpoolDrainer -s server_uri -u username -p password -d spool_dir");
+      System.err.println(" [-b batch_size] [-t threads] [-f]");
+      System.exit(1);
+    }
+
+    WattDepotClient client =
+        new WattDepotClient(cl.getOptionValue("s"), cl.getOptionValue("u"), cl.getOptionValue("p"));
+    SpoolDrainer drainer = new SpoolDrainer(client, Paths.get(cl.getOptionValue("d")));
+    try {
+      if (cl.hasOption("b")) {
+        drainer.setBatchSize(Integer.parseInt(cl.getOptionValue("b")));
+      }
+      if (cl.hasOption("t")) {
+        drainer.setNumThreads(Integer.parseInt(cl.getOptionValue("t")));
+      }
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+
+    boolean isSuccessful;
+    try {
+      isSuccessful = cl.hasOption("f") ? drainer.follow(DEFAULT_POLL_INTERVAL) : drainer.drain();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      isSuccessful = false;
+    }
+    System.out.println(drainer.getStats());
+    if (!isSuccessful) {
+      System.exit(1);
+    }
+  }
+
+}
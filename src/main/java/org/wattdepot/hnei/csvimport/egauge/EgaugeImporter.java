@@ -141,12 +141,8 @@ public class EgaugeImporter extends Importer {
     }
 
     // Grab data from CSV file.
-    WattDepotClient client = new WattDepotClient(this.serverUri, this.username, this.password);
-    if (client.isHealthy() && client.isAuthenticated()) {
-      System.out.println("Successfully connected to " + client.getWattDepotUri() + ".");
-    }
-    else {
-      System.err.println("Unable to connect to WattDepot server.");
+    WattDepotClient client = this.connect();
+    if (client == null) {
       return false;
     }
 
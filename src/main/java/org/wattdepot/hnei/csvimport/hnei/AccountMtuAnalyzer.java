@@ -0,0 +1,335 @@
+package org.wattdepot.hnei.csvimport.hnei;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.wattdepot.hnei.util.LongIntHashMap;
+
+/**
+ * Determines which accounts have multiple MTUs associated with them and whether non-monotonically
+ * increasing data comes from those MTUs. Rows are analyzed as they are read in from a CSV file, so
+ * no rows are kept in memory; only one small record per account and per source is stored.
+ * Analyzers for files that are processed in parallel can be merged at the end of a run.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class AccountMtuAnalyzer {
+
+  /** MTU IDs associated with each account; most accounts have only one. */
+  private final Map<String, long[]> accountMtus;
+
+  /** Number of non-monotonically increasing readings found for each MTU. */
+  private final LongIntHashMap nonmonoCounts;
+
+  /** Readings at the first, last, and previous timestamps for each source (MTU-port). */
+  private final Map<String, SourceState> sourceStates;
+
+  /** Total number of rows analyzed. */
+  private long numRows;
+
+  /** Number of rows that were not analyzed because their MTU ID is not a number. */
+  private long numRejectedRows;
+
+  /**
+   * Readings for a source that are needed to detect non-monotonically increasing data.
+   */
+  private static final class SourceState {
+
+    /** MTU ID of the source. */
+    private final long mtu;
+
+    /** Earliest timestamp seen. */
+    private long firstTime = Long.MAX_VALUE;
+
+    /** Reading at earliest timestamp seen. */
+    private double firstReading;
+
+    /** Latest timestamp seen. */
+    private long lastTime = Long.MIN_VALUE;
+
+    /** Reading at latest timestamp seen. */
+    private double lastReading;
+
+    /** Timestamp of previous row in the file. */
+    private long prevTime;
+
+    /** Reading of previous row in the file. */
+    private double prevReading;
+
+    /**
+     * Creates a new SourceState object.
+     *
+     * @param mtu MTU ID of the source.
+     */
+    private SourceState(long mtu) {
+      this.mtu = mtu;
+    }
+  }
+
+  /**
+   * Creates a new AccountMtuAnalyzer object.
+   */
+  public AccountMtuAnalyzer() {
+    this.accountMtus = new HashMap<>();
+    this.nonmonoCounts = new LongIntHashMap();
+    this.sourceStates = new HashMap<>();
+    this.numRows = 0;
+    this.numRejectedRows = 0;
+  }
+
+  /**
+   * Records a row from a CSV file. Rows for a source may be sorted in ascending or descending order
+   * by timestamp; a reading is non-monotonically increasing if it moves in the opposite direction
+   * of its timestamp compared with the previous row for the same source. Rows whose MTU ID is not a
+   * number are counted as rejected and are not analyzed.
+   *
+   * @param account Account number (first column).
+   * @param mtuId MTU ID (third column).
+   * @param port Port (fourth column).
+   * @param time Timestamp of reading in milliseconds.
+   * @param reading Energy consumed to date.
+   */
+  public synchronized void addRow(String account, String mtuId, String port, long time,
+      double reading) {
+    long mtu;
+    try {
+      mtu = Long.parseLong(mtuId.replace(",", ""));
+    }
+    catch (NumberFormatException e) {
+      this.numRejectedRows++;
+      return;
+    }
+    this.numRows++;
+    this.addMtu(account, mtu);
+
+    String sourceName = mtuId + "-" + port;
+    SourceState state = this.sourceStates.get(sourceName);
+    if (state == null) {
+      state = new SourceState(mtu);
+      this.sourceStates.put(sourceName, state);
+    }
+    else if (Long.signum(time - state.prevTime) * Math.signum(reading - state.prevReading) < 0) {
+      this.nonmonoCounts.addTo(mtu, 1);
+    }
+    state.prevTime = time;
+    state.prevReading = reading;
+    if (time < state.firstTime) {
+      state.firstTime = time;
+      state.firstReading = reading;
+    }
+    if (time > state.lastTime) {
+      state.lastTime = time;
+      state.lastReading = reading;
+    }
+  }
+
+  /**
+   * Associates an MTU with an account.
+   *
+   * @param account Account number.
+   * @param mtu MTU ID.
+   */
+  private void addMtu(String account, long mtu) {
+    long[] mtus = this.accountMtus.get(account);
+    if (mtus == null) {
+      this.accountMtus.put(account, new long[] {mtu});
+      return;
+    }
+    for (long m : mtus) {
+      if (m == mtu) {
+        return;
+      }
+    }
+    long[] temp = new long[mtus.length + 1];
+    System.arraycopy(mtus, 0, temp, 0, mtus.length);
+    temp[mtus.length] = mtu;
+    this.accountMtus.put(account, temp);
+  }
+
+  /**
+   * Returns a copy of this analyzer. Source states are copied, so the copy can be read without
+   * holding the lock of this analyzer.
+   *
+   * @return A copy of this analyzer.
+   */
+  private synchronized AccountMtuAnalyzer copy() {
+    AccountMtuAnalyzer copy = new AccountMtuAnalyzer();
+    copy.numRows = this.numRows;
+    copy.numRejectedRows = this.numRejectedRows;
+    copy.accountMtus.putAll(this.accountMtus);
+    copy.nonmonoCounts.addAll(this.nonmonoCounts);
+    for (Map.Entry<String, SourceState> e : this.sourceStates.entrySet()) {
+      copy.mergeSource(e.getKey(), e.getValue());
+    }
+    return copy;
+  }
+
+  /**
+   * Merges the results of another analyzer, e.g. one that processed a different file in parallel,
+   * into this one. If the data for a source in the other analyzer starts after the data in this
+   * analyzer ends (or vice versa), the readings at the boundary are also compared. The other
+   * analyzer is copied first, so that the two analyzers are never locked at the same time and two
+   * analyzers can be merged into each other concurrently.
+   *
+   * @param other Analyzer to merge into this one.
+   */
+  public void merge(AccountMtuAnalyzer other) {
+    if (other == this) {
+      throw new IllegalArgumentException("An analyzer cannot be merged into itself.");
+    }
+    AccountMtuAnalyzer snapshot = other.copy();
+    synchronized (this) {
+      this.numRows += snapshot.numRows;
+      this.numRejectedRows += snapshot.numRejectedRows;
+      for (Map.Entry<String, long[]> e : snapshot.accountMtus.entrySet()) {
+        for (long mtu : e.getValue()) {
+          this.addMtu(e.getKey(), mtu);
+        }
+      }
+      this.nonmonoCounts.addAll(snapshot.nonmonoCounts);
+      for (Map.Entry<String, SourceState> e : snapshot.sourceStates.entrySet()) {
+        this.mergeSource(e.getKey(), e.getValue());
+      }
+    }
+  }
+
+  /**
+   * Merges the state of a source from another analyzer into this one.
+   *
+   * @param sourceName Name of the source.
+   * @param other State of the source in the other analyzer.
+   */
+  private void mergeSource(String sourceName, SourceState other) {
+    SourceState state = this.sourceStates.get(sourceName);
+    if (state == null) {
+      state = new SourceState(other.mtu);
+      state.firstTime = other.firstTime;
+      state.firstReading = other.firstReading;
+      state.lastTime = other.lastTime;
+      state.lastReading = other.lastReading;
+      state.prevTime = other.prevTime;
+      state.prevReading = other.prevReading;
+      this.sourceStates.put(sourceName, state);
+      return;
+    }
+    if (state.lastTime < other.firstTime && other.firstReading < state.lastReading) {
+      this.nonmonoCounts.addTo(state.mtu, 1);
+    }
+    else if (other.lastTime < state.firstTime && state.firstReading < other.lastReading) {
+      this.nonmonoCounts.addTo(state.mtu, 1);
+    }
+    if (other.firstTime < state.firstTime) {
+      state.firstTime = other.firstTime;
+      state.firstReading = other.firstReading;
+    }
+    if (other.lastTime > state.lastTime) {
+      state.lastTime = other.lastTime;
+      state.lastReading = other.lastReading;
+    }
+  }
+
+  /**
+   * Returns the total number of rows analyzed.
+   *
+   * @return The total number of rows analyzed.
+   */
+  public synchronized long getNumRows() {
+    return this.numRows;
+  }
+
+  /**
+   * Returns the number of rows that were not analyzed because their MTU ID is not a number.
+   *
+   * @return The number of rejected rows.
+   */
+  public synchronized long getNumRejectedRows() {
+    return this.numRejectedRows;
+  }
+
+  /**
+   * Returns the total number of non-monotonically increasing readings.
+   *
+   * @return The total number of non-monotonically increasing readings.
+   */
+  public synchronized int getNumNonmonoIncrVals() {
+    int[] total = {0};
+    this.nonmonoCounts.forEach((mtu, count) -> total[0] += count);
+    return total[0];
+  }
+
+  /**
+   * Returns a sorted list of accounts that have more than one MTU associated with them.
+   *
+   * @return List of accounts with multiple MTUs.
+   */
+  public synchronized List<String> getAccountsWithMultipleMtus() {
+    List<String> accounts = new ArrayList<>();
+    for (Map.Entry<String, long[]> e : this.accountMtus.entrySet()) {
+      if (e.getValue().length > 1) {
+        accounts.add(e.getKey());
+      }
+    }
+    Collections.sort(accounts);
+    return accounts;
+  }
+
+  /**
+   * Returns the number of non-monotonically increasing readings for an MTU.
+   *
+   * @param mtu MTU ID.
+   * @return Number of non-monotonically increasing readings.
+   */
+  public synchronized int getNumNonmonoIncrVals(long mtu) {
+    return this.nonmonoCounts.get(mtu, 0);
+  }
+
+  /**
+   * Returns a report that lists all accounts with multiple MTUs and all MTUs with
+   * non-monotonically increasing data, and states how much of that data comes from accounts with
+   * multiple MTUs.
+   *
+   * @return A report on accounts and MTUs.
+   */
+  public synchronized String getReport() {
+    LongIntHashMap multipleMtus = new LongIntHashMap();
+    StringBuilder builder = new StringBuilder();
+    builder.append("Accounts with Multiple MTUs\n--------------------------------------------------\n");
+    for (String account : this.getAccountsWithMultipleMtus()) {
+      builder.append(account).append(" :");
+      for (long mtu : this.accountMtus.get(account)) {
+        builder.append(' ').append(mtu);
+        multipleMtus.put(mtu, 1);
+      }
+      builder.append('\n');
+    }
+
+    int total = 0;
+    int fromMultipleMtus = 0;
+    builder.append("\nMTUs with Non-monotonically Increasing Data\n");
+    builder.append("--------------------------------------------------\n");
+    for (long mtu : this.nonmonoCounts.sortedKeys()) {
+      int count = this.nonmonoCounts.get(mtu, 0);
+      total += count;
+      builder.append(mtu).append(" : ").append(count);
+      if (multipleMtus.containsKey(mtu)) {
+        fromMultipleMtus += count;
+        builder.append(" (account has multiple MTUs)");
+      }
+      builder.append('\n');
+    }
+
+    builder.append("\nRows Analyzed                      : ").append(this.numRows);
+    builder.append("\nRows with Non-numeric MTU IDs      : ").append(this.numRejectedRows);
+    builder.append("\nAccounts                           : ").append(this.accountMtus.size());
+    builder.append("\nAccounts with Multiple MTUs        : ");
+    builder.append(this.getAccountsWithMultipleMtus().size());
+    builder.append("\nNon-monotonically Increasing Data  : ").append(total);
+    builder.append("\n  From Accounts with Multiple MTUs : ").append(fromMultipleMtus);
+    builder.append("\nAll From Accounts with Multiple MTUs? ");
+    builder.append(total == fromMultipleMtus ? "yes" : "no").append("\n\n");
+    return builder.toString();
+  }
+
+}
@@ -6,11 +6,14 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.wattdepot.client.WattDepotClient;
 import org.wattdepot.hnei.csvimport.Importer;
+import org.wattdepot.hnei.csvimport.SourceRegistry;
 import org.wattdepot.hnei.csvimport.validation.Entry;
+import org.wattdepot.hnei.util.EpochTime;
 import org.wattdepot.resource.property.jaxb.Property;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 import org.wattdepot.resource.source.jaxb.Source;
@@ -25,6 +28,12 @@ import au.com.bytecode.opencsv.CSVReader;
 @Hnei(name = "Hnei", value = "Hnei")
 public class HneiImporter extends Importer {
 
+  /** Keeps track of accounts with multiple MTUs and non-monotonically increasing data. */
+  protected AccountMtuAnalyzer mtuAnalyzer;
+
+  /** Gives the id, name, URI, and Source object of each source in the CSV file. */
+  protected SourceRegistry registry;
+
   /**
    * Creates a new HneiImporter object.
    * 
@@ -41,7 +50,10 @@ public class HneiImporter extends Importer {
     this.password = password;
     this.skipFirstRow = skipFirstRow;
     this.toolName = "HneiImporter";
+    this.log = Logger.getLogger(HneiImporter.class.getName());
+    this.registry = new SourceRegistry(this.serverUri, this.username);
     this.parser = new HneiRowParser(this.toolName, this.serverUri, null);
+    this.getParser().setRegistry(this.registry);
     this.numNewSources = 0;
     this.numExistingSources = 0;
     this.numTotalSources = 0;
@@ -54,17 +66,29 @@ public class HneiImporter extends Importer {
     this.numHourly = 0;
     this.entries = new ArrayList<>();
     this.allNonmonoIncrVals = new ArrayList<>();
+    this.mtuAnalyzer = new AccountMtuAnalyzer();
     this.importStartTime = 0;
     this.importEndTime = 0;
   }
 
   /**
-   * Sets the parser. Called after setting source name.
+   * Sets the name of the source of the parser. Called after setting source name.
    * 
    * @param sourceName Name of a source.
    */
   public void setParser(String sourceName) {
-    this.parser = new HneiRowParser(this.toolName, this.serverUri, sourceName);
+    this.getParser().setSourceName(sourceName);
+  }
+
+  /**
+   * Sets the registry of sources, so that sources that were stored while importing one file are not
+   * stored again while importing the next.
+   * 
+   * @param registry Registry of sources.
+   */
+  public void setRegistry(SourceRegistry registry) {
+    this.registry = registry;
+    this.getParser().setRegistry(registry);
   }
 
   /**
@@ -76,6 +100,16 @@ public class HneiImporter extends Importer {
     return (HneiRowParser) this.parser;
   }
 
+  /**
+   * Returns the analyzer that keeps track of accounts with multiple MTUs and non-monotonically
+   * increasing data in the CSV file.
+   * 
+   * @return The analyzer for the CSV file.
+   */
+  public AccountMtuAnalyzer getMtuAnalyzer() {
+    return this.mtuAnalyzer;
+  }
+
   /**
    * Prints results of parsing CSV file to standard output and log file.
    */
@@ -120,10 +154,13 @@ public class HneiImporter extends Importer {
     int numNoReadings = ((HneiRowParser) this.parser).getNumNoReadings();
     msg = "No Readings                        : " + numNoReadings + "\n";
     builder.append(msg);
-    msg = "Non-monotonically Increasing Data  : " + this.allNonmonoIncrVals.size() + "\n";
+    int numNonmonoIncrVals = this.mtuAnalyzer.getNumNonmonoIncrVals();
+    msg = "Non-monotonically Increasing Data  : " + numNonmonoIncrVals + "\n";
+    builder.append(msg);
+    msg = "Rows with Non-numeric MTU IDs      : " + this.mtuAnalyzer.getNumRejectedRows() + "\n";
     builder.append(msg);
     int totalViolations = numNonnumericValues + numNoReadings + numBlankValues;
-    totalViolations += this.allNonmonoIncrVals.size();
+    totalViolations += numNonmonoIncrVals;
     msg = "Total Number of Failed Validations : " + totalViolations;
     builder.append(msg);
     msg = "\n\nNew Sources                        : " + this.numNewSources + "\n";
@@ -142,6 +179,10 @@ public class HneiImporter extends Importer {
     builder.append(msg);
     msg = "Total Number of Data Imported      : " + (this.numNewData + this.numExistingData);
     builder.append(msg);
+    if (this.spool != null) {
+      msg = "\nSpooled Data                       : " + this.numSpooledData;
+      builder.append(msg);
+    }
     String runtime = Importer.getRuntime(this.importStartTime, this.importEndTime);
     msg = "\n\nImport Runtime                     : " + runtime + "\n\n";
     builder.append(msg);
@@ -191,12 +232,8 @@ public class HneiImporter extends Importer {
     }
 
     // Grab data from CSV file.
-    WattDepotClient client = new WattDepotClient(serverUri, username, password);
-    if (client.isHealthy() && client.isAuthenticated()) {
-      System.out.println("Successfully connected to " + client.getWattDepotUri() + ".");
-    }
-    else {
-      System.err.println("Unable to connect to WattDepot server.");
+    WattDepotClient client = this.connect();
+    if (client == null) {
       return false;
     }
 
@@ -209,7 +246,8 @@ public class HneiImporter extends Importer {
 
     try {
       int counter = 1;
-      String sourceName;
+      int sourceId;
+      boolean isProcessed;
       String[] line;
 
       System.out.println("Reading in CSV file [" + this.filename + "]...\n");
@@ -220,15 +258,34 @@ public class HneiImporter extends Importer {
           this.numInvalidEntries++;
         }
         else {
-          sourceName = line[2] + "-" + line[3];
-          this.setParser(sourceName);
+          sourceId = this.getParser().getSourceId();
+
+          long time = EpochTime.toMillis(data.getTimestamp());
+          double reading = data.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE);
+          this.mtuAnalyzer.addRow(line[0], line[2], line[3], time, reading);
 
-          source = new Source(sourceName, this.username, true);
-          source.addProperty(new Property("accountNumber", line[0]));
-          source.addProperty(new Property("installDate", line[1]));
-          source.addProperty(new Property("meterType", line[4]));
+          // Sources are stored once, with the properties in the first row that describes them.
+          if (this.registry.isStored(sourceId)) {
+            this.numTotalSources++;
+            if (this.spool == null) {
+              this.numExistingSources++;
+            }
+            isProcessed = this.process(client, data);
+          }
+          else {
+            source = this.registry.getSource(sourceId);
+            if (source.getProperty("accountNumber") == null) {
+              source.addProperty(new Property("accountNumber", line[0]));
+              source.addProperty(new Property("installDate", line[1]));
+              source.addProperty(new Property("meterType", line[4]));
+            }
+            isProcessed = this.process(client, source, data);
+            if (isProcessed) {
+              this.registry.setStored(sourceId);
+            }
+          }
 
-          if (this.process(client, source, data)) {
+          if (isProcessed) {
             this.numEntriesProcessed++;
           }
           else {
@@ -8,6 +8,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.wattdepot.datainput.RowParser;
+import org.wattdepot.hnei.csvimport.SourceRegistry;
 import org.wattdepot.hnei.csvimport.validation.NonblankValue;
 import org.wattdepot.hnei.csvimport.validation.NumericValue;
 import org.wattdepot.hnei.csvimport.validation.Validator;
@@ -34,6 +35,12 @@ public class HneiRowParser extends RowParser {
   /** List of validators to verify that entry is valid. */
   protected List<Validator> validators;
 
+  /** Registry that gives the name and URI of each source, or null to build them for every row. */
+  protected SourceRegistry registry;
+
+  /** Id of the source of the last row that was parsed, or -1 if there is no registry. */
+  protected int sourceId = -1;
+
   /** Total number of entries with no readings. */
   int numNoReadings = 0;
 
@@ -66,6 +73,25 @@ public class HneiRowParser extends RowParser {
     this.sourceName = sourceName;
   }
 
+  /**
+   * Sets the registry that gives the name and URI of each source. Parsed rows set the name of the
+   * source to that of the source in the row.
+   * 
+   * @param registry Registry of sources, or null to build the URI of the source for every row.
+   */
+  public void setRegistry(SourceRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Returns the registry id of the source of the last row that was parsed successfully.
+   * 
+   * @return The id of the source, or -1 if there is no registry.
+   */
+  public int getSourceId() {
+    return this.sourceId;
+  }
+
   /**
    * Returns the total number of entries with no readings.
    * 
@@ -176,8 +202,16 @@ public class HneiRowParser extends RowParser {
       return null;
     }
     Property energyConsumedToDate = new Property(SensorData.ENERGY_CONSUMED_TO_DATE, energy);
-    String mtuPort = row[2] + "-" + row[3];
-    String sourceUri = Source.sourceToUri(mtuPort, this.serverUri);
+    String sourceUri;
+    if (this.registry == null) {
+      String mtuPort = row[2] + "-" + row[3];
+      sourceUri = Source.sourceToUri(mtuPort, this.serverUri);
+    }
+    else {
+      this.sourceId = this.registry.register(row[2], row[3]);
+      this.sourceName = this.registry.getName(this.sourceId);
+      sourceUri = this.registry.getUri(this.sourceId);
+    }
 
     return new SensorData(timestamp, this.toolName, sourceUri, energyConsumedToDate);
   }
@@ -84,12 +84,8 @@ public class HoboImporter extends Importer {
     }
 
     // Grab data from CSV file.
-    WattDepotClient client = new WattDepotClient(this.serverUri, this.username, this.password);
-    if (client.isHealthy() && client.isAuthenticated()) {
-      System.out.println("Successfully connected to " + client.getWattDepotUri() + ".");
-    }
-    else {
-      System.err.println("Unable to connect to WattDepot server.");
+    WattDepotClient client = this.connect();
+    if (client == null) {
       return false;
     }
 
@@ -3,6 +3,7 @@ package org.wattdepot.hnei.csvimport.validation;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import javax.xml.datatype.XMLGregorianCalendar;
+import org.wattdepot.hnei.util.EpochTime;
 
 /**
  * Used by MonotonicallyIncreasingValue class to validate entry.
@@ -20,6 +21,9 @@ public class Entry implements Comparable<Entry> {
   /** Timestamp at which reading took place. */
   private XMLGregorianCalendar timestamp;
 
+  /** Timestamp in milliseconds; used to sort entries without converting timestamps. */
+  private long timestampMillis;
+
   /** MTU ID. */
   private String mtuID;
 
@@ -41,6 +45,7 @@ public class Entry implements Comparable<Entry> {
   public Entry(String sourceName, String reading, XMLGregorianCalendar timestamp, String mtuId) {
     this.sourceName = sourceName;
     this.timestamp = timestamp;
+    this.timestampMillis = (timestamp == null) ? Long.MIN_VALUE : EpochTime.toMillis(timestamp);
     this.reading = reading;
     this.mtuID = mtuId;
     this.isMonotonicallyIncreasing = true;
@@ -90,6 +95,7 @@ public class Entry implements Comparable<Entry> {
   @SuppressFBWarnings("EI_EXPOSE_REP2")
   public void setTimestamp(XMLGregorianCalendar timestamp) {
     this.timestamp = timestamp;
+    this.timestampMillis = (timestamp == null) ? Long.MIN_VALUE : EpochTime.toMillis(timestamp);
   }
 
   /**
@@ -102,6 +108,15 @@ public class Entry implements Comparable<Entry> {
     return timestamp;
   }
 
+  /**
+   * Gets the timestamp in milliseconds.
+   * 
+   * @return Timestamp in milliseconds, or <code>Long.MIN_VALUE</code> if there is no timestamp.
+   */
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
   /**
    * Sets the MTU ID to a given value.
    * 
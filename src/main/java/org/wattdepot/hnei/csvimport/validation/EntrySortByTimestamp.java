@@ -25,7 +25,7 @@ public class EntrySortByTimestamp implements Comparator<Entry>, Serializable {
    */
   @Override
   public int compare(Entry e1, Entry e2) {
-    return e2.getTimestamp().toString().compareTo(e1.getTimestamp().toString());
+    return Long.compare(e2.getTimestampMillis(), e1.getTimestampMillis());
   }
 
 }
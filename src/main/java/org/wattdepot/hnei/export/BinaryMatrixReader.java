@@ -0,0 +1,290 @@
+package org.wattdepot.hnei.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an energy matrix that was written by BinaryMatrixWriter. Blocks are memory-mapped when they
+ * are first accessed; uncompressed blocks are read directly from the mapped file without copying,
+ * and compressed blocks are inflated once and kept in memory.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class BinaryMatrixReader implements Closeable {
+
+  /** Channel used to read the file. */
+  private final FileChannel channel;
+
+  /** True if blocks are compressed. */
+  private final boolean compressed;
+
+  /** Number of bins in each row. */
+  private final int numBins;
+
+  /** Start of the first bin in milliseconds. */
+  private final long binStart;
+
+  /** Width of a bin in milliseconds. */
+  private final long binWidth;
+
+  /** Time zone offset in minutes. */
+  private final int zoneOffset;
+
+  /** Number of sources in each block. */
+  private final int sourcesPerBlock;
+
+  /** Names of the sources in row order. */
+  private final List<String> sourceNames;
+
+  /** Offset, stored length, and uncompressed length of each block. */
+  private final long[][] index;
+
+  /** Contents of each block that has been accessed, or null if it has not been accessed yet. */
+  private final ByteBuffer[] blocks;
+
+  /**
+   * Opens a file and reads its header and index.
+   *
+   * @param file File to read.
+   * @throws IOException if the file cannot be read or is not in the expected format.
+   */
+  public BinaryMatrixReader(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = this.read(0, BinaryMatrixWriter.HEADER_SIZE);
+      if (header.getInt() != BinaryMatrixWriter.MAGIC) {
+        throw new IOException(file + " is not an energy matrix file.");
+      }
+      int version = header.getInt();
+      if (version != BinaryMatrixWriter.VERSION) {
+        throw new IOException("Unsupported version: " + version);
+      }
+      this.compressed = (header.getInt() & BinaryMatrixWriter.FLAG_COMPRESSED) != 0;
+      int numSources = header.getInt();
+      this.numBins = header.getInt();
+      this.binStart = header.getLong();
+      this.binWidth = header.getLong();
+      this.zoneOffset = header.getInt();
+      this.sourcesPerBlock = header.getInt();
+
+      List<String> names = new ArrayList<>(numSources);
+      long position = BinaryMatrixWriter.HEADER_SIZE;
+      for (int i = 0; i < numSources; i++) {
+        int length = this.read(position, 4).getInt();
+        byte[] bytes = new byte[length];
+        this.read(position + 4, length).get(bytes);
+        names.add(new String(bytes, StandardCharsets.UTF_8));
+        position += 4 + length;
+      }
+      this.sourceNames = Collections.unmodifiableList(names);
+
+      long size = this.channel.size();
+      ByteBuffer trailer = this.read(size - BinaryMatrixWriter.TRAILER_SIZE,
+          BinaryMatrixWriter.TRAILER_SIZE);
+      long indexOffset = trailer.getLong();
+      if (trailer.getInt() != BinaryMatrixWriter.MAGIC) {
+        throw new IOException(file + " is incomplete.");
+      }
+      int numBlocks = this.read(indexOffset, 4).getInt();
+      ByteBuffer entries = this.read(indexOffset + 4, 24 * numBlocks);
+      this.index = new long[numBlocks][3];
+      for (int i = 0; i < numBlocks; i++) {
+        this.index[i][0] = entries.getLong();
+        this.index[i][1] = entries.getLong();
+        this.index[i][2] = entries.getLong();
+      }
+      this.blocks = new ByteBuffer[numBlocks];
+    }
+    catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads bytes from the file.
+   *
+   * @param position Offset in the file.
+   * @param length Number of bytes to read.
+   * @return Buffer containing the bytes, ready to be read.
+   * @throws IOException if the bytes cannot be read.
+   */
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (this.channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of file.");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Returns the names of the sources in row order.
+   *
+   * @return The names of the sources.
+   */
+  public List<String> getSourceNames() {
+    return this.sourceNames;
+  }
+
+  /**
+   * Returns the number of sources (rows).
+   *
+   * @return The number of sources.
+   */
+  public int getNumSources() {
+    return this.sourceNames.size();
+  }
+
+  /**
+   * Returns the number of bins in each row.
+   *
+   * @return The number of bins.
+   */
+  public int getNumBins() {
+    return this.numBins;
+  }
+
+  /**
+   * Returns the start of the first bin.
+   *
+   * @return The start of the first bin in milliseconds.
+   */
+  public long getBinStart() {
+    return this.binStart;
+  }
+
+  /**
+   * Returns the width of a bin.
+   *
+   * @return The width of a bin in milliseconds.
+   */
+  public long getBinWidth() {
+    return this.binWidth;
+  }
+
+  /**
+   * Returns the time zone offset of the matrix.
+   *
+   * @return The time zone offset in minutes.
+   */
+  public int getZoneOffset() {
+    return this.zoneOffset;
+  }
+
+  /**
+   * Returns a buffer positioned at the start of a row's mask.
+   *
+   * @param row Index of a source.
+   * @return Buffer positioned at the start of the row.
+   * @throws IOException if the block containing the row cannot be read.
+   */
+  private synchronized ByteBuffer rowBuffer(int row) throws IOException {
+    if (row < 0 || row >= this.sourceNames.size()) {
+      throw new IndexOutOfBoundsException("Row " + row + " is out of range.");
+    }
+    int blockIndex = row / this.sourcesPerBlock;
+    ByteBuffer block = this.blocks[blockIndex];
+    if (block == null) {
+      long[] entry = this.index[blockIndex];
+      ByteBuffer stored = this.channel.map(FileChannel.MapMode.READ_ONLY, entry[0], entry[1]);
+      if (this.compressed) {
+        block = ByteBuffer.allocate((int) entry[2]);
+        Inflater inflater = new Inflater();
+        try {
+          inflater.setInput(stored);
+          while (block.hasRemaining() && !inflater.finished()) {
+            if (inflater.inflate(block) == 0 && inflater.needsInput()) {
+              throw new IOException("Block " + blockIndex + " is truncated.");
+            }
+          }
+        }
+        catch (DataFormatException e) {
+          throw new IOException("Block " + blockIndex + " is corrupt.", e);
+        }
+        finally {
+          inflater.end();
+        }
+        block.flip();
+      }
+      else {
+        block = stored;
+      }
+      block.order(ByteOrder.LITTLE_ENDIAN);
+      this.blocks[blockIndex] = block;
+    }
+    int rowBytes = BinaryMatrixWriter.maskBytes(this.numBins) + 8 * this.numBins;
+    ByteBuffer result = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    result.position((row % this.sourcesPerBlock) * rowBytes);
+    return result;
+  }
+
+  /**
+   * Returns a read-only view of the values of a row. For uncompressed files, the view reads directly
+   * from the memory-mapped file.
+   *
+   * @param row Index of a source.
+   * @return Energy for each bin, or NaN if there is no data for a bin.
+   * @throws IOException if the block containing the row cannot be read.
+   */
+  public DoubleBuffer getRowBuffer(int row) throws IOException {
+    ByteBuffer buffer = this.rowBuffer(row);
+    buffer.position(buffer.position() + BinaryMatrixWriter.maskBytes(this.numBins));
+    buffer.limit(buffer.position() + 8 * this.numBins);
+    return buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a copy of the values of a row.
+   *
+   * @param row Index of a source.
+   * @return Energy for each bin, or NaN if there is no data for a bin.
+   * @throws IOException if the block containing the row cannot be read.
+   */
+  public double[] getRow(int row) throws IOException {
+    double[] values = new double[this.numBins];
+    this.getRowBuffer(row).get(values);
+    return values;
+  }
+
+  /**
+   * Returns true if there is no data for a bin, false otherwise.
+   *
+   * @param row Index of a source.
+   * @param bin Index of a bin.
+   * @return True if there is no data for the bin, false otherwise.
+   * @throws IOException if the block containing the row cannot be read.
+   */
+  public boolean isMissing(int row, int bin) throws IOException {
+    if (bin < 0 || bin >= this.numBins) {
+      throw new IndexOutOfBoundsException("Bin " + bin + " is out of range.");
+    }
+    ByteBuffer buffer = this.rowBuffer(row);
+    return (buffer.get(buffer.position() + bin / 8) & (1 << (bin % 8))) != 0;
+  }
+
+  /**
+   * Closes the file. Buffers returned by this reader must not be used after it is closed.
+   *
+   * @throws IOException if there are problems closing the file.
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+}
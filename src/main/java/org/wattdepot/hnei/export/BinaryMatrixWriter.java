@@ -0,0 +1,294 @@
+package org.wattdepot.hnei.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an energy matrix in a compact columnar binary format that can be loaded much faster than a
+ * CSV file. All numbers are little-endian. The file consists of:
+ * <ol>
+ * <li>A header: magic number, version, flags, number of sources, number of bins, start of the
+ * first bin in milliseconds, width of a bin in milliseconds, time zone offset in minutes, number of
+ * sources per block, and the name of each source (length followed by UTF-8 bytes), padded to a
+ * multiple of 8 bytes.</li>
+ * <li>Blocks of consecutive sources. Each source is stored as a missing-value mask (one bit per
+ * bin, set if there is no data, padded to a multiple of 8 bytes) followed by one double per bin
+ * (NaN if there is no data). Blocks are optionally compressed with deflate.</li>
+ * <li>An index with the offset, stored length, and uncompressed length of each block.</li>
+ * <li>A trailer with the offset of the index and the magic number.</li>
+ * </ol>
+ * Rows must be written in source order.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class BinaryMatrixWriter implements Closeable {
+
+  /** Magic number at the start and end of the file ("HEMX"). */
+  public static final int MAGIC = 0x584D4548;
+
+  /** Version of the file format. */
+  public static final int VERSION = 1;
+
+  /** Flag that is set if blocks are compressed. */
+  public static final int FLAG_COMPRESSED = 1;
+
+  /** Default uncompressed size of a block in bytes. */
+  public static final int DEFAULT_BLOCK_BYTES = 4 << 20;
+
+  /** Size of the fixed part of the header in bytes. */
+  static final int HEADER_SIZE = 44;
+
+  /** Size of the trailer in bytes. */
+  static final int TRAILER_SIZE = 12;
+
+  /** Channel used to write the file. */
+  private final FileChannel channel;
+
+  /** Number of bins in each row. */
+  private final int numBins;
+
+  /** Number of sources in the matrix. */
+  private final int numSources;
+
+  /** Number of sources in each block. */
+  private final int sourcesPerBlock;
+
+  /** Compresses blocks, or null if blocks are not compressed. */
+  private final Deflater deflater;
+
+  /** Uncompressed contents of the current block; reused for each block. */
+  private final ByteBuffer block;
+
+  /** Compressed contents of the current block; reused for each block. */
+  private byte[] compressed;
+
+  /** Offset, stored length, and uncompressed length of each block that has been written. */
+  private final List<long[]> index;
+
+  /** Number of rows written so far. */
+  private int numRows;
+
+  /**
+   * Creates a new BinaryMatrixWriter object and writes the header.
+   *
+   * @param file File to write to.
+   * @param sourceNames Names of the sources in the order in which rows will be written.
+   * @param bins Bins of each row.
+   * @param compress True to compress blocks, false otherwise.
+   * @throws IOException if there are problems writing to the file.
+   * @throws IllegalArgumentException if there are no bins.
+   */
+  public BinaryMatrixWriter(Path file, List<String> sourceNames, MatrixBins bins, boolean compress)
+      throws IOException {
+    this(file, sourceNames, bins, compress, DEFAULT_BLOCK_BYTES);
+  }
+
+  /**
+   * Creates a new BinaryMatrixWriter object with the given block size and writes the header.
+   *
+   * @param file File to write to.
+   * @param sourceNames Names of the sources in the order in which rows will be written.
+   * @param bins Bins of each row.
+   * @param compress True to compress blocks, false otherwise.
+   * @param blockBytes Uncompressed size of a block in bytes; a block holds at least one row.
+   * @throws IOException if there are problems writing to the file.
+   * @throws IllegalArgumentException if there are no bins.
+   */
+  BinaryMatrixWriter(Path file, List<String> sourceNames, MatrixBins bins, boolean compress,
+      int blockBytes) throws IOException {
+    int numBins = bins.getNumBins();
+    if (numBins < 1) {
+      throw new IllegalArgumentException("A matrix needs at least one bin; the start and end "
+          + "times must be different.");
+    }
+    this.numBins = numBins;
+    this.numSources = sourceNames.size();
+    int rowBytes = maskBytes(numBins) + 8 * numBins;
+    this.sourcesPerBlock = Math.max(1, blockBytes / Math.max(1, rowBytes));
+    this.block =
+        ByteBuffer.allocate(Math.min(this.sourcesPerBlock, Math.max(1, this.numSources)) * rowBytes)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+    this.compressed = new byte[0];
+    this.index = new ArrayList<>();
+    this.numRows = 0;
+    this.channel =
+        FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+
+    List<byte[]> names = new ArrayList<>();
+    int headerBytes = HEADER_SIZE;
+    for (String name : sourceNames) {
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      names.add(bytes);
+      headerBytes += 4 + bytes.length;
+    }
+    ByteBuffer header = ByteBuffer.allocate(align(headerBytes)).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putInt(compress ? FLAG_COMPRESSED : 0);
+    header.putInt(this.numSources).putInt(numBins).putLong(bins.getStart()).putLong(bins.getWidth());
+    header.putInt(bins.getZoneOffset()).putInt(this.sourcesPerBlock);
+    for (byte[] bytes : names) {
+      header.putInt(bytes.length).put(bytes);
+    }
+    header.position(header.capacity()).flip();
+    this.writeFully(header);
+  }
+
+  /**
+   * Returns the number of bytes in the missing-value mask of a row. The mask is padded to a multiple
+   * of 8 bytes so that the doubles in uncompressed blocks are aligned.
+   *
+   * @param numBins Number of bins in a row.
+   * @return Number of bytes in the mask.
+   */
+  static int maskBytes(int numBins) {
+    return align((numBins + 7) / 8);
+  }
+
+  /**
+   * Rounds a number of bytes up to a multiple of 8.
+   *
+   * @param numBytes Number of bytes.
+   * @return Number of bytes rounded up to a multiple of 8.
+   */
+  static int align(int numBytes) {
+    return (numBytes + 7) & ~7;
+  }
+
+  /**
+   * Writes the next row of the matrix.
+   *
+   * @param values Energy for each bin, or NaN if there is no data for a bin.
+   * @throws IOException if there are problems writing to the file.
+   */
+  public void writeRow(double[] values) throws IOException {
+    if (values.length != this.numBins) {
+      throw new IllegalArgumentException("Expected " + this.numBins + " bins, got " + values.length);
+    }
+    if (this.numRows >= this.numSources) {
+      throw new IllegalStateException("All " + this.numSources + " rows have been written.");
+    }
+    int maskStart = this.block.position();
+    int mask = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (Double.isNaN(values[i])) {
+        mask |= 1 << (i & 7);
+      }
+      if ((i & 7) == 7 || i == values.length - 1) {
+        this.block.put((byte) mask);
+        mask = 0;
+      }
+    }
+    while (this.block.position() < maskStart + maskBytes(this.numBins)) {
+      this.block.put((byte) 0);
+    }
+    this.block.asDoubleBuffer().put(values);
+    this.block.position(this.block.position() + 8 * values.length);
+    this.numRows++;
+    if (this.numRows % this.sourcesPerBlock == 0) {
+      this.flushBlock();
+    }
+  }
+
+  /**
+   * Writes the current block to the file, compressing it first if compression is enabled.
+   *
+   * @throws IOException if there are problems writing to the file.
+   */
+  private void flushBlock() throws IOException {
+    this.block.flip();
+    int rawLength = this.block.remaining();
+    if (rawLength == 0) {
+      this.block.clear();
+      return;
+    }
+    long offset = this.channel.position();
+    if (this.deflater == null) {
+      this.writeFully(this.block);
+      this.index.add(new long[] {offset, rawLength, rawLength});
+    }
+    else {
+      this.deflater.reset();
+      this.deflater.setInput(this.block.array(), 0, rawLength);
+      this.deflater.finish();
+      int length = 0;
+      while (!this.deflater.finished()) {
+        if (length == this.compressed.length) {
+          byte[] temp = new byte[Math.max(4096, this.compressed.length * 2)];
+          System.arraycopy(this.compressed, 0, temp, 0, length);
+          this.compressed = temp;
+        }
+        length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+      }
+      this.writeFully(ByteBuffer.wrap(this.compressed, 0, length));
+      this.index.add(new long[] {offset, length, rawLength});
+    }
+    this.block.clear();
+  }
+
+  /**
+   * Writes all remaining bytes in a buffer to the file.
+   *
+   * @param buffer Buffer to write.
+   * @throws IOException if there are problems writing to the file.
+   */
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      this.channel.write(buffer);
+    }
+  }
+
+  /**
+   * Closes the file without writing the index, e.g. after an error. The file cannot be read.
+   *
+   * @throws IOException if there are problems closing the file.
+   */
+  public void abort() throws IOException {
+    if (this.deflater != null) {
+      this.deflater.end();
+    }
+    this.channel.close();
+  }
+
+  /**
+   * Writes the last block, the index, and the trailer, and then closes the file.
+   *
+   * @throws IOException if there are problems writing to the file, or if not all rows were written.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (this.numRows != this.numSources) {
+        throw new IOException("Only " + this.numRows + " out of " + this.numSources
+            + " rows were written.");
+      }
+      this.flushBlock();
+      long indexOffset = this.channel.position();
+      ByteBuffer buffer =
+          ByteBuffer.allocate(4 + 24 * this.index.size() + TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(this.index.size());
+      for (long[] entry : this.index) {
+        buffer.putLong(entry[0]).putLong(entry[1]).putLong(entry[2]);
+      }
+      buffer.putLong(indexOffset).putInt(MAGIC);
+      buffer.flip();
+      this.writeFully(buffer);
+    }
+    finally {
+      if (this.deflater != null) {
+        this.deflater.end();
+      }
+      this.channel.close();
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+package org.wattdepot.hnei.export;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * Computes the energy consumed in each bin of a time range from the raw cumulative counter
+ * (energy consumed to date) of a source. The counter is linearly interpolated at every bin boundary
+ * in a single pass, so the energy for every bin can be computed from one request for the raw data
+ * instead of one request per bin. The counter can also be interpolated at arbitrary times, e.g. at
+ * billing boundaries.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public final class CounterInterpolator {
+
+  /**
+   * Prevents this class from being instantiated.
+   */
+  private CounterInterpolator() {
+  }
+
+  /**
+   * Returns the energy consumed in each bin. A bin's energy is the difference between the counter
+   * values interpolated at the end and the start of the bin. If either boundary is outside the range
+   * of the data, the bin's energy is NaN.
+   *
+   * @param times Timestamps of the readings in milliseconds, sorted in ascending order.
+   * @param counters Counter values of the readings.
+   * @param start Start of the first bin in milliseconds.
+   * @param interval Width of a bin in milliseconds.
+   * @param numBins Number of bins.
+   * @return Energy consumed in each bin.
+   */
+  public static double[] interpolate(long[] times, double[] counters, long start, long interval,
+      int numBins) {
+    double[] values = counterAt(times, counters, boundaries(start, interval, numBins));
+    double[] energy = new double[numBins];
+    for (int i = 0; i < numBins; i++) {
+      energy[i] = values[i + 1] - values[i];
+    }
+    return energy;
+  }
+
+  /**
+   * Returns the counter linearly interpolated at each of the given times in a single pass. If a time
+   * is outside the range of the data, the counter at that time is NaN.
+   *
+   * @param times Timestamps of the readings in milliseconds, sorted in ascending order.
+   * @param counters Counter values of the readings.
+   * @param points Times at which to interpolate the counter in milliseconds, sorted in ascending
+   * order.
+   * @return The counter at each of the given times.
+   */
+  public static double[] counterAt(long[] times, double[] counters, long[] points) {
+    double[] values = new double[points.length];
+    int j = 0;
+    for (int i = 0; i < points.length; i++) {
+      long point = points[i];
+      while (j < times.length - 1 && times[j + 1] < point) {
+        j++;
+      }
+      double current = Double.NaN;
+      if (j < times.length && times[j] == point) {
+        current = counters[j];
+      }
+      else if (j < times.length - 1 && times[j] < point) {
+        double fraction = (double) (point - times[j]) / (times[j + 1] - times[j]);
+        current = counters[j] + fraction * (counters[j + 1] - counters[j]);
+      }
+      values[i] = current;
+    }
+    return values;
+  }
+
+  /**
+   * Returns the boundaries of bins.
+   *
+   * @param start Start of the first bin in milliseconds.
+   * @param interval Width of a bin in milliseconds.
+   * @param numBins Number of bins.
+   * @return The start of each bin, followed by the end of the last bin.
+   */
+  private static long[] boundaries(long start, long interval, int numBins) {
+    long[] points = new long[numBins + 1];
+    for (int i = 0; i <= numBins; i++) {
+      points[i] = start + i * interval;
+    }
+    return points;
+  }
+
+  /**
+   * Returns the energy consumed in each bin for a list of sensor data that contains the energy
+   * consumed to date.
+   *
+   * @param datas Raw sensor data for a source.
+   * @param start Start of the first bin in milliseconds.
+   * @param interval Width of a bin in milliseconds.
+   * @param numBins Number of bins.
+   * @return Energy consumed in each bin.
+   */
+  public static double[] interpolate(List<SensorData> datas, long start, long interval,
+      int numBins) {
+    double[] values = counterAt(datas, boundaries(start, interval, numBins));
+    double[] energy = new double[numBins];
+    for (int i = 0; i < numBins; i++) {
+      energy[i] = values[i + 1] - values[i];
+    }
+    return energy;
+  }
+
+  /**
+   * Returns the counter interpolated at each of the given times for a list of sensor data that
+   * contains the energy consumed to date.
+   *
+   * @param datas Raw sensor data for a source, in any order.
+   * @param points Times at which to interpolate the counter in milliseconds, sorted in ascending
+   * order.
+   * @return The counter at each of the given times, or NaN outside the range of the data.
+   */
+  public static double[] counterAt(List<SensorData> datas, long[] points) {
+    List<SensorData> sorted = datas;
+    for (int i = 1; i < datas.size(); i++) {
+      if (EpochTime.toMillis(datas.get(i).getTimestamp())
+          < EpochTime.toMillis(datas.get(i - 1).getTimestamp())) {
+        sorted = new ArrayList<>(datas);
+        sorted.sort(Comparator.comparingLong(d -> EpochTime.toMillis(d.getTimestamp())));
+        break;
+      }
+    }
+
+    long[] times = new long[sorted.size()];
+    double[] counters = new double[sorted.size()];
+    for (int i = 0; i < times.length; i++) {
+      SensorData data = sorted.get(i);
+      times[i] = EpochTime.toMillis(data.getTimestamp());
+      counters[i] = data.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE);
+    }
+    return counterAt(times, counters, points);
+  }
+
+}
@@ -0,0 +1,189 @@
+package org.wattdepot.hnei.export;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes rows of a CSV file as soon as they are complete. Text is encoded as UTF-8 directly into a
+ * large reusable byte buffer that is written out whenever it fills up, so the amount of memory used
+ * does not depend on the size of the export. The output can optionally be echoed to another stream,
+ * e.g. standard output.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class CsvRowWriter implements Closeable {
+
+  /** Default size of the buffer in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  /** Stream to write to. */
+  private final OutputStream out;
+
+  /** Stream to echo output to, or null if output is not echoed. */
+  private final OutputStream echo;
+
+  /** Bytes that have not been written out yet. */
+  private final byte[] buffer;
+
+  /** Number of bytes in the buffer. */
+  private int count;
+
+  /** Total number of bytes written. */
+  private long numBytes;
+
+  /**
+   * Creates a new CsvRowWriter object.
+   *
+   * @param out Stream to write to.
+   * @param echo Stream to echo output to, or null to not echo output.
+   * @param bufferSize Size of the buffer in bytes.
+   */
+  public CsvRowWriter(OutputStream out, OutputStream echo, int bufferSize) {
+    if (bufferSize < 4) {
+      throw new IllegalArgumentException("Buffer size must be at least 4 bytes.");
+    }
+    this.out = out;
+    this.echo = echo;
+    this.buffer = new byte[bufferSize];
+    this.count = 0;
+    this.numBytes = 0;
+  }
+
+  /**
+   * Creates a new CsvRowWriter object that writes to a file.
+   *
+   * @param file File to write to.
+   * @param echo True to echo output to standard output, false otherwise.
+   * @throws IOException if the file cannot be opened.
+   */
+  public CsvRowWriter(File file, boolean echo) throws IOException {
+    this(new FileOutputStream(file), echo ? System.out : null, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Writes text to the file.
+   *
+   * @param text Text to write.
+   * @return This writer.
+   * @throws IOException if there are problems writing to the file.
+   */
+  public CsvRowWriter write(CharSequence text) throws IOException {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        this.encode(Character.toCodePoint(c, text.charAt(++i)));
+      }
+      else {
+        this.encode(c);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Writes a character to the file.
+   *
+   * @param c Character to write.
+   * @return This writer.
+   * @throws IOException if there are problems writing to the file.
+   */
+  public CsvRowWriter write(char c) throws IOException {
+    this.encode(c);
+    return this;
+  }
+
+  /**
+   * Encodes a code point as UTF-8 into the buffer. Unpaired surrogates are written as '?'.
+   *
+   * @param codePoint Code point to encode.
+   * @throws IOException if there are problems writing to the file.
+   */
+  private void encode(int codePoint) throws IOException {
+    if (this.count > this.buffer.length - 4) {
+      this.flushBuffer();
+    }
+    byte[] b = this.buffer;
+    if (codePoint < 0x80) {
+      b[this.count++] = (byte) codePoint;
+    }
+    else if (codePoint < 0x800) {
+      b[this.count++] = (byte) (0xC0 | (codePoint >> 6));
+      b[this.count++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+    else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+      b[this.count++] = (byte) '?';
+    }
+    else if (codePoint < 0x10000) {
+      b[this.count++] = (byte) (0xE0 | (codePoint >> 12));
+      b[this.count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+      b[this.count++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+    else {
+      b[this.count++] = (byte) (0xF0 | (codePoint >> 18));
+      b[this.count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+      b[this.count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+      b[this.count++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+  }
+
+  /**
+   * Writes the contents of the buffer to the file and to the echo stream.
+   *
+   * @throws IOException if there are problems writing to the file.
+   */
+  private void flushBuffer() throws IOException {
+    if (this.count == 0) {
+      return;
+    }
+    this.out.write(this.buffer, 0, this.count);
+    if (this.echo != null) {
+      this.echo.write(this.buffer, 0, this.count);
+    }
+    this.numBytes += this.count;
+    this.count = 0;
+  }
+
+  /**
+   * Returns the total number of bytes written, including bytes that are still in the buffer.
+   *
+   * @return The total number of bytes written.
+   */
+  public long getNumBytes() {
+    return this.numBytes + this.count;
+  }
+
+  /**
+   * Writes all buffered output to the file.
+   *
+   * @throws IOException if there are problems writing to the file.
+   */
+  public void flush() throws IOException {
+    this.flushBuffer();
+    this.out.flush();
+    if (this.echo != null) {
+      this.echo.flush();
+    }
+  }
+
+  /**
+   * Writes all buffered output to the file and closes it. The echo stream is flushed but not
+   * closed.
+   *
+   * @throws IOException if there are problems writing to the file.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    }
+    finally {
+      this.out.close();
+    }
+  }
+
+}
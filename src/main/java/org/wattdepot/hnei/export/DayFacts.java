@@ -0,0 +1,301 @@
+package org.wattdepot.hnei.export;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.hnei.util.TimeSeries;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * Quality facts about one source on one local day: the number of readings, the first and last
+ * readings, the first reading that is less than the reading before it (if any), and which hours
+ * contain readings. QualityClassifier combines the facts for consecutive days to grade a source
+ * over any range of days without looking at the readings again.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class DayFacts {
+
+  /** Value of <code>violationTime</code> if the readings are monotonically increasing. */
+  public static final long NO_VIOLATION = Long.MIN_VALUE;
+
+  /** Number of the local day. */
+  private final long day;
+
+  /** Number of readings. */
+  private final int count;
+
+  /** Time of the first reading in milliseconds. */
+  private final long firstTime;
+
+  /** Time of the last reading in milliseconds. */
+  private final long lastTime;
+
+  /** Counter of the first reading. */
+  private final double firstCounter;
+
+  /** Counter of the last reading. */
+  private final double lastCounter;
+
+  /** Time of the first reading that is less than the one before it, or NO_VIOLATION. */
+  private final long violationTime;
+
+  /** Counter of the first reading that is less than the one before it. */
+  private final double violationCounter;
+
+  /** One bit per hour of the day, set if the hour contains at least one reading. */
+  private final int hours;
+
+  /**
+   * The time and counter of a reading.
+   */
+  public static final class Reading {
+
+    /** Time of the reading in milliseconds. */
+    private final long time;
+
+    /** Counter of the reading. */
+    private final double counter;
+
+    /**
+     * Creates a new Reading object.
+     *
+     * @param time Time of the reading in milliseconds.
+     * @param counter Counter of the reading.
+     */
+    public Reading(long time, double counter) {
+      this.time = time;
+      this.counter = counter;
+    }
+  }
+
+  /**
+   * Creates a new DayFacts object.
+   *
+   * @param day Number of the local day.
+   * @param count Number of readings.
+   * @param first The first reading.
+   * @param last The last reading.
+   * @param violation The first reading that is less than the one before it, or null if there is
+   * none.
+   * @param hours One bit per hour of the day, set if the hour contains at least one reading.
+   */
+  public DayFacts(long day, int count, Reading first, Reading last, Reading violation, int hours) {
+    this.day = day;
+    this.count = count;
+    this.firstTime = first.time;
+    this.lastTime = last.time;
+    this.firstCounter = first.counter;
+    this.lastCounter = last.counter;
+    this.violationTime = violation == null ? NO_VIOLATION : violation.time;
+    this.violationCounter = violation == null ? 0 : violation.counter;
+    this.hours = hours;
+  }
+
+  /**
+   * Returns the start of a local day.
+   *
+   * @param day Number of the local day.
+   * @param zoneOffset Time zone offset in minutes.
+   * @return Milliseconds since the Unix epoch at the start of the day.
+   */
+  public static long dayStart(long day, int zoneOffset) {
+    return day * EpochTime.MILLIS_PER_DAY - zoneOffset * EpochTime.MILLIS_PER_MINUTE;
+  }
+
+  /**
+   * Summarizes sensor data into one DayFacts object per local day from <code>fromDay</code> to
+   * <code>toDay</code>, inclusive; days without readings have a count of 0. Readings outside the
+   * range of days are ignored.
+   *
+   * @param datas Sensor data sorted by timestamp.
+   * @param zoneOffset Time zone offset in minutes.
+   * @param fromDay First local day.
+   * @param toDay Last local day.
+   * @return Facts for each day in order.
+   */
+  public static List<DayFacts> summarize(List<SensorData> datas, int zoneOffset, long fromDay,
+      long toDay) {
+    return summarize(new SensorDataSeries(datas, SensorData.ENERGY_CONSUMED_TO_DATE), zoneOffset,
+        fromDay, toDay);
+  }
+
+  /**
+   * Summarizes a series of counters into one DayFacts object per local day from
+   * <code>fromDay</code> to <code>toDay</code>, inclusive; days without readings have a count of 0.
+   * Readings outside the range of days are ignored.
+   *
+   * @param counters Counters sorted by timestamp.
+   * @param zoneOffset Time zone offset in minutes.
+   * @param fromDay First local day.
+   * @param toDay Last local day.
+   * @return Facts for each day in order.
+   */
+  public static List<DayFacts> summarize(TimeSeries counters, int zoneOffset, long fromDay,
+      long toDay) {
+    List<DayFacts> result = new ArrayList<>();
+    int i = 0;
+    int n = counters.size();
+    long time = n == 0 ? 0 : counters.getTime(0);
+    for (long day = fromDay; day <= toDay; day++) {
+      long start = dayStart(day, zoneOffset);
+      long end = start + EpochTime.MILLIS_PER_DAY;
+      while (i < n && time < start) {
+        i++;
+        time = i < n ? counters.getTime(i) : 0;
+      }
+      int count = 0;
+      long firstTime = 0;
+      long lastTime = 0;
+      double firstCounter = 0;
+      double lastCounter = 0;
+      long violationTime = NO_VIOLATION;
+      double violationCounter = 0;
+      int hours = 0;
+      while (i < n && time < end) {
+        double counter = counters.getValue(i);
+        if (count == 0) {
+          firstTime = time;
+          firstCounter = counter;
+        }
+        else if (counter < lastCounter && violationTime == NO_VIOLATION) {
+          violationTime = time;
+          violationCounter = counter;
+        }
+        lastTime = time;
+        lastCounter = counter;
+        hours |= 1 << (int) ((time - start) / EpochTime.MILLIS_PER_HOUR);
+        count++;
+        i++;
+        time = i < n ? counters.getTime(i) : 0;
+      }
+      Reading violation =
+          violationTime == NO_VIOLATION ? null : new Reading(violationTime, violationCounter);
+      result.add(new DayFacts(day, count, new Reading(firstTime, firstCounter),
+          new Reading(lastTime, lastCounter), violation, hours));
+    }
+    return result;
+  }
+
+  /**
+   * Writes these facts to a stream.
+   *
+   * @param out Stream to write to.
+   * @throws IOException if there are problems writing to the stream.
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeLong(this.day);
+    out.writeInt(this.count);
+    out.writeLong(this.firstTime);
+    out.writeLong(this.lastTime);
+    out.writeDouble(this.firstCounter);
+    out.writeDouble(this.lastCounter);
+    out.writeLong(this.violationTime);
+    out.writeDouble(this.violationCounter);
+    out.writeInt(this.hours);
+  }
+
+  /**
+   * Reads facts that were written with {@link #write(DataOutput)}.
+   *
+   * @param in Stream to read from.
+   * @return The facts.
+   * @throws IOException if there are problems reading from the stream.
+   */
+  public static DayFacts read(DataInput in) throws IOException {
+    long day = in.readLong();
+    int count = in.readInt();
+    long firstTime = in.readLong();
+    long lastTime = in.readLong();
+    Reading first = new Reading(firstTime, in.readDouble());
+    Reading last = new Reading(lastTime, in.readDouble());
+    long violationTime = in.readLong();
+    Reading violation = new Reading(violationTime, in.readDouble());
+    return new DayFacts(day, count, first, last, violation, in.readInt());
+  }
+
+  /**
+   * Returns the number of the local day.
+   *
+   * @return The number of the local day.
+   */
+  public long getDay() {
+    return this.day;
+  }
+
+  /**
+   * Returns the number of readings.
+   *
+   * @return The number of readings.
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the time of the first reading.
+   *
+   * @return The time of the first reading in milliseconds.
+   */
+  public long getFirstTime() {
+    return this.firstTime;
+  }
+
+  /**
+   * Returns the time of the last reading.
+   *
+   * @return The time of the last reading in milliseconds.
+   */
+  public long getLastTime() {
+    return this.lastTime;
+  }
+
+  /**
+   * Returns the counter of the first reading.
+   *
+   * @return The counter of the first reading.
+   */
+  public double getFirstCounter() {
+    return this.firstCounter;
+  }
+
+  /**
+   * Returns the counter of the last reading.
+   *
+   * @return The counter of the last reading.
+   */
+  public double getLastCounter() {
+    return this.lastCounter;
+  }
+
+  /**
+   * Returns the time of the first reading that is less than the one before it.
+   *
+   * @return The time in milliseconds, or {@link #NO_VIOLATION} if there is no such reading.
+   */
+  public long getViolationTime() {
+    return this.violationTime;
+  }
+
+  /**
+   * Returns the counter of the first reading that is less than the one before it.
+   *
+   * @return The counter of the reading.
+   */
+  public double getViolationCounter() {
+    return this.violationCounter;
+  }
+
+  /**
+   * Returns a bitmap of the hours of the day that contain at least one reading.
+   *
+   * @return One bit per hour, starting with the lowest bit for the first hour.
+   */
+  public int getHours() {
+    return this.hours;
+  }
+
+}
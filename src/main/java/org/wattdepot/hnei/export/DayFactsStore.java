@@ -0,0 +1,160 @@
+package org.wattdepot.hnei.export;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores DayFacts for each source in a local file so that QualityClassifier only has to fetch and
+ * evaluate days that it has not seen before. Facts are per local day, so they are only valid for the
+ * time zone offset that they were computed in; loading a file that was written for a different
+ * offset starts with an empty store. The file is rewritten atomically by {@link #save()}.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class DayFactsStore {
+
+  /** Magic number at the start of the file ("HDFS"). */
+  private static final int MAGIC = 0x48444653;
+
+  /** Version of the file format. */
+  private static final int VERSION = 1;
+
+  /** File that contains the facts. */
+  private final Path file;
+
+  /** Time zone offset in minutes that the facts were computed in. */
+  private final int zoneOffset;
+
+  /** Facts for each source by local day. */
+  private final Map<String, TreeMap<Long, DayFacts>> facts;
+
+  /** True if facts were added since the file was loaded or saved. */
+  private boolean modified;
+
+  /**
+   * Creates a new DayFactsStore object and loads the facts in a file, if it exists.
+   *
+   * @param file File that contains the facts.
+   * @param zoneOffset Time zone offset in minutes that the facts are computed in.
+   * @throws IOException if the file exists but cannot be read.
+   */
+  public DayFactsStore(Path file, int zoneOffset) throws IOException {
+    this.file = file;
+    this.zoneOffset = zoneOffset;
+    this.facts = new HashMap<>();
+    this.modified = false;
+    if (Files.exists(file)) {
+      this.load();
+    }
+  }
+
+  /**
+   * Loads the facts in the file.
+   *
+   * @throws IOException if the file cannot be read or is not in the expected format.
+   */
+  private void load() throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException(this.file + " is not a day facts file.");
+      }
+      if (in.readInt() != this.zoneOffset) {
+        return;
+      }
+      int numSources = in.readInt();
+      for (int i = 0; i < numSources; i++) {
+        String sourceName = in.readUTF();
+        TreeMap<Long, DayFacts> days = new TreeMap<>();
+        int numDays = in.readInt();
+        for (int j = 0; j < numDays; j++) {
+          DayFacts day = DayFacts.read(in);
+          days.put(day.getDay(), day);
+        }
+        this.facts.put(sourceName, days);
+      }
+    }
+  }
+
+  /**
+   * Writes all facts to a temporary file and then replaces the file with it.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  public synchronized void save() throws IOException {
+    if (!this.modified) {
+      return;
+    }
+    Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.zoneOffset);
+      out.writeInt(this.facts.size());
+      for (Map.Entry<String, TreeMap<Long, DayFacts>> entry : this.facts.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (DayFacts day : entry.getValue().values()) {
+          day.write(out);
+        }
+      }
+    }
+    Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    this.modified = false;
+  }
+
+  /**
+   * Returns the time zone offset that the facts are computed in.
+   *
+   * @return The time zone offset in minutes.
+   */
+  public int getZoneOffset() {
+    return this.zoneOffset;
+  }
+
+  /**
+   * Returns the facts for a source on a local day.
+   *
+   * @param sourceName Name of a source.
+   * @param day Number of the local day.
+   * @return The facts, or null if the day has not been seen before.
+   */
+  public synchronized DayFacts get(String sourceName, long day) {
+    TreeMap<Long, DayFacts> days = this.facts.get(sourceName);
+    return days == null ? null : days.get(day);
+  }
+
+  /**
+   * Stores the facts for a source on a local day.
+   *
+   * @param sourceName Name of a source.
+   * @param day Facts for the day.
+   */
+  public synchronized void put(String sourceName, DayFacts day) {
+    this.facts.computeIfAbsent(sourceName, name -> new TreeMap<>()).put(day.getDay(), day);
+    this.modified = true;
+  }
+
+  /**
+   * Returns the number of days stored for a source.
+   *
+   * @param sourceName Name of a source.
+   * @return The number of days stored.
+   */
+  public synchronized int size(String sourceName) {
+    TreeMap<Long, DayFacts> days = this.facts.get(sourceName);
+    return days == null ? 0 : days.size();
+  }
+
+}
@@ -1,22 +1,29 @@
 package org.wattdepot.hnei.export;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.wattdepot.client.BadXmlException;
 import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.hnei.util.EpochTime;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 import org.wattdepot.resource.source.jaxb.Source;
-import org.wattdepot.util.tstamp.Tstamp;
 
 /**
  * This class will export energy consumed data for one or more sources to a CSV file. The output
@@ -30,6 +37,77 @@ public class EnergyMatrixExporter extends Exporter {
   /** Header row for matrix. */
   protected List<String> header;
 
+  /** Default number of workers that fetch data from the WattDepot server at the same time. */
+  public static final int DEFAULT_NUM_THREADS = 8;
+
+  /** Number of rows per worker that can be filled in before earlier rows are written. */
+  private static final int ROW_WINDOW_PER_THREAD = 4;
+
+  /** Number of seconds between progress reports. */
+  private static final long PROGRESS_INTERVAL = 5;
+
+  /** Number of workers that fetch data from the WattDepot server at the same time. */
+  protected int numThreads;
+
+  /** True to interpolate energy locally from raw counters instead of asking the server. */
+  protected boolean localInterpolation;
+
+  /** True to write a binary matrix file instead of a CSV file. */
+  protected boolean binaryOutput;
+
+  /** True to compress the blocks of a binary matrix file. */
+  protected boolean compressBinary;
+
+  /** Number of shard files to write, or 0 to write a single file. */
+  protected int numShards;
+
+  /** Manifest of a sharded matrix to regenerate a shard of, or null. */
+  protected Path regenerateManifest;
+
+  /** Index of the shard to regenerate. */
+  protected int regenerateShard;
+
+  /** Rollup file to answer queries from, or to build if buildRollup is true; null if not used. */
+  protected Path rollupFile;
+
+  /** True to build the rollup file instead of writing a matrix. */
+  protected boolean buildRollup;
+
+  /** Answers queries whose bins are hours, days, or weeks without the server, or null. */
+  private Rollup rollup;
+
+  /**
+   * Fills in one or more bins of the matrix.
+   */
+  interface BinTask {
+
+    /**
+     * Fills in one or more bins of the matrix.
+     * 
+     * @param index Index of the task.
+     * @param cells Cells of the row that the task fills in.
+     * @return Number of bins filled in.
+     * @throws WattDepotClientException if there are problems getting data from the server.
+     */
+    int run(long index, double[] cells) throws WattDepotClientException;
+  }
+
+  /**
+   * Receives completed rows of the matrix in source order.
+   */
+  protected interface RowHandler {
+
+    /**
+     * Handles a completed row of the matrix. The array is reused for later rows once this method
+     * returns.
+     * 
+     * @param row Index of the source.
+     * @param cells Energy in kWh for each bin, or NaN if there is no data for a bin.
+     * @throws IOException if there are problems writing the row.
+     */
+    void handle(int row, double[] cells) throws IOException;
+  }
+
   /** If sampling interval is less than threshold, do not include daily sources in output file. */
   //private static final int SAMPLING_INTERVAL_THRESHOLD = 60 * 24;
 
@@ -46,6 +124,7 @@ public class EnergyMatrixExporter extends Exporter {
     this.formatDateTime = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss a", Locale.US);
     this.header = new ArrayList<>();
     this.sources = new ArrayList<>();
+    this.numThreads = DEFAULT_NUM_THREADS;
   }
 
   /**
@@ -55,10 +134,33 @@ public class EnergyMatrixExporter extends Exporter {
    * @return Data to output to CSV file.
    */
   public String getEnergyData() {
-    var msg = "";
-    var builder = new StringBuilder();
-    var start = this.startTimestamp;
-    var end = Tstamp.incrementMinutes(start, this.samplingInterval);
+    var bytes = new ByteArrayOutputStream();
+    try (var writer = new CsvRowWriter(bytes, null, CsvRowWriter.DEFAULT_BUFFER_SIZE)) {
+      if (!this.writeEnergyData(writer)) {
+        return null;
+      }
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes the energy consumed for each source between startTimestamp and endTimestamp to a CSV
+   * writer; data is sampled at the specified sampling interval (in minutes). Each row is written as
+   * soon as it is complete.
+   * 
+   * @param writer Used to write the CSV file.
+   * @return True if successful, false otherwise.
+   * @throws IOException if there are problems writing to the CSV file.
+   */
+  public boolean writeEnergyData(CsvRowWriter writer) throws IOException {
+    var start = EpochTime.toMillis(this.startTimestamp);
+    var end = EpochTime.toMillis(this.endTimestamp);
+    var zone = EpochTime.zoneOffset(this.startTimestamp);
+    var interval = this.samplingInterval * EpochTime.MILLIS_PER_MINUTE;
 
     // msg = "Number of sources: " + this.sources.size() + "\n\n";
     // msg += "The sampling interval is " + this.samplingInterval + " minute(s).\n\n";
@@ -82,6 +184,291 @@ public class EnergyMatrixExporter extends Exporter {
       //this.sources.removeAll(temp);
     //}
 
+    this.filterSources();
+    this.buildHeader(start, end, interval);
+    return this.writeCsvRows(writer, this.sources, this.numThreads, start, end, zone, interval);
+  }
+
+  /**
+   * Fills in the header row with the end of each bin.
+   * 
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param interval Width of a bin in milliseconds.
+   */
+  private void buildHeader(long start, long end, long interval) {
+    this.header.clear();
+    for (var time = start; time < end; time += interval) {
+      this.header.add(this.getTimestamp(time + interval));
+    }
+    this.header.add(this.getTimestamp(end));
+  }
+
+  /**
+   * Writes the header row and one row per source to a CSV writer.
+   * 
+   * @param writer Used to write the CSV file.
+   * @param sources Sources to write, in row order.
+   * @param workers Number of workers that fetch data.
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param zone Time zone offset in minutes.
+   * @param interval Width of a bin in milliseconds.
+   * @return True if successful, false otherwise.
+   * @throws IOException if there are problems writing to the CSV file.
+   */
+  private boolean writeCsvRows(CsvRowWriter writer, List<Source> sources, int workers, long start,
+      long end, int zone, long interval) throws IOException {
+    writer.write(this.getTableHeader());
+    return this.fetchEnergyData(sources, workers, start, end, zone, interval, (row, cells) -> {
+      writer.write('\n').write(sources.get(row).getName());
+      for (var cell : cells) {
+        writer.write(',').write(formatEnergy(cell));
+      }
+    });
+  }
+
+  /**
+   * Writes the energy consumed for each source between startTimestamp and endTimestamp to a binary
+   * matrix file; data is sampled at the specified sampling interval (in minutes). Each row is
+   * written as soon as it is complete.
+   * 
+   * @param file File to write to.
+   * @param compress True to compress blocks, false otherwise.
+   * @return True if successful, false otherwise.
+   * @throws IOException if there are problems writing to the file.
+   */
+  public boolean writeBinaryData(Path file, boolean compress) throws IOException {
+    var start = EpochTime.toMillis(this.startTimestamp);
+    var end = EpochTime.toMillis(this.endTimestamp);
+    var zone = EpochTime.zoneOffset(this.startTimestamp);
+    var interval = this.samplingInterval * EpochTime.MILLIS_PER_MINUTE;
+
+    this.filterSources();
+    var writer = openBinaryWriter(file, compress, this.sources, start, end, zone, interval);
+    return this.writeBinaryRows(writer, this.sources, this.numThreads, start, end, zone, interval);
+  }
+
+  /**
+   * Opens a binary matrix file with one row per source.
+   * 
+   * @param file File to write to.
+   * @param compress True to compress blocks, false otherwise.
+   * @param sources Sources to write, in row order.
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param zone Time zone offset in minutes.
+   * @param interval Width of a bin in milliseconds.
+   * @return A writer for the file.
+   * @throws IOException if there are problems writing to the file.
+   */
+  private static BinaryMatrixWriter openBinaryWriter(Path file, boolean compress,
+      List<Source> sources, long start, long end, int zone, long interval) throws IOException {
+    var names = new ArrayList<String>();
+    for (var s : sources) {
+      names.add(s.getName());
+    }
+    var bins = new MatrixBins(start, interval, zone, EpochTime.numBins(start, end, interval));
+    return new BinaryMatrixWriter(file, names, bins, compress);
+  }
+
+  /**
+   * Writes one row per source to a binary matrix file, and closes it. If the rows cannot be
+   * written, the file is closed without its index.
+   * 
+   * @param writer Writer for the file.
+   * @param sources Sources to write, in row order.
+   * @param workers Number of workers that fetch data.
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param zone Time zone offset in minutes.
+   * @param interval Width of a bin in milliseconds.
+   * @return True if successful, false otherwise.
+   * @throws IOException if there are problems writing to the file.
+   */
+  private boolean writeBinaryRows(BinaryMatrixWriter writer, List<Source> sources, int workers,
+      long start, long end, int zone, long interval) throws IOException {
+    try {
+      if (!this.fetchEnergyData(sources, workers, start, end, zone, interval,
+          (row, cells) -> writer.writeRow(cells))) {
+        writer.abort();
+        return false;
+      }
+    }
+    catch (IOException e) {
+      writer.abort();
+      throw e;
+    }
+    writer.close();
+    return true;
+  }
+
+  /**
+   * Writes the energy matrix as <code>numShards</code> shard files next to a manifest. Each shard
+   * holds a contiguous range of sources and is written concurrently with the others; the workers
+   * are divided among the shards that are being written at the same time. The manifest is written
+   * even if some shards fail, so that only the failed shards have to be regenerated.
+   * 
+   * @param manifestFile File to write the manifest to; shard files are named after it.
+   * @return True if all shards were written, false otherwise.
+   * @throws IOException if the manifest cannot be written.
+   */
+  public boolean writeShards(Path manifestFile) throws IOException {
+    var start = EpochTime.toMillis(this.startTimestamp);
+    var end = EpochTime.toMillis(this.endTimestamp);
+    var interval = this.samplingInterval * EpochTime.MILLIS_PER_MINUTE;
+
+    this.filterSources();
+    this.buildHeader(start, end, interval);
+    var numShards = Math.max(1, Math.min(this.numShards, this.sources.size()));
+    var manifest =
+        new ShardManifest(start, end, interval, this.getShardFormat(), this.sources.size(),
+            numShards);
+    var concurrent = Math.min(numShards, this.numThreads);
+    var workers = Math.max(1, this.numThreads / concurrent);
+
+    var pool = Executors.newFixedThreadPool(concurrent);
+    var results = new ArrayList<Future<Boolean>>();
+    for (var i = 0; i < numShards; i++) {
+      var shard = i;
+      results.add(pool.submit(() -> this.writeShard(manifest, manifestFile, shard, workers)));
+    }
+    pool.shutdown();
+
+    var success = true;
+    for (var i = 0; i < numShards; i++) {
+      try {
+        if (!results.get(i).get()) {
+          System.err.println("Unable to write shard " + i + ".");
+          success = false;
+        }
+      }
+      catch (InterruptedException e) {
+        pool.shutdownNow();
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      catch (ExecutionException e) {
+        System.err.println("Unable to write shard " + i + ": " + e.getCause());
+        success = false;
+      }
+    }
+    manifest.write(manifestFile);
+    return success;
+  }
+
+  /**
+   * Writes one shard of a matrix that was exported with {@link #writeShards(Path)} again, e.g.
+   * after it failed or was damaged. The time interval, sampling interval, and sources must be the
+   * same as when the matrix was exported; the first and last source of every shard in the manifest
+   * are checked, so that a shard is not written for a different list of sources.
+   * 
+   * @param manifestFile Manifest of the matrix.
+   * @param shard Index of the shard to write.
+   * @return True if successful, false otherwise.
+   * @throws IOException if the manifest cannot be read or written.
+   */
+  public boolean regenerateShard(Path manifestFile, int shard) throws IOException {
+    var manifest = ShardManifest.read(manifestFile);
+    var start = EpochTime.toMillis(this.startTimestamp);
+    var end = EpochTime.toMillis(this.endTimestamp);
+    var interval = this.samplingInterval * EpochTime.MILLIS_PER_MINUTE;
+    this.filterSources();
+    if (start != manifest.getStart() || end != manifest.getEnd()
+        || interval != manifest.getInterval() || this.sources.size() != manifest.getNumRows()) {
+      System.err.println("The time interval or sources do not match " + manifestFile + ".");
+      return false;
+    }
+    var names = new ArrayList<String>();
+    for (var s : this.sources) {
+      names.add(s.getName());
+    }
+    var mismatched = manifest.checkSources(names);
+    if (!mismatched.isEmpty()) {
+      System.err.println("The sources of shards " + mismatched + " do not match " + manifestFile
+          + ".");
+      return false;
+    }
+    if (shard < 0 || shard >= manifest.getNumShards()) {
+      System.err.println("Shard " + shard + " is out of range.");
+      return false;
+    }
+    this.binaryOutput = manifest.getFormat().startsWith("hemx");
+    this.compressBinary = manifest.getFormat().endsWith("compressed");
+    this.buildHeader(start, end, interval);
+    if (!this.writeShard(manifest, manifestFile, shard, this.numThreads)) {
+      return false;
+    }
+    manifest.write(manifestFile);
+    return true;
+  }
+
+  /**
+   * Writes one shard file and records it in the manifest.
+   * 
+   * @param manifest Manifest of the matrix.
+   * @param manifestFile File that the manifest is written to; shard files are named after it.
+   * @param shard Index of the shard.
+   * @param workers Number of workers that fetch data.
+   * @return True if successful, false otherwise.
+   * @throws IOException if there are problems writing the shard file.
+   */
+  private boolean writeShard(ShardManifest manifest, Path manifestFile, int shard, int workers)
+      throws IOException {
+    var start = manifest.getStart();
+    var end = manifest.getEnd();
+    var interval = manifest.getInterval();
+    var zone = EpochTime.zoneOffset(this.startTimestamp);
+    var from = ShardManifest.firstRow(this.sources.size(), manifest.getNumShards(), shard);
+    var to = ShardManifest.firstRow(this.sources.size(), manifest.getNumShards(), shard + 1);
+    var shardSources = this.sources.subList(from, to);
+
+    var baseName = manifestFile.getFileName().toString().replaceFirst("\\.manifest$", "");
+    var fileName = String.format("%s-%04d.%s", baseName, shard, this.binaryOutput ? "hemx" : "csv");
+    var file = manifestFile.resolveSibling(fileName);
+    System.out.println("Writing shard " + shard + " (" + shardSources.size() + " sources) to "
+        + fileName + "...");
+
+    boolean success;
+    if (this.binaryOutput) {
+      var writer =
+          openBinaryWriter(file, this.compressBinary, shardSources, start, end, zone, interval);
+      success = this.writeBinaryRows(writer, shardSources, workers, start, end, zone, interval);
+    }
+    else {
+      try (var writer =
+          new CsvRowWriter(Files.newOutputStream(file), null, CsvRowWriter.DEFAULT_BUFFER_SIZE)) {
+        success = this.writeCsvRows(writer, shardSources, workers, start, end, zone, interval);
+      }
+    }
+    if (!success) {
+      return false;
+    }
+
+    var checksum = ShardManifest.checksum(file);
+    var first = shardSources.isEmpty() ? "-" : shardSources.get(0).getName();
+    var last = shardSources.isEmpty() ? "-" : shardSources.get(shardSources.size() - 1).getName();
+    manifest.setShard(new ShardManifest.Shard(shard, fileName, first, last, from,
+        shardSources.size(), checksum));
+    return true;
+  }
+
+  /**
+   * Returns the format of the output files.
+   * 
+   * @return csv, hemx, or hemx-compressed.
+   */
+  private String getShardFormat() {
+    if (!this.binaryOutput) {
+      return "csv";
+    }
+    return this.compressBinary ? "hemx-compressed" : "hemx";
+  }
+
+  /**
+   * Removes sources whose type of data does not match the type of data to export.
+   */
+  protected void filterSources() {
     if (!this.sourceDataType.equals(ALL_DATA)) {
       List<Source> temp = new ArrayList<>();
       for (var s : this.sources) {
@@ -89,76 +476,364 @@ public class EnergyMatrixExporter extends Exporter {
           temp.add(s);
         }
       }
-      this.sources.removeAll(temp);      
+      this.sources.removeAll(temp);
     }
+  }
 
-    while (Tstamp.lessThan(start, this.endTimestamp)) {
-      this.header.add(this.getTimestamp(end.toGregorianCalendar().getTime().getTime()));
-      start = Tstamp.incrementMinutes(start, this.samplingInterval);
-      end = Tstamp.incrementMinutes(end, this.samplingInterval);
-    }
-    this.header.add(this.getTimestamp(this.endTimestamp.toGregorianCalendar().getTime().getTime()));
-    builder.append(this.getTableHeader());
+  /**
+   * Gets the energy consumed for each source in each bin between <code>start</code> and
+   * <code>end</code>. Data is fetched concurrently by <code>numThreads</code> workers, but rows are
+   * passed to <code>handler</code> in source order, on the calling thread, as soon as they are
+   * complete. Only a small window of rows is kept in memory. Progress and throughput are reported
+   * every few seconds.
+   * 
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param zone Time zone offset in minutes.
+   * @param interval Width of a bin in milliseconds.
+   * @param handler Receives each completed row.
+   * @return True if successful, false if there was a problem getting data.
+   * @throws IOException if <code>handler</code> is unable to write a row.
+   */
+  protected boolean fetchEnergyData(long start, long end, int zone, long interval,
+      RowHandler handler) throws IOException {
+    return this.fetchEnergyData(this.sources, this.numThreads, start, end, zone, interval, handler);
+  }
 
-    start = this.startTimestamp;
-    end = Tstamp.incrementMinutes(start, this.samplingInterval);
-    try {
-      int count = 1;
-      for (Source s : this.sources) {
-        msg = "\n" + s.getName();
-        builder.append(msg);
-        while (Tstamp.lessThan(start, this.endTimestamp)) {
-          try {
-            var data = this.client.getEnergy(s.getName(), start, end, this.samplingInterval);
-            msg = "," + this.getInfo(data);
+  /**
+   * Gets the energy consumed for each of the given sources in each bin between <code>start</code>
+   * and <code>end</code> on the given number of workers.
+   * 
+   * @param sources Sources to get data for, in row order.
+   * @param workers Number of workers that fetch data.
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param zone Time zone offset in minutes.
+   * @param interval Width of a bin in milliseconds.
+   * @param handler Receives each completed row.
+   * @return True if successful, false if there was a problem getting data.
+   * @throws IOException if <code>handler</code> is unable to write a row.
+   */
+  private boolean fetchEnergyData(List<Source> sources, int workers, long start, long end,
+      int zone, long interval, RowHandler handler) throws IOException {
+    var numBins = EpochTime.numBins(start, end, interval);
+    var rollup = this.rollup;
+    if (rollup != null) {
+      var level = Rollup.Level.forInterval(interval);
+      var names = new ArrayList<String>();
+      for (var s : sources) {
+        names.add(s.getName());
+      }
+      // A source that is not in the rollup would be exported as all NaN, so it must be fetched.
+      var complete = rollup.containsAll(names);
+      if (complete && level != null && rollup.covers(level, start, numBins, zone)) {
+        // No requests; every row is read from the rollup file.
+        return this.runWorkers(sources.size(), numBins, true, 1, (row, cells) -> {
+          var name = sources.get((int) row).getName();
+          var energy = rollup.getEnergy(name, level, start, numBins);
+          for (var bin = 0; bin < numBins; bin++) {
+            cells[bin] = energy[bin] / 1000.0;
           }
-          catch (BadXmlException e) {
-            msg = ",N/A";
+          return numBins;
+        }, handler);
+      }
+      System.out.println(complete ? "The rollup file does not cover this query; fetching data from "
+          + "server." : "The rollup file does not contain every source; fetching data from server.");
+    }
+    if (this.localInterpolation) {
+      // One request per source; the counter is interpolated at every bin boundary locally.
+      return this.runWorkers(sources.size(), numBins, true, workers, (row, cells) -> {
+        var name = sources.get((int) row).getName();
+        var datas =
+            this.client.getSensorDatas(name,
+                EpochTime.toTimestamp(start - EpochTime.MILLIS_PER_DAY, zone),
+                EpochTime.toTimestamp(end + EpochTime.MILLIS_PER_DAY, zone));
+        var energy = CounterInterpolator.interpolate(datas, start, interval, numBins);
+        for (var bin = 0; bin < numBins; bin++) {
+          cells[bin] = energy[bin] / 1000.0;
+        }
+        return numBins;
+      }, handler);
+    }
+
+    // One request per bin; the server interpolates the energy consumed.
+    return this.runWorkers(sources.size(), numBins, false, workers, (cell, cells) -> {
+      var row = (int) (cell / numBins);
+      var bin = (int) (cell % numBins);
+      var time = start + bin * interval;
+      var name = sources.get(row).getName();
+      try {
+        var data =
+            this.client.getEnergy(name, EpochTime.toTimestamp(time, zone),
+                EpochTime.toTimestamp(time + interval, zone), this.samplingInterval);
+        cells[bin] = data.getPropertyAsDouble(SensorData.ENERGY_CONSUMED) / 1000.0;
+      }
+      catch (BadXmlException e) {
+        cells[bin] = Double.NaN;
+      }
+      return 1;
+    }, handler);
+  }
+
+  /**
+   * Fills in the matrix on <code>workers</code> workers and passes each completed row to
+   * <code>handler</code> in order. If any task fails, the remaining tasks are skipped.
+   * 
+   * @param numRows Number of rows in the matrix.
+   * @param numBins Number of bins in each row.
+   * @param perRow True if each task fills in a whole row, false if each task fills in one bin.
+   * @param workers Number of workers.
+   * @param task Task to run for each row or bin.
+   * @param handler Receives each completed row.
+   * @return True if all tasks were successful, false otherwise.
+   * @throws IOException if <code>handler</code> is unable to write a row.
+   */
+  boolean runWorkers(int numRows, int numBins, boolean perRow, int workers, BinTask task,
+      RowHandler handler) throws IOException {
+    var numTasks = perRow ? numRows : (long) numRows * numBins;
+    var window = new RowWindow(Math.max(1, Math.min(numRows, ROW_WINDOW_PER_THREAD * workers)),
+        numBins);
+    var next = new AtomicLong();
+    var done = new AtomicLong();
+
+    Runnable worker = () -> {
+      var index = next.getAndIncrement();
+      while (index < numTasks) {
+        var row = (int) (perRow ? index : index / numBins);
+        try {
+          var cells = window.acquire(row);
+          if (cells == null) {
+            return;
           }
-          builder.append(msg);
+          var numFilled = task.run(index, cells);
+          done.addAndGet(numFilled);
+          window.complete(row, numFilled);
+        }
+        catch (WattDepotClientException e) {
+          e.printStackTrace();
+          window.fail();
+          return;
+        }
+        catch (InterruptedException e) {
+          window.fail();
+          return;
+        }
+        catch (RuntimeException e) {
+          // E.g. a missing property; without this the writer would wait for the row forever.
+          e.printStackTrace();
+          window.fail();
+          return;
+        }
+        index = next.getAndIncrement();
+      }
+    };
+
+    var numWorkers = (int) Math.max(1, Math.min(workers, numTasks));
+    var pool = Executors.newFixedThreadPool(numWorkers);
+    for (var i = 0; i < numWorkers; i++) {
+      pool.execute(worker);
+    }
+    pool.shutdown();
 
-          start = Tstamp.incrementMinutes(start, this.samplingInterval);
-          end = Tstamp.incrementMinutes(end, this.samplingInterval);
+    var total = (long) numRows * numBins;
+    var startTime = System.nanoTime();
+    var lastReport = startTime;
+    try {
+      for (var row = 0; row < numRows; row++) {
+        double[] cells;
+        while ((cells = window.awaitNext(PROGRESS_INTERVAL * 1000)) == null) {
+          if (window.isFailed()) {
+            return false;
+          }
+          this.printProgress(done.get(), total, startTime);
+          lastReport = System.nanoTime();
+        }
+        handler.handle(row, cells);
+        window.release();
+        if (System.nanoTime() - lastReport > TimeUnit.SECONDS.toNanos(PROGRESS_INTERVAL)) {
+          this.printProgress(done.get(), total, startTime);
+          lastReport = System.nanoTime();
         }
-        System.out.print("Finished processing " + count + " out of ");
-        System.out.println(this.sources.size() + "...");
-        start = this.startTimestamp;
-        end = Tstamp.incrementMinutes(start, this.samplingInterval);
-        count++;
       }
     }
-    catch (WattDepotClientException e) {
-      e.printStackTrace();
-      return null;
+    catch (InterruptedException e) {
+      window.fail();
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    finally {
+      if (window.isFailed() || next.get() < numTasks) {
+        window.fail();
+        pool.shutdownNow();
+      }
     }
+    this.printProgress(done.get(), total, startTime);
+    return true;
+  }
 
-    return builder.toString();
+  /**
+   * Prints the number of bins fetched so far and the number of bins fetched per second.
+   * 
+   * @param done Number of bins fetched.
+   * @param total Total number of bins.
+   * @param startTime Value of System.nanoTime() when fetching started.
+   */
+  private void printProgress(long done, long total, long startTime) {
+    var seconds = Math.max(1, System.nanoTime() - startTime) / 1e9;
+    System.out.println(String.format("Fetched %d out of %d bins (%.1f bins/sec)...", done, total,
+        done / seconds));
+  }
+
+  /**
+   * Sets the number of workers that fetch data from the WattDepot server at the same time.
+   * 
+   * @param numThreads Number of workers.
+   */
+  public void setNumThreads(int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1.");
+    }
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * Sets whether the energy consumed in each bin is interpolated locally from the raw energy
+   * consumed to date counters of each source, which requires one request per source instead of one
+   * request per bin.
+   * 
+   * @param localInterpolation True to interpolate locally, false to let the server interpolate.
+   */
+  public void setLocalInterpolation(boolean localInterpolation) {
+    this.localInterpolation = localInterpolation;
+  }
+
+  /**
+   * Sets whether a binary matrix file is written instead of a CSV file.
+   * 
+   * @param binaryOutput True to write a binary matrix file, false to write a CSV file.
+   * @param compress True to compress the blocks of a binary matrix file, false otherwise.
+   */
+  public void setBinaryOutput(boolean binaryOutput, boolean compress) {
+    this.binaryOutput = binaryOutput;
+    this.compressBinary = compress;
+  }
+
+  /**
+   * Sets the number of shard files to write the matrix to. Each shard holds a contiguous range of
+   * sources, and a manifest lists the shards.
+   * 
+   * @param numShards Number of shards, or 0 to write a single file.
+   */
+  public void setNumShards(int numShards) {
+    if (numShards < 0) {
+      throw new IllegalArgumentException("Number of shards must not be negative.");
+    }
+    this.numShards = numShards;
+  }
+
+  /**
+   * Sets a shard of a sharded matrix to write again instead of writing a new matrix.
+   * 
+   * @param manifest Manifest of the sharded matrix, or null to write a new matrix.
+   * @param shard Index of the shard to write again.
+   */
+  public void setRegenerateShard(Path manifest, int shard) {
+    this.regenerateManifest = manifest;
+    this.regenerateShard = shard;
+  }
+
+  /**
+   * Sets a rollup file that hourly, daily, and weekly queries are answered from, or that is built
+   * instead of writing a matrix.
+   * 
+   * @param file Rollup file, or null to always fetch data from the server.
+   * @param build True to build the rollup file for the sources and dates, false to read it.
+   */
+  public void setRollupFile(Path file, boolean build) {
+    this.rollupFile = file;
+    this.buildRollup = build;
+  }
+
+  /**
+   * Computes hourly, daily, weekly, and monthly aggregates for all sources between startTimestamp
+   * and endTimestamp and writes them to a rollup file.
+   * 
+   * @param file Rollup file to write.
+   * @return True if successful, false otherwise.
+   * @throws IOException if the file cannot be written.
+   */
+  public boolean buildRollup(Path file) throws IOException {
+    var start = EpochTime.toMillis(this.startTimestamp);
+    var end = EpochTime.toMillis(this.endTimestamp);
+    var rollup = new Rollup(start, end, EpochTime.zoneOffset(this.startTimestamp));
+    var names = new ArrayList<String>();
+    for (var s : this.sources) {
+      names.add(s.getName());
+    }
+    if (!rollup.fetch(this.client, names, this.numThreads)) {
+      return false;
+    }
+    rollup.write(file);
+    return true;
   }
 
   /**
-   * Prints energy information to a CSV file.
+   * Prints energy information to a CSV file, or to a binary matrix file if binary output is enabled.
+   * Each row is written as soon as it is complete; rows of a CSV file are echoed to standard output
+   * only if echo is enabled.
    * 
    * @return True if successful, false otherwise.
    */
   @Override
   public boolean printData() {
     var today = Calendar.getInstance().getTime().toString().replaceAll("[ :]", "_");
+    if (this.rollupFile != null) {
+      try {
+        if (this.buildRollup) {
+          System.out.println("Building rollup file " + this.rollupFile + "...\n");
+          return this.buildRollup(this.rollupFile);
+        }
+        this.rollup = Rollup.read(this.rollupFile);
+      }
+      catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
+    }
+    if (this.regenerateManifest != null || this.numShards > 0) {
+      try {
+        if (this.regenerateManifest != null) {
+          return this.regenerateShard(this.regenerateManifest, this.regenerateShard);
+        }
+        System.out.println("Generating " + this.numShards + " shards...\n");
+        System.out.println("Manifest: " + today + ".manifest\n");
+        return this.writeShards(Paths.get(today + ".manifest"));
+      }
+      catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
+    }
+    if (this.binaryOutput) {
+      System.out.println("Generating binary matrix file...\n");
+      System.out.println("Output file: " + today + ".hemx\n");
+      try {
+        return this.writeBinaryData(Paths.get(today + ".hemx"), this.compressBinary);
+      }
+      catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
+    }
+
     System.out.println("Generating CSV file...\n");
     System.out.println("Output file: " + today + ".csv\n");
 
     var outputFile = new File(today + ".csv");
-    if (!outputFile.setWritable(true)) {
-      return false;
-    }
-
-    try (var writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8))) {
-      var result = this.getEnergyData();
-      if (result == null) {
-        throw new IOException();
+    try (var writer = new CsvRowWriter(outputFile, this.echo)) {
+      if (!this.writeEnergyData(writer)) {
+        throw new IOException("Unable to get energy data.");
       }
-
-      writer.write(result);
-      System.out.println(result);
     }
     catch (IOException e) {
       e.printStackTrace();
@@ -192,20 +867,85 @@ public class EnergyMatrixExporter extends Exporter {
    */
   @Override
   public String getInfo(SensorData data) {
-    var energy = data.getPropertyAsDouble(SensorData.ENERGY_CONSUMED);
-    return String.format("%.2f", energy / 1000.0);
+    return formatEnergy(data.getPropertyAsDouble(SensorData.ENERGY_CONSUMED) / 1000.0);
+  }
+
+  /**
+   * Returns the amount of energy in kWh as text with two decimal places.
+   * 
+   * @param energy Energy in kWh, or NaN if there is no data.
+   * @return Energy with two decimal places, or N/A if there is no data.
+   */
+  public static String formatEnergy(double energy) {
+    return Double.isNaN(energy) ? "N/A" : String.format("%.2f", energy);
   }
 
   /**
    * Command-line program that will generate a CSV file containing energy information for one or
    * more sources over a given time period and at a given sampling interval.
    * 
-   * @param args One argument to specify whether data for all sources should be exported.
+   * @param args [-all] to export data for all sources, [-threads n] to fetch data with n workers,
+   * [-local] to interpolate energy from raw counters locally, [-echo] to print rows to the screen,
+   * [-binary] or [-binary-compressed] to write a binary matrix file instead of a CSV file,
+   * [-shards n] to write n shard files and a manifest, [-regenerate manifest k] to write shard k of
+   * a sharded matrix again, [-rollup file] to answer hourly, daily, and weekly queries from a rollup
+   * file, [-build-rollup file] to build a rollup file instead of writing a matrix.
    */
   public static void main(String[] args) {
-    var getAllSources = args.length == 1 && "-all".equals(args[0]);
-
+    var getAllSources = false;
     var output = new EnergyMatrixExporter();
+    for (var i = 0; i < args.length; i++) {
+      if ("-all".equals(args[i])) {
+        getAllSources = true;
+      }
+      else if ("-binary".equals(args[i])) {
+        output.setBinaryOutput(true, false);
+      }
+      else if ("-binary-compressed".equals(args[i])) {
+        output.setBinaryOutput(true, true);
+      }
+      else if ("-echo".equals(args[i])) {
+        output.setEcho(true);
+      }
+      else if ("-local".equals(args[i])) {
+        output.setLocalInterpolation(true);
+      }
+      else if ("-shards".equals(args[i]) && i + 1 < args.length) {
+        try {
+          output.setNumShards(Integer.parseInt(args[++i]));
+        }
+        catch (IllegalArgumentException e) {
+          System.err.println("Invalid number of shards: " + args[i]);
+          System.exit(1);
+        }
+      }
+      else if ("-regenerate".equals(args[i]) && i + 2 < args.length) {
+        try {
+          output.setRegenerateShard(Paths.get(args[i + 1]), Integer.parseInt(args[i + 2]));
+          i += 2;
+        }
+        catch (NumberFormatException e) {
+          System.err.println("Invalid shard: " + args[i + 2]);
+          System.exit(1);
+        }
+      }
+      else if ("-rollup".equals(args[i]) && i + 1 < args.length) {
+        output.setRollupFile(Paths.get(args[++i]), false);
+      }
+      else if ("-build-rollup".equals(args[i]) && i + 1 < args.length) {
+        output.setRollupFile(Paths.get(args[++i]), true);
+      }
+      else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+        try {
+          output.setNumThreads(Integer.parseInt(args[++i]));
+        }
+        catch (IllegalArgumentException e) {
+          System.err.println("Invalid number of threads: " + args[i]);
+          System.exit(1);
+        }
+      }
+    }
+
     if (!output.setup()) {
       System.exit(1);
     }
@@ -4,14 +4,12 @@ import static org.wattdepot.datainput.DataInputClientProperties.WATTDEPOT_PASSWO
 import static org.wattdepot.datainput.DataInputClientProperties.WATTDEPOT_URI_KEY;
 import static org.wattdepot.datainput.DataInputClientProperties.WATTDEPOT_USERNAME_KEY;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
@@ -21,6 +19,10 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import org.wattdepot.client.WattDepotClient;
 import org.wattdepot.client.WattDepotClientException;
 import org.wattdepot.datainput.DataInputClientProperties;
+import org.wattdepot.hnei.client.ChunkingWattDepotClient;
+import org.wattdepot.hnei.client.CoalescingWattDepotClient;
+import org.wattdepot.hnei.client.DiskCachingClient;
+import org.wattdepot.hnei.util.EpochTime;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 import org.wattdepot.resource.source.jaxb.Source;
 import org.wattdepot.util.tstamp.Tstamp;
@@ -69,16 +71,23 @@ public abstract class Exporter {
   /** Specifies the type of data: hourly, daily, weekly, or monthly. */
   protected String sourceDataType;
 
+  /** True to print rows written to a CSV file to standard output as well. */
+  protected boolean echo;
+
   /** Gets all data from all sources on the WattDepot server. */
   protected static final String ALL_DATA = "all";
 
   /**
    * Reads in URI, username, and password from a properties file, connects to a WattDepot server,
-   * and then stores a test source.
+   * and then stores a test source. Does nothing if a client was already given with
+   * {@link #setClient(WattDepotClient)}.
    * 
    * @return true if connection is established, false otherwise.
    */
   public boolean setup() {
+    if (this.client != null) {
+      return true;
+    }
     DataInputClientProperties props = null;
     try {
       props = new DataInputClientProperties();
@@ -97,6 +106,9 @@ public abstract class Exporter {
       System.out.println("Is healthy? " + this.client.isHealthy());
       return false;
     }
+    this.client = ChunkingWattDepotClient.wrapIfEnabled(this.client);
+    this.client = DiskCachingClient.wrapIfEnabled(this.client);
+    this.client = new CoalescingWattDepotClient(this.client);
     return true;
   }
 
@@ -163,9 +175,8 @@ public abstract class Exporter {
         System.out.println("Error encountered while trying to read in end timestamp.");
         return false;
       }
-      XMLGregorianCalendar timestamp =
-          Tstamp.makeTimestamp(this.formatDate.parse(command).getTime());
-      this.endTimestamp = Tstamp.incrementSeconds(Tstamp.incrementDays(timestamp, 1), -1);
+      long time = this.formatDate.parse(command).getTime();
+      this.endTimestamp = Tstamp.makeTimestamp(time + EpochTime.MILLIS_PER_DAY - EpochTime.MILLIS_PER_SECOND);
     }
     catch (ParseException | IOException e) {
       return false;
@@ -301,7 +312,8 @@ public abstract class Exporter {
   }
 
   /**
-   * Gets sensor data for all sources for the given time period.
+   * Gets sensor data for all sources for the given time period and writes it to a CSV file one
+   * source at a time.
    * 
    * @return True if successful, false otherwise.
    */
@@ -317,55 +329,42 @@ public abstract class Exporter {
     String today = Calendar.getInstance().getTime().toString().replaceAll("[ :]", "_");
 
     File outputFile = new File(today + ".csv");
-    outputFile.setWritable(true);
-    BufferedWriter writer;
-    try {
-      writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8));
-    }
-    catch (IOException e) {
-      e.printStackTrace();
-      return false;
-    }
-
-    StringBuilder builder = new StringBuilder();
-
-    builder.append(this.getTableHeader());
-
-    try {
+    try (CsvRowWriter writer = new CsvRowWriter(outputFile, this.echo)) {
+      writer.write(this.getTableHeader());
       System.out.println("Fetching data from server... Please wait.");
-      List<SensorData> data = null;
       for (Source s : this.sources) {
-        data = client.getSensorDatas(s.getName(), this.startTimestamp, this.endTimestamp);
-        if (!data.isEmpty()) {
-          for (SensorData d : data) {
-            builder.append(this.getInfo(d));
-          }
+        Iterator<SensorData> datas = ChunkingWattDepotClient.iterate(client, s.getName(),
+            this.startTimestamp, this.endTimestamp);
+        while (datas.hasNext()) {
+          writer.write(this.getInfo(datas.next()));
         }
       }
     }
-    catch (WattDepotClientException e) {
+    catch (WattDepotClientException | IOException | IllegalStateException e) {
       e.printStackTrace();
       return false;
     }
 
-    try {
-      writer.write(builder.toString());
-      System.out.println(builder.toString());
-    }
-    catch (IOException e) {
-      e.printStackTrace();
-      return false;
-    }
+    return true;
+  }
 
-    try {
-      writer.close();
-    }
-    catch (IOException e) {
-      e.printStackTrace();
-      return false;
-    }
+  /**
+   * Sets the client used to grab data from the WattDepot server, e.g. a CachingWattDepotClient that
+   * is shared with other exporters.
+   * 
+   * @param client Client used to grab data from the WattDepot server.
+   */
+  public void setClient(WattDepotClient client) {
+    this.client = client;
+  }
 
-    return true;
+  /**
+   * Sets whether rows written to a CSV file are also printed to standard output.
+   * 
+   * @param echo True to print rows to standard output, false otherwise.
+   */
+  public void setEcho(boolean echo) {
+    this.echo = echo;
   }
 
   /**
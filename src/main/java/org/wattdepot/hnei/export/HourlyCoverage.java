@@ -0,0 +1,172 @@
+package org.wattdepot.hnei.export;
+
+import org.wattdepot.hnei.util.EpochTime;
+
+/**
+ * Summarizes how completely a source's readings cover each hour of a time interval. It is computed
+ * in a single pass over sorted timestamps and records which hours have at least one reading (as a
+ * bitmap), the fraction of hours covered, the longest run of hours without a reading, and a
+ * histogram of the lengths of those runs.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class HourlyCoverage {
+
+  /**
+   * Number of buckets in the gap histogram. Bucket i counts gaps of 2<sup>i</sup> to
+   * 2<sup>i+1</sup> - 1 hours, and the last bucket counts all longer gaps.
+   */
+  public static final int NUM_BUCKETS = 8;
+
+  /** Start of the first hour in milliseconds. */
+  private final long start;
+
+  /** Number of hours in the time interval. */
+  private final int numHours;
+
+  /** One bit per hour, set if the hour contains at least one reading. */
+  private final long[] bitmap;
+
+  /** Number of hours that contain at least one reading. */
+  private final int numCovered;
+
+  /** Longest run of hours without a reading. */
+  private final int largestGap;
+
+  /** Number of runs of hours without a reading, by length. */
+  private final int[] histogram;
+
+  /**
+   * Computes the coverage of the hours from <code>start</code> to <code>end</code>, inclusive.
+   *
+   * @param times Timestamps of the readings in milliseconds, sorted in ascending order.
+   * @param start Start of the time interval in milliseconds.
+   * @param end End of the time interval in milliseconds.
+   */
+  public HourlyCoverage(long[] times, long start, long end) {
+    this.start = start;
+    this.numHours = (int) Math.max(0, (end - start) / EpochTime.MILLIS_PER_HOUR + 1);
+    this.bitmap = new long[(this.numHours + 63) / 64];
+    this.histogram = new int[NUM_BUCKETS];
+
+    int covered = 0;
+    int maxGap = 0;
+    int lastHour = -1;
+    for (long time : times) {
+      if (time < start) {
+        continue;
+      }
+      long hour = (time - start) / EpochTime.MILLIS_PER_HOUR;
+      if (hour >= this.numHours) {
+        break;
+      }
+      if (hour == lastHour) {
+        continue;
+      }
+      this.bitmap[(int) (hour >>> 6)] |= 1L << hour;
+      covered++;
+      maxGap = Math.max(maxGap, this.addGap((int) hour - lastHour - 1));
+      lastHour = (int) hour;
+    }
+    maxGap = Math.max(maxGap, this.addGap(this.numHours - lastHour - 1));
+    this.numCovered = covered;
+    this.largestGap = maxGap;
+  }
+
+  /**
+   * Adds a run of hours without a reading to the histogram.
+   *
+   * @param length Number of hours in the run; ignored if 0.
+   * @return The length of the run.
+   */
+  private int addGap(int length) {
+    if (length > 0) {
+      int bucket = 31 - Integer.numberOfLeadingZeros(length);
+      this.histogram[Math.min(bucket, NUM_BUCKETS - 1)]++;
+    }
+    return length;
+  }
+
+  /**
+   * Returns the start of the first hour.
+   *
+   * @return The start of the first hour in milliseconds.
+   */
+  public long getStart() {
+    return this.start;
+  }
+
+  /**
+   * Returns the number of hours in the time interval.
+   *
+   * @return The number of hours.
+   */
+  public int getNumHours() {
+    return this.numHours;
+  }
+
+  /**
+   * Returns the number of hours that contain at least one reading.
+   *
+   * @return The number of hours covered.
+   */
+  public int getNumCovered() {
+    return this.numCovered;
+  }
+
+  /**
+   * Returns the fraction of hours that contain at least one reading.
+   *
+   * @return The coverage, between 0 and 1.
+   */
+  public double getCoverage() {
+    return this.numHours == 0 ? 0.0 : (double) this.numCovered / this.numHours;
+  }
+
+  /**
+   * Returns the longest run of hours without a reading.
+   *
+   * @return The largest gap in hours.
+   */
+  public int getLargestGap() {
+    return this.largestGap;
+  }
+
+  /**
+   * Returns the number of runs of hours without a reading, by length.
+   *
+   * @return A copy of the gap histogram; see {@link #NUM_BUCKETS}.
+   */
+  public int[] getHistogram() {
+    return this.histogram.clone();
+  }
+
+  /**
+   * Returns true if an hour contains at least one reading.
+   *
+   * @param hour Index of the hour, starting at 0.
+   * @return True if the hour is covered, false otherwise.
+   */
+  public boolean isCovered(int hour) {
+    if (hour < 0 || hour >= this.numHours) {
+      throw new IndexOutOfBoundsException("Hour " + hour + " is out of range.");
+    }
+    return (this.bitmap[hour >>> 6] & (1L << hour)) != 0;
+  }
+
+  /**
+   * Returns the bitmap as a hexadecimal string. Each digit covers four hours; the lowest bit of the
+   * first digit is the first hour.
+   *
+   * @return The bitmap as a hexadecimal string.
+   */
+  public String toHex() {
+    char[] digits = new char[(this.numHours + 3) / 4];
+    for (int i = 0; i < digits.length; i++) {
+      int nibble = (int) (this.bitmap[i >>> 4] >>> ((i & 15) * 4)) & 0xF;
+      digits[i] = Character.forDigit(nibble, 16);
+    }
+    return new String(digits);
+  }
+
+}
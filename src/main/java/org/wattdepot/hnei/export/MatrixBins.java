@@ -0,0 +1,74 @@
+package org.wattdepot.hnei.export;
+
+/**
+ * The time bins of an energy matrix: the start of the first bin, the width of a bin, the time zone
+ * offset, and the number of bins.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class MatrixBins {
+
+  /** Start of the first bin in milliseconds. */
+  private final long start;
+
+  /** Width of a bin in milliseconds. */
+  private final long width;
+
+  /** Time zone offset in minutes. */
+  private final int zoneOffset;
+
+  /** Number of bins. */
+  private final int numBins;
+
+  /**
+   * Creates a new MatrixBins object.
+   *
+   * @param start Start of the first bin in milliseconds.
+   * @param width Width of a bin in milliseconds.
+   * @param zoneOffset Time zone offset in minutes.
+   * @param numBins Number of bins.
+   */
+  public MatrixBins(long start, long width, int zoneOffset, int numBins) {
+    this.start = start;
+    this.width = width;
+    this.zoneOffset = zoneOffset;
+    this.numBins = numBins;
+  }
+
+  /**
+   * Returns the start of the first bin.
+   *
+   * @return The start of the first bin in milliseconds.
+   */
+  public long getStart() {
+    return this.start;
+  }
+
+  /**
+   * Returns the width of a bin.
+   *
+   * @return The width of a bin in milliseconds.
+   */
+  public long getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns the time zone offset.
+   *
+   * @return The time zone offset in minutes.
+   */
+  public int getZoneOffset() {
+    return this.zoneOffset;
+  }
+
+  /**
+   * Returns the number of bins.
+   *
+   * @return The number of bins.
+   */
+  public int getNumBins() {
+    return this.numBins;
+  }
+
+}
@@ -7,19 +7,29 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.wattdepot.client.WattDepotClientException;
-import org.wattdepot.hnei.csvimport.validation.MonotonicallyIncreasingValue;
+import org.wattdepot.hnei.client.ChunkingWattDepotClient;
+import org.wattdepot.hnei.export.SourceGrade.Grade;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.hnei.util.FleetArena;
+import org.wattdepot.hnei.util.TimeSeries;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 import org.wattdepot.resource.source.jaxb.Source;
-import org.wattdepot.util.tstamp.Tstamp;
 
 /**
  * This program verifies that all data for all sources for a given time period are valid.
@@ -46,6 +56,24 @@ public class QualityClassifier extends EnergyMatrixExporter {
   /** */
   protected String gradeC_Filename;
 
+  /** Name of the file that contains the hourly coverage of each hourly source. */
+  protected String hourlyCoverageFilename;
+
+  /** Default minimum fraction of hours with data for an hourly source to be Grade A. */
+  public static final double DEFAULT_MIN_HOURLY_COVERAGE = 0.99;
+
+  /** Default time after the end of a day before its facts are stored. */
+  public static final long DEFAULT_CLOSED_DELAY = 2 * EpochTime.MILLIS_PER_DAY;
+
+  /** Default longest run of hours without data for an hourly source to be Grade A. */
+  public static final int DEFAULT_MAX_HOURLY_GAP = 3;
+
+  /** Minimum fraction of hours with data for an hourly source to be Grade A. */
+  protected double minHourlyCoverage;
+
+  /** Longest run of hours without data for an hourly source to be Grade A. */
+  protected int maxHourlyGap;
+
   /**
    * Grade A sources do not include invalid data and contain energy data from dateBeforeStartDate to
    * dateAfterEndDate.
@@ -70,6 +98,18 @@ public class QualityClassifier extends EnergyMatrixExporter {
    */
   protected List<String> gradeC_Sources;
 
+  /** File that stores facts for each source and day between runs, or null to not store them. */
+  protected Path factsFile;
+
+  /** Time after the end of a day before its facts are stored. */
+  protected long closedDelay;
+
+  /** Hourly coverage of each hourly source, in source order. */
+  protected List<SourceGrade> hourlyCoverages;
+
+  /** Arena that holds the counters of each source off the heap while it is graded, or null. */
+  protected FleetArena arena;
+
   /**
    * Creates a new QualityClassifier object.
    */
@@ -80,171 +120,172 @@ public class QualityClassifier extends EnergyMatrixExporter {
     this.gradeA_HourlyFilename = "gradeA_hourly";
     this.gradeB_Filename = "gradeB";
     this.gradeC_Filename = "gradeC";
+    this.hourlyCoverageFilename = "hourlyCoverage";
+    this.minHourlyCoverage = DEFAULT_MIN_HOURLY_COVERAGE;
+    this.maxHourlyGap = DEFAULT_MAX_HOURLY_GAP;
     this.sources = new ArrayList<>();
     this.gradeA_DailySources = new ArrayList<>();
     this.gradeA_HourlySources = new ArrayList<>();
     this.gradeB_Sources = new ArrayList<>();
     this.gradeC_Sources = new ArrayList<>();
+    this.hourlyCoverages = new ArrayList<>();
+    this.closedDelay = DEFAULT_CLOSED_DELAY;
   }
 
   /**
-   * Verifies all sensor data for all sources for a given time period.
+   * Sets the file that stores facts for each source and day between runs. Days whose facts are in
+   * the file are not fetched again, so grading a range that mostly overlaps a previous run only
+   * fetches the new days. Ranges are graded in whole days when the file is used.
    * 
-   * @return True if successful, false otherwise.
+   * @param factsFile File that stores facts, or null to fetch all data on every run.
    */
-  public boolean verifyData() {
-    this.dateBeforeStartDate = Tstamp.incrementDays(this.startTimestamp, -1);
-    this.dateAfterEndDate = Tstamp.incrementDays(this.endTimestamp, 1);
-
-    MonotonicallyIncreasingValue validator = new MonotonicallyIncreasingValue();
-
-    int totalDailySources = 0;
-    int totalHourlySources = 0;
-    int numIncompleteDailyData = 0;
-    // int numIncompleteHourlyData = 0;
-    Set<SensorData> invalidDatas = new HashSet<>();
-
-    try {
-      int count = 1;
-      for (Source s : this.sources) {
-        if (s.getProperty(SamplingInterval.SAMPLING_INTERVAL) != null
-            && s.getProperty(SamplingInterval.SAMPLING_INTERVAL).equals(SamplingInterval.DAILY)) {
-          totalDailySources++;
-        }
-        else if (s.getProperty(SamplingInterval.SAMPLING_INTERVAL) != null) {
-          totalHourlySources++;
-        }
-
-        System.out.print("Validating data for source " + s.getName());
-        System.out.println(" [" + (count++) + " of " + this.sources.size() + "]...");
-
-        var sensorDatas =
-            this.client
-                .getSensorDatas(s.getName(), this.dateBeforeStartDate, this.dateAfterEndDate);
-
-        if (sensorDatas.isEmpty()) {
-          String msg = "No data exists for source " + s.getName() + " between ";
-          msg += this.dateBeforeStartDate + " and " + this.dateAfterEndDate + ".\n\n";
-          this.gradeC_Sources.add(s.getName() + "\tNo data exists between time interval.");
-          this.log.log(Level.INFO, msg);
-          continue;
-        }
+  public void setFactsFile(Path factsFile) {
+    this.factsFile = factsFile;
+  }
 
-        XMLGregorianCalendar timestamp = sensorDatas.get(0).getTimestamp();
-
-        // If there is some missing data, e.g. start timestamp is May 2, 2011, but first timestamp
-        // is May 5, 2011, flag the source as Grade C.
-        if (Tstamp.daysBetween(timestamp, this.startTimestamp) != 0
-            && Tstamp.greaterThan(timestamp, this.startTimestamp)) {
-          String msg = "Missing data for source " + s.getName() + ".\n";
-          msg += "  Start timestamp: " + this.startTimestamp + "\n";
-          msg += "  First timestamp: " + timestamp + "\n" + "\n";
-          this.gradeC_Sources.add(s.getName()
-              + "\tMissing some data points after start date. First timestamp: " + timestamp + ".");
-          this.log.log(Level.INFO, msg);
-          continue;
-        }
+  /**
+   * Sets the arena that holds the counters of each source while it is graded. The sensor data is
+   * streamed into the arena as it is fetched, so no source ever has a full list of SensorData
+   * objects on the heap, and the counters of the whole fleet stay in the arena after grading.
+   * The series of each source has the index of the source as its id.
+   * 
+   * @param arena Arena to use, or null to grade lists of sensor data.
+   */
+  public void setArena(FleetArena arena) {
+    this.arena = arena;
+  }
 
-        timestamp = sensorDatas.get(sensorDatas.size() - 1).getTimestamp();
-
-        // For example, end timestamp is May 31, 2011, but last timestamp is May 20, 2011.
-        if (Tstamp.daysBetween(timestamp, this.endTimestamp) != 0
-            && Tstamp.lessThan(timestamp, this.endTimestamp)) {
-          String msg = "Missing data for source " + s.getName() + ".\n";
-          msg += "  End timestamp: " + this.endTimestamp + "\n";
-          msg += "  Last timestamp: " + timestamp + "\n" + "\n";
-          this.gradeC_Sources.add(s.getName()
-              + "\tMissing some data points before end date. Last timestamp: " + timestamp + ".");
-          this.log.log(Level.INFO, msg);
-          continue;
-        }
+  /**
+   * Sets the thresholds that an hourly source must meet to be Grade A; otherwise it is Grade B.
+   * 
+   * @param minCoverage Minimum fraction of hours in the time interval that contain data.
+   * @param maxGap Longest run of hours without data.
+   */
+  public void setHourlyThresholds(double minCoverage, int maxGap) {
+    if (minCoverage < 0 || minCoverage > 1 || maxGap < 0) {
+      throw new IllegalArgumentException("Invalid thresholds: " + minCoverage + ", " + maxGap);
+    }
+    this.minHourlyCoverage = minCoverage;
+    this.maxHourlyGap = maxGap;
+  }
 
-        // Test if all data points for a source are non-monotonically increasing. If a data
-        // point is not, then add source to list of Grade C sources.
-        boolean containsInvalidData = false;
-        validator.setDatas(sensorDatas);
-        for (SensorData d : sensorDatas) {
-          validator.setCurrentData(d);
-          if (!validator.validateEntry(null)) {
-            invalidDatas.add(d);
-            this.gradeC_Sources.add(s.getName()
-                + "\tContains data that are not monotonically increasing.");
-            containsInvalidData = true;
-            break;
-          }
+  /**
+   * Verifies all sensor data for all sources for a given time period. The sensor data for each
+   * source is fetched once, from the day before the start date to the day after the end date, and
+   * all checks are derived from it. Sources are graded concurrently on <code>numThreads</code>
+   * workers, and the grades are merged in source order.
+   * 
+   * @return True if successful, false otherwise.
+   */
+  public boolean verifyData() {
+    var zone = EpochTime.zoneOffset(this.startTimestamp);
+    var start = EpochTime.toMillis(this.startTimestamp);
+    var end = EpochTime.toMillis(this.endTimestamp);
+    this.dateBeforeStartDate = EpochTime.toTimestamp(start - EpochTime.MILLIS_PER_DAY, zone);
+    this.dateAfterEndDate = EpochTime.toTimestamp(end + EpochTime.MILLIS_PER_DAY, zone);
+
+    DayFactsStore store = null;
+    if (this.factsFile != null) {
+      try {
+        store = new DayFactsStore(this.factsFile, zone);
+      }
+      catch (IOException e) {
+        System.err.println("Unable to read " + this.factsFile + ": " + e.getMessage());
+        return false;
+      }
+    }
+    DayFactsStore facts = store;
+
+    int numSources = this.sources.size();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.numThreads,
+        Math.max(1, numSources)));
+    List<Future<SourceGrade>> results = new ArrayList<>();
+    AtomicInteger count = new AtomicInteger();
+    for (int i = 0; i < numSources; i++) {
+      Source s = this.sources.get(i);
+      int id = i;
+      results.add(pool.submit(() -> {
+        SourceGrade grade;
+        if (facts == null && this.arena != null) {
+          this.arena.clear(id);
+          SensorDataSeries.load(this.arena, id, ChunkingWattDepotClient.iterate(this.client,
+              s.getName(), this.dateBeforeStartDate, this.dateAfterEndDate),
+              SensorData.ENERGY_CONSUMED_TO_DATE);
+          grade = this.grade(s, this.arena.getSeries(id));
         }
-
-        if (containsInvalidData) {
-          StringBuilder builder = new StringBuilder();
-          String msg = "Source " + s.getName();
-          msg += " contains data that are not monotonically increasing:\n";
-          builder.append(msg);
-          for (SensorData d : invalidDatas) {
-            msg = "  Timestamp: " + d.getTimestamp() + " -- Energy (kWh): ";
-            builder.append(msg);
-            msg = d.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE) + "\n";
-            builder.append(msg);
-          }
-          this.log.log(Level.INFO, builder.toString());
-          invalidDatas.clear();
-          continue;
+        else if (facts == null) {
+          grade = this.grade(s, this.client.getSensorDatas(s.getName(), this.dateBeforeStartDate,
+              this.dateAfterEndDate));
         }
-
-        // Verify that data exists before start timestamp and also after end timestamp so
-        // that WattDepot can interpolate data for given time interval.
-        timestamp = Tstamp.incrementSeconds(this.startTimestamp, -1);
-
-        List<SensorData> beforeSensorDatas =
-            this.client.getSensorDatas(s.getName(), this.dateBeforeStartDate, timestamp);
-
-        if (beforeSensorDatas.isEmpty()) {
-          String msg = "No data exists for source " + s.getName() + " between ";
-          msg += this.dateBeforeStartDate + " and " + timestamp + ".\n\n";
-          this.gradeB_Sources.add(s.getName() + "\tNo data points exist before " + timestamp + ".");
-          this.log.log(Level.INFO, msg);
-          continue;
+        else {
+          grade = this.gradeDays(s, this.getDayFacts(s, facts));
         }
+        System.out.println("Validated data for source " + s.getName() + " ["
+            + count.incrementAndGet() + " of " + numSources + "].");
+        return grade;
+      }));
+    }
+    pool.shutdown();
 
-        timestamp = Tstamp.incrementSeconds(this.endTimestamp, 1);
-
-        List<SensorData> afterSensorDatas =
-            this.client.getSensorDatas(s.getName(), timestamp, this.dateAfterEndDate);
-
-        if (afterSensorDatas.isEmpty()) {
-          String msg = "No data exists for source " + s.getName() + " between ";
-          msg += timestamp + " and " + this.dateAfterEndDate + ".\n\n";
-          this.gradeB_Sources.add(s.getName() + "\tNo data points exist after " + timestamp + ".");
-          this.log.log(Level.INFO, msg);
-          continue;
-        }
+    int totalDailySources = 0;
+    int totalHourlySources = 0;
+    int numIncompleteDailyData = 0;
+    for (int i = 0; i < numSources; i++) {
+      SourceGrade grade;
+      try {
+        grade = results.get(i).get();
+      }
+      catch (InterruptedException e) {
+        pool.shutdownNow();
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      catch (ExecutionException e) {
+        pool.shutdownNow();
+        e.getCause().printStackTrace();
+        return false;
+      }
 
-        // If source contains daily data, verify that there is only one data point per day for
-        // each day in time interval.
-        if (s.getProperty(SamplingInterval.SAMPLING_INTERVAL).equals(SamplingInterval.DAILY)) {
-          int expectedNumDailyData =
-              Tstamp.daysBetween(this.dateBeforeStartDate, this.dateAfterEndDate) + 1;
-          if (expectedNumDailyData == sensorDatas.size()) {
-            this.gradeA_DailySources.add(s.getName());
-          }
-          else {
-            numIncompleteDailyData++;
-            String msg = "Number of daily data for source " + s.getName() + " is not equal to ";
-            msg += expectedNumDailyData + " [number of daily data found: ";
-            msg += sensorDatas.size() + "].\n\n";
-            this.gradeB_Sources.add(s.getName() + "\tExpected " + expectedNumDailyData
-                + " data points. Found " + sensorDatas.size() + ".");
-            this.log.log(Level.INFO, msg);
-          }
-        }
-        // TODO: If source contains hourly data...
-        else {
-          this.gradeA_HourlySources.add(s.getName());
-        }
+      String interval = this.sources.get(i).getProperty(SamplingInterval.SAMPLING_INTERVAL);
+      if (SamplingInterval.DAILY.equals(interval)) {
+        totalDailySources++;
+      }
+      else if (interval != null) {
+        totalHourlySources++;
+      }
+      if (grade.isIncompleteDaily()) {
+        numIncompleteDailyData++;
+      }
+      if (grade.getMessage() != null) {
+        this.log.log(Level.INFO, grade.getMessage());
+      }
+      if (grade.getCoverage() != null) {
+        this.hourlyCoverages.add(grade);
+      }
+      switch (grade.getGrade()) {
+      case A_DAILY:
+        this.gradeA_DailySources.add(grade.getLine());
+        break;
+      case A_HOURLY:
+        this.gradeA_HourlySources.add(grade.getLine());
+        break;
+      case B:
+        this.gradeB_Sources.add(grade.getLine());
+        break;
+      default:
+        this.gradeC_Sources.add(grade.getLine());
+        break;
       }
     }
-    catch (WattDepotClientException e) {
-      e.printStackTrace();
-      return false;
+
+    if (store != null) {
+      try {
+        store.save();
+      }
+      catch (IOException e) {
+        System.err.println("Unable to write " + this.factsFile + ": " + e.getMessage());
+        return false;
+      }
     }
 
     printStats(totalDailySources, totalHourlySources, numIncompleteDailyData);
@@ -277,7 +318,306 @@ public class QualityClassifier extends EnergyMatrixExporter {
     }
 
     filename = this.gradeC_Filename + "-" + timeInterval;
-    return writeResultsToFile(filename, this.gradeC_Sources);
+    if (!writeResultsToFile(filename, this.gradeC_Sources)) {
+      return false;
+    }
+
+    filename = this.hourlyCoverageFilename + "-" + timeInterval;
+    return writeResultsToFile(filename, getCoverageLines(this.hourlyCoverages));
+  }
+
+  /**
+   * Grades a source using its sensor data from <code>dateBeforeStartDate</code> to
+   * <code>dateAfterEndDate</code>.
+   * 
+   * @param s Source to grade.
+   * @param sensorDatas Sensor data for the source from the day before the start date to the day
+   * after the end date.
+   * @return The grade of the source.
+   */
+  protected SourceGrade grade(Source s, List<SensorData> sensorDatas) {
+    return this.grade(s, new SensorDataSeries(sortByTime(sensorDatas),
+        SensorData.ENERGY_CONSUMED_TO_DATE));
+  }
+
+  /**
+   * Grades a source using its counters from <code>dateBeforeStartDate</code> to
+   * <code>dateAfterEndDate</code>.
+   * 
+   * @param s Source to grade.
+   * @param counters Counters for the source from the day before the start date to the day after
+   * the end date.
+   * @return The grade of the source.
+   */
+  protected SourceGrade grade(Source s, TimeSeries counters) {
+    var zone = EpochTime.zoneOffset(this.startTimestamp);
+    long fromDay = EpochTime.localDay(EpochTime.toMillis(this.dateBeforeStartDate), zone);
+    long toDay = EpochTime.localDay(EpochTime.toMillis(this.dateAfterEndDate), zone);
+    return this.gradeDays(s, DayFacts.summarize(sortByTime(counters), zone, fromDay, toDay));
+  }
+
+  /**
+   * Returns a series sorted by timestamp.
+   * 
+   * @param series A series.
+   * @return <code>series</code> if it is already sorted, or a sorted copy of it on the heap.
+   */
+  private static TimeSeries sortByTime(TimeSeries series) {
+    int n = series.size();
+    for (int i = 1; i < n; i++) {
+      if (series.getTime(i) < series.getTime(i - 1)) {
+        Integer[] order = new Integer[n];
+        for (int j = 0; j < n; j++) {
+          order[j] = j;
+        }
+        Arrays.sort(order, Comparator.comparingLong(series::getTime));
+        long[] times = new long[n];
+        double[] values = new double[n];
+        for (int j = 0; j < n; j++) {
+          times[j] = series.getTime(order[j]);
+          values[j] = series.getValue(order[j]);
+        }
+        return TimeSeries.of(times, values, n);
+      }
+    }
+    return series;
+  }
+
+  /**
+   * Returns sensor data sorted by timestamp.
+   * 
+   * @param datas Sensor data.
+   * @return <code>datas</code> if it is already sorted, or a sorted copy of it.
+   */
+  private static List<SensorData> sortByTime(List<SensorData> datas) {
+    for (int i = 1; i < datas.size(); i++) {
+      if (EpochTime.toMillis(datas.get(i).getTimestamp()) < EpochTime.toMillis(datas.get(i - 1)
+          .getTimestamp())) {
+        List<SensorData> sorted = new ArrayList<>(datas);
+        sorted.sort(Comparator.comparingLong(d -> EpochTime.toMillis(d.getTimestamp())));
+        return sorted;
+      }
+    }
+    return datas;
+  }
+
+  /**
+   * Returns the facts for each day from the day before the start date to the day after the end
+   * date. Days that are in the store are not fetched again; consecutive days that are not are
+   * fetched with one request, and those that are closed and have readings are added to the store.
+   * 
+   * @param s Source to get facts for.
+   * @param store Facts that were computed by previous runs.
+   * @return Facts for each day in order.
+   * @throws WattDepotClientException if there are problems fetching data from the server.
+   */
+  protected List<DayFacts> getDayFacts(Source s, DayFactsStore store)
+      throws WattDepotClientException {
+    var zone = store.getZoneOffset();
+    long fromDay = EpochTime.localDay(EpochTime.toMillis(this.dateBeforeStartDate), zone);
+    long toDay = EpochTime.localDay(EpochTime.toMillis(this.dateAfterEndDate), zone);
+    long openDay = EpochTime.localDay(System.currentTimeMillis() - this.closedDelay, zone);
+
+    DayFacts[] days = new DayFacts[(int) (toDay - fromDay + 1)];
+    for (int i = 0; i < days.length && fromDay + i < openDay; i++) {
+      days[i] = store.get(s.getName(), fromDay + i);
+    }
+    for (int i = 0; i < days.length; i++) {
+      if (days[i] != null) {
+        continue;
+      }
+      int j = i;
+      while (j + 1 < days.length && days[j + 1] == null) {
+        j++;
+      }
+      List<SensorData> datas =
+          this.client.getSensorDatas(s.getName(),
+              EpochTime.toTimestamp(DayFacts.dayStart(fromDay + i, zone), zone),
+              EpochTime.toTimestamp(DayFacts.dayStart(fromDay + j + 1, zone) - 1, zone));
+      for (DayFacts day : DayFacts.summarize(sortByTime(datas), zone, fromDay + i, fromDay + j)) {
+        days[(int) (day.getDay() - fromDay)] = day;
+        // A day without readings may still be imported late, so it is fetched again next time.
+        if (day.getDay() < openDay && day.getCount() > 0) {
+          store.put(s.getName(), day);
+        }
+      }
+      i = j;
+    }
+    return Arrays.asList(days);
+  }
+
+  /**
+   * Grades a source by combining its facts for each day from the day before the start date to the
+   * day after the end date.
+   * 
+   * @param s Source to grade.
+   * @param days Facts for each day in order.
+   * @return The grade of the source.
+   */
+  protected SourceGrade gradeDays(Source s, List<DayFacts> days) {
+    var zone = EpochTime.zoneOffset(this.startTimestamp);
+    var start = EpochTime.toMillis(this.startTimestamp);
+    var end = EpochTime.toMillis(this.endTimestamp);
+    var before = EpochTime.toMillis(this.dateBeforeStartDate);
+    var after = EpochTime.toMillis(this.dateAfterEndDate);
+    String name = s.getName();
+
+    DayFacts first = null;
+    DayFacts last = null;
+    int count = 0;
+    for (DayFacts day : days) {
+      if (day.getCount() > 0) {
+        first = first == null ? day : first;
+        last = day;
+        count += day.getCount();
+      }
+    }
+    if (first == null) {
+      String msg = "No data exists for source " + name + " between ";
+      msg += this.dateBeforeStartDate + " and " + this.dateAfterEndDate + ".\n\n";
+      return new SourceGrade(name, Grade.C, "No data exists between time interval.", msg, false);
+    }
+
+    // If there is some missing data, e.g. start timestamp is May 2, 2011, but first timestamp
+    // is May 5, 2011, flag the source as Grade C.
+    long time = first.getFirstTime();
+    XMLGregorianCalendar timestamp = EpochTime.toTimestamp(time, zone);
+    if (EpochTime.daysBetween(time, start, zone) != 0 && time > start) {
+      String msg = "Missing data for source " + name + ".\n";
+      msg += "  Start timestamp: " + this.startTimestamp + "\n";
+      msg += "  First timestamp: " + timestamp + "\n" + "\n";
+      return new SourceGrade(name, Grade.C,
+          "Missing some data points after start date. First timestamp: " + timestamp + ".", msg,
+          false);
+    }
+
+    // For example, end timestamp is May 31, 2011, but last timestamp is May 20, 2011.
+    time = last.getLastTime();
+    timestamp = EpochTime.toTimestamp(time, zone);
+    if (EpochTime.daysBetween(time, end, zone) != 0 && time < end) {
+      String msg = "Missing data for source " + name + ".\n";
+      msg += "  End timestamp: " + this.endTimestamp + "\n";
+      msg += "  Last timestamp: " + timestamp + "\n" + "\n";
+      return new SourceGrade(name, Grade.C,
+          "Missing some data points before end date. Last timestamp: " + timestamp + ".", msg,
+          false);
+    }
+
+    // Test if all data points for a source are non-monotonically increasing, within each day and
+    // from the last reading of one day to the first reading of the next. If a data point is not,
+    // then flag the source as Grade C.
+    DayFacts previous = null;
+    for (DayFacts day : days) {
+      if (day.getCount() == 0) {
+        continue;
+      }
+      long violationTime = day.getViolationTime();
+      double violationCounter = day.getViolationCounter();
+      if (previous != null && day.getFirstCounter() < previous.getLastCounter()) {
+        violationTime = day.getFirstTime();
+        violationCounter = day.getFirstCounter();
+      }
+      if (violationTime != DayFacts.NO_VIOLATION) {
+        String msg = "Source " + name + " contains data that are not monotonically increasing:\n";
+        msg += "  Timestamp: " + EpochTime.toTimestamp(violationTime, zone) + " -- Energy (kWh): ";
+        msg += violationCounter + "\n";
+        return new SourceGrade(name, Grade.C,
+            "Contains data that are not monotonically increasing.", msg, false);
+      }
+      previous = day;
+    }
+
+    // Verify that data exists before start timestamp and also after end timestamp so
+    // that WattDepot can interpolate data for given time interval.
+    if (first.getFirstTime() > start - EpochTime.MILLIS_PER_SECOND) {
+      timestamp = EpochTime.toTimestamp(start - EpochTime.MILLIS_PER_SECOND, zone);
+      String msg = "No data exists for source " + name + " between ";
+      msg += this.dateBeforeStartDate + " and " + timestamp + ".\n\n";
+      return new SourceGrade(name, Grade.B, "No data points exist before " + timestamp + ".", msg,
+          false);
+    }
+    if (last.getLastTime() < end + EpochTime.MILLIS_PER_SECOND) {
+      timestamp = EpochTime.toTimestamp(end + EpochTime.MILLIS_PER_SECOND, zone);
+      String msg = "No data exists for source " + name + " between ";
+      msg += timestamp + " and " + this.dateAfterEndDate + ".\n\n";
+      return new SourceGrade(name, Grade.B, "No data points exist after " + timestamp + ".", msg,
+          false);
+    }
+
+    // If source contains daily data, verify that there is only one data point per day for
+    // each day in time interval.
+    if (SamplingInterval.DAILY.equals(s.getProperty(SamplingInterval.SAMPLING_INTERVAL))) {
+      int expectedNumDailyData = EpochTime.daysBetween(before, after, zone) + 1;
+      if (expectedNumDailyData == count) {
+        return new SourceGrade(name, Grade.A_DAILY, null, null, false);
+      }
+      String msg = "Number of daily data for source " + name + " is not equal to ";
+      msg += expectedNumDailyData + " [number of daily data found: " + count + "].\n\n";
+      return new SourceGrade(name, Grade.B, "Expected " + expectedNumDailyData
+          + " data points. Found " + count + ".", msg, true);
+    }
+
+    // Otherwise, verify that enough hours in the time interval contain data, and that no run of
+    // hours without data is too long. Each covered hour of each day stands for its readings.
+    List<Long> hours = new ArrayList<>();
+    for (DayFacts day : days) {
+      for (int bits = day.getHours(); bits != 0; bits &= bits - 1) {
+        hours.add(DayFacts.dayStart(day.getDay(), zone)
+            + Integer.numberOfTrailingZeros(bits) * EpochTime.MILLIS_PER_HOUR);
+      }
+    }
+    long[] times = new long[hours.size()];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = hours.get(i);
+    }
+    HourlyCoverage coverage = new HourlyCoverage(times, start, end);
+    if (coverage.getCoverage() >= this.minHourlyCoverage
+        && coverage.getLargestGap() <= this.maxHourlyGap) {
+      return new SourceGrade(name, Grade.A_HOURLY, null, null, false, coverage);
+    }
+    String reason =
+        String.format("Hourly coverage: %.1f%% of %d hours. Largest gap: %d hours.",
+            100 * coverage.getCoverage(), coverage.getNumHours(), coverage.getLargestGap());
+    String msg = "Source " + name + " is missing hourly data. " + reason + "\n\n";
+    return new SourceGrade(name, Grade.B, reason, msg, false, coverage);
+  }
+
+  /**
+   * Returns a header and one tab-separated line per hourly source with the number of hours covered,
+   * the largest gap, the gap histogram, and the coverage bitmap in hexadecimal.
+   * 
+   * @param grades Grades of hourly sources.
+   * @return Lines to write to the hourly coverage file, sorted by source name.
+   */
+  public static List<String> getCoverageLines(List<SourceGrade> grades) {
+    List<String> lines = new ArrayList<>();
+    for (SourceGrade grade : grades) {
+      HourlyCoverage coverage = grade.getCoverage();
+      StringBuilder builder = new StringBuilder(grade.getSourceName());
+      builder.append('\t').append(coverage.getNumHours());
+      builder.append('\t').append(coverage.getNumCovered());
+      builder.append('\t').append(String.format("%.4f", coverage.getCoverage()));
+      builder.append('\t').append(coverage.getLargestGap());
+      for (int count : coverage.getHistogram()) {
+        builder.append('\t').append(count);
+      }
+      builder.append('\t').append(coverage.toHex());
+      lines.add(builder.toString());
+    }
+    Collections.sort(lines);
+
+    StringBuilder header = new StringBuilder("Source\tHours\tCovered\tCoverage\tLargestGap");
+    for (int i = 0; i < HourlyCoverage.NUM_BUCKETS; i++) {
+      header.append("\tGaps").append(1 << i);
+      if (i == HourlyCoverage.NUM_BUCKETS - 1) {
+        header.append('+');
+      }
+      else if (i > 0) {
+        header.append('-').append((2 << i) - 1);
+      }
+    }
+    lines.add(0, header.append("\tBitmap").toString());
+    return lines;
   }
 
   /**
@@ -357,10 +697,38 @@ public class QualityClassifier extends EnergyMatrixExporter {
    * Command-line program that will generate a CSV file containing energy information for one or
    * more sources over a given time period and at a given sampling interval.
    * 
-   * @param args One argument to specify whether data for all sources should be exported.
+   * @param args [-threads n] to grade sources with n workers, [-facts file] to store facts for each
+   * source and day in a file and only fetch days that are not in it, [-arena] to hold counters off
+   * the heap, or [-arena-dir dir] to hold them in a memory-mapped file in a directory.
    */
   public static void main(String[] args) {
     var classifier = new QualityClassifier();
+    for (var i = 0; i < args.length; i++) {
+      if ("-threads".equals(args[i]) && i + 1 < args.length) {
+        try {
+          classifier.setNumThreads(Integer.parseInt(args[++i]));
+        }
+        catch (IllegalArgumentException e) {
+          System.err.println("Invalid number of threads: " + args[i]);
+          System.exit(1);
+        }
+      }
+      else if ("-facts".equals(args[i]) && i + 1 < args.length) {
+        classifier.setFactsFile(Paths.get(args[++i]));
+      }
+      else if ("-arena".equals(args[i])) {
+        classifier.setArena(new FleetArena());
+      }
+      else if ("-arena-dir".equals(args[i]) && i + 1 < args.length) {
+        try {
+          classifier.setArena(FleetArena.createTemp(Paths.get(args[++i])));
+        }
+        catch (IOException e) {
+          System.err.println("Unable to create arena: " + e.getMessage());
+          System.exit(1);
+        }
+      }
+    }
     if (!classifier.setup() || !classifier.setupLogger() || !classifier.getAllSources()) {
       System.exit(1);
     }
@@ -0,0 +1,621 @@
+package org.wattdepot.hnei.export;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.client.ChunkingWattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * Hourly, daily, weekly, and monthly aggregates of the raw cumulative counters of some sources over
+ * a time period. For every period the rollup holds the energy consumed (the counter interpolated at
+ * the end of the period minus the counter interpolated at its start, as in CounterInterpolator),
+ * the minimum and maximum average power between consecutive readings that end in the period, and
+ * the number of readings. All levels are computed from the readings of a source in a single pass,
+ * and the rollup is stored in a compressed local file, so coarse queries can be answered without
+ * contacting the server. Periods are in local time; weeks start on Monday.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class Rollup {
+
+  /**
+   * Length of the periods of a rollup.
+   */
+  public enum Level {
+
+    /** One hour. */
+    HOURLY,
+
+    /** One local day. */
+    DAILY,
+
+    /** One local week, starting on Monday. */
+    WEEKLY,
+
+    /** One local month. */
+    MONTHLY;
+
+    /**
+     * Returns the start of the period that contains a time.
+     *
+     * @param time Time in milliseconds.
+     * @param zoneOffset Time zone offset in minutes.
+     * @return Start of the period in milliseconds.
+     */
+    public long floor(long time, int zoneOffset) {
+      long zone = zoneOffset * EpochTime.MILLIS_PER_MINUTE;
+      switch (this) {
+      case HOURLY:
+        return Math.floorDiv(time + zone, EpochTime.MILLIS_PER_HOUR) * EpochTime.MILLIS_PER_HOUR
+            - zone;
+      case DAILY:
+        return EpochTime.startOfDay(time, zoneOffset);
+      case WEEKLY:
+        // Day 0 (1970-01-01) was a Thursday, i.e. 3 days after a Monday.
+        long day = EpochTime.localDay(time, zoneOffset);
+        return (day - Math.floorMod(day + 3, 7)) * EpochTime.MILLIS_PER_DAY - zone;
+      default:
+        return EpochTime.startOfMonth(time, zoneOffset);
+      }
+    }
+
+    /**
+     * Returns the start of the period after the one that starts at a given time.
+     *
+     * @param periodStart Start of a period in milliseconds.
+     * @param zoneOffset Time zone offset in minutes.
+     * @return Start of the next period in milliseconds.
+     */
+    public long next(long periodStart, int zoneOffset) {
+      if (this == MONTHLY) {
+        return EpochTime.startOfNextMonth(periodStart, zoneOffset);
+      }
+      return periodStart + this.getWidth();
+    }
+
+    /**
+     * Returns the length of a period.
+     *
+     * @return The length in milliseconds, or 0 if periods do not all have the same length.
+     */
+    public long getWidth() {
+      switch (this) {
+      case HOURLY:
+        return EpochTime.MILLIS_PER_HOUR;
+      case DAILY:
+        return EpochTime.MILLIS_PER_DAY;
+      case WEEKLY:
+        return 7 * EpochTime.MILLIS_PER_DAY;
+      default:
+        return 0;
+      }
+    }
+
+    /**
+     * Returns the level whose periods have a given length.
+     *
+     * @param interval Length of a period in milliseconds.
+     * @return The level, or null if no level has periods of that length.
+     */
+    public static Level forInterval(long interval) {
+      for (Level level : values()) {
+        if (level.getWidth() == interval) {
+          return level;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the level with the given name, ignoring case.
+     *
+     * @param name Name of a level, e.g. daily.
+     * @return The level, or null if there is no level with that name.
+     */
+    public static Level parse(String name) {
+      try {
+        return valueOf(name.toUpperCase(Locale.US));
+      }
+      catch (IllegalArgumentException e) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Aggregates of one source at one level.
+   */
+  public static final class Series {
+
+    /** Energy consumed in each period in Wh, or NaN if unknown. */
+    private final float[] energy;
+
+    /** Minimum average power between readings in each period in W, or NaN if unknown. */
+    private final float[] minPower;
+
+    /** Maximum average power between readings in each period in W, or NaN if unknown. */
+    private final float[] maxPower;
+
+    /** Number of readings in each period. */
+    private final int[] count;
+
+    /**
+     * Creates a new Series object without any data.
+     *
+     * @param numPeriods Number of periods.
+     */
+    Series(int numPeriods) {
+      this.energy = new float[numPeriods];
+      this.minPower = new float[numPeriods];
+      this.maxPower = new float[numPeriods];
+      this.count = new int[numPeriods];
+      Arrays.fill(this.energy, Float.NaN);
+      Arrays.fill(this.minPower, Float.NaN);
+      Arrays.fill(this.maxPower, Float.NaN);
+    }
+
+    /**
+     * Returns the number of periods.
+     *
+     * @return The number of periods.
+     */
+    public int size() {
+      return this.count.length;
+    }
+
+    /**
+     * Returns the energy consumed in a period.
+     *
+     * @param period Index of the period.
+     * @return Energy in Wh, or NaN if it is not known.
+     */
+    public double getEnergy(int period) {
+      return this.energy[period];
+    }
+
+    /**
+     * Returns the minimum average power between consecutive readings that end in a period.
+     *
+     * @param period Index of the period.
+     * @return Power in W, or NaN if there are no such readings.
+     */
+    public double getMinPower(int period) {
+      return this.minPower[period];
+    }
+
+    /**
+     * Returns the maximum average power between consecutive readings that end in a period.
+     *
+     * @param period Index of the period.
+     * @return Power in W, or NaN if there are no such readings.
+     */
+    public double getMaxPower(int period) {
+      return this.maxPower[period];
+    }
+
+    /**
+     * Returns the number of readings in a period.
+     *
+     * @param period Index of the period.
+     * @return The number of readings.
+     */
+    public int getCount(int period) {
+      return this.count[period];
+    }
+
+    /**
+     * Adds the average power between a reading and the one before it to a period.
+     *
+     * @param period Index of the period.
+     * @param power Average power in W.
+     */
+    private void addPower(int period, double power) {
+      if (Float.isNaN(this.minPower[period]) || power < this.minPower[period]) {
+        this.minPower[period] = (float) power;
+      }
+      if (Float.isNaN(this.maxPower[period]) || power > this.maxPower[period]) {
+        this.maxPower[period] = (float) power;
+      }
+    }
+  }
+
+  /** Magic number at the start of the file ("HRUP"). */
+  private static final int MAGIC = 0x48525550;
+
+  /** Version of the file format. */
+  private static final int VERSION = 1;
+
+  /** Time before the start and after the end for which readings are fetched. */
+  private static final long MARGIN = EpochTime.MILLIS_PER_DAY;
+
+  /** Start of the time period in milliseconds. */
+  private final long start;
+
+  /** End of the time period in milliseconds. */
+  private final long end;
+
+  /** Time zone offset in minutes. */
+  private final int zoneOffset;
+
+  /** Boundaries of the periods of each level: the start of each period and the end of the last. */
+  private final long[][] boundaries;
+
+  /** Aggregates of each source at each level, in the order in which sources were added. */
+  private final Map<String, Series[]> series;
+
+  /**
+   * Creates a new Rollup object without any sources. The periods of each level cover the time
+   * period; the first starts at or before <code>start</code>, and the last ends at or after
+   * <code>end</code>.
+   *
+   * @param start Start of the time period in milliseconds.
+   * @param end End of the time period in milliseconds.
+   * @param zoneOffset Time zone offset in minutes.
+   */
+  public Rollup(long start, long end, int zoneOffset) {
+    this.start = start;
+    this.end = end;
+    this.zoneOffset = zoneOffset;
+    Level[] levels = Level.values();
+    this.boundaries = new long[levels.length][];
+    for (Level level : levels) {
+      List<Long> times = new ArrayList<>();
+      long time = level.floor(start, zoneOffset);
+      times.add(time);
+      while (time < end) {
+        time = level.next(time, zoneOffset);
+        times.add(time);
+      }
+      this.boundaries[level.ordinal()] = times.stream().mapToLong(Long::longValue).toArray();
+    }
+    this.series = new LinkedHashMap<>();
+  }
+
+  /**
+   * Returns the start of the time period.
+   *
+   * @return The start in milliseconds.
+   */
+  public long getStart() {
+    return this.start;
+  }
+
+  /**
+   * Returns the end of the time period.
+   *
+   * @return The end in milliseconds.
+   */
+  public long getEnd() {
+    return this.end;
+  }
+
+  /**
+   * Returns the time zone offset of the periods.
+   *
+   * @return The time zone offset in minutes.
+   */
+  public int getZoneOffset() {
+    return this.zoneOffset;
+  }
+
+  /**
+   * Returns the number of periods at a level.
+   *
+   * @param level A level.
+   * @return The number of periods.
+   */
+  public int getNumPeriods(Level level) {
+    return this.boundaries[level.ordinal()].length - 1;
+  }
+
+  /**
+   * Returns the start of a period.
+   *
+   * @param level A level.
+   * @param period Index of the period.
+   * @return The start of the period in milliseconds.
+   */
+  public long getPeriodStart(Level level, int period) {
+    return this.boundaries[level.ordinal()][period];
+  }
+
+  /**
+   * Computes the aggregates of one source at every level in a single pass over its readings.
+   * Readings must be in ascending order of time; a reading that is not later than the one before it
+   * is ignored. Readings outside the time period are used only to interpolate the counter at the
+   * boundaries of the first and last periods.
+   *
+   * @param readings Readings of the source, e.g. from ChunkingWattDepotClient.iterate.
+   * @return The aggregates at each level, indexed by the ordinal of the level.
+   */
+  public Series[] aggregate(Iterator<SensorData> readings) {
+    Level[] levels = Level.values();
+    Series[] result = new Series[levels.length];
+    int[] next = new int[levels.length];
+    double[] counterAtBoundary = new double[levels.length];
+    for (int l = 0; l < levels.length; l++) {
+      result[l] = new Series(this.boundaries[l].length - 1);
+      counterAtBoundary[l] = Double.NaN;
+    }
+
+    boolean hasPrevious = false;
+    long previousTime = 0;
+    double previousCounter = 0;
+    while (readings.hasNext()) {
+      SensorData data = readings.next();
+      long time = EpochTime.toMillis(data.getTimestamp());
+      double counter = data.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE);
+      if (hasPrevious && time <= previousTime) {
+        continue;
+      }
+      double power = Double.NaN;
+      if (hasPrevious) {
+        power = (counter - previousCounter) * EpochTime.MILLIS_PER_HOUR / (time - previousTime);
+      }
+      for (int l = 0; l < levels.length; l++) {
+        long[] b = this.boundaries[l];
+        // Close every period that ends at or before this reading.
+        while (next[l] < b.length && time >= b[next[l]]) {
+          long boundary = b[next[l]];
+          double value = Double.NaN;
+          if (time == boundary) {
+            value = counter;
+          }
+          else if (hasPrevious) {
+            double fraction = (double) (boundary - previousTime) / (time - previousTime);
+            value = previousCounter + fraction * (counter - previousCounter);
+          }
+          if (next[l] > 0) {
+            result[l].energy[next[l] - 1] = (float) (value - counterAtBoundary[l]);
+          }
+          counterAtBoundary[l] = value;
+          next[l]++;
+        }
+        int period = next[l] - 1;
+        if (period >= 0 && period < result[l].size()) {
+          result[l].count[period]++;
+          if (hasPrevious) {
+            result[l].addPower(period, power);
+          }
+        }
+      }
+      hasPrevious = true;
+      previousTime = time;
+      previousCounter = counter;
+    }
+    return result;
+  }
+
+  /**
+   * Stores the aggregates of a source, replacing any that were stored before.
+   *
+   * @param sourceName Name of the source.
+   * @param aggregates Aggregates at each level, as returned by {@link #aggregate(Iterator)}.
+   */
+  public synchronized void put(String sourceName, Series[] aggregates) {
+    this.series.put(sourceName, aggregates);
+  }
+
+  /**
+   * Returns the aggregates of a source at a level.
+   *
+   * @param sourceName Name of the source.
+   * @param level A level.
+   * @return The aggregates, or null if the rollup does not contain the source.
+   */
+  public synchronized Series getSeries(String sourceName, Level level) {
+    Series[] aggregates = this.series.get(sourceName);
+    return aggregates == null ? null : aggregates[level.ordinal()];
+  }
+
+  /**
+   * Returns the names of the sources in the rollup.
+   *
+   * @return The names, in the order in which the sources were added.
+   */
+  public synchronized List<String> getSourceNames() {
+    return new ArrayList<>(this.series.keySet());
+  }
+
+  /**
+   * Returns true if the rollup contains every one of the given sources.
+   *
+   * @param sourceNames Names of sources.
+   * @return True if every source is in the rollup, false otherwise.
+   */
+  public synchronized boolean containsAll(Collection<String> sourceNames) {
+    return this.series.keySet().containsAll(sourceNames);
+  }
+
+  /**
+   * Returns the index of the period that starts at a given time.
+   *
+   * @param level A level.
+   * @param periodStart Start of a period in milliseconds.
+   * @return The index, or -1 if no period of that level starts at that time.
+   */
+  public int indexOf(Level level, long periodStart) {
+    long[] b = this.boundaries[level.ordinal()];
+    int index = Arrays.binarySearch(b, 0, b.length - 1, periodStart);
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * Returns true if the rollup can answer a query for consecutive periods of a level, i.e. if the
+   * time zone matches, a period starts at <code>from</code>, and all periods are in the rollup.
+   *
+   * @param level A level.
+   * @param from Start of the first period in milliseconds.
+   * @param numPeriods Number of periods.
+   * @param zone Time zone offset of the query in minutes.
+   * @return True if the query can be answered from the rollup, false otherwise.
+   */
+  public boolean covers(Level level, long from, int numPeriods, int zone) {
+    int first = this.indexOf(level, from);
+    return zone == this.zoneOffset && first >= 0 && first + numPeriods <= this.getNumPeriods(level);
+  }
+
+  /**
+   * Returns the energy consumed by a source in consecutive periods of a level.
+   *
+   * @param sourceName Name of the source.
+   * @param level A level.
+   * @param from Start of the first period in milliseconds; must be the start of a period.
+   * @param numPeriods Number of periods.
+   * @return Energy in Wh in each period; NaN for every period if the rollup does not contain the
+   * source.
+   */
+  public double[] getEnergy(String sourceName, Level level, long from, int numPeriods) {
+    double[] energy = new double[numPeriods];
+    Series s = this.getSeries(sourceName, level);
+    int first = this.indexOf(level, from);
+    for (int i = 0; i < numPeriods; i++) {
+      energy[i] = s == null || first < 0 ? Double.NaN : s.getEnergy(first + i);
+    }
+    return energy;
+  }
+
+  /**
+   * Fetches the readings of each source and adds its aggregates to the rollup. Readings are streamed
+   * in chunks if the client is a ChunkingWattDepotClient, and sources are processed on
+   * <code>numThreads</code> threads.
+   *
+   * @param client Client used to fetch readings.
+   * @param sourceNames Names of the sources.
+   * @param numThreads Number of sources that are processed at the same time.
+   * @return True if successful, false otherwise.
+   */
+  public boolean fetch(WattDepotClient client, List<String> sourceNames, int numThreads) {
+    // Weeks and months can start days before the first hour, so every level needs a reading
+    // before its own first boundary.
+    long first = Long.MAX_VALUE;
+    long last = 0;
+    for (long[] b : this.boundaries) {
+      first = Math.min(first, b[0]);
+      last = Math.max(last, b[b.length - 1]);
+    }
+    var from = EpochTime.toTimestamp(first - MARGIN, this.zoneOffset);
+    var to = EpochTime.toTimestamp(last + MARGIN, this.zoneOffset);
+
+    int numSources = sourceNames.size();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads,
+        Math.max(1, numSources)));
+    List<Future<?>> results = new ArrayList<>();
+    AtomicInteger count = new AtomicInteger();
+    for (String name : sourceNames) {
+      results.add(pool.submit(() -> {
+        this.put(name, this.aggregate(ChunkingWattDepotClient.iterate(client, name, from, to)));
+        System.out.println("Rolled up data for source " + name + " [" + count.incrementAndGet()
+            + " of " + numSources + "].");
+        return null;
+      }));
+    }
+    pool.shutdown();
+
+    for (Future<?> result : results) {
+      try {
+        result.get();
+      }
+      catch (InterruptedException e) {
+        pool.shutdownNow();
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      catch (ExecutionException e) {
+        pool.shutdownNow();
+        e.getCause().printStackTrace();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the rollup to a temporary file and then replaces the file with it.
+   *
+   * @param file File to write to.
+   * @throws IOException if the file cannot be written.
+   */
+  public synchronized void write(Path file) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(Files.newOutputStream(temp))))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(this.start);
+      out.writeLong(this.end);
+      out.writeInt(this.zoneOffset);
+      out.writeInt(this.series.size());
+      for (Map.Entry<String, Series[]> entry : this.series.entrySet()) {
+        out.writeUTF(entry.getKey());
+        for (Series s : entry.getValue()) {
+          for (int i = 0; i < s.size(); i++) {
+            out.writeFloat(s.energy[i]);
+            out.writeFloat(s.minPower[i]);
+            out.writeFloat(s.maxPower[i]);
+            out.writeInt(s.count[i]);
+          }
+        }
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a rollup that was written with {@link #write(Path)}.
+   *
+   * @param file File to read.
+   * @return The rollup.
+   * @throws IOException if the file cannot be read or is not in the expected format.
+   */
+  public static Rollup read(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException(file + " is not a rollup file.");
+      }
+      Rollup rollup = new Rollup(in.readLong(), in.readLong(), in.readInt());
+      int numSources = in.readInt();
+      for (int i = 0; i < numSources; i++) {
+        String sourceName = in.readUTF();
+        Series[] aggregates = new Series[Level.values().length];
+        for (Level level : Level.values()) {
+          Series s = new Series(rollup.getNumPeriods(level));
+          for (int j = 0; j < s.size(); j++) {
+            s.energy[j] = in.readFloat();
+            s.minPower[j] = in.readFloat();
+            s.maxPower[j] = in.readFloat();
+            s.count[j] = in.readInt();
+          }
+          aggregates[level.ordinal()] = s;
+        }
+        rollup.put(sourceName, aggregates);
+      }
+      return rollup;
+    }
+  }
+
+}
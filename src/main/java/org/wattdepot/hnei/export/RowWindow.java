@@ -0,0 +1,119 @@
+package org.wattdepot.hnei.export;
+
+/**
+ * A fixed number of matrix rows that are being filled in concurrently by workers while another
+ * thread writes completed rows out in order. Workers block before filling in a row that is too far
+ * ahead of the last row written, so the amount of memory used does not depend on the number of
+ * rows in the matrix.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+class RowWindow {
+
+  /** Cells for the rows that are currently in the window. */
+  private final double[][] slots;
+
+  /** Number of cells that still need to be filled in for each slot. */
+  private final int[] remaining;
+
+  /** Number of cells in a row. */
+  private final int numCells;
+
+  /** Index of the next row to be written, i.e. the first row in the window. */
+  private int written;
+
+  /** True if a worker failed and the matrix cannot be completed. */
+  private boolean failed;
+
+  /**
+   * Creates a new RowWindow object.
+   *
+   * @param size Maximum number of rows that can be filled in at the same time.
+   * @param numCells Number of cells in a row.
+   */
+  RowWindow(int size, int numCells) {
+    this.slots = new double[size][numCells];
+    this.remaining = new int[size];
+    this.numCells = numCells;
+    for (int i = 0; i < size; i++) {
+      this.remaining[i] = numCells;
+    }
+    this.written = 0;
+    this.failed = false;
+  }
+
+  /**
+   * Waits until a row is in the window and returns the cells for that row. Each cell must be filled
+   * in by exactly one worker, which then calls {@link #complete(int, int)}.
+   *
+   * @param row Index of a row.
+   * @return Cells for the row, or null if a worker failed.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  synchronized double[] acquire(int row) throws InterruptedException {
+    while (row >= this.written + this.slots.length && !this.failed) {
+      this.wait();
+    }
+    return this.failed ? null : this.slots[row % this.slots.length];
+  }
+
+  /**
+   * Records that cells in a row have been filled in.
+   *
+   * @param row Index of a row.
+   * @param numFilled Number of cells filled in.
+   */
+  synchronized void complete(int row, int numFilled) {
+    int slot = row % this.slots.length;
+    this.remaining[slot] -= numFilled;
+    if (this.remaining[slot] == 0) {
+      this.notifyAll();
+    }
+  }
+
+  /**
+   * Waits until the next row to be written is complete.
+   *
+   * @param timeout Maximum time to wait in milliseconds.
+   * @return Cells for the row, or null if the row is not complete after <code>timeout</code>
+   * milliseconds or if a worker failed.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  synchronized double[] awaitNext(long timeout) throws InterruptedException {
+    int slot = this.written % this.slots.length;
+    long deadline = System.currentTimeMillis() + timeout;
+    long wait = timeout;
+    while (this.remaining[slot] > 0 && !this.failed && wait > 0) {
+      this.wait(wait);
+      wait = deadline - System.currentTimeMillis();
+    }
+    return this.remaining[slot] == 0 && !this.failed ? this.slots[slot] : null;
+  }
+
+  /**
+   * Records that the next row has been written, making room for another row in the window.
+   */
+  synchronized void release() {
+    this.remaining[this.written % this.slots.length] = this.numCells;
+    this.written++;
+    this.notifyAll();
+  }
+
+  /**
+   * Records that a worker failed, which wakes up all threads waiting on this window.
+   */
+  synchronized void fail() {
+    this.failed = true;
+    this.notifyAll();
+  }
+
+  /**
+   * Returns true if a worker failed, false otherwise.
+   *
+   * @return True if a worker failed, false otherwise.
+   */
+  synchronized boolean isFailed() {
+    return this.failed;
+  }
+
+}
@@ -0,0 +1,85 @@
+package org.wattdepot.hnei.export;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.hnei.util.FleetArena;
+import org.wattdepot.hnei.util.TimeSeries;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * A TimeSeries view of a property of a list of sensor data, so that code written against
+ * TimeSeries works both on sensor data fetched from the server and on series in a FleetArena.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class SensorDataSeries implements TimeSeries {
+
+  /** Number of points that are copied into an arena at a time. */
+  private static final int BATCH_SIZE = 1024;
+
+  /** Sensor data. */
+  private final List<SensorData> datas;
+
+  /** Property that gives the value of each point. */
+  private final String property;
+
+  /**
+   * Creates a new SensorDataSeries object.
+   *
+   * @param datas Sensor data.
+   * @param property Property that gives the value of each point.
+   */
+  public SensorDataSeries(List<SensorData> datas, String property) {
+    this.datas = datas;
+    this.property = property;
+  }
+
+  @Override
+  public int size() {
+    return this.datas.size();
+  }
+
+  @Override
+  public long getTime(int index) {
+    return EpochTime.toMillis(this.datas.get(index).getTimestamp());
+  }
+
+  @Override
+  public double getValue(int index) {
+    return this.datas.get(index).getPropertyAsDouble(this.property);
+  }
+
+  /**
+   * Appends a property of sensor data to a series in an arena, a batch at a time, so that the
+   * sensor data can be garbage collected as soon as it has been read.
+   *
+   * @param arena Arena to append to.
+   * @param id Id of the series.
+   * @param datas Sensor data, e.g. from ChunkingWattDepotClient.iterate.
+   * @param property Property that gives the value of each point.
+   * @return The number of points appended.
+   * @throws IOException if the arena cannot allocate space.
+   */
+  public static int load(FleetArena arena, int id, Iterator<SensorData> datas, String property)
+      throws IOException {
+    long[] times = new long[BATCH_SIZE];
+    double[] values = new double[BATCH_SIZE];
+    int n = 0;
+    int total = 0;
+    while (datas.hasNext()) {
+      SensorData data = datas.next();
+      times[n] = EpochTime.toMillis(data.getTimestamp());
+      values[n] = data.getPropertyAsDouble(property);
+      if (++n == BATCH_SIZE) {
+        arena.append(id, times, values, 0, n);
+        total += n;
+        n = 0;
+      }
+    }
+    arena.append(id, times, values, 0, n);
+    return total + n;
+  }
+
+}
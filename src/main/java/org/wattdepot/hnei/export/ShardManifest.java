@@ -0,0 +1,501 @@
+package org.wattdepot.hnei.export;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Describes an energy matrix that was exported as several shard files. Each shard holds a
+ * contiguous range of sources (rows); the manifest lists the file, source range, row count, size,
+ * and CRC-32 checksum of each shard so that shards can be loaded in parallel and a damaged or
+ * missing shard can be found and regenerated alone. The manifest is a UTF-8 text file with one
+ * tab-separated record per line.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class ShardManifest {
+
+  /** First line of a manifest file. */
+  public static final String HEADER = "# HiREAP energy matrix shards";
+
+  /**
+   * The size and CRC-32 checksum of a file.
+   */
+  public static final class FileChecksum {
+
+    /** Size of the file in bytes. */
+    private final long numBytes;
+
+    /** CRC-32 checksum of the file. */
+    private final long value;
+
+    /**
+     * Creates a new FileChecksum object.
+     *
+     * @param numBytes Size of the file in bytes.
+     * @param value CRC-32 checksum of the file.
+     */
+    public FileChecksum(long numBytes, long value) {
+      this.numBytes = numBytes;
+      this.value = value;
+    }
+
+    /**
+     * Returns the size of the file.
+     *
+     * @return The size of the file in bytes.
+     */
+    public long getNumBytes() {
+      return this.numBytes;
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the file.
+     *
+     * @return The checksum.
+     */
+    public long getValue() {
+      return this.value;
+    }
+
+    /**
+     * Used to test if two files have the same size and checksum.
+     *
+     * @param o FileChecksum object to compare with.
+     * @return True if both objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof FileChecksum)) {
+        return false;
+      }
+      FileChecksum other = (FileChecksum) o;
+      return this.numBytes == other.numBytes && this.value == other.value;
+    }
+
+    /**
+     * Gets the hash code for a FileChecksum object.
+     *
+     * @return Hash code of FileChecksum object.
+     */
+    @Override
+    public int hashCode() {
+      return Long.hashCode(this.numBytes) * 31 + Long.hashCode(this.value);
+    }
+  }
+
+  /**
+   * One shard of the matrix.
+   */
+  public static class Shard {
+
+    /** Index of the shard. */
+    private final int index;
+
+    /** Name of the shard file, relative to the manifest. */
+    private final String fileName;
+
+    /** Name of the first source in the shard. */
+    private final String firstSource;
+
+    /** Name of the last source in the shard. */
+    private final String lastSource;
+
+    /** Index of the first row of the shard in the whole matrix. */
+    private final int firstRow;
+
+    /** Number of rows in the shard. */
+    private final int numRows;
+
+    /** Size and CRC-32 checksum of the shard file. */
+    private final FileChecksum checksum;
+
+    /**
+     * Creates a new Shard object.
+     *
+     * @param index Index of the shard.
+     * @param fileName Name of the shard file, relative to the manifest.
+     * @param firstSource Name of the first source in the shard.
+     * @param lastSource Name of the last source in the shard.
+     * @param firstRow Index of the first row of the shard in the whole matrix.
+     * @param numRows Number of rows in the shard.
+     * @param checksum Size and CRC-32 checksum of the shard file.
+     */
+    public Shard(int index, String fileName, String firstSource, String lastSource, int firstRow,
+        int numRows, FileChecksum checksum) {
+      this.index = index;
+      this.fileName = fileName;
+      this.firstSource = firstSource;
+      this.lastSource = lastSource;
+      this.firstRow = firstRow;
+      this.numRows = numRows;
+      this.checksum = checksum;
+    }
+
+    /**
+     * Returns the index of the shard.
+     *
+     * @return The index of the shard.
+     */
+    public int getIndex() {
+      return this.index;
+    }
+
+    /**
+     * Returns the name of the shard file.
+     *
+     * @return The name of the shard file, relative to the manifest.
+     */
+    public String getFileName() {
+      return this.fileName;
+    }
+
+    /**
+     * Returns the name of the first source in the shard.
+     *
+     * @return The name of the first source.
+     */
+    public String getFirstSource() {
+      return this.firstSource;
+    }
+
+    /**
+     * Returns the name of the last source in the shard.
+     *
+     * @return The name of the last source.
+     */
+    public String getLastSource() {
+      return this.lastSource;
+    }
+
+    /**
+     * Returns the index of the first row of the shard in the whole matrix.
+     *
+     * @return The index of the first row.
+     */
+    public int getFirstRow() {
+      return this.firstRow;
+    }
+
+    /**
+     * Returns the number of rows in the shard.
+     *
+     * @return The number of rows.
+     */
+    public int getNumRows() {
+      return this.numRows;
+    }
+
+    /**
+     * Returns the size of the shard file.
+     *
+     * @return The size of the shard file in bytes.
+     */
+    public long getNumBytes() {
+      return this.checksum.getNumBytes();
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the shard file.
+     *
+     * @return The checksum.
+     */
+    public long getChecksum() {
+      return this.checksum.getValue();
+    }
+
+    /**
+     * Returns the size and CRC-32 checksum of the shard file.
+     *
+     * @return The size and checksum.
+     */
+    public FileChecksum getFileChecksum() {
+      return this.checksum;
+    }
+  }
+
+  /** Start of the first bin in milliseconds. */
+  private final long start;
+
+  /** End of the last bin in milliseconds. */
+  private final long end;
+
+  /** Width of a bin in milliseconds. */
+  private final long interval;
+
+  /** Format of the shard files: csv, hemx, or hemx-compressed. */
+  private final String format;
+
+  /** Total number of rows in all shards. */
+  private final int numRows;
+
+  /** Each shard, or null if it has not been written. */
+  private final Shard[] shards;
+
+  /**
+   * Creates a new ShardManifest object without any shards written.
+   *
+   * @param start Start of the first bin in milliseconds.
+   * @param end End of the last bin in milliseconds.
+   * @param interval Width of a bin in milliseconds.
+   * @param format Format of the shard files: csv, hemx, or hemx-compressed.
+   * @param numRows Total number of rows in all shards.
+   * @param numShards Number of shards.
+   */
+  public ShardManifest(long start, long end, long interval, String format, int numRows,
+      int numShards) {
+    this.start = start;
+    this.end = end;
+    this.interval = interval;
+    this.format = format;
+    this.numRows = numRows;
+    this.shards = new Shard[numShards];
+  }
+
+  /**
+   * Returns the index of the first row of a shard. Rows are split as evenly as possible.
+   *
+   * @param numRows Total number of rows.
+   * @param numShards Number of shards.
+   * @param shard Index of a shard, or <code>numShards</code> for the end of the last shard.
+   * @return Index of the first row of the shard.
+   */
+  public static int firstRow(int numRows, int numShards, int shard) {
+    return (int) ((long) numRows * shard / numShards);
+  }
+
+  /**
+   * Computes the size and CRC-32 checksum of a file.
+   *
+   * @param file File to read.
+   * @return The size of the file in bytes and its checksum.
+   * @throws IOException if the file cannot be read.
+   */
+  public static FileChecksum checksum(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[1 << 16];
+    long numBytes = 0;
+    try (InputStream in = Files.newInputStream(file)) {
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        crc.update(buffer, 0, n);
+        numBytes += n;
+      }
+    }
+    return new FileChecksum(numBytes, crc.getValue());
+  }
+
+  /**
+   * Records a shard that has been written.
+   *
+   * @param shard The shard.
+   */
+  public synchronized void setShard(Shard shard) {
+    this.shards[shard.getIndex()] = shard;
+  }
+
+  /**
+   * Returns a shard.
+   *
+   * @param index Index of the shard.
+   * @return The shard, or null if it has not been written.
+   */
+  public synchronized Shard getShard(int index) {
+    return this.shards[index];
+  }
+
+  /**
+   * Returns the number of shards.
+   *
+   * @return The number of shards.
+   */
+  public int getNumShards() {
+    return this.shards.length;
+  }
+
+  /**
+   * Returns the total number of rows in all shards.
+   *
+   * @return The total number of rows.
+   */
+  public int getNumRows() {
+    return this.numRows;
+  }
+
+  /**
+   * Returns the start of the first bin.
+   *
+   * @return The start of the first bin in milliseconds.
+   */
+  public long getStart() {
+    return this.start;
+  }
+
+  /**
+   * Returns the end of the last bin.
+   *
+   * @return The end of the last bin in milliseconds.
+   */
+  public long getEnd() {
+    return this.end;
+  }
+
+  /**
+   * Returns the width of a bin.
+   *
+   * @return The width of a bin in milliseconds.
+   */
+  public long getInterval() {
+    return this.interval;
+  }
+
+  /**
+   * Returns the format of the shard files.
+   *
+   * @return csv, hemx, or hemx-compressed.
+   */
+  public String getFormat() {
+    return this.format;
+  }
+
+  /**
+   * Returns the shards whose files are missing or do not match their size or checksum.
+   *
+   * @param directory Directory that contains the shard files.
+   * @return Indexes of the shards that need to be regenerated.
+   */
+  public List<Integer> verify(Path directory) {
+    List<Integer> bad = new ArrayList<>();
+    for (int i = 0; i < this.shards.length; i++) {
+      Shard shard = this.getShard(i);
+      try {
+        if (shard == null) {
+          bad.add(i);
+          continue;
+        }
+        if (!checksum(directory.resolve(shard.getFileName())).equals(shard.getFileChecksum())) {
+          bad.add(i);
+        }
+      }
+      catch (IOException e) {
+        bad.add(i);
+      }
+    }
+    return bad;
+  }
+
+  /**
+   * Returns the shards whose first and last sources are not the sources at the same rows of a list,
+   * i.e. the shards that were written for a different set or order of sources.
+   *
+   * @param sourceNames Names of the sources of the whole matrix, in row order.
+   * @return Indexes of the shards that were written for other sources.
+   */
+  public List<Integer> checkSources(List<String> sourceNames) {
+    List<Integer> bad = new ArrayList<>();
+    for (int i = 0; i < this.shards.length; i++) {
+      Shard shard = this.getShard(i);
+      if (shard == null) {
+        continue;
+      }
+      int from = shard.getFirstRow();
+      int to = from + shard.getNumRows();
+      if (to > sourceNames.size()) {
+        bad.add(i);
+      }
+      else if (from < to && (!sourceNames.get(from).equals(shard.getFirstSource())
+          || !sourceNames.get(to - 1).equals(shard.getLastSource()))) {
+        bad.add(i);
+      }
+    }
+    return bad;
+  }
+
+  /**
+   * Writes the manifest to a temporary file and then replaces the file with it.
+   *
+   * @param file File to write to.
+   * @throws IOException if the file cannot be written.
+   */
+  public synchronized void write(Path file) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER + "\n");
+      writer.write("start\t" + this.start + "\n");
+      writer.write("end\t" + this.end + "\n");
+      writer.write("interval\t" + this.interval + "\n");
+      writer.write("format\t" + this.format + "\n");
+      writer.write("rows\t" + this.numRows + "\n");
+      writer.write("shards\t" + this.shards.length + "\n");
+      for (Shard s : this.shards) {
+        if (s != null) {
+          writer.write(String.format("shard\t%d\t%s\t%s\t%s\t%d\t%d\t%d\t%08x%n", s.getIndex(),
+              s.getFileName(), s.getFirstSource(), s.getLastSource(), s.getFirstRow(),
+              s.getNumRows(), s.getNumBytes(), s.getChecksum()));
+        }
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a manifest that was written with {@link #write(Path)}.
+   *
+   * @param file File to read.
+   * @return The manifest.
+   * @throws IOException if the file cannot be read or is not in the expected format.
+   */
+  public static ShardManifest read(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        throw new IOException(file + " is not a shard manifest.");
+      }
+      long start = Long.parseLong(value(reader, "start"));
+      long end = Long.parseLong(value(reader, "end"));
+      long interval = Long.parseLong(value(reader, "interval"));
+      String format = value(reader, "format");
+      int numRows = Integer.parseInt(value(reader, "rows"));
+      int numShards = Integer.parseInt(value(reader, "shards"));
+      ShardManifest manifest = new ShardManifest(start, end, interval, format, numRows, numShards);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t");
+        if (fields.length != 9 || !"shard".equals(fields[0])) {
+          throw new IOException("Invalid line in " + file + ": " + line);
+        }
+        manifest.setShard(new Shard(Integer.parseInt(fields[1]), fields[2], fields[3], fields[4],
+            Integer.parseInt(fields[5]), Integer.parseInt(fields[6]),
+            new FileChecksum(Long.parseLong(fields[7]), Long.parseLong(fields[8], 16))));
+      }
+      return manifest;
+    }
+    catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      throw new IOException(file + " is not a valid shard manifest.", e);
+    }
+  }
+
+  /**
+   * Reads a line with a key and a value.
+   *
+   * @param reader Used to read the manifest.
+   * @param key Expected key.
+   * @return The value.
+   * @throws IOException if the line does not have the expected key.
+   */
+  private static String value(BufferedReader reader, String key) throws IOException {
+    String line = reader.readLine();
+    if (line == null || !line.startsWith(key + "\t")) {
+      throw new IOException("Expected " + key + " in shard manifest, found: " + line);
+    }
+    return line.substring(key.length() + 1);
+  }
+
+}
@@ -2,6 +2,7 @@ package org.wattdepot.hnei.export;
 
 import java.io.Serializable;
 import java.util.Comparator;
+import org.wattdepot.hnei.client.SourceCatalog;
 import org.wattdepot.resource.source.jaxb.Source;
 
 /**
@@ -18,7 +19,7 @@ public class SourceComparator implements Comparator<Source>, Serializable {
 
   /**
    * Sorts the sources stored on the WattDepot server based on the type of data (daily, hourly, or
-   * N/A).
+   * N/A), and then by name. Sources without a type of data are sorted first.
    * 
    * @param s1 First source.
    * @param s2 Second source.
@@ -26,9 +27,10 @@ public class SourceComparator implements Comparator<Source>, Serializable {
    */
   @Override
   public int compare(Source s1, Source s2) {
-    String property1 = s1.getProperties().getProperty(SamplingInterval.SAMPLING_INTERVAL);
-    String property2 = s2.getProperties().getProperty(SamplingInterval.SAMPLING_INTERVAL);
-    return property1.compareTo(property2);
+    String property1 = SourceCatalog.getProperty(s1, SamplingInterval.SAMPLING_INTERVAL);
+    String property2 = SourceCatalog.getProperty(s2, SamplingInterval.SAMPLING_INTERVAL);
+    int result = (property1 == null ? "" : property1).compareTo(property2 == null ? "" : property2);
+    return result == 0 ? s1.getName().compareTo(s2.getName()) : result;
   }
 
 }
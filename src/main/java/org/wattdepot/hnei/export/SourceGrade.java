@@ -0,0 +1,140 @@
+package org.wattdepot.hnei.export;
+
+/**
+ * The grade that QualityClassifier assigned to a source, along with the reason for the grade and
+ * the message to log.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class SourceGrade {
+
+  /**
+   * Grades that can be assigned to a source.
+   */
+  public enum Grade {
+    /** No invalid data and one data point per day from the day before to the day after. */
+    A_DAILY,
+    /** No invalid data, data exists before and after the time interval, and few missing hours. */
+    A_HOURLY,
+    /** Missing some data before or after the time interval, or some daily or hourly data. */
+    B,
+    /** Missing data within the time interval, or data that is not monotonically increasing. */
+    C
+  }
+
+  /** Name of the source. */
+  private final String sourceName;
+
+  /** Grade of the source. */
+  private final Grade grade;
+
+  /** Reason for the grade, or null for Grade A sources. */
+  private final String reason;
+
+  /** Message to log, or null if there is nothing to log. */
+  private final String message;
+
+  /** True if the source is a daily source that is missing some data. */
+  private final boolean incompleteDaily;
+
+  /** Hourly coverage of the source, or null if it was not computed. */
+  private final HourlyCoverage coverage;
+
+  /**
+   * Creates a new SourceGrade object.
+   *
+   * @param sourceName Name of the source.
+   * @param grade Grade of the source.
+   * @param reason Reason for the grade, or null for Grade A sources.
+   * @param message Message to log, or null if there is nothing to log.
+   * @param incompleteDaily True if the source is a daily source that is missing some data.
+   */
+  public SourceGrade(String sourceName, Grade grade, String reason, String message,
+      boolean incompleteDaily) {
+    this(sourceName, grade, reason, message, incompleteDaily, null);
+  }
+
+  /**
+   * Creates a new SourceGrade object for an hourly source.
+   *
+   * @param sourceName Name of the source.
+   * @param grade Grade of the source.
+   * @param reason Reason for the grade, or null for Grade A sources.
+   * @param message Message to log, or null if there is nothing to log.
+   * @param incompleteDaily True if the source is a daily source that is missing some data.
+   * @param coverage Hourly coverage of the source, or null if it was not computed.
+   */
+  public SourceGrade(String sourceName, Grade grade, String reason, String message,
+      boolean incompleteDaily, HourlyCoverage coverage) {
+    this.sourceName = sourceName;
+    this.grade = grade;
+    this.reason = reason;
+    this.message = message;
+    this.incompleteDaily = incompleteDaily;
+    this.coverage = coverage;
+  }
+
+  /**
+   * Returns the name of the source.
+   *
+   * @return The name of the source.
+   */
+  public String getSourceName() {
+    return this.sourceName;
+  }
+
+  /**
+   * Returns the grade of the source.
+   *
+   * @return The grade of the source.
+   */
+  public Grade getGrade() {
+    return this.grade;
+  }
+
+  /**
+   * Returns the reason for the grade.
+   *
+   * @return The reason for the grade, or null for Grade A sources.
+   */
+  public String getReason() {
+    return this.reason;
+  }
+
+  /**
+   * Returns the message to log.
+   *
+   * @return The message to log, or null if there is nothing to log.
+   */
+  public String getMessage() {
+    return this.message;
+  }
+
+  /**
+   * Returns true if the source is a daily source that is missing some data.
+   *
+   * @return True if the source is a daily source that is missing some data, false otherwise.
+   */
+  public boolean isIncompleteDaily() {
+    return this.incompleteDaily;
+  }
+
+  /**
+   * Returns the hourly coverage of the source.
+   *
+   * @return The hourly coverage, or null if it was not computed.
+   */
+  public HourlyCoverage getCoverage() {
+    return this.coverage;
+  }
+
+  /**
+   * Returns the line that is written to the results file for the grade.
+   *
+   * @return The name of the source, followed by a tab and the reason if there is one.
+   */
+  public String getLine() {
+    return this.reason == null ? this.sourceName : this.sourceName + "\t" + this.reason;
+  }
+
+}
@@ -0,0 +1,218 @@
+package org.wattdepot.hnei.export.cli;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.hnei.export.CounterInterpolator;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.util.tstamp.Tstamp;
+
+/**
+ * Interpolates the energy counters of many sources at many times, e.g. billing boundaries. The raw
+ * data for each source is fetched once for the whole range of times, and the counter is then
+ * interpolated at every time in a single pass; sources are processed in parallel. This replaces one
+ * or two requests per source and interval with one request per source.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class BulkInterpolator {
+
+  /** Default number of sources that are processed at the same time. */
+  public static final int DEFAULT_NUM_THREADS = 8;
+
+  /** Default time before the first time and after the last time for which data is fetched. */
+  public static final long DEFAULT_MARGIN = EpochTime.MILLIS_PER_DAY;
+
+  /** Used to fetch sensor data from the WattDepot server. */
+  private final WattDepotClient client;
+
+  /** Number of sources that are processed at the same time. */
+  private int numThreads = DEFAULT_NUM_THREADS;
+
+  /** Time before the first time and after the last time for which data is fetched. */
+  private long margin = DEFAULT_MARGIN;
+
+  /**
+   * Creates a new BulkInterpolator object.
+   *
+   * @param client Used to fetch sensor data from the WattDepot server.
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP2")
+  public BulkInterpolator(WattDepotClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Sets the number of sources that are processed at the same time.
+   *
+   * @param numThreads Number of threads.
+   */
+  public void setNumThreads(int numThreads) {
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * Sets how far before the first time and after the last time data is fetched, so that there are
+   * readings on both sides of every time. It should be at least the sampling interval.
+   *
+   * @param margin Margin in milliseconds.
+   */
+  public void setMargin(long margin) {
+    this.margin = margin;
+  }
+
+  /**
+   * Returns the energy consumed between consecutive times.
+   *
+   * @param counters Counter at each time.
+   * @return Energy consumed in each of the <code>counters.length - 1</code> periods; NaN if the
+   * counter is unknown at either end of a period.
+   */
+  public static double[] getEnergy(double[] counters) {
+    double[] energy = new double[Math.max(0, counters.length - 1)];
+    for (int i = 0; i < energy.length; i++) {
+      energy[i] = counters[i + 1] - counters[i];
+    }
+    return energy;
+  }
+
+  /**
+   * Starts interpolating the counters of each source at the given times.
+   *
+   * @param sourceNames Names of the sources.
+   * @param times Times in milliseconds, sorted in ascending order.
+   * @param pool Thread pool that fetches and interpolates the data.
+   * @return The counters of each source at each time, in the same order as the sources.
+   */
+  private List<Future<double[]>> submit(List<String> sourceNames, long[] times,
+      ExecutorService pool) {
+    for (int i = 1; i < times.length; i++) {
+      if (times[i] < times[i - 1]) {
+        throw new IllegalArgumentException("Times must be sorted in ascending order.");
+      }
+    }
+    var startTimestamp = Tstamp.makeTimestamp(times[0] - this.margin);
+    var endTimestamp = Tstamp.makeTimestamp(times[times.length - 1] + this.margin);
+    List<Future<double[]>> results = new ArrayList<>();
+    for (String name : sourceNames) {
+      results.add(pool.submit(() -> CounterInterpolator.counterAt(
+          this.client.getSensorDatas(name, startTimestamp, endTimestamp), times)));
+    }
+    pool.shutdown();
+    return results;
+  }
+
+  /**
+   * Creates a thread pool for some sources.
+   *
+   * @param numSources Number of sources.
+   * @return The thread pool.
+   */
+  private ExecutorService createPool(int numSources) {
+    return Executors.newFixedThreadPool(Math.min(this.numThreads, Math.max(1, numSources)));
+  }
+
+  /**
+   * Returns the counter of each source interpolated at each time.
+   *
+   * @param sourceNames Names of the sources.
+   * @param times Times in milliseconds, sorted in ascending order.
+   * @return The counters, indexed by source and then by time; NaN where a time is outside the range
+   * of a source's data.
+   * @throws WattDepotClientException if the data for a source cannot be fetched.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public double[][] getCounters(List<String> sourceNames, long[] times)
+      throws WattDepotClientException, InterruptedException {
+    double[][] counters = new double[sourceNames.size()][];
+    if (times.length == 0) {
+      for (int i = 0; i < counters.length; i++) {
+        counters[i] = new double[0];
+      }
+      return counters;
+    }
+    ExecutorService pool = this.createPool(sourceNames.size());
+    List<Future<double[]>> results = this.submit(sourceNames, times, pool);
+    try {
+      for (int i = 0; i < counters.length; i++) {
+        counters[i] = results.get(i).get();
+      }
+    }
+    catch (ExecutionException e) {
+      pool.shutdownNow();
+      if (e.getCause() instanceof WattDepotClientException) {
+        throw (WattDepotClientException) e.getCause();
+      }
+      throw new WattDepotClientException("Unable to interpolate data.", e.getCause());
+    }
+    catch (InterruptedException e) {
+      pool.shutdownNow();
+      throw e;
+    }
+    return counters;
+  }
+
+  /**
+   * Prints the energy consumed by each source between consecutive times as CSV, one row per source
+   * in the given order. Each row is printed as soon as it and the rows before it are ready.
+   *
+   * @param sourceNames Names of the sources.
+   * @param times Times in milliseconds, sorted in ascending order; at least two are needed.
+   * @param out Stream to print the results, or any error, to.
+   * @return True if successful, false otherwise.
+   */
+  public boolean print(List<String> sourceNames, long[] times, PrintStream out) {
+    if (times.length < 2) {
+      out.println("At least two times are needed.");
+      return true;
+    }
+    SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy HH:mm", Locale.US);
+    StringBuilder row = new StringBuilder("Source");
+    for (int i = 1; i < times.length; i++) {
+      row.append(',').append(format.format(new Date(times[i - 1])));
+      row.append(" - ").append(format.format(new Date(times[i])));
+    }
+    out.println(row);
+
+    ExecutorService pool = this.createPool(sourceNames.size());
+    List<Future<double[]>> results = this.submit(sourceNames, times, pool);
+    for (int i = 0; i < sourceNames.size(); i++) {
+      double[] energy;
+      try {
+        energy = getEnergy(results.get(i).get());
+      }
+      catch (InterruptedException e) {
+        pool.shutdownNow();
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      catch (ExecutionException e) {
+        pool.shutdownNow();
+        out.println(e.getCause());
+        return false;
+      }
+      row.setLength(0);
+      row.append(sourceNames.get(i));
+      for (double e : energy) {
+        row.append(',');
+        if (!Double.isNaN(e)) {
+          row.append(Math.round(e));
+        }
+      }
+      out.println(row);
+      out.flush();
+    }
+    return true;
+  }
+
+}
@@ -3,17 +3,31 @@ package org.wattdepot.hnei.export.cli;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import org.wattdepot.client.ResourceNotFoundException;
 import org.wattdepot.client.WattDepotClient;
 import org.wattdepot.client.WattDepotClientException;
-import org.wattdepot.hnei.export.SourceComparator;
+import org.wattdepot.hnei.client.CachingWattDepotClient;
+import org.wattdepot.hnei.client.ChunkingWattDepotClient;
+import org.wattdepot.hnei.client.CoalescingWattDepotClient;
+import org.wattdepot.hnei.client.SourceCatalog;
+import org.wattdepot.hnei.export.Rollup;
+import org.wattdepot.hnei.util.EpochTime;
 import org.wattdepot.resource.property.jaxb.Property;
 import org.wattdepot.resource.source.jaxb.Source;
 
@@ -28,34 +42,337 @@ public class HireapCli {
   /** A list of commands that will grab data from the WattDepot server. */
   private Map<String, Retriever> commands;
 
+  /** Caches results from the WattDepot server; shared by all commands. */
+  private CachingWattDepotClient client;
+
+  /** Indexed catalog of all sources, reloaded in the background. */
+  private SourceCatalog catalog;
+
+  /** Interpolates the counters of many sources at many times. */
+  private BulkInterpolator bulkInterpolator;
+
+  /** Rollup files that have been read, by file name; cleared by the refresh command. */
+  private Map<String, Rollup> rollups;
+
   /**
    * Creates a new HneiExporter object.
    * 
    * @param client Used to connect to WattDepot server.
    */
-  public HireapCli(WattDepotClient client) {
+  public HireapCli(CachingWattDepotClient client) {
+    this.client = client;
+    // Reload sources from the wrapped client so that each refresh really contacts the server.
+    this.catalog = new SourceCatalog(client.getWrappedClient(), SourceCatalog.DEFAULT_REFRESH_INTERVAL);
     this.commands = new HashMap<String, Retriever>();
     this.commands.put("all_data", new SourceSensorDatas(client));
     this.commands.put("interpolate", new InterpolatedSensorData(client));
+    this.bulkInterpolator = new BulkInterpolator(client);
+    this.rollups = new ConcurrentHashMap<>();
   }
 
   /**
    * Provides useful information on how to use this client.
    */
   public void getHelp() {
+    this.getHelp(System.out);
+  }
+
+  /**
+   * Provides useful information on how to use this client.
+   * 
+   * @param out Stream to print the help message to.
+   */
+  public void getHelp(PrintStream out) {
     Iterator<Entry<String, Retriever>> i = this.commands.entrySet().iterator();
-    System.out.println("\n**********\n");
-    System.out.println("To use this program, type one of the following commands:\n");
-    System.out.println(">> q | quit\nQuits the program.\n");
-    System.out.println(">> h | help\nDisplays this help message.\n");
-    System.out
-        .println(">> (p | properties) [source]\nDisplays the properties for a given source.\n");
-    System.out.println(">> a | all_sources");
-    System.out.println("Displays all sources that are available on the WattDepot server.\n");
+    out.println("\n**********\n");
+    out.println("To use this program, type one of the following commands:\n");
+    out.println(">> q | quit\nQuits the program.\n");
+    out.println(">> h | help\nDisplays this help message.\n");
+    out.println(">> (p | properties) [source]\nDisplays the properties for a given source.\n");
+    out.println(">> (a | all_sources) [prefix] [key=value ...]");
+    out.println("Displays all sources that are available on the WattDepot server, or only those whose");
+    out.println("names start with a prefix and that have the given property values; keys include");
+    out.println("samplingInterval, meterType, accountNumber, and mtu.\n");
+    out.println(">> r | refresh");
+    out.println("Reloads the list of sources from the WattDepot server and forgets rollup files.\n");
+    out.println(">> (u | rollup) [file] [source] [hourly | daily | weekly | monthly]");
+    out.println("Displays the energy, minimum and maximum power, and number of readings of a source");
+    out.println("in each period from a rollup file (see EnergyMatrixExporter -build-rollup).\n");
+    out.println(">> (b | bulk_interpolate) [sources] [dates]");
+    out.println("Prints as CSV the energy consumed by each source between consecutive dates. Sources");
+    out.println("are a comma-separated list of names, a prefix followed by *, or @file with one name");
+    out.println("per line; dates are a comma-separated list (MM/dd/yyyy).\n");
+    out.println(">> c | cache [clear]");
+    out.println("Displays cache statistics, or clears the cache.\n");
     while (i.hasNext()) {
-      System.out.print(i.next().getValue().getHelp());
+      out.print(i.next().getValue().getHelp());
     }
-    System.out.println("**********\n");
+    out.println("**********\n");
+  }
+
+  /**
+   * Executes a command other than quit and prints its results. This method may be called by
+   * several threads at the same time, e.g. by HireapDaemon.
+   * 
+   * @param command Command and its arguments.
+   * @param out Stream to print the results to.
+   * @return False if there was a problem communicating with the WattDepot server, true otherwise.
+   */
+  public boolean execute(String[] command, PrintStream out) {
+    if (command[0].equals("h") || command[0].equals("help")) {
+      this.getHelp(out);
+    }
+    else if ((command[0].equalsIgnoreCase("all_data") || command[0].equalsIgnoreCase("interpolate"))
+        && command.length == 4) {
+      Retriever retriever = this.commands.get(command[0].toLowerCase(Locale.US));
+      return retriever.getSensorData(command[1], command[2], command[3], command[3], out);
+    }
+    else if (command[0].equalsIgnoreCase("cache") || command[0].equalsIgnoreCase("c")) {
+      if (command.length == 2 && command[1].equalsIgnoreCase("clear")) {
+        this.client.clear();
+        out.println("Cache cleared.");
+      }
+      else {
+        out.print(this.client.getStats());
+        if (this.client.getWrappedClient() instanceof CoalescingWattDepotClient) {
+          out.println();
+          out.print(((CoalescingWattDepotClient) this.client.getWrappedClient()).getStats());
+        }
+      }
+    }
+    else if ((command[0].equalsIgnoreCase("properties") || command[0].equalsIgnoreCase("p"))
+        && command.length == 2) {
+      try {
+        Source source = this.catalog.get(command[1]);
+        if (source == null) {
+          source = this.client.getSource(command[1]);
+        }
+        List<Property> properties = source.getProperties().getProperty();
+        for (Property p : properties) {
+          out.println(p.getKey() + ": " + p.getValue());
+        }
+      }
+      catch (ResourceNotFoundException e) {
+        out.println("Source not found. Please try again.");
+      }
+      catch (WattDepotClientException e) {
+        out.println(e);
+        return false;
+      }
+    }
+    else if (command[0].equalsIgnoreCase("all_sources") || command[0].equalsIgnoreCase("a")) {
+      String prefix = null;
+      Map<String, String> filters = new HashMap<>();
+      for (int i = 1; i < command.length; i++) {
+        int equals = command[i].indexOf('=');
+        if (equals > 0) {
+          filters.put(command[i].substring(0, equals), command[i].substring(equals + 1));
+        }
+        else if (!command[i].isEmpty()) {
+          prefix = command[i];
+        }
+      }
+      try {
+        long start = System.nanoTime();
+        List<Source> sources = this.catalog.query(prefix, filters);
+        long elapsed = System.nanoTime() - start;
+        for (Source s : sources) {
+          out.print(s.getName() + " :");
+          if (s.getProperties() != null) {
+            for (Property p : s.getProperties().getProperty()) {
+              out.print(" [[key : " + p.getKey() + "] [value : " + p.getValue() + "]]");
+            }
+          }
+          out.println();
+        }
+        out.println(String.format("%d sources (%.3f ms)", sources.size(), elapsed / 1e6));
+      }
+      catch (WattDepotClientException e) {
+        out.println(e);
+        return false;
+      }
+    }
+    else if ((command[0].equalsIgnoreCase("refresh") || command[0].equalsIgnoreCase("r"))
+        && command.length == 1) {
+      try {
+        this.catalog.refresh();
+        this.rollups.clear();
+        out.println("Loaded " + this.catalog.size() + " sources.");
+      }
+      catch (WattDepotClientException e) {
+        out.println(e);
+        return false;
+      }
+    }
+    else if ((command[0].equalsIgnoreCase("bulk_interpolate") || command[0].equalsIgnoreCase("b"))
+        && command.length == 3) {
+      List<String> sourceNames;
+      long[] times;
+      try {
+        sourceNames = this.getSourceNames(command[1]);
+        times = parseDates(command[2]);
+      }
+      catch (IOException | ParseException e) {
+        out.println(e.getMessage());
+        return true;
+      }
+      catch (WattDepotClientException e) {
+        out.println(e);
+        return false;
+      }
+      return this.bulkInterpolator.print(sourceNames, times, out);
+    }
+    else if ((command[0].equalsIgnoreCase("rollup") || command[0].equalsIgnoreCase("u"))
+        && command.length == 4) {
+      Rollup.Level level = Rollup.Level.parse(command[3]);
+      if (level == null) {
+        out.println("Invalid level: " + command[3]);
+        return true;
+      }
+      Rollup rollup;
+      try {
+        rollup = this.rollups.get(command[1]);
+        if (rollup == null) {
+          rollup = Rollup.read(Paths.get(command[1]));
+          this.rollups.put(command[1], rollup);
+        }
+      }
+      catch (IOException e) {
+        out.println("Unable to read " + command[1] + ": " + e.getMessage());
+        return true;
+      }
+      printRollup(rollup, command[2], level, out);
+    }
+    else {
+      String msg = "Invalid command. Please try again (type \"h\" for available commands).";
+      out.println(msg);
+    }
+    return true;
+  }
+
+  /**
+   * Prints the aggregates of a source in each period of a rollup.
+   * 
+   * @param rollup A rollup.
+   * @param sourceName Name of the source.
+   * @param level Level of the periods.
+   * @param out Stream to print the aggregates to.
+   */
+  private static void printRollup(Rollup rollup, String sourceName, Rollup.Level level,
+      PrintStream out) {
+    Rollup.Series series = rollup.getSeries(sourceName, level);
+    if (series == null) {
+      out.println("No rollup exists for source " + sourceName + ".");
+      return;
+    }
+    StringBuilder rows = new StringBuilder("Period start,Energy (Wh),Min power (W),Max power (W),"
+        + "Readings\n");
+    for (int i = 0; i < series.size(); i++) {
+      rows.append(EpochTime.toTimestamp(rollup.getPeriodStart(level, i), rollup.getZoneOffset()));
+      rows.append(',').append(format(series.getEnergy(i)));
+      rows.append(',').append(format(series.getMinPower(i)));
+      rows.append(',').append(format(series.getMaxPower(i)));
+      rows.append(',').append(series.getCount(i)).append('\n');
+    }
+    out.print(rows);
+  }
+
+  /**
+   * Rounds a value to a whole number.
+   * 
+   * @param value A value, or NaN if it is not known.
+   * @return The rounded value, or N/A if it is not known.
+   */
+  private static String format(double value) {
+    return Double.isNaN(value) ? "N/A" : Long.toString(Math.round(value));
+  }
+
+  /**
+   * Returns the names of the sources in an argument of the bulk_interpolate command.
+   * 
+   * @param argument A comma-separated list of names, a prefix followed by *, or @ followed by the
+   * name of a file with one source name per line.
+   * @return The names of the sources.
+   * @throws IOException if the file cannot be read.
+   * @throws WattDepotClientException if the sources cannot be loaded.
+   */
+  List<String> getSourceNames(String argument) throws IOException,
+      WattDepotClientException {
+    List<String> names = new ArrayList<>();
+    if (argument.startsWith("@")) {
+      for (String line : Files.readAllLines(Paths.get(argument.substring(1)),
+          StandardCharsets.UTF_8)) {
+        if (!line.trim().isEmpty()) {
+          names.add(line.trim());
+        }
+      }
+    }
+    else if (argument.endsWith("*")) {
+      String prefix = argument.substring(0, argument.length() - 1);
+      for (Source s : this.catalog.query(prefix, Collections.<String, String>emptyMap())) {
+        names.add(s.getName());
+      }
+    }
+    else {
+      for (String name : argument.split(",")) {
+        if (!name.isEmpty()) {
+          names.add(name);
+        }
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Parses a comma-separated list of dates and sorts them.
+   * 
+   * @param argument Dates in the format MM/dd/yyyy.
+   * @return The start of each day in milliseconds, sorted in ascending order.
+   * @throws ParseException if a date cannot be parsed.
+   */
+  static long[] parseDates(String argument) throws ParseException {
+    SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy", Locale.US);
+    format.setLenient(false);
+    String[] dates = argument.split(",");
+    long[] times = new long[dates.length];
+    for (int i = 0; i < dates.length; i++) {
+      times[i] = format.parse(dates[i]).getTime();
+    }
+    Arrays.sort(times);
+    return times;
+  }
+
+  /**
+   * Loads the catalog of sources and starts reloading it in the background.
+   */
+  public void startCatalog() {
+    try {
+      this.catalog.start();
+    }
+    catch (WattDepotClientException e) {
+      System.err.println("Unable to load sources: " + e);
+    }
+  }
+
+  /**
+   * Connects to a WattDepot server.
+   * 
+   * @param serverUri URI of the WattDepot server.
+   * @param username Username.
+   * @param password Password.
+   * @return A client that caches and coalesces requests to the server, or null if the server is not
+   * available.
+   */
+  public static CachingWattDepotClient connect(String serverUri, String username,
+      String password) {
+    WattDepotClient client = new WattDepotClient(serverUri, username, password);
+    if (!client.isHealthy() || !client.isAuthenticated()) {
+      System.err.println("Unable to connect to WattDepot server.");
+      return null;
+    }
+    System.out.println("Successfully connected to " + client.getWattDepotUri() + ".");
+    return new CachingWattDepotClient(
+        new CoalescingWattDepotClient(ChunkingWattDepotClient.wrapIfEnabled(client)));
   }
 
   /**
@@ -69,18 +386,13 @@ public class HireapCli {
       System.exit(1);
     }
 
-    String serverUri = args[0];
-    String username = args[1];
-    String password = args[2];
-
-    WattDepotClient client = new WattDepotClient(serverUri, username, password);
-    if (!client.isHealthy() || !client.isAuthenticated()) {
-      System.err.println("Unable to connect to WattDepot server.");
+    CachingWattDepotClient client = connect(args[0], args[1], args[2]);
+    if (client == null) {
       System.exit(1);
     }
-    System.out.println("Successfully connected to " + client.getWattDepotUri() + ".");
 
     HireapCli hneiExporter = new HireapCli(client);
+    hneiExporter.startCatalog();
     BufferedReader br = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
 
     String line = null;
@@ -102,60 +414,8 @@ public class HireapCli {
       if (command[0].equalsIgnoreCase("q") || command[0].equalsIgnoreCase("quit")) {
         break;
       }
-      else if (command[0].equals("h") || command[0].equals("help")) {
-        hneiExporter.getHelp();
-      }
-      else if (command[0].equalsIgnoreCase("all_data") && command.length == 4) {
-        String a = "all_data";
-        if (!hneiExporter.commands.get(a).getSensorData(command[1], command[2], command[3],
-            command[3])) {
-          System.exit(1);
-        }
-      }
-      else if (command[0].equalsIgnoreCase("interpolate") && command.length == 4) {
-        String a = "interpolate";
-        if (!hneiExporter.commands.get(a).getSensorData(command[1], command[2], command[3],
-            command[3])) {
-          System.exit(1);
-        }
-      }
-      else if ((command[0].equalsIgnoreCase("properties") || command[0].equalsIgnoreCase("p"))
-          && command.length == 2) {
-        try {
-          List<Property> properties = client.getSource(command[1]).getProperties().getProperty();
-          for (Property p : properties) {
-            System.out.println(p.getKey() + ": " + p.getValue());
-          }
-        }
-        catch (ResourceNotFoundException e) {
-          System.out.println("Source not found. Please try again.");
-        }
-        catch (WattDepotClientException e) {
-          System.out.println(e);
-          break;
-        }
-      }
-      else if ((command[0].equalsIgnoreCase("all_sources") || command[0].equalsIgnoreCase("a"))
-          && command.length == 1) {
-        try {
-          List<Source> sources = client.getSources();
-          Collections.sort(sources, new SourceComparator());
-          for (Source s : sources) {
-            System.out.print(s.getName() + " :");
-            for (Property p : s.getProperties().getProperty()) {
-              System.out.print(" [[key : " + p.getKey() + "] [value : " + p.getValue() + "]]");
-            }
-            System.out.println();
-          }
-        }
-        catch (WattDepotClientException e) {
-          System.out.println(e);
-          break;
-        }
-      }
-      else {
-        String msg = "Invalid command. Please try again (type \"h\" for available commands).";
-        System.out.println(msg);
+      else if (!hneiExporter.execute(command, System.out)) {
+        System.exit(1);
       }
     }
 
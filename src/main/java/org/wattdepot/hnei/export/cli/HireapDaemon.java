@@ -0,0 +1,311 @@
+package org.wattdepot.hnei.export.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.wattdepot.hnei.client.CachingWattDepotClient;
+
+/**
+ * Keeps one connection to the WattDepot server and its caches alive, and executes HireapCli
+ * commands for thin clients (see HireapDaemonClient) that connect over a loopback socket. Each
+ * connection is served on its own thread, and several connections are served at the same time.
+ * A client first sends the shared secret from the secret file, which only the user who runs the
+ * daemon can read, so that other local users cannot run commands or shut the daemon down. The
+ * daemon answers with an empty response, or with an error and closes the connection if the secret
+ * is wrong. The client then sends one command per line; the results are streamed back, followed by
+ * a line that contains only {@link #END_OF_RESPONSE}.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class HireapDaemon {
+
+  /** Default port to listen on. */
+  public static final int DEFAULT_PORT = 7475;
+
+  /** Line that marks the end of the response to a command. */
+  public static final String END_OF_RESPONSE = "\u0004";
+
+  /** Command that stops the daemon. */
+  public static final String SHUTDOWN = "shutdown";
+
+  /** System property that contains the path of the secret file. */
+  public static final String SECRET_FILE_PROPERTY = "hireap.daemon.secret";
+
+  /** Name of the secret file in the home directory if {@value #SECRET_FILE_PROPERTY} is not set. */
+  public static final String DEFAULT_SECRET_FILE = ".hireap-daemon-secret";
+
+  /** Permissions of the secret file: readable and writable by its owner only. */
+  private static final Set<PosixFilePermission> OWNER_ONLY =
+      EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+
+  /** Number of random bytes in a new secret. */
+  private static final int SECRET_BYTES = 32;
+
+  /** Maximum number of connections that are served at the same time; others wait. */
+  private static final int MAX_CONNECTIONS = 16;
+
+  /** Size of the buffer for the results of a command in bytes. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** Executes commands. */
+  private final HireapCli cli;
+
+  /** Accepts connections on the loopback interface. */
+  private final ServerSocket serverSocket;
+
+  /** Serves connections. */
+  private final ExecutorService pool;
+
+  /** Secret that a client must send before any command. */
+  private final byte[] secret;
+
+  /**
+   * Creates a new HireapDaemon object that listens on the loopback interface.
+   *
+   * @param client Client that caches results from the WattDepot server.
+   * @param port Port to listen on.
+   * @param secret Secret that a client must send before any command.
+   * @throws IOException if the port cannot be opened.
+   */
+  public HireapDaemon(CachingWattDepotClient client, int port, String secret) throws IOException {
+    this(new HireapCli(client), port, secret);
+    this.cli.startCatalog();
+  }
+
+  /**
+   * Creates a new HireapDaemon object that executes commands with the given HireapCli.
+   *
+   * @param cli Executes commands.
+   * @param port Port to listen on, or 0 for any free port.
+   * @param secret Secret that a client must send before any command.
+   * @throws IOException if the port cannot be opened.
+   */
+  HireapDaemon(HireapCli cli, int port, String secret) throws IOException {
+    if (secret == null || secret.isEmpty()) {
+      throw new IllegalArgumentException("The secret must not be empty.");
+    }
+    this.cli = cli;
+    this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    this.serverSocket = new ServerSocket(port, MAX_CONNECTIONS, InetAddress.getLoopbackAddress());
+    this.pool = Executors.newFixedThreadPool(MAX_CONNECTIONS);
+  }
+
+  /**
+   * Returns the secret file, which is given by the {@value #SECRET_FILE_PROPERTY} system property,
+   * or is {@value #DEFAULT_SECRET_FILE} in the home directory.
+   *
+   * @return The secret file.
+   */
+  public static Path getSecretFile() {
+    String file = System.getProperty(SECRET_FILE_PROPERTY);
+    if (file == null || file.isEmpty()) {
+      return Paths.get(System.getProperty("user.home"), DEFAULT_SECRET_FILE);
+    }
+    return Paths.get(file);
+  }
+
+  /**
+   * Reads the secret from the first line of a secret file, which must not be readable or writable
+   * by anyone but its owner where the file system supports POSIX permissions.
+   *
+   * @param file The secret file.
+   * @return The secret.
+   * @throws IOException if the file cannot be read, is empty, or is readable by other users.
+   */
+  public static String readSecret(Path file) throws IOException {
+    PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+    if (view != null && !OWNER_ONLY.containsAll(view.readAttributes().permissions())) {
+      throw new IOException(file + " must be readable and writable only by its owner (chmod 600).");
+    }
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    if (lines.isEmpty() || lines.get(0).trim().isEmpty()) {
+      throw new IOException(file + " does not contain a secret.");
+    }
+    return lines.get(0).trim();
+  }
+
+  /**
+   * Reads the secret from a secret file, first creating the file with a random secret and
+   * permissions 0600 if it does not exist.
+   *
+   * @param file The secret file.
+   * @return The secret.
+   * @throws IOException if the file cannot be created or read.
+   */
+  public static String createSecret(Path file) throws IOException {
+    if (Files.notExists(file)) {
+      byte[] bytes = new byte[SECRET_BYTES];
+      new SecureRandom().nextBytes(bytes);
+      StringBuilder secret = new StringBuilder();
+      for (byte b : bytes) {
+        secret.append(String.format("%02x", b));
+      }
+      if (Files.getFileStore(file.toAbsolutePath().getParent())
+          .supportsFileAttributeView(PosixFileAttributeView.class)) {
+        Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+      }
+      else {
+        Files.createFile(file);
+      }
+      Files.write(file, List.of(secret.toString()), StandardCharsets.UTF_8);
+    }
+    return readSecret(file);
+  }
+
+  /**
+   * Returns the port that the daemon listens on.
+   *
+   * @return The port.
+   */
+  public int getPort() {
+    return this.serverSocket.getLocalPort();
+  }
+
+  /**
+   * Returns true if a line is the secret. The comparison takes the same time wherever the line
+   * differs from the secret.
+   *
+   * @param line A line sent by a client, or null if the client disconnected.
+   * @return True if the line is the secret, false otherwise.
+   */
+  private boolean isSecret(String line) {
+    return line != null
+        && MessageDigest.isEqual(this.secret, line.trim().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Accepts connections until the daemon is shut down.
+   */
+  public void serve() {
+    System.out.println("Listening on " + this.serverSocket.getLocalSocketAddress() + ".");
+    while (!this.serverSocket.isClosed()) {
+      try {
+        Socket socket = this.serverSocket.accept();
+        this.pool.execute(() -> this.handle(socket));
+      }
+      catch (SocketException e) {
+        // The server socket was closed by the shutdown command.
+        break;
+      }
+      catch (IOException e) {
+        System.err.println("Unable to accept connection: " + e.getMessage());
+      }
+    }
+    this.pool.shutdown();
+    System.out.println("Exiting...");
+  }
+
+  /**
+   * Executes commands from one connection until the client quits or disconnects.
+   *
+   * @param socket Connection to a client.
+   */
+  private void handle(Socket socket) {
+    try (socket;
+        BufferedReader in =
+            new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8));
+        PrintStream out =
+            new PrintStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE), false,
+                StandardCharsets.UTF_8.name())) {
+      if (!this.isSecret(in.readLine())) {
+        out.println("Not authorized.");
+        out.println(END_OF_RESPONSE);
+        out.flush();
+        return;
+      }
+      out.println(END_OF_RESPONSE);
+      out.flush();
+      String line;
+      while ((line = in.readLine()) != null) {
+        String[] command = line.trim().split("\\s");
+        if (command[0].equalsIgnoreCase("q") || command[0].equalsIgnoreCase("quit")) {
+          break;
+        }
+        else if (command[0].equals(SHUTDOWN)) {
+          out.println("Shutting down.");
+          out.println(END_OF_RESPONSE);
+          out.flush();
+          this.serverSocket.close();
+          break;
+        }
+        if (!this.cli.execute(command, out)) {
+          out.println("There was a problem communicating with the WattDepot server.");
+        }
+        out.println(END_OF_RESPONSE);
+        out.flush();
+      }
+    }
+    catch (IOException e) {
+      System.err.println("Connection closed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Connects to a WattDepot server and serves commands on a loopback port.
+   *
+   * @param args URI, username, and password to connect to WattDepot server, and optionally the port
+   * to listen on. The secret is read from the secret file (see {@link #getSecretFile()}), which is
+   * created if it does not exist.
+   */
+  public static void main(String[] args) {
+    if (args.length != 3 && args.length != 4) {
+      System.err.println("Usage: HireapDaemon uri username password [port]");
+      System.exit(1);
+    }
+
+    int port = DEFAULT_PORT;
+    if (args.length == 4) {
+      try {
+        port = Integer.parseInt(args[3]);
+      }
+      catch (NumberFormatException e) {
+        System.err.println("Invalid port: " + args[3]);
+        System.exit(1);
+      }
+    }
+
+    Path secretFile = getSecretFile();
+    String secret = null;
+    try {
+      secret = createSecret(secretFile);
+    }
+    catch (IOException e) {
+      System.err.println("Unable to read secret from " + secretFile + ": " + e.getMessage());
+      System.exit(1);
+    }
+
+    CachingWattDepotClient client = HireapCli.connect(args[0], args[1], args[2]);
+    if (client == null) {
+      System.exit(1);
+    }
+    try {
+      new HireapDaemon(client, port, secret).serve();
+    }
+    catch (IOException e) {
+      System.err.println("Unable to listen on port " + port + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+package org.wattdepot.hnei.export.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * A thin client that sends HireapCli commands to a running HireapDaemon and prints the results as
+ * they arrive. It does not load the WattDepot client, so it starts quickly. It sends the secret from
+ * the secret file of the daemon (see {@link HireapDaemon#getSecretFile()}) when it connects.
+ * Commands can be given on the command line, in which case each is executed in turn and the
+ * client exits, or typed at a prompt.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class HireapDaemonClient {
+
+  /** Reads results from the daemon. */
+  private final BufferedReader in;
+
+  /** Sends commands to the daemon. */
+  private final BufferedWriter out;
+
+  /**
+   * Creates a new HireapDaemonClient object and sends the secret to the daemon.
+   *
+   * @param socket Connection to the daemon.
+   * @param secret Secret from the secret file of the daemon.
+   * @throws IOException if the streams of the connection cannot be opened, or the daemon does not
+   * accept the secret.
+   */
+  public HireapDaemonClient(Socket socket, String secret) throws IOException {
+    this.in =
+        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    this.out =
+        new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    ByteArrayOutputStream error = new ByteArrayOutputStream();
+    boolean complete;
+    try (PrintStream errorStream = new PrintStream(error, true, StandardCharsets.UTF_8.name())) {
+      complete = this.send(secret, errorStream);
+    }
+    if (!complete || error.size() > 0) {
+      String message = error.toString(StandardCharsets.UTF_8.name()).trim();
+      throw new IOException(message.isEmpty() ? "Connection closed by daemon." : message);
+    }
+  }
+
+  /**
+   * Sends a command to the daemon and prints the results until the end of the response.
+   *
+   * @param command Command to send.
+   * @param results Stream to print the results to.
+   * @return True if the response was complete, false if the daemon closed the connection.
+   * @throws IOException if there are problems communicating with the daemon.
+   */
+  public boolean send(String command, PrintStream results) throws IOException {
+    this.out.write(command);
+    this.out.newLine();
+    this.out.flush();
+    String line;
+    while ((line = this.in.readLine()) != null) {
+      if (line.equals(HireapDaemon.END_OF_RESPONSE)) {
+        return true;
+      }
+      results.println(line);
+    }
+    return false;
+  }
+
+  /**
+   * Sends commands to a HireapDaemon on the loopback interface.
+   *
+   * @param args [-port n] to connect to port n, followed by zero or more commands, e.g. "a" or
+   * "p 123456-1"; if no commands are given, commands are read from standard input.
+   */
+  public static void main(String[] args) {
+    int port = HireapDaemon.DEFAULT_PORT;
+    int first = 0;
+    if (args.length >= 2 && "-port".equals(args[0])) {
+      try {
+        port = Integer.parseInt(args[1]);
+      }
+      catch (NumberFormatException e) {
+        System.err.println("Invalid port: " + args[1]);
+        System.exit(1);
+      }
+      first = 2;
+    }
+
+    Path secretFile = HireapDaemon.getSecretFile();
+    String secret = null;
+    try {
+      secret = HireapDaemon.readSecret(secretFile);
+    }
+    catch (IOException e) {
+      System.err.println("Unable to read secret from " + secretFile + ": " + e.getMessage());
+      System.exit(1);
+    }
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      HireapDaemonClient client = new HireapDaemonClient(socket, secret);
+      if (first < args.length) {
+        for (int i = first; i < args.length; i++) {
+          if (!client.send(args[i], System.out)) {
+            System.exit(1);
+          }
+        }
+        return;
+      }
+
+      BufferedReader br =
+          new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      String line;
+      System.out.print("Enter a command (type \"q\" to quit or \"h\" for help): ");
+      while ((line = br.readLine()) != null) {
+        String command = line.trim();
+        if (command.equalsIgnoreCase("q") || command.equalsIgnoreCase("quit")) {
+          break;
+        }
+        if (!client.send(command, System.out)) {
+          break;
+        }
+        System.out.print("Enter a command (type \"q\" to quit or \"h\" for help): ");
+      }
+    }
+    catch (IOException e) {
+      System.err.println("Unable to connect to daemon on port " + port + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+}
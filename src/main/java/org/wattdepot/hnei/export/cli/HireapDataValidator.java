@@ -7,27 +7,51 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.wattdepot.client.WattDepotClient;
 import org.wattdepot.client.WattDepotClientException;
 import org.wattdepot.datainput.DataInputClientProperties;
+import org.wattdepot.hnei.client.ChunkingWattDepotClient;
+import org.wattdepot.hnei.client.CoalescingWattDepotClient;
+import org.wattdepot.hnei.client.DiskCachingClient;
 import org.wattdepot.hnei.csvimport.validation.Entry;
 import org.wattdepot.hnei.csvimport.validation.MonotonicallyIncreasingValue;
+import org.wattdepot.hnei.util.EpochTime;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
 import org.wattdepot.util.tstamp.Tstamp;
 
 /**
  * Finds all sources whose sensor data are not monotonically increasing for a given time period and
- * then returns a string of those sources along with timestamps for those data.
+ * then returns a string of those sources along with timestamps for those data. In parallel mode,
+ * sources are validated at the same time in monthly chunks and violations are written to the
+ * output file as they are found.
  * 
  * @author BJ Peter DeLaCruz
  */
 public class HireapDataValidator {
 
+  /** Default number of sources that are validated at the same time in parallel mode. */
+  public static final int DEFAULT_NUM_THREADS = 8;
+
   /** Used to retrieve sources and data on WattDepot server. */
   protected WattDepotClient client;
 
+  /** Number of sources that are validated at the same time in parallel mode. */
+  private int numThreads = DEFAULT_NUM_THREADS;
+
   /**
    * Reads in URI, username, and password from a properties file, connects to a WattDepot server,
    * and then stores a test source.
@@ -53,6 +77,9 @@ public class HireapDataValidator {
       System.out.println("Is healthy? " + this.client.isHealthy());
       return false;
     }
+    this.client = ChunkingWattDepotClient.wrapIfEnabled(this.client);
+    this.client = DiskCachingClient.wrapIfEnabled(this.client);
+    this.client = new CoalescingWattDepotClient(this.client);
     return true;
   }
 
@@ -128,15 +155,185 @@ public class HireapDataValidator {
     return true;
   }
 
+  /**
+   * Sets the number of sources that are validated at the same time in parallel mode.
+   * 
+   * @param numThreads Number of threads.
+   */
+  public void setNumThreads(int numThreads) {
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * Checks one chunk of sensor data for a source and records each reading that is less than the
+   * reading before it. The first reading of the chunk is compared with the last reading of the
+   * previous chunk, so that violations at chunk boundaries are found.
+   * 
+   * @param sourceName Name of the source.
+   * @param datas Sensor data in the chunk, in the order returned by the server.
+   * @param previous Last sensor data of the previous chunk, or null if this is the first chunk.
+   * @param violations List to which a CSV line is added for each violation.
+   * @return The last sensor data of this chunk, or <code>previous</code> if the chunk is empty.
+   */
+  static SensorData validateChunk(String sourceName, List<SensorData> datas, SensorData previous,
+      List<String> violations) {
+    SensorData last = previous;
+    double lastReading =
+        last == null ? Double.NaN : last.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE);
+    for (SensorData d : datas) {
+      double reading = d.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE);
+      if (last != null && !(reading >= lastReading)) {
+        violations.add(sourceName + "," + d.getTimestamp());
+      }
+      last = d;
+      lastReading = reading;
+    }
+    return last;
+  }
+
+  /**
+   * Validates one source in monthly chunks and writes its violations to a CSV file as each chunk is
+   * checked.
+   * 
+   * @param sourceName Name of the source.
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param zone Time zone offset in minutes.
+   * @param writer Output CSV file, shared by all sources.
+   * @return Number of readings that were checked.
+   * @throws WattDepotClientException if the data cannot be fetched.
+   * @throws IOException if the output file cannot be written.
+   */
+  private long validateSource(String sourceName, long start, long end, int zone, Writer writer)
+      throws WattDepotClientException, IOException {
+    long numReadings = 0;
+    SensorData previous = null;
+    List<String> violations = new ArrayList<>();
+    for (long chunkStart = start; chunkStart <= end;) {
+      long next = EpochTime.startOfNextMonth(chunkStart, zone);
+      long chunkEnd = Math.min(next - 1, end);
+      var datas = this.client.getSensorDatas(sourceName, EpochTime.toTimestamp(chunkStart, zone),
+          EpochTime.toTimestamp(chunkEnd, zone));
+      violations.clear();
+      previous = validateChunk(sourceName, datas, previous, violations);
+      numReadings += datas.size();
+      if (!violations.isEmpty()) {
+        synchronized (writer) {
+          for (String line : violations) {
+            writer.write(line + "\n");
+          }
+          writer.flush();
+        }
+      }
+      chunkStart = next;
+    }
+    return numReadings;
+  }
+
+  /**
+   * Validates all sources in parallel, each one in monthly chunks with the last reading carried
+   * across chunk boundaries, and writes violations to a CSV file as they are found. Progress and
+   * throughput are printed as each source is finished. Only the current chunk of each source is held
+   * in memory.
+   * 
+   * @param startTime Start date.
+   * @param endTime End date.
+   * @return True if successful, false otherwise.
+   */
+  public boolean printDataParallel(XMLGregorianCalendar startTime, XMLGregorianCalendar endTime) {
+    var outputFilename = startTime + "_" + endTime + ".csv";
+    var zone = EpochTime.zoneOffset(startTime);
+    var start = EpochTime.toMillis(startTime);
+    var end = EpochTime.toMillis(endTime);
+
+    List<Source> sources;
+    try {
+      sources = this.client.getSources();
+    }
+    catch (WattDepotClientException e) {
+      e.printStackTrace();
+      return false;
+    }
+
+    var startNanos = System.nanoTime();
+    var numSources = sources.size();
+    var count = new AtomicInteger();
+    var totalReadings = new AtomicLong();
+    try (var writer = Files.newBufferedWriter(Paths.get(outputFilename), StandardCharsets.UTF_8)) {
+      writer.write("Source,Timestamp\n");
+      ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.numThreads,
+          Math.max(1, numSources)));
+      List<Future<Long>> results = new ArrayList<>();
+      for (Source s : sources) {
+        results.add(pool.submit(() -> {
+          long numReadings = this.validateSource(s.getName(), start, end, zone, writer);
+          long total = totalReadings.addAndGet(numReadings);
+          double seconds = (System.nanoTime() - startNanos) / 1e9;
+          System.out.println(String.format("Validated %s [%d of %d]: %d readings (%.0f readings/s).",
+              s.getName(), count.incrementAndGet(), numSources, numReadings, total / seconds));
+          return numReadings;
+        }));
+      }
+      pool.shutdown();
+
+      for (Future<Long> result : results) {
+        try {
+          result.get();
+        }
+        catch (InterruptedException e) {
+          pool.shutdownNow();
+          Thread.currentThread().interrupt();
+          return false;
+        }
+        catch (ExecutionException e) {
+          pool.shutdownNow();
+          e.getCause().printStackTrace();
+          return false;
+        }
+      }
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
+
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    System.out.println(String.format("Validated %d readings from %d sources in %.1f s (%.0f "
+        + "readings/s). Results are in %s.", totalReadings.get(), numSources, seconds,
+        totalReadings.get() / seconds, outputFilename));
+    return true;
+  }
+
   /**
    * A command-line program that finds all sources whose sensor data are not monotonically
    * increasing for a given time period and then returns a string of those sources along with
    * timestamps for those data.
    * 
-   * @param args None.
+   * @param args [-parallel] to validate sources in parallel in monthly chunks, and [-threads n] to
+   * validate n sources at the same time in parallel mode.
    */
   public static void main(String[] args) {
     var validator = new HireapDataValidator();
+    var parallel = false;
+    for (var i = 0; i < args.length; i++) {
+      if ("-parallel".equals(args[i])) {
+        parallel = true;
+      }
+      else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+        try {
+          validator.setNumThreads(Integer.parseInt(args[++i]));
+          parallel = true;
+        }
+        catch (NumberFormatException e) {
+          System.err.println("Invalid number of threads: " + args[i]);
+          System.exit(1);
+        }
+      }
+      else {
+        System.err.println("Usage: HireapDataValidator [-parallel] [-threads n]");
+        System.exit(1);
+      }
+    }
     if (!validator.setup()) {
       System.exit(1);
     }
@@ -145,7 +342,9 @@ public class HireapDataValidator {
       var startTime = Tstamp.makeTimestamp("2010-01-01T06:00:00.000-10:00");
       var endTime = Tstamp.makeTimestamp("2011-04-01T06:00:00.000-10:00");
 
-      if (!validator.printData(startTime, endTime)) {
+      var success = parallel ? validator.printDataParallel(startTime, endTime)
+          : validator.printData(startTime, endTime);
+      if (!success) {
         System.exit(1);
       }
     }
@@ -1,5 +1,6 @@
 package org.wattdepot.hnei.export.cli;
 
+import java.io.PrintStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -43,19 +44,23 @@ public class InterpolatedSensorData extends Retriever {
    * @param start Start timestamp.
    * @param end End timestamp.
    * @param option Option to display type of data (energy or power).
-   * @return True if successful, false otherwise.
+   * @param out Stream to print the data, or any error, to.
+   * @return False if there was a problem communicating with the WattDepot server, true otherwise.
    */
   @Override
-  public boolean getSensorData(String sourceName, String start, String end, String option) {
+  public boolean getSensorData(String sourceName, String start, String end, String option,
+      PrintStream out) {
     Date date1 = null;
     Date date2 = null;
     try {
-      date1 = this.formatDate.parse(start);
-      date2 = this.formatDate.parse(end);
+      synchronized (this.formatDate) {
+        date1 = this.formatDate.parse(start);
+        date2 = this.formatDate.parse(end);
+      }
     }
     catch (ParseException e) {
-      e.printStackTrace();
-      return false;
+      out.println(e.getMessage());
+      return true;
     }
 
     XMLGregorianCalendar startTimestamp = Tstamp.makeTimestamp(date1.getTime());
@@ -66,11 +71,12 @@ public class InterpolatedSensorData extends Retriever {
     long energy = 0;
     try {
       result = this.client.getEnergy(sourceName, startTimestamp, endTimestamp, 0);
-      energyConsumed = this.client.getEnergyConsumed(sourceName, startTimestamp, endTimestamp, 0);
+      // getEnergyConsumed would fetch the same energy again, so read it from this result instead.
+      energyConsumed = result.getPropertyAsDouble(SensorData.ENERGY_CONSUMED);
       energy = Math.round(energyConsumed);
     }
     catch (WattDepotClientException e) {
-      e.printStackTrace();
+      out.println(e);
       return false;
     }
 
@@ -78,7 +84,7 @@ public class InterpolatedSensorData extends Retriever {
     msg += "/" + result.getTimestamp().getYear() + " ";
     msg += this.getTime(result) + "   " + energy + " Wh\n";
 
-    System.out.print(msg);
+    out.print(msg);
 
     return true;
   }
@@ -1,5 +1,6 @@
 package org.wattdepot.hnei.export.cli;
 
+import java.io.PrintStream;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 
 /**
@@ -41,7 +42,22 @@ public abstract class Retriever {
    * @param option Option to display type of data (energy or power).
    * @return True if successful, false otherwise.
    */
-  public abstract boolean getSensorData(String sourceName, String start, String end, String option);
+  public boolean getSensorData(String sourceName, String start, String end, String option) {
+    return this.getSensorData(sourceName, start, end, option, System.out);
+  }
+
+  /**
+   * Displays data for a particular source at the given timestamp.
+   * 
+   * @param sourceName Name of a source.
+   * @param start Start timestamp.
+   * @param end End timestamp; not used by some classes.
+   * @param option Option to display type of data (energy or power).
+   * @param out Stream to print the data, or any error, to.
+   * @return False if there was a problem communicating with the WattDepot server, true otherwise.
+   */
+  public abstract boolean getSensorData(String sourceName, String start, String end, String option,
+      PrintStream out);
 
   /**
    * Displays a help message for a particular command.
@@ -1,32 +1,54 @@
 package org.wattdepot.hnei.export.cli;
 
+import java.io.PrintStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.wattdepot.client.WattDepotClient;
-import org.wattdepot.client.WattDepotClientException;
+import org.wattdepot.hnei.util.EpochTime;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 import org.wattdepot.util.tstamp.Tstamp;
 
 /**
  * This class is used by the HneiWattDepotCli class to get all energy data for a particular source
- * at a given interval.
+ * at a given interval. The interval is fetched in windows (one day each by default); while one
+ * window is printed, the next one is fetched in the background, so the first rows appear quickly
+ * and at most two windows are held in memory.
  * 
  * @author BJ Peter DeLaCruz
  */
 public class SourceSensorDatas extends Retriever {
 
+  /** Default size of a window in milliseconds. */
+  public static final long DEFAULT_WINDOW_SIZE = EpochTime.MILLIS_PER_DAY;
+
   /** Used to fetch sensor data from the WattDepot server. */
   private WattDepotClient client;
 
   /** Formats dates that are in the format MM/DD/YYYY. */
   private SimpleDateFormat formatDate;
 
+  /** Size of a window in milliseconds. */
+  private long windowSize = DEFAULT_WINDOW_SIZE;
+
+  /** Fetches the next window in the background. */
+  private final ExecutorService prefetcher = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "SourceSensorDatas");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   /**
    * Creates a new SourceSensorDatas object.
    * 
@@ -38,6 +60,18 @@ public class SourceSensorDatas extends Retriever {
     this.formatDate = new SimpleDateFormat("MM/dd/yyyy", Locale.US);
   }
 
+  /**
+   * Sets the size of the windows in which the interval is fetched, e.g. a week for hourly data.
+   * 
+   * @param windowSize Size of a window in milliseconds.
+   */
+  public void setWindowSize(long windowSize) {
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+    }
+    this.windowSize = windowSize;
+  }
+
   /**
    * Displays a list of energy/power data for a source at the given interval.
    * 
@@ -45,50 +79,126 @@ public class SourceSensorDatas extends Retriever {
    * @param start Start timestamp.
    * @param end End timestamp.
    * @param option Option to display type of data (energy or power).
-   * @return True if successful, false otherwise.
+   * @param out Stream to print the data, or any error, to.
+   * @return False if there was a problem communicating with the WattDepot server, true otherwise.
    */
   @Override
-  public boolean getSensorData(String sourceName, String start, String end, String option) {
+  public boolean getSensorData(String sourceName, String start, String end, String option,
+      PrintStream out) {
     Date date1 = null;
     Date date2 = null;
     try {
-      date1 = this.formatDate.parse(start);
-      date2 = this.formatDate.parse(end);
+      synchronized (this.formatDate) {
+        date1 = this.formatDate.parse(start);
+        date2 = this.formatDate.parse(end);
+      }
     }
     catch (ParseException e) {
-      e.printStackTrace();
-      return false;
+      out.println(e.getMessage());
+      return true;
     }
 
-    XMLGregorianCalendar startTimestamp = Tstamp.makeTimestamp(date1.getTime());
-    XMLGregorianCalendar endTimestamp = Tstamp.makeTimestamp(date2.getTime());
-    endTimestamp = Tstamp.incrementDays(Tstamp.incrementSeconds(endTimestamp, -1), 1);
+    long startTime = date1.getTime();
+    long endTime = date2.getTime() + EpochTime.MILLIS_PER_DAY - EpochTime.MILLIS_PER_SECOND;
+    long size = this.windowSize;
 
-    List<SensorData> results = null;
+    boolean found = false;
+    StringBuilder rows = new StringBuilder();
+    Future<List<SensorData>> next = this.fetch(sourceName, startTime, endTime, size);
     try {
-      results = this.client.getSensorDatas(sourceName, startTimestamp, endTimestamp);
+      for (long windowStart = startTime; windowStart <= endTime; windowStart += size) {
+        List<SensorData> window = next.get();
+        next = this.fetch(sourceName, windowStart + size, endTime, size);
+        if (window.isEmpty()) {
+          continue;
+        }
+        if (!found) {
+          out.println("Timestamp            Energy (Wh)");
+          found = true;
+        }
+        rows.setLength(0);
+        for (SensorData d : window) {
+          appendRow(rows, d);
+        }
+        out.print(rows);
+        out.flush();
+      }
+    }
+    catch (InterruptedException e) {
+      next.cancel(true);
+      Thread.currentThread().interrupt();
+      return false;
     }
-    catch (WattDepotClientException e) {
-      e.printStackTrace();
+    catch (ExecutionException e) {
+      next.cancel(true);
+      out.println(e.getCause());
       return false;
     }
 
-    if (results.isEmpty()) {
-      System.out.println("No data exists for source " + sourceName + " on " + startTimestamp + ".");
+    if (!found) {
+      out.println("No data exists for source " + sourceName + " on "
+          + Tstamp.makeTimestamp(startTime) + ".");
+    }
+    return true;
+  }
+
+  /**
+   * Starts fetching one window in the background.
+   * 
+   * @param sourceName Name of a source.
+   * @param windowStart Start of the window in milliseconds.
+   * @param endTime End of the whole interval in milliseconds.
+   * @param size Size of a window in milliseconds.
+   * @return The sensor data in the window, which is empty if the window starts after the interval.
+   */
+  private Future<List<SensorData>> fetch(String sourceName, long windowStart, long endTime,
+      long size) {
+    if (windowStart > endTime) {
+      return CompletableFuture.completedFuture(Collections.<SensorData>emptyList());
+    }
+    XMLGregorianCalendar startTimestamp = Tstamp.makeTimestamp(windowStart);
+    XMLGregorianCalendar endTimestamp =
+        Tstamp.makeTimestamp(Math.min(windowStart + size - 1, endTime));
+    return this.prefetcher.submit(() -> this.client.getSensorDatas(sourceName, startTimestamp,
+        endTimestamp));
+  }
+
+  /**
+   * Appends one row of output for a sensor data: the date (M/D/YYYY), the time, and the total energy
+   * consumed to date rounded to a whole number of watt-hours.
+   * 
+   * @param rows Buffer to append the row to.
+   * @param data Sensor data to print.
+   */
+  static void appendRow(StringBuilder rows, SensorData data) {
+    XMLGregorianCalendar t = data.getTimestamp();
+    rows.append(t.getMonth()).append('/').append(t.getDay()).append('/').append(t.getYear());
+    rows.append(' ');
+    appendTwoDigits(rows, t.getHour()).append(':');
+    appendTwoDigits(rows, t.getMinute()).append(':');
+    appendTwoDigits(rows, t.getSecond()).append("   ");
+    double energy = data.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE);
+    if (energy >= 0 && energy < Long.MAX_VALUE) {
+      rows.append(Math.round(energy));
     }
     else {
-      String msg = "";
-      System.out.println("Timestamp            Energy (Wh)");
-      for (SensorData d : results) {
-        msg = d.getTimestamp().getMonth() + "/" + d.getTimestamp().getDay();
-        msg += "/" + d.getTimestamp().getYear() + " " + this.getTime(d) + "   ";
-        System.out.print(msg);
-        System.out.println(String.format("%.0f",
-            d.getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE)));
-      }
+      rows.append(String.format("%.0f", energy));
     }
+    rows.append(System.lineSeparator());
+  }
 
-    return true;
+  /**
+   * Appends a number with at least two digits.
+   * 
+   * @param rows Buffer to append the number to.
+   * @param value Number to append.
+   * @return The buffer.
+   */
+  private static StringBuilder appendTwoDigits(StringBuilder rows, int value) {
+    if (value < 10) {
+      rows.append('0');
+    }
+    return rows.append(value);
   }
 
   /**
@@ -0,0 +1,259 @@
+package org.wattdepot.hnei.util;
+
+import java.util.TimeZone;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * Represents time internally as milliseconds since the Unix epoch plus a time zone offset in
+ * minutes. Timestamps returned by the WattDepot client are converted to <code>long</code> values
+ * once, and all sorting, binning, and range computations are done on primitives; timestamps are
+ * only converted back to XMLGregorianCalendar objects when they are passed to the client.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public final class EpochTime {
+
+  /** Number of milliseconds in one second. */
+  public static final long MILLIS_PER_SECOND = 1000L;
+
+  /** Number of milliseconds in one minute. */
+  public static final long MILLIS_PER_MINUTE = 60L * MILLIS_PER_SECOND;
+
+  /** Number of milliseconds in one hour. */
+  public static final long MILLIS_PER_HOUR = 60L * MILLIS_PER_MINUTE;
+
+  /** Number of milliseconds in one day. */
+  public static final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+
+  /** Number of days between 0000-03-01 and 1970-01-01 in the proleptic Gregorian calendar. */
+  private static final long EPOCH_DAY_OFFSET = 719468L;
+
+  /** Number of days in a 400-year cycle of the Gregorian calendar. */
+  private static final long DAYS_PER_ERA = 146097L;
+
+  /** Used to create timestamps at the client boundary. */
+  private static final DatatypeFactory FACTORY;
+
+  static {
+    try {
+      FACTORY = DatatypeFactory.newInstance();
+    }
+    catch (DatatypeConfigurationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Prevents this class from being instantiated.
+   */
+  private EpochTime() {
+  }
+
+  /**
+   * Converts a timestamp to milliseconds since the Unix epoch. The conversion is done with integer
+   * arithmetic on the fields of the timestamp, so no Calendar objects are created unless the time
+   * zone of the timestamp is not specified.
+   *
+   * @param timestamp Timestamp to convert.
+   * @return Milliseconds since the Unix epoch.
+   */
+  public static long toMillis(XMLGregorianCalendar timestamp) {
+    int zone = timestamp.getTimezone();
+    if (zone == DatatypeConstants.FIELD_UNDEFINED || timestamp.getYear() == DatatypeConstants.FIELD_UNDEFINED
+        || timestamp.getHour() == DatatypeConstants.FIELD_UNDEFINED) {
+      return timestamp.toGregorianCalendar().getTimeInMillis();
+    }
+    int millis = timestamp.getMillisecond();
+    if (millis == DatatypeConstants.FIELD_UNDEFINED) {
+      millis = 0;
+    }
+    long days = daysFromCivil(timestamp.getYear(), timestamp.getMonth(), timestamp.getDay());
+    long timeOfDay = timestamp.getHour() * MILLIS_PER_HOUR + timestamp.getMinute() * MILLIS_PER_MINUTE;
+    timeOfDay += timestamp.getSecond() * MILLIS_PER_SECOND + millis;
+    return days * MILLIS_PER_DAY + timeOfDay - zone * MILLIS_PER_MINUTE;
+  }
+
+  /**
+   * Returns the time zone offset of a timestamp in minutes. If the timestamp does not specify a
+   * time zone, the offset of the default time zone at that time is returned.
+   *
+   * @param timestamp Timestamp whose time zone offset is returned.
+   * @return Time zone offset in minutes.
+   */
+  public static int zoneOffset(XMLGregorianCalendar timestamp) {
+    int zone = timestamp.getTimezone();
+    if (zone == DatatypeConstants.FIELD_UNDEFINED) {
+      long millis = timestamp.toGregorianCalendar().getTimeInMillis();
+      return (int) (TimeZone.getDefault().getOffset(millis) / MILLIS_PER_MINUTE);
+    }
+    return zone;
+  }
+
+  /**
+   * Converts milliseconds since the Unix epoch to a timestamp in the given time zone. Used only
+   * when a timestamp has to be passed to the WattDepot client.
+   *
+   * @param millis Milliseconds since the Unix epoch.
+   * @param zoneOffset Time zone offset in minutes.
+   * @return A timestamp that represents the given time.
+   */
+  public static XMLGregorianCalendar toTimestamp(long millis, int zoneOffset) {
+    long local = millis + zoneOffset * MILLIS_PER_MINUTE;
+    long days = Math.floorDiv(local, MILLIS_PER_DAY);
+    long timeOfDay = local - days * MILLIS_PER_DAY;
+
+    // Convert number of days to year, month, and day.
+    long z = days + EPOCH_DAY_OFFSET;
+    long era = Math.floorDiv(z, DAYS_PER_ERA);
+    long dayOfEra = z - era * DAYS_PER_ERA;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long mp = (5 * dayOfYear + 2) / 153;
+    int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+    int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+    int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+    int hour = (int) (timeOfDay / MILLIS_PER_HOUR);
+    int minute = (int) ((timeOfDay % MILLIS_PER_HOUR) / MILLIS_PER_MINUTE);
+    int second = (int) ((timeOfDay % MILLIS_PER_MINUTE) / MILLIS_PER_SECOND);
+    int milli = (int) (timeOfDay % MILLIS_PER_SECOND);
+    return FACTORY.newXMLGregorianCalendar(year, month, day, hour, minute, second, milli, zoneOffset);
+  }
+
+  /**
+   * Returns the number of the local day (days since the Unix epoch in the given time zone) that
+   * contains the given time.
+   *
+   * @param millis Milliseconds since the Unix epoch.
+   * @param zoneOffset Time zone offset in minutes.
+   * @return Number of the local day.
+   */
+  public static long localDay(long millis, int zoneOffset) {
+    return Math.floorDiv(millis + zoneOffset * MILLIS_PER_MINUTE, MILLIS_PER_DAY);
+  }
+
+  /**
+   * Returns the time at midnight of the local day that contains the given time.
+   *
+   * @param millis Milliseconds since the Unix epoch.
+   * @param zoneOffset Time zone offset in minutes.
+   * @return Milliseconds since the Unix epoch at the start of the local day.
+   */
+  public static long startOfDay(long millis, int zoneOffset) {
+    return localDay(millis, zoneOffset) * MILLIS_PER_DAY - zoneOffset * MILLIS_PER_MINUTE;
+  }
+
+  /**
+   * Returns the time at midnight of the first day of the local month that contains the given time.
+   *
+   * @param millis Milliseconds since the Unix epoch.
+   * @param zoneOffset Time zone offset in minutes.
+   * @return Milliseconds since the Unix epoch at the start of the local month.
+   */
+  public static long startOfMonth(long millis, int zoneOffset) {
+    XMLGregorianCalendar timestamp = toTimestamp(millis, zoneOffset);
+    return startOfMonth(timestamp.getYear(), timestamp.getMonth(), zoneOffset);
+  }
+
+  /**
+   * Returns the time at midnight of the first day of the local month after the one that contains
+   * the given time, e.g. to split a long time period into monthly chunks.
+   *
+   * @param millis Milliseconds since the Unix epoch.
+   * @param zoneOffset Time zone offset in minutes.
+   * @return Milliseconds since the Unix epoch at the start of the next local month.
+   */
+  public static long startOfNextMonth(long millis, int zoneOffset) {
+    XMLGregorianCalendar timestamp = toTimestamp(millis, zoneOffset);
+    if (timestamp.getMonth() == 12) {
+      return startOfMonth(timestamp.getYear() + 1, 1, zoneOffset);
+    }
+    return startOfMonth(timestamp.getYear(), timestamp.getMonth() + 1, zoneOffset);
+  }
+
+  /**
+   * Returns the time at midnight of the first day of a local month.
+   *
+   * @param year Year.
+   * @param month Month (1 to 12).
+   * @param zoneOffset Time zone offset in minutes.
+   * @return Milliseconds since the Unix epoch at the start of the month.
+   */
+  private static long startOfMonth(int year, int month, int zoneOffset) {
+    return daysFromCivil(year, month, 1) * MILLIS_PER_DAY - zoneOffset * MILLIS_PER_MINUTE;
+  }
+
+  /**
+   * Returns the number of local days between two times, in the same way as
+   * <code>Tstamp.daysBetween</code>.
+   *
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param zoneOffset Time zone offset in minutes.
+   * @return Number of days between start and end.
+   */
+  public static int daysBetween(long start, long end, int zoneOffset) {
+    return (int) (localDay(end, zoneOffset) - localDay(start, zoneOffset));
+  }
+
+  /**
+   * Returns the number of intervals of the given width that are needed to cover the time period
+   * from start to end. The last interval may extend past the end time.
+   *
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds.
+   * @param width Width of an interval in milliseconds.
+   * @return Number of intervals between start and end.
+   */
+  public static int numBins(long start, long end, long width) {
+    if (end <= start) {
+      return 0;
+    }
+    return (int) ((end - start + width - 1) / width);
+  }
+
+  /**
+   * Splits a time period into chunks, e.g. to fetch a long time period in several requests. Chunk
+   * <code>i</code> is from <code>boundaries[i]</code> to <code>boundaries[i + 1] - 1</code>,
+   * inclusive; the last chunk may be shorter than the others.
+   *
+   * @param start Start time in milliseconds.
+   * @param end End time in milliseconds, inclusive.
+   * @param width Width of a chunk in milliseconds.
+   * @return The start of each chunk, followed by <code>end + 1</code>; empty if end is before start.
+   */
+  public static long[] split(long start, long end, long width) {
+    if (end < start) {
+      return new long[0];
+    }
+    int numChunks = numBins(start, end + 1, width);
+    long[] boundaries = new long[numChunks + 1];
+    for (int i = 0; i < numChunks; i++) {
+      boundaries[i] = start + i * width;
+    }
+    boundaries[numChunks] = end + 1;
+    return boundaries;
+  }
+
+  /**
+   * Returns the number of days since 1970-01-01 for the given date in the proleptic Gregorian
+   * calendar.
+   *
+   * @param year Year.
+   * @param month Month (1 to 12).
+   * @param day Day of the month.
+   * @return Number of days since the Unix epoch.
+   */
+  static long daysFromCivil(int year, int month, int day) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * DAYS_PER_ERA + dayOfEra - EPOCH_DAY_OFFSET;
+  }
+
+}
@@ -0,0 +1,298 @@
+package org.wattdepot.hnei.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Stores a (timestamp, value) series for each source of a fleet outside of the Java heap, so that
+ * a year of readings for every source can be analyzed without creating millions of SensorData
+ * objects. Series are identified by dense, non-negative ids. Points are stored in blocks of
+ * {@value #BLOCK_POINTS} points, each with a column of timestamps followed by a column of values;
+ * blocks are allocated from pages that are either direct buffers or, if the arena is backed by a
+ * file, memory-mapped regions of that file. The heap only holds the list of blocks of each series,
+ * which is a few bytes per thousand points.
+ * <p>
+ * Points are appended to a series in the order in which they are read. Appending is thread-safe,
+ * and {@link #getSeries} returns a read-only view of the points appended so far, which can be read
+ * from any thread without boxing.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class FleetArena implements Closeable {
+
+  /** Number of points in a block. */
+  public static final int BLOCK_POINTS = 4096;
+
+  /** Number of bits to shift an index by to get the number of its block. */
+  private static final int BLOCK_SHIFT = Integer.numberOfTrailingZeros(BLOCK_POINTS);
+
+  /** Mask that gives the index of a point within its block. */
+  private static final int BLOCK_MASK = BLOCK_POINTS - 1;
+
+  /** Size of a block in bytes: a column of timestamps and a column of values. */
+  private static final int BLOCK_BYTES = BLOCK_POINTS * 16;
+
+  /** Offset of the values in a block. */
+  private static final int VALUES_OFFSET = BLOCK_POINTS * 8;
+
+  /** Number of blocks in a page. */
+  private static final int PAGE_BLOCKS = 256;
+
+  /** Size of a page in bytes. */
+  private static final long PAGE_BYTES = (long) PAGE_BLOCKS * BLOCK_BYTES;
+
+  /** File that backs the arena, or null if pages are direct buffers. */
+  private final FileChannel channel;
+
+  /** Pages that blocks are allocated from. */
+  private ByteBuffer[] pages;
+
+  /** Number of pages allocated. */
+  private int numPages;
+
+  /** Number of blocks allocated. */
+  private int numBlocks;
+
+  /** Blocks of each series, by id. */
+  private int[][] blocks;
+
+  /** Number of points in each series, by id. */
+  private int[] sizes;
+
+  /** Number of points in all series. */
+  private long numPoints;
+
+  /**
+   * Creates an arena whose pages are direct buffers.
+   */
+  public FleetArena() {
+    this.channel = null;
+    this.pages = new ByteBuffer[4];
+    this.blocks = new int[16][];
+    this.sizes = new int[16];
+  }
+
+  /**
+   * Creates an arena whose pages are mapped from a file, which is replaced if it exists. The
+   * operating system pages the data in and out, so the arena can be larger than physical memory.
+   *
+   * @param file File that backs the arena.
+   * @throws IOException if the file cannot be created.
+   */
+  public FleetArena(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.pages = new ByteBuffer[4];
+    this.blocks = new int[16][];
+    this.sizes = new int[16];
+  }
+
+  /**
+   * Creates an arena in a new temporary file that is deleted when the arena is closed or, failing
+   * that, when the virtual machine exits.
+   *
+   * @param directory Directory for the temporary file.
+   * @return The arena.
+   * @throws IOException if the file cannot be created.
+   */
+  public static FleetArena createTemp(Path directory) throws IOException {
+    Path file = Files.createTempFile(directory, "arena", ".dat");
+    file.toFile().deleteOnExit();
+    FleetArena arena = new FleetArena(file);
+    try {
+      Files.delete(file);
+    }
+    catch (IOException ignored) {
+      // Some platforms do not delete open files; the file is deleted when the VM exits instead.
+    }
+    return arena;
+  }
+
+  /**
+   * Allocates a block, adding a page if necessary.
+   *
+   * @return The number of the block.
+   * @throws IOException if a page cannot be mapped.
+   */
+  private int allocateBlock() throws IOException {
+    if (this.numBlocks == this.numPages * PAGE_BLOCKS) {
+      ByteBuffer page;
+      if (this.channel == null) {
+        page = ByteBuffer.allocateDirect((int) PAGE_BYTES);
+      }
+      else {
+        page = this.channel.map(FileChannel.MapMode.READ_WRITE, this.numPages * PAGE_BYTES,
+            PAGE_BYTES);
+      }
+      if (this.numPages == this.pages.length) {
+        this.pages = Arrays.copyOf(this.pages, this.numPages * 2);
+      }
+      this.pages[this.numPages++] = page.order(ByteOrder.nativeOrder());
+    }
+    return this.numBlocks++;
+  }
+
+  /**
+   * Appends points to a series, creating it if it does not exist.
+   *
+   * @param id Id of the series.
+   * @param times Timestamps in milliseconds.
+   * @param values Values at each timestamp.
+   * @param offset Index of the first point to append.
+   * @param length Number of points to append.
+   * @throws IOException if a page cannot be mapped.
+   */
+  public synchronized void append(int id, long[] times, double[] values, int offset, int length)
+      throws IOException {
+    if (id < 0) {
+      throw new IllegalArgumentException("Invalid id: " + id);
+    }
+    if (this.pages == null) {
+      throw new IllegalStateException("The arena is closed.");
+    }
+    if (id >= this.sizes.length) {
+      int capacity = Math.max(id + 1, this.sizes.length * 2);
+      this.sizes = Arrays.copyOf(this.sizes, capacity);
+      this.blocks = Arrays.copyOf(this.blocks, capacity);
+    }
+    int size = this.sizes[id];
+    int[] list = this.blocks[id] == null ? new int[1] : this.blocks[id];
+    for (int i = offset; i < offset + length; i++) {
+      int index = size & BLOCK_MASK;
+      int block = size >>> BLOCK_SHIFT;
+      if (index == 0) {
+        if (block == list.length) {
+          list = Arrays.copyOf(list, list.length * 2);
+        }
+        list[block] = this.allocateBlock();
+      }
+      ByteBuffer page = this.pages[list[block] / PAGE_BLOCKS];
+      int position = (list[block] % PAGE_BLOCKS) * BLOCK_BYTES + index * 8;
+      page.putLong(position, times[i]);
+      page.putDouble(position + VALUES_OFFSET, values[i]);
+      size++;
+    }
+    this.blocks[id] = list;
+    this.sizes[id] = size;
+    this.numPoints += length;
+  }
+
+  /**
+   * Appends a point to a series, creating it if it does not exist.
+   *
+   * @param id Id of the series.
+   * @param time Timestamp in milliseconds.
+   * @param value Value.
+   * @throws IOException if a page cannot be mapped.
+   */
+  public void append(int id, long time, double value) throws IOException {
+    this.append(id, new long[] {time}, new double[] {value}, 0, 1);
+  }
+
+  /**
+   * Returns a read-only view of the points appended to a series so far. Points appended later are
+   * not part of the view.
+   *
+   * @param id Id of the series.
+   * @return The series, which is empty if nothing has been appended to it.
+   */
+  public synchronized TimeSeries getSeries(int id) {
+    if (this.pages == null) {
+      throw new IllegalStateException("The arena is closed.");
+    }
+    if (id < 0 || id >= this.sizes.length || this.blocks[id] == null) {
+      return TimeSeries.of(new long[0], new double[0], 0);
+    }
+    int size = this.sizes[id];
+    int[] list = Arrays.copyOf(this.blocks[id], (size + BLOCK_MASK) >>> BLOCK_SHIFT);
+    ByteBuffer[] pageList = this.pages;
+    return new TimeSeries() {
+
+      /**
+       * Returns the position of a point in its page.
+       *
+       * @param index Index of the point.
+       * @return The position in bytes.
+       */
+      private int position(int index) {
+        if (index < 0 || index >= size) {
+          throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (list[index >>> BLOCK_SHIFT] % PAGE_BLOCKS) * BLOCK_BYTES
+            + (index & BLOCK_MASK) * 8;
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public long getTime(int index) {
+        return pageList[list[index >>> BLOCK_SHIFT] / PAGE_BLOCKS].getLong(this.position(index));
+      }
+
+      @Override
+      public double getValue(int index) {
+        return pageList[list[index >>> BLOCK_SHIFT] / PAGE_BLOCKS].getDouble(this.position(index)
+            + VALUES_OFFSET);
+      }
+    };
+  }
+
+  /**
+   * Removes all points from a series. Its blocks are not reused.
+   *
+   * @param id Id of the series.
+   */
+  public synchronized void clear(int id) {
+    if (id >= 0 && id < this.sizes.length) {
+      this.numPoints -= this.sizes[id];
+      this.sizes[id] = 0;
+      this.blocks[id] = null;
+    }
+  }
+
+  /**
+   * Returns the number of points in all series.
+   *
+   * @return The number of points.
+   */
+  public synchronized long getNumPoints() {
+    return this.numPoints;
+  }
+
+  /**
+   * Returns the number of bytes allocated outside of the heap.
+   *
+   * @return The number of bytes.
+   */
+  public synchronized long getAllocatedBytes() {
+    return this.numPages * PAGE_BYTES;
+  }
+
+  /**
+   * Releases the pages of the arena. Direct buffers are freed when they are garbage collected;
+   * views must not be used after the arena is closed.
+   *
+   * @throws IOException if the file that backs the arena cannot be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    this.pages = null;
+    this.blocks = new int[0][];
+    this.sizes = new int[0];
+    this.numPoints = 0;
+    if (this.channel != null) {
+      this.channel.close();
+    }
+  }
+
+}
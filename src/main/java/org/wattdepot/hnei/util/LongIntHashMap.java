@@ -0,0 +1,210 @@
+package org.wattdepot.hnei.util;
+
+import java.util.Arrays;
+
+/**
+ * A compact hash map from <code>long</code> keys to <code>int</code> values that uses open
+ * addressing with linear probing, so no objects are created for each entry.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class LongIntHashMap {
+
+  /** Maximum ratio of entries to slots before the table is resized. */
+  private static final double LOAD_FACTOR = 0.6;
+
+  /** Keys stored in the map. */
+  private long[] keys;
+
+  /** Values stored in the map. */
+  private int[] values;
+
+  /** True if the slot at the same index is in use. */
+  private boolean[] used;
+
+  /** Number of entries in the map. */
+  private int size;
+
+  /**
+   * Used to visit each entry in a map.
+   */
+  public interface Visitor {
+
+    /**
+     * Visits an entry in a map.
+     *
+     * @param key Key of the entry.
+     * @param value Value of the entry.
+     */
+    void visit(long key, int value);
+  }
+
+  /**
+   * Creates a new LongIntHashMap object.
+   */
+  public LongIntHashMap() {
+    this(16);
+  }
+
+  /**
+   * Creates a new LongIntHashMap object with enough room for the given number of entries.
+   *
+   * @param expectedSize Expected number of entries.
+   */
+  public LongIntHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+    this.keys = new long[capacity];
+    this.values = new int[capacity];
+    this.used = new boolean[capacity];
+    this.size = 0;
+  }
+
+  /**
+   * Returns the number of entries in the map.
+   *
+   * @return The number of entries in the map.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns true if the map contains the given key, false otherwise.
+   *
+   * @param key Key to look up.
+   * @return True if the map contains the key, false otherwise.
+   */
+  public boolean containsKey(long key) {
+    return this.used[this.indexOf(key)];
+  }
+
+  /**
+   * Returns the value for the given key.
+   *
+   * @param key Key to look up.
+   * @param defaultValue Value to return if the map does not contain the key.
+   * @return The value for the key, or <code>defaultValue</code> if there is none.
+   */
+  public int get(long key, int defaultValue) {
+    int index = this.indexOf(key);
+    return this.used[index] ? this.values[index] : defaultValue;
+  }
+
+  /**
+   * Stores a value for the given key.
+   *
+   * @param key Key of the entry.
+   * @param value Value of the entry.
+   */
+  public void put(long key, int value) {
+    int index = this.indexOf(key);
+    if (!this.used[index]) {
+      this.used[index] = true;
+      this.keys[index] = key;
+      this.size++;
+    }
+    this.values[index] = value;
+    this.resizeIfNeeded();
+  }
+
+  /**
+   * Adds a value to the value stored for the given key; a key that is not in the map is treated as
+   * if its value were 0.
+   *
+   * @param key Key of the entry.
+   * @param delta Value to add.
+   * @return The new value for the key.
+   */
+  public int addTo(long key, int delta) {
+    int index = this.indexOf(key);
+    if (!this.used[index]) {
+      this.used[index] = true;
+      this.keys[index] = key;
+      this.values[index] = 0;
+      this.size++;
+    }
+    int result = this.values[index] + delta;
+    this.values[index] = result;
+    this.resizeIfNeeded();
+    return result;
+  }
+
+  /**
+   * Adds all values in another map to the values in this map.
+   *
+   * @param other Map to merge into this one.
+   */
+  public void addAll(LongIntHashMap other) {
+    other.forEach(this::addTo);
+  }
+
+  /**
+   * Visits each entry in the map in no particular order.
+   *
+   * @param visitor Used to visit each entry.
+   */
+  public void forEach(Visitor visitor) {
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.used[i]) {
+        visitor.visit(this.keys[i], this.values[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns all keys in the map in ascending order.
+   *
+   * @return All keys in the map.
+   */
+  public long[] sortedKeys() {
+    long[] result = new long[this.size];
+    int count = 0;
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.used[i]) {
+        result[count++] = this.keys[i];
+      }
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the slot that holds the given key, or the empty slot where it should be stored.
+   *
+   * @param key Key to look up.
+   * @return Index of a slot.
+   */
+  private int indexOf(long key) {
+    int mask = this.keys.length - 1;
+    long hash = key * 0x9E3779B97F4A7C15L;
+    int index = (int) (hash ^ (hash >>> 32)) & mask;
+    while (this.used[index] && this.keys[index] != key) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  /**
+   * Doubles the size of the table if it is too full.
+   */
+  private void resizeIfNeeded() {
+    if (this.size <= this.keys.length * LOAD_FACTOR) {
+      return;
+    }
+    long[] oldKeys = this.keys;
+    int[] oldValues = this.values;
+    boolean[] oldUsed = this.used;
+    this.keys = new long[oldKeys.length * 2];
+    this.values = new int[oldKeys.length * 2];
+    this.used = new boolean[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int index = this.indexOf(oldKeys[i]);
+        this.used[index] = true;
+        this.keys[index] = oldKeys[i];
+        this.values[index] = oldValues[i];
+      }
+    }
+  }
+
+}
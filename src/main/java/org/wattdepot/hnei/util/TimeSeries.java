@@ -0,0 +1,65 @@
+package org.wattdepot.hnei.util;
+
+/**
+ * A read-only series of (timestamp, value) points that can be read by index without creating any
+ * objects, e.g. a series in a {@link FleetArena}.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public interface TimeSeries {
+
+  /**
+   * Returns the number of points in the series.
+   *
+   * @return The number of points.
+   */
+  int size();
+
+  /**
+   * Returns the timestamp of a point.
+   *
+   * @param index Index of the point.
+   * @return The timestamp in milliseconds.
+   */
+  long getTime(int index);
+
+  /**
+   * Returns the value of a point.
+   *
+   * @param index Index of the point.
+   * @return The value.
+   */
+  double getValue(int index);
+
+  /**
+   * Returns a series backed by arrays, which are not copied.
+   *
+   * @param times Timestamps in milliseconds.
+   * @param values Values at each timestamp.
+   * @param size Number of points.
+   * @return The series.
+   */
+  static TimeSeries of(long[] times, double[] values, int size) {
+    if (size < 0 || size > times.length || size > values.length) {
+      throw new IllegalArgumentException("Invalid size: " + size);
+    }
+    return new TimeSeries() {
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public long getTime(int index) {
+        return times[index];
+      }
+
+      @Override
+      public double getValue(int index) {
+        return values[index];
+      }
+    };
+  }
+
+}
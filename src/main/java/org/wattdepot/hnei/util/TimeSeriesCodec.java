@@ -0,0 +1,516 @@
+package org.wattdepot.hnei.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compresses time series of (timestamp, value) pairs held in primitive arrays, in the style of the
+ * Gorilla encoding. Timestamps are stored as delta-of-deltas, so readings at a regular interval
+ * take one bit each. Values are stored as delta-of-deltas too if every value in a block is a whole
+ * number, which is the case for energy counters, and otherwise as the XOR of each value with the
+ * previous one. Both encodings are lossless.
+ * <p>
+ * Points are grouped into blocks of up to {@value #DEFAULT_BLOCK_SIZE} points. Each block has a
+ * header with its number of points and its earliest and latest timestamps, so that a reader can
+ * skip blocks outside a time range without decoding them.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public final class TimeSeriesCodec {
+
+  /** Default number of points in a block. */
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  /** Magic number at the start of an encoded series. */
+  private static final int MAGIC = 0x48545343;
+
+  /** Size of the series header in bytes: magic number and number of points. */
+  private static final int HEADER_SIZE = 8;
+
+  /**
+   * Size of a block header in bytes: number of points, earliest and latest timestamps, flags, and
+   * length of the payload.
+   */
+  private static final int BLOCK_HEADER_SIZE = 25;
+
+  /** Flag in a block header that is set if the values are whole numbers. */
+  private static final int WHOLE_VALUES = 1;
+
+  /** Largest magnitude of a whole number that a double represents exactly. */
+  private static final double MAX_WHOLE = 1L << 53;
+
+  /**
+   * Writes bits to a growing byte array, most significant bit first.
+   */
+  private static final class BitWriter {
+
+    /** Encoded bytes. */
+    private byte[] bytes;
+
+    /** Number of bytes written. */
+    private int size;
+
+    /** Bits that have not been written to the array yet, in the low bits. */
+    private long buffer;
+
+    /** Number of bits in the buffer; always less than 8 between calls. */
+    private int bits;
+
+    /**
+     * Creates a new BitWriter object.
+     *
+     * @param capacity Initial capacity in bytes.
+     */
+    private BitWriter(int capacity) {
+      this.bytes = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Writes the low bits of a value.
+     *
+     * @param value Value to write.
+     * @param n Number of bits to write, from 1 to 64.
+     */
+    private void write(long value, int n) {
+      if (n > 32) {
+        this.write(value >>> 32, n - 32);
+        this.write(value, 32);
+        return;
+      }
+      this.buffer = (this.buffer << n) | (value & ((1L << n) - 1));
+      this.bits += n;
+      while (this.bits >= 8) {
+        this.bits -= 8;
+        if (this.size == this.bytes.length) {
+          this.bytes = Arrays.copyOf(this.bytes, this.size * 2);
+        }
+        this.bytes[this.size++] = (byte) (this.buffer >>> this.bits);
+      }
+    }
+
+    /**
+     * Pads the last byte with zeros.
+     */
+    private void flush() {
+      if (this.bits > 0) {
+        this.write(0, 8 - this.bits);
+      }
+    }
+  }
+
+  /**
+   * Reads bits from a byte array, most significant bit first.
+   */
+  private static final class BitReader {
+
+    /** Encoded bytes. */
+    private final byte[] bytes;
+
+    /** Index of the next byte to read. */
+    private int position;
+
+    /** Index just past the last byte that may be read. */
+    private final int limit;
+
+    /** Bits that have been read from the array but not returned yet, in the low bits. */
+    private long buffer;
+
+    /** Number of bits in the buffer. */
+    private int bits;
+
+    /**
+     * Creates a new BitReader object.
+     *
+     * @param bytes Encoded bytes.
+     * @param offset Index of the first byte to read.
+     * @param length Number of bytes that may be read.
+     */
+    private BitReader(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.position = offset;
+      this.limit = offset + length;
+    }
+
+    /**
+     * Reads bits as an unsigned value.
+     *
+     * @param n Number of bits to read, from 1 to 64.
+     * @return The value.
+     */
+    private long read(int n) {
+      if (n > 32) {
+        long high = this.read(n - 32);
+        return (high << 32) | this.read(32);
+      }
+      while (this.bits < n) {
+        if (this.position == this.limit) {
+          throw new IllegalArgumentException("Encoded block is truncated.");
+        }
+        this.buffer = (this.buffer << 8) | (this.bytes[this.position++] & 0xFF);
+        this.bits += 8;
+      }
+      this.bits -= n;
+      return (this.buffer >>> this.bits) & ((1L << n) - 1);
+    }
+
+    /**
+     * Counts the 1 bits before the next 0 bit, reading at most <code>max</code> bits.
+     *
+     * @param max Maximum number of bits to read.
+     * @return The number of 1 bits.
+     */
+    private int readOnes(int max) {
+      int ones = 0;
+      while (ones < max && this.read(1) == 1) {
+        ones++;
+      }
+      return ones;
+    }
+  }
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private TimeSeriesCodec() {
+  }
+
+  /**
+   * Writes a signed delta with a prefix that gives its size: 0 for zero, then 10, 110, 1110, 11110,
+   * 111110, and 111111 for 7, 9, 12, 20, 32, and 64 bits of zigzag-encoded value.
+   *
+   * @param out Writer to write to.
+   * @param delta Delta to write.
+   */
+  private static void writeDelta(BitWriter out, long delta) {
+    long zigzag = (delta << 1) ^ (delta >> 63);
+    if (zigzag == 0) {
+      out.write(0, 1);
+    }
+    else if (zigzag >>> 7 == 0) {
+      out.write(0b10, 2);
+      out.write(zigzag, 7);
+    }
+    else if (zigzag >>> 9 == 0) {
+      out.write(0b110, 3);
+      out.write(zigzag, 9);
+    }
+    else if (zigzag >>> 12 == 0) {
+      out.write(0b1110, 4);
+      out.write(zigzag, 12);
+    }
+    else if (zigzag >>> 20 == 0) {
+      out.write(0b11110, 5);
+      out.write(zigzag, 20);
+    }
+    else if (zigzag >>> 32 == 0) {
+      out.write(0b111110, 6);
+      out.write(zigzag, 32);
+    }
+    else {
+      out.write(0b111111, 6);
+      out.write(zigzag, 64);
+    }
+  }
+
+  /**
+   * Reads a delta written by {@link #writeDelta}.
+   *
+   * @param in Reader to read from.
+   * @return The delta.
+   */
+  private static long readDelta(BitReader in) {
+    long zigzag;
+    switch (in.readOnes(5)) {
+    case 0:
+      return 0;
+    case 1:
+      zigzag = in.read(7);
+      break;
+    case 2:
+      zigzag = in.read(9);
+      break;
+    case 3:
+      zigzag = in.read(12);
+      break;
+    case 4:
+      zigzag = in.read(20);
+      break;
+    default:
+      zigzag = in.read(1) == 0 ? in.read(32) : in.read(64);
+      break;
+    }
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  /**
+   * Returns true if a double is a whole number that converts to a long and back without loss,
+   * which excludes negative zero and NaN.
+   *
+   * @param value A double.
+   * @return True if the value is a whole number.
+   */
+  private static boolean isWhole(double value) {
+    return Math.abs(value) < MAX_WHOLE
+        && Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits((long) value);
+  }
+
+  /**
+   * Encodes a series with the default block size.
+   *
+   * @param times Timestamps in milliseconds.
+   * @param values Values at each timestamp.
+   * @return The encoded series.
+   */
+  public static byte[] encode(long[] times, double[] values) {
+    return encode(times, values, 0, times.length, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Encodes part of a series.
+   *
+   * @param times Timestamps in milliseconds.
+   * @param values Values at each timestamp.
+   * @param offset Index of the first point to encode.
+   * @param length Number of points to encode.
+   * @param blockSize Maximum number of points in a block.
+   * @return The encoded series.
+   */
+  public static byte[] encode(long[] times, double[] values, int offset, int length,
+      int blockSize) {
+    if (times.length != values.length || offset < 0 || length < 0
+        || offset + length > times.length || blockSize <= 0) {
+      throw new IllegalArgumentException("Invalid series or block size.");
+    }
+    BitWriter out = new BitWriter(HEADER_SIZE + length * 3);
+    out.write(MAGIC, 32);
+    out.write(length, 32);
+    for (int start = offset; start < offset + length; start += blockSize) {
+      encodeBlock(out, times, values, start, Math.min(blockSize, offset + length - start));
+    }
+    return Arrays.copyOf(out.bytes, out.size);
+  }
+
+  /**
+   * Encodes one block: a header followed by the bit-packed points.
+   *
+   * @param out Writer to write to.
+   * @param times Timestamps in milliseconds.
+   * @param values Values at each timestamp.
+   * @param start Index of the first point in the block.
+   * @param count Number of points in the block.
+   */
+  private static void encodeBlock(BitWriter out, long[] times, double[] values, int start,
+      int count) {
+    long minTime = Long.MAX_VALUE;
+    long maxTime = Long.MIN_VALUE;
+    boolean whole = true;
+    for (int i = start; i < start + count; i++) {
+      minTime = Math.min(minTime, times[i]);
+      maxTime = Math.max(maxTime, times[i]);
+      whole = whole && isWhole(values[i]);
+    }
+    int headerStart = out.size;
+    out.write(count, 32);
+    out.write(minTime, 64);
+    out.write(maxTime, 64);
+    out.write(whole ? WHOLE_VALUES : 0, 8);
+    out.write(0, 32);
+    int payloadStart = out.size;
+
+    out.write(times[start], 64);
+    long previousTime = times[start];
+    long previousTimeDelta = 0;
+    for (int i = start + 1; i < start + count; i++) {
+      long delta = times[i] - previousTime;
+      writeDelta(out, delta - previousTimeDelta);
+      previousTime = times[i];
+      previousTimeDelta = delta;
+    }
+
+    if (whole) {
+      long previous = (long) values[start];
+      out.write(previous, 64);
+      long previousDelta = 0;
+      for (int i = start + 1; i < start + count; i++) {
+        long value = (long) values[i];
+        long delta = value - previous;
+        writeDelta(out, delta - previousDelta);
+        previous = value;
+        previousDelta = delta;
+      }
+    }
+    else {
+      long previous = Double.doubleToRawLongBits(values[start]);
+      out.write(previous, 64);
+      int leading = -1;
+      int trailing = 0;
+      for (int i = start + 1; i < start + count; i++) {
+        long bits = Double.doubleToRawLongBits(values[i]);
+        long xor = bits ^ previous;
+        previous = bits;
+        if (xor == 0) {
+          out.write(0, 1);
+          continue;
+        }
+        int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trail = Long.numberOfTrailingZeros(xor);
+        if (leading >= 0 && lead >= leading && trail >= trailing) {
+          out.write(0b10, 2);
+          out.write(xor >>> trailing, 64 - leading - trailing);
+        }
+        else {
+          int significant = 64 - lead - trail;
+          out.write(0b11, 2);
+          out.write(lead, 5);
+          out.write(significant - 1, 6);
+          out.write(xor >>> trail, significant);
+          leading = lead;
+          trailing = trail;
+        }
+      }
+    }
+    out.flush();
+    ByteBuffer.wrap(out.bytes, headerStart + BLOCK_HEADER_SIZE - 4, 4)
+        .putInt(out.size - payloadStart);
+  }
+
+  /**
+   * Returns the number of points in an encoded series.
+   *
+   * @param data Encoded series.
+   * @return The number of points.
+   */
+  public static int size(byte[] data) {
+    ByteBuffer header = ByteBuffer.wrap(data);
+    if (data.length < HEADER_SIZE || header.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not an encoded time series.");
+    }
+    return header.getInt();
+  }
+
+  /**
+   * Decodes every point in a series.
+   *
+   * @param data Encoded series.
+   * @param times Array that receives the timestamps; must hold at least {@link #size} points.
+   * @param values Array that receives the values; must hold at least {@link #size} points.
+   * @return The number of points decoded.
+   */
+  public static int decode(byte[] data, long[] times, double[] values) {
+    return decode(data, Long.MIN_VALUE, Long.MAX_VALUE, times, values);
+  }
+
+  /**
+   * Decodes the points in a series whose timestamps are in a range, skipping blocks that are
+   * entirely outside the range.
+   *
+   * @param data Encoded series.
+   * @param from Earliest timestamp to decode, inclusive.
+   * @param to Latest timestamp to decode, inclusive.
+   * @param times Array that receives the timestamps; must hold at least {@link #size} points,
+   * since blocks are decoded in place before points outside the range are removed.
+   * @param values Array that receives the values; must hold at least {@link #size} points.
+   * @return The number of points decoded.
+   */
+  public static int decode(byte[] data, long from, long to, long[] times, double[] values) {
+    int remaining = size(data);
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    buffer.position(HEADER_SIZE);
+    int n = 0;
+    while (remaining > 0) {
+      int count = buffer.getInt();
+      long minTime = buffer.getLong();
+      long maxTime = buffer.getLong();
+      int flags = buffer.get();
+      int payloadLength = buffer.getInt();
+      if (count <= 0 || count > remaining || payloadLength > buffer.remaining()) {
+        throw new IllegalArgumentException("Encoded block is corrupt.");
+      }
+      if (maxTime >= from && minTime <= to) {
+        BitReader in = new BitReader(data, buffer.position(), payloadLength);
+        decodeBlock(in, count, (flags & WHOLE_VALUES) != 0, times, values, n);
+        n = keepRange(times, values, n, n + count, from, to);
+      }
+      buffer.position(buffer.position() + payloadLength);
+      remaining -= count;
+    }
+    return n;
+  }
+
+  /**
+   * Decodes every point in one block in place; {@link #keepRange} then removes the points outside
+   * the range that is being decoded.
+   *
+   * @param in Reader positioned at the payload of the block.
+   * @param count Number of points in the block.
+   * @param whole True if the values are encoded as whole numbers.
+   * @param times Array that receives the timestamps.
+   * @param values Array that receives the values.
+   * @param n Index at which to store the first point of the block.
+   */
+  private static void decodeBlock(BitReader in, int count, boolean whole, long[] times,
+      double[] values, int n) {
+    long time = in.read(64);
+    times[n] = time;
+    long timeDelta = 0;
+    for (int i = 1; i < count; i++) {
+      timeDelta += readDelta(in);
+      time += timeDelta;
+      times[n + i] = time;
+    }
+
+    if (whole) {
+      long value = in.read(64);
+      values[n] = value;
+      long delta = 0;
+      for (int i = 1; i < count; i++) {
+        delta += readDelta(in);
+        value += delta;
+        values[n + i] = value;
+      }
+    }
+    else {
+      long bits = in.read(64);
+      values[n] = Double.longBitsToDouble(bits);
+      int leading = 0;
+      int trailing = 0;
+      for (int i = 1; i < count; i++) {
+        if (in.read(1) == 1) {
+          if (in.read(1) == 1) {
+            leading = (int) in.read(5);
+            int significant = (int) in.read(6) + 1;
+            trailing = 64 - leading - significant;
+          }
+          bits ^= in.read(64 - leading - trailing) << trailing;
+        }
+        values[n + i] = Double.longBitsToDouble(bits);
+      }
+    }
+  }
+
+  /**
+   * Moves the points in part of the arrays whose timestamps are in a range to the start of that
+   * part, keeping their order.
+   *
+   * @param times Timestamps of the points.
+   * @param values Values of the points.
+   * @param start Index of the first point to check.
+   * @param end Index after the last point to check.
+   * @param from Earliest timestamp to keep, inclusive.
+   * @param to Latest timestamp to keep, inclusive.
+   * @return The index after the last point kept.
+   */
+  private static int keepRange(long[] times, double[] values, int start, int end, long from,
+      long to) {
+    int kept = start;
+    for (int i = start; i < end; i++) {
+      if (times[i] >= from && times[i] <= to) {
+        times[kept] = times[i];
+        values[kept] = values[i];
+        kept++;
+      }
+    }
+    return kept;
+  }
+
+}
@@ -0,0 +1,243 @@
+package org.wattdepot.hnei.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.client.CachingWattDepotClient.Method;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the CachingWattDepotClient class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestCachingWattDepotClient {
+
+  /** Time zone offset in minutes (HST). */
+  private static final int ZONE = -600;
+
+  /** Midnight HST on Monday, February 28, 2011. */
+  private static final long START = 1298887200000L;
+
+  /** Estimated size of a cached source without properties. */
+  private static final long SOURCE_WEIGHT = 128 + 512;
+
+  /**
+   * A client that returns a new object for every request, counts the requests, and can block a
+   * getSource request until it is released.
+   */
+  private static final class CountingClient extends ForwardingWattDepotClient {
+
+    /** Number of requests received. */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /** Released when a blocked request may complete. */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /** Released when a blocked request has started. */
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    /** Name of the source whose requests block, or null if none do. */
+    private volatile String blockedSource;
+
+    /**
+     * Creates a new CountingClient object.
+     */
+    CountingClient() {
+      super(new WattDepotClient("http://localhost:8182/wattdepot/"));
+    }
+
+    @Override
+    public Source getSource(String sourceName) throws MiscClientException {
+      this.requests.incrementAndGet();
+      if (sourceName.equals(this.blockedSource)) {
+        this.started.countDown();
+        try {
+          this.release.await();
+        }
+        catch (InterruptedException e) {
+          throw new MiscClientException("Interrupted.", e);
+        }
+      }
+      return new Source(sourceName, "user", true);
+    }
+
+    @Override
+    public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime) {
+      this.requests.incrementAndGet();
+      List<SensorData> datas = new ArrayList<>();
+      datas.add(new SensorData(startTime, "test", "http://server/sources/" + sourceName,
+          new Property(SensorData.ENERGY_CONSUMED_TO_DATE, 1000)));
+      return datas;
+    }
+
+    @Override
+    public boolean storeSource(Source source, boolean overwrite) {
+      return true;
+    }
+
+    @Override
+    public boolean storeSensorData(SensorData data) {
+      return true;
+    }
+  }
+
+  /** Fake client that receives the requests. */
+  private CountingClient server;
+
+  /**
+   * Creates the fake client.
+   */
+  @Before
+  public void setUp() {
+    this.server = new CountingClient();
+  }
+
+  /**
+   * Returns the sensor data for a source on the first day.
+   *
+   * @param client Client to request the data from.
+   * @param sourceName Name of a source.
+   * @return The sensor data.
+   * @throws Exception if the request fails.
+   */
+  private static List<SensorData> getDay(WattDepotClient client, String sourceName)
+      throws Exception {
+    return client.getSensorDatas(sourceName, EpochTime.toTimestamp(START, ZONE),
+        EpochTime.toTimestamp(START + EpochTime.MILLIS_PER_DAY - 1, ZONE));
+  }
+
+  /**
+   * Passes if a repeated request is answered from the cache and counted as a hit.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test
+  public void testHitsAndMisses() throws Exception {
+    CachingWattDepotClient client = new CachingWattDepotClient(this.server);
+    Source first = client.getSource("1-1");
+    assertSame("cached", first, client.getSource("1-1"));
+    client.getSource("2-1");
+    assertEquals("requests", 2, this.server.requests.get());
+    assertEquals("hits", 1, client.getHits(Method.SOURCE));
+    assertEquals("misses", 2, client.getMisses(Method.SOURCE));
+    assertEquals("other method", 0, client.getMisses(Method.SENSOR_DATAS));
+    assertEquals("weight", 2 * SOURCE_WEIGHT, client.getWeight());
+  }
+
+  /**
+   * Passes if the least recently used entry is evicted when the cache exceeds its maximum size.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test
+  public void testEviction() throws Exception {
+    CachingWattDepotClient client = new CachingWattDepotClient(this.server, 2 * SOURCE_WEIGHT);
+    client.getSource("1-1");
+    client.getSource("2-1");
+    client.getSource("1-1");
+    client.getSource("3-1");
+    assertEquals("weight", 2 * SOURCE_WEIGHT, client.getWeight());
+    int requests = this.server.requests.get();
+    client.getSource("1-1");
+    client.getSource("3-1");
+    assertEquals("recently used kept", requests, this.server.requests.get());
+    client.getSource("2-1");
+    assertEquals("least recently used evicted", requests + 1, this.server.requests.get());
+  }
+
+  /**
+   * Passes if each type of request has its own time to live, and a time to live of 0 disables
+   * caching for that type only.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test
+  public void testTtl() throws Exception {
+    CachingWattDepotClient client = new CachingWattDepotClient(this.server);
+    client.setTtl(Method.SOURCE, 0);
+    client.setTtl(Method.SENSOR_DATAS, 1);
+    client.getSource("1-1");
+    client.getSource("1-1");
+    assertEquals("not cached", 2, this.server.requests.get());
+
+    getDay(client, "1-1");
+    Thread.sleep(5);
+    getDay(client, "1-1");
+    assertEquals("expired", 4, this.server.requests.get());
+
+    client.setTtl(Method.SENSOR_DATAS, EpochTime.MILLIS_PER_HOUR);
+    getDay(client, "2-1");
+    getDay(client, "2-1");
+    assertEquals("cached", 5, this.server.requests.get());
+    assertEquals("hits", 1, client.getHits(Method.SENSOR_DATAS));
+  }
+
+  /**
+   * Passes if storing sensor data removes the cached results for its source only.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test
+  public void testInvalidateOnStore() throws Exception {
+    CachingWattDepotClient client = new CachingWattDepotClient(this.server);
+    SensorData data = getDay(client, "1-1").get(0);
+    getDay(client, "2-1");
+    client.storeSensorData(data);
+
+    assertNotSame("fetched again", data, getDay(client, "1-1").get(0));
+    assertEquals("requests", 3, this.server.requests.get());
+    getDay(client, "2-1");
+    assertEquals("other source cached", 3, this.server.requests.get());
+  }
+
+  /**
+   * Passes if a result that was being fetched while its source was invalidated is returned but not
+   * cached, and results are cached again afterwards and after the cache is cleared.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test(timeout = 10000)
+  public void testInvalidateDuringLoad() throws Exception {
+    CachingWattDepotClient client = new CachingWattDepotClient(this.server);
+    this.server.blockedSource = "1-1";
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      Future<Source> stale = pool.submit(() -> client.getSource("1-1"));
+      this.server.started.await(10, TimeUnit.SECONDS);
+      client.storeSource(new Source("1-1", "user", true), true);
+      this.server.release.countDown();
+      assertEquals("returned", "1-1", stale.get().getName());
+    }
+    finally {
+      pool.shutdownNow();
+    }
+    assertEquals("not cached", 0, client.getWeight());
+    client.getSource("1-1");
+    assertEquals("fetched again", 2, this.server.requests.get());
+    assertEquals("cached after", SOURCE_WEIGHT, client.getWeight());
+
+    client.clear();
+    assertEquals("cleared", 0, client.getWeight());
+    client.getSource("1-1");
+    assertEquals("fetched after clear", 3, this.server.requests.get());
+  }
+
+}
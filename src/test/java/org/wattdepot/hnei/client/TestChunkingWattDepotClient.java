@@ -0,0 +1,309 @@
+package org.wattdepot.hnei.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Test;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * JUnit tests for the ChunkingWattDepotClient class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestChunkingWattDepotClient {
+
+  /** Time zone offset in minutes (HST). */
+  private static final int ZONE = -600;
+
+  /** Midnight HST on Monday, February 28, 2011. */
+  private static final long START = 1298887200000L;
+
+  /** Length of a chunk. */
+  private static final long CHUNK = EpochTime.MILLIS_PER_DAY;
+
+  /** Number of chunks in the range. */
+  private static final int NUM_CHUNKS = 4;
+
+  /** End of the range, inclusive. */
+  private static final long END = START + NUM_CHUNKS * CHUNK - 1;
+
+  /** Number of readings in a chunk. */
+  private static final int READINGS_PER_CHUNK = 24;
+
+  /** Name of the test source. */
+  private static final String SOURCE_NAME = "1951005-1";
+
+  /**
+   * A client that returns hourly readings for each chunk. Chunks can be made to complete in
+   * reverse order, and one chunk can be made to fail, in which case the chunks after it block until
+   * they are interrupted.
+   */
+  private static final class ChunkServer extends ForwardingWattDepotClient {
+
+    /** Number of requests received. */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /** Length of the longest range requested. */
+    private final AtomicLong maxSpan = new AtomicLong();
+
+    /** Number of requests that have not completed. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /** Chunks in the order in which they completed successfully. */
+    private final List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+
+    /** Released when each chunk completes, successfully or not. */
+    private final CountDownLatch[] done = new CountDownLatch[NUM_CHUNKS];
+
+    /** Never released; chunks after a failed chunk wait on it. */
+    private final CountDownLatch never = new CountDownLatch(1);
+
+    /** Exception thrown by the failed chunk. */
+    private final MiscClientException failure = new MiscClientException("Server error.", null);
+
+    /** True if each chunk waits for the chunk after it to complete. */
+    private final boolean reverse;
+
+    /** Index of the chunk that fails, or -1 if none does. */
+    private final int failChunk;
+
+    /**
+     * Creates a new ChunkServer object.
+     *
+     * @param reverse True if each chunk waits for the chunk after it to complete.
+     * @param failChunk Index of the chunk that fails, or -1 if none does.
+     */
+    ChunkServer(boolean reverse, int failChunk) {
+      super(new WattDepotClient("http://localhost:8182/wattdepot/"));
+      this.reverse = reverse;
+      this.failChunk = failChunk;
+      for (int i = 0; i < NUM_CHUNKS; i++) {
+        this.done[i] = new CountDownLatch(1);
+      }
+    }
+
+    @Override
+    public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime) throws MiscClientException {
+      long from = EpochTime.toMillis(startTime);
+      int chunk = (int) ((from - START) / CHUNK);
+      this.maxSpan.accumulateAndGet(EpochTime.toMillis(endTime) - from + 1, Math::max);
+      this.requests.incrementAndGet();
+      this.active.incrementAndGet();
+      try {
+        if (chunk == this.failChunk) {
+          throw this.failure;
+        }
+        if (this.failChunk >= 0 && chunk > this.failChunk) {
+          this.never.await();
+        }
+        if (this.reverse && chunk + 1 < NUM_CHUNKS) {
+          this.done[chunk + 1].await();
+        }
+        List<SensorData> datas = new ArrayList<>();
+        long to = EpochTime.toMillis(endTime);
+        for (long time = from; time <= to; time += EpochTime.MILLIS_PER_HOUR) {
+          datas.add(new SensorData(EpochTime.toTimestamp(time, ZONE), "test", sourceName,
+              new Property(SensorData.ENERGY_CONSUMED_TO_DATE, time / 1000)));
+        }
+        this.completed.add(chunk);
+        return datas;
+      }
+      catch (InterruptedException e) {
+        throw new MiscClientException("Interrupted.", e);
+      }
+      finally {
+        this.active.decrementAndGet();
+        if (chunk >= 0 && chunk < NUM_CHUNKS) {
+          this.done[chunk].countDown();
+        }
+      }
+    }
+
+    /**
+     * Waits until no request is running.
+     *
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    void awaitIdle() throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (this.active.get() > 0) {
+        if (System.nanoTime() > deadline) {
+          fail("Requests were not cancelled.");
+        }
+        Thread.sleep(1);
+      }
+    }
+  }
+
+  /**
+   * Asserts that readings are hourly from the start of the range, in order.
+   *
+   * @param datas The readings.
+   * @param count Expected number of readings.
+   */
+  private static void assertInOrder(List<SensorData> datas, int count) {
+    assertEquals("readings", count, datas.size());
+    for (int i = 0; i < datas.size(); i++) {
+      assertEquals("time", START + i * EpochTime.MILLIS_PER_HOUR,
+          EpochTime.toMillis(datas.get(i).getTimestamp()));
+    }
+  }
+
+  /**
+   * Passes if chunks that complete in reverse order are merged in chunk order.
+   *
+   * @throws Exception if the request fails.
+   */
+  @Test(timeout = 20000)
+  public void testOrderedMerge() throws Exception {
+    ChunkServer server = new ChunkServer(true, -1);
+    ChunkingWattDepotClient client = new ChunkingWattDepotClient(server, CHUNK, NUM_CHUNKS);
+    List<SensorData> datas = client.getSensorDatas(SOURCE_NAME, EpochTime.toTimestamp(START, ZONE),
+        EpochTime.toTimestamp(END, ZONE));
+    assertEquals("completed in reverse", Arrays.asList(3, 2, 1, 0), server.completed);
+    assertInOrder(datas, NUM_CHUNKS * READINGS_PER_CHUNK);
+  }
+
+  /**
+   * Passes if the iterator returns every reading in order while never requesting more than
+   * <code>maxInFlight</code> chunks ahead of the one being read.
+   */
+  @Test(timeout = 20000)
+  public void testIteratorInFlightLimit() {
+    int maxInFlight = 2;
+    ChunkServer server = new ChunkServer(false, -1);
+    ChunkingWattDepotClient client = new ChunkingWattDepotClient(server, CHUNK, maxInFlight);
+    Iterator<SensorData> it = client.iterateSensorDatas(SOURCE_NAME,
+        EpochTime.toTimestamp(START, ZONE), EpochTime.toTimestamp(END, ZONE));
+    List<SensorData> datas = new ArrayList<>();
+    while (it.hasNext()) {
+      SensorData data = it.next();
+      int chunk = (int) ((EpochTime.toMillis(data.getTimestamp()) - START) / CHUNK);
+      assertTrue("requested ahead", server.requests.get() <= chunk + maxInFlight);
+      datas.add(data);
+    }
+    assertEquals("requests", NUM_CHUNKS, server.requests.get());
+    assertInOrder(datas, NUM_CHUNKS * READINGS_PER_CHUNK);
+  }
+
+  /**
+   * Passes if a failed chunk makes getSensorDatas throw its exception and the chunks that are still
+   * being fetched or waiting to be fetched are cancelled.
+   *
+   * @throws Exception if the test is interrupted.
+   */
+  @Test(timeout = 20000)
+  public void testFailureCancelsChunks() throws Exception {
+    ChunkServer server = new ChunkServer(false, 0);
+    ChunkingWattDepotClient client = new ChunkingWattDepotClient(server, CHUNK, 2);
+    try {
+      client.getSensorDatas(SOURCE_NAME, EpochTime.toTimestamp(START, ZONE),
+          EpochTime.toTimestamp(END, ZONE));
+      fail("Expected an exception.");
+    }
+    catch (MiscClientException e) {
+      assertSame("same exception", server.failure, e);
+    }
+    server.awaitIdle();
+    assertTrue("nothing completed", server.completed.isEmpty());
+  }
+
+  /**
+   * Passes if the iterator returns the chunks before a failed chunk, then reports the failure and
+   * cancels the chunks that were fetched ahead.
+   *
+   * @throws Exception if the test is interrupted.
+   */
+  @Test(timeout = 20000)
+  public void testIteratorFailure() throws Exception {
+    ChunkServer server = new ChunkServer(false, 1);
+    ChunkingWattDepotClient client = new ChunkingWattDepotClient(server, CHUNK, 2);
+    Iterator<SensorData> it = client.iterateSensorDatas(SOURCE_NAME,
+        EpochTime.toTimestamp(START, ZONE), EpochTime.toTimestamp(END, ZONE));
+    int count = 0;
+    try {
+      while (it.hasNext()) {
+        it.next();
+        count++;
+      }
+      fail("Expected an exception.");
+    }
+    catch (IllegalStateException e) {
+      assertSame("cause", server.failure, e.getCause());
+    }
+    assertEquals("first chunk", READINGS_PER_CHUNK, count);
+    server.awaitIdle();
+    assertFalse("no more data", it.hasNext());
+  }
+
+  /**
+   * Passes if a range is still streamed in chunks when the ChunkingWattDepotClient is wrapped in a
+   * DiskCachingClient and a CoalescingWattDepotClient, as it is by the exporter, and a second pass
+   * over the range is read from the cache.
+   *
+   * @throws Exception if the cache cannot be created or a request fails.
+   */
+  @Test(timeout = 20000)
+  public void testIterateThroughWrappers() throws Exception {
+    ChunkServer server = new ChunkServer(false, -1);
+    Path directory = Files.createTempDirectory("cache");
+    try (SensorDataDiskCache cache = new SensorDataDiskCache(directory)) {
+      DiskCachingClient diskCaching = new DiskCachingClient(
+          new ChunkingWattDepotClient(server, CHUNK / 4, 2), cache,
+          DiskCachingClient.DEFAULT_CLOSED_DELAY);
+      diskCaching.setWindowSize(CHUNK);
+      WattDepotClient client = new CoalescingWattDepotClient(diskCaching);
+
+      Iterator<SensorData> it = ChunkingWattDepotClient.iterate(client, SOURCE_NAME,
+          EpochTime.toTimestamp(START, ZONE), EpochTime.toTimestamp(END, ZONE));
+      List<SensorData> datas = new ArrayList<>();
+      datas.add(it.next());
+      int firstWindow = server.requests.get();
+      while (it.hasNext()) {
+        datas.add(it.next());
+      }
+      assertInOrder(datas, NUM_CHUNKS * READINGS_PER_CHUNK);
+      assertTrue("read lazily", firstWindow < server.requests.get());
+      assertTrue("chunked", server.maxSpan.get() <= CHUNK / 4);
+
+      int requests = server.requests.get();
+      datas.clear();
+      it = ChunkingWattDepotClient.iterate(client, SOURCE_NAME, EpochTime.toTimestamp(START, ZONE),
+          EpochTime.toTimestamp(END, ZONE));
+      it.forEachRemaining(datas::add);
+      assertInOrder(datas, NUM_CHUNKS * READINGS_PER_CHUNK);
+      assertEquals("from cache", requests, server.requests.get());
+      assertTrue("hits", diskCaching.getHits() > 0);
+    }
+    finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(p);
+        }
+      }
+    }
+  }
+
+}
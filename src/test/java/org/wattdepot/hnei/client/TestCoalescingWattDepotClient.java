@@ -0,0 +1,187 @@
+package org.wattdepot.hnei.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the CoalescingWattDepotClient class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestCoalescingWattDepotClient {
+
+  /** Number of threads that make the same request at the same time. */
+  private static final int NUM_CALLERS = 8;
+
+  /** Name of the test source. */
+  private static final String SOURCE_NAME = "1951005-1";
+
+  /**
+   * A client that counts getSource requests and blocks each one until it is released, and then
+   * either returns a new source or throws an exception.
+   */
+  private static final class BlockingClient extends ForwardingWattDepotClient {
+
+    /** Number of requests received. */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /** Released when requests may complete. */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /** Exception to throw, or null to return a source. */
+    private volatile MiscClientException failure;
+
+    /**
+     * Creates a new BlockingClient object.
+     */
+    BlockingClient() {
+      super(new WattDepotClient("http://localhost:8182/wattdepot/"));
+    }
+
+    @Override
+    public Source getSource(String sourceName) throws MiscClientException {
+      this.requests.incrementAndGet();
+      try {
+        this.release.await();
+      }
+      catch (InterruptedException e) {
+        throw new MiscClientException("Interrupted.", e);
+      }
+      if (this.failure != null) {
+        throw this.failure;
+      }
+      return new Source(sourceName, "user", true);
+    }
+  }
+
+  /** Fake client that receives the requests. */
+  private BlockingClient server;
+
+  /** Client under test. */
+  private CoalescingWattDepotClient client;
+
+  /** Threads that make the requests. */
+  private ExecutorService pool;
+
+  /**
+   * Creates the clients and the threads.
+   */
+  @Before
+  public void setUp() {
+    this.server = new BlockingClient();
+    this.client = new CoalescingWattDepotClient(this.server);
+    this.pool = Executors.newFixedThreadPool(NUM_CALLERS);
+  }
+
+  /**
+   * Stops the threads.
+   */
+  @After
+  public void tearDown() {
+    this.server.release.countDown();
+    this.pool.shutdownNow();
+  }
+
+  /**
+   * Waits until a condition is true.
+   *
+   * @param condition The condition.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        fail("Timed out.");
+      }
+      Thread.sleep(1);
+    }
+  }
+
+  /**
+   * Makes the same request on every thread, and releases the fake client once all but one of the
+   * calls are waiting for the first.
+   *
+   * @return The results of the calls.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  private List<Future<Source>> callConcurrently() throws InterruptedException {
+    List<Future<Source>> results = new ArrayList<>();
+    for (int i = 0; i < NUM_CALLERS; i++) {
+      results.add(this.pool.submit(() -> this.client.getSource(SOURCE_NAME)));
+    }
+    await(() -> this.client.getCoalesced(CoalescingWattDepotClient.Method.SOURCE)
+        == NUM_CALLERS - 1);
+    this.server.release.countDown();
+    return results;
+  }
+
+  /**
+   * Passes if concurrent identical calls send one request and share its result, and a call made
+   * after the request has completed sends a new one.
+   *
+   * @throws Exception if a call fails.
+   */
+  @Test(timeout = 20000)
+  public void testCoalesce() throws Exception {
+    List<Future<Source>> results = this.callConcurrently();
+    Source first = results.get(0).get();
+    for (Future<Source> result : results) {
+      assertSame("shared result", first, result.get());
+    }
+    assertEquals("requests", 1, this.server.requests.get());
+    assertEquals("calls", NUM_CALLERS, this.client.getCalls(CoalescingWattDepotClient.Method.SOURCE));
+    assertTrue("nothing in flight", this.client.getStats().contains("In flight: 0"));
+
+    Source later = this.client.getSource(SOURCE_NAME);
+    assertEquals("new request", 2, this.server.requests.get());
+    assertTrue("new result", later != first);
+    assertEquals("not coalesced", NUM_CALLERS - 1,
+        this.client.getCoalesced(CoalescingWattDepotClient.Method.SOURCE));
+  }
+
+  /**
+   * Passes if the exception of a failed request reaches every caller that was waiting for it, and
+   * the failed request is not reused.
+   *
+   * @throws Exception if the test is interrupted.
+   */
+  @Test(timeout = 20000)
+  public void testFailure() throws Exception {
+    MiscClientException failure = new MiscClientException("Server error.", null);
+    this.server.failure = failure;
+    for (Future<Source> result : this.callConcurrently()) {
+      try {
+        result.get();
+        fail("Expected an exception.");
+      }
+      catch (ExecutionException e) {
+        assertSame("same exception", failure, e.getCause());
+      }
+    }
+    assertEquals("requests", 1, this.server.requests.get());
+
+    this.server.failure = null;
+    assertEquals("retry", SOURCE_NAME, this.client.getSource(SOURCE_NAME).getName());
+    assertEquals("new request", 2, this.server.requests.get());
+  }
+
+}
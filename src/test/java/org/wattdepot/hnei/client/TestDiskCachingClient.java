@@ -0,0 +1,238 @@
+package org.wattdepot.hnei.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * JUnit tests for the DiskCachingClient class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestDiskCachingClient {
+
+  /** Monday, February 28, 2011, in days since January 1, 1970 UTC. */
+  private static final long DAY = 15033;
+
+  /** Name of the test source. */
+  private static final String SOURCE_NAME = "1951005-1";
+
+  /**
+   * A client that returns hourly readings in any range, except on days without data, and records
+   * the ranges that are requested.
+   */
+  private static final class HourlyServer extends ForwardingWattDepotClient {
+
+    /** Start and end of each range requested, in milliseconds. */
+    private final List<long[]> requests = Collections.synchronizedList(new ArrayList<>());
+
+    /** Days on which there is no data. */
+    private final Set<Long> emptyDays = new HashSet<>();
+
+    /**
+     * Creates a new HourlyServer object.
+     */
+    HourlyServer() {
+      super(new WattDepotClient("http://localhost:8182/wattdepot/"));
+    }
+
+    @Override
+    public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime) {
+      long from = EpochTime.toMillis(startTime);
+      long to = EpochTime.toMillis(endTime);
+      this.requests.add(new long[] {from, to});
+      return readings(from, to, this.emptyDays);
+    }
+  }
+
+  /** Directory that contains the cache. */
+  private Path directory;
+
+  /** Cache under test. */
+  private SensorDataDiskCache cache;
+
+  /** Fake client that receives the requests. */
+  private HourlyServer server;
+
+  /**
+   * Creates the cache in a temporary directory.
+   *
+   * @throws IOException if the cache cannot be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("cache");
+    this.cache = new SensorDataDiskCache(this.directory);
+    this.server = new HourlyServer();
+  }
+
+  /**
+   * Closes the cache and deletes the temporary directory.
+   *
+   * @throws IOException if the directory cannot be deleted.
+   */
+  @After
+  public void tearDown() throws IOException {
+    this.cache.close();
+    try (Stream<Path> paths = Files.walk(this.directory)) {
+      for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(p);
+      }
+    }
+  }
+
+  /**
+   * Returns hourly readings between two times, inclusive, except on the given days.
+   *
+   * @param from Start time in milliseconds.
+   * @param to End time in milliseconds.
+   * @param emptyDays Days on which there are no readings.
+   * @return The readings.
+   */
+  private static List<SensorData> readings(long from, long to, Set<Long> emptyDays) {
+    List<SensorData> datas = new ArrayList<>();
+    long first = (from + EpochTime.MILLIS_PER_HOUR - 1) / EpochTime.MILLIS_PER_HOUR;
+    for (long time = first * EpochTime.MILLIS_PER_HOUR; time <= to;
+        time += EpochTime.MILLIS_PER_HOUR) {
+      if (!emptyDays.contains(time / EpochTime.MILLIS_PER_DAY)) {
+        datas.add(new SensorData(EpochTime.toTimestamp(time, 0), "test", SOURCE_NAME,
+            new Property(SensorData.ENERGY_CONSUMED_TO_DATE, time / 1000)));
+      }
+    }
+    return datas;
+  }
+
+  /**
+   * Returns the sensor data between two times.
+   *
+   * @param client Client to request the data from.
+   * @param from Start time in milliseconds.
+   * @param to End time in milliseconds, inclusive.
+   * @return The sensor data.
+   * @throws Exception if the request fails.
+   */
+  private static List<SensorData> get(WattDepotClient client, long from, long to)
+      throws Exception {
+    return client.getSensorDatas(SOURCE_NAME, EpochTime.toTimestamp(from, 0),
+        EpochTime.toTimestamp(to, 0));
+  }
+
+  /**
+   * Asserts that readings are hourly from a given time, in order.
+   *
+   * @param datas The readings.
+   * @param from Time of the first reading in milliseconds.
+   * @param count Expected number of readings.
+   */
+  private static void assertHourly(List<SensorData> datas, long from, int count) {
+    assertEquals("readings", count, datas.size());
+    for (int i = 0; i < datas.size(); i++) {
+      assertEquals("time", from + i * EpochTime.MILLIS_PER_HOUR,
+          EpochTime.toMillis(datas.get(i).getTimestamp()));
+    }
+  }
+
+  /**
+   * Returns the start of a day in milliseconds.
+   *
+   * @param day Days since January 1, 1970 UTC.
+   * @return Milliseconds since the Unix epoch.
+   */
+  private static long startOf(long day) {
+    return day * EpochTime.MILLIS_PER_DAY;
+  }
+
+  /**
+   * Passes if consecutive missing days are fetched with one request each, a cached day between them
+   * is read from disk, and a later request for part of the range needs no requests.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test
+  public void testRangeSplitting() throws Exception {
+    this.cache.put(SOURCE_NAME, DAY + 2, readings(startOf(DAY + 2), startOf(DAY + 3) - 1,
+        Collections.emptySet()));
+    DiskCachingClient client =
+        new DiskCachingClient(this.server, this.cache, DiskCachingClient.DEFAULT_CLOSED_DELAY);
+
+    assertHourly(get(client, startOf(DAY), startOf(DAY + 5) - 1), startOf(DAY), 5 * 24);
+    assertEquals("requests", 2, this.server.requests.size());
+    assertArrayEquals("first gap", new long[] {startOf(DAY), startOf(DAY + 2) - 1},
+        this.server.requests.get(0));
+    assertArrayEquals("second gap", new long[] {startOf(DAY + 3), startOf(DAY + 5) - 1},
+        this.server.requests.get(1));
+    assertEquals("hits", 1, client.getHits());
+    assertEquals("misses", 4, client.getMisses());
+
+    long from = startOf(DAY) + 6 * EpochTime.MILLIS_PER_HOUR;
+    assertHourly(get(client, from, from + EpochTime.MILLIS_PER_DAY - 1), from, 24);
+    assertEquals("from cache", 2, this.server.requests.size());
+    assertEquals("hits after", 3, client.getHits());
+  }
+
+  /**
+   * Passes if the part of a range that is in a day that is still open is passed to the server
+   * unchanged every time, while the closed days before it are cached.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test
+  public void testOpenDay() throws Exception {
+    DiskCachingClient client = new DiskCachingClient(this.server, this.cache, 0);
+    long now = System.currentTimeMillis();
+    long today = now / EpochTime.MILLIS_PER_DAY;
+    long from = startOf(today - 1) + 12 * EpochTime.MILLIS_PER_HOUR;
+
+    get(client, from, now);
+    assertEquals("requests", 2, this.server.requests.size());
+    assertArrayEquals("closed day", new long[] {startOf(today - 1), startOf(today) - 1},
+        this.server.requests.get(0));
+    assertArrayEquals("open day", new long[] {startOf(today), now}, this.server.requests.get(1));
+
+    get(client, from, now);
+    assertEquals("open day again", 3, this.server.requests.size());
+    assertArrayEquals("open day", new long[] {startOf(today), now}, this.server.requests.get(2));
+    assertEquals("cached", 1, this.cache.size());
+  }
+
+  /**
+   * Passes if a closed day without data is not cached, so that it is fetched again by later
+   * requests.
+   *
+   * @throws Exception if a request fails.
+   */
+  @Test
+  public void testEmptyDayNotCached() throws Exception {
+    this.server.emptyDays.add(DAY + 1);
+    DiskCachingClient client =
+        new DiskCachingClient(this.server, this.cache, DiskCachingClient.DEFAULT_CLOSED_DELAY);
+
+    assertEquals("readings", 2 * 24, get(client, startOf(DAY), startOf(DAY + 3) - 1).size());
+    assertEquals("cached", 2, this.cache.size());
+
+    this.server.emptyDays.clear();
+    assertHourly(get(client, startOf(DAY), startOf(DAY + 3) - 1), startOf(DAY), 3 * 24);
+    assertEquals("requests", 2, this.server.requests.size());
+    assertArrayEquals("empty day", new long[] {startOf(DAY + 1), startOf(DAY + 2) - 1},
+        this.server.requests.get(1));
+  }
+
+}
@@ -0,0 +1,106 @@
+package org.wattdepot.hnei.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * JUnit tests for the SensorDataDiskCache class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSensorDataDiskCache {
+
+  /** Directory that contains the cache. */
+  private Path directory;
+
+  /**
+   * Creates a temporary directory for the cache.
+   *
+   * @throws IOException if the directory cannot be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("cache");
+  }
+
+  /**
+   * Deletes the temporary directory.
+   *
+   * @throws IOException if the directory cannot be deleted.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(this.directory)) {
+      for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(p);
+      }
+    }
+  }
+
+  /**
+   * Returns hourly sensor data for a day.
+   *
+   * @param day Number of days since January 1, 1970 UTC.
+   * @param count Number of hours.
+   * @return Sensor data for the day.
+   */
+  private static List<SensorData> chunk(long day, int count) {
+    List<SensorData> datas = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      long time = day * EpochTime.MILLIS_PER_DAY + i * EpochTime.MILLIS_PER_HOUR;
+      SensorData data =
+          new SensorData(EpochTime.toTimestamp(time, -600), "CsvImporter",
+              "http://localhost/wattdepot/sources/123-1",
+              new Property(SensorData.ENERGY_CONSUMED_TO_DATE, 1000.0 * i));
+      datas.add(data);
+    }
+    return datas;
+  }
+
+  /**
+   * Passes if chunks are read back in correctly, including after the cache is reopened and after
+   * the index has grown.
+   *
+   * @throws IOException if there are problems with the cache.
+   */
+  @Test
+  public void testPutAndGet() throws IOException {
+    try (SensorDataDiskCache cache = new SensorDataDiskCache(this.directory)) {
+      for (long day = 15000; day < 16000; day++) {
+        cache.put("123-1", day, chunk(day, (int) (day % 24)));
+      }
+      cache.put("empty", 15000, new ArrayList<>());
+      assertEquals("number of chunks", 1001, cache.size());
+    }
+
+    try (SensorDataDiskCache cache = new SensorDataDiskCache(this.directory)) {
+      assertEquals("number of chunks after reopening", 1001, cache.size());
+      List<SensorData> datas = cache.get("123-1", 15010);
+      List<SensorData> expected = chunk(15010, 10);
+      assertEquals("number of data", expected.size(), datas.size());
+      for (int i = 0; i < datas.size(); i++) {
+        assertEquals("timestamp", expected.get(i).getTimestamp(), datas.get(i).getTimestamp());
+        assertEquals("source", expected.get(i).getSource(), datas.get(i).getSource());
+        assertEquals("energy", 1000.0 * i,
+            datas.get(i).getPropertyAsDouble(SensorData.ENERGY_CONSUMED_TO_DATE), 0);
+      }
+      assertEquals("empty chunk", 0, cache.get("empty", 15000).size());
+      assertNull("missing day", cache.get("123-1", 16000));
+      assertNull("missing source", cache.get("123-2", 15010));
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+package org.wattdepot.hnei.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the SourceCatalog class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSourceCatalog {
+
+  /** Catalog that is loaded with sources created by the tests. */
+  private SourceCatalog catalog;
+
+  /**
+   * Loads a few sources into a catalog that does not contact a server.
+   */
+  @Before
+  public void setUp() {
+    List<Source> sources = new ArrayList<>();
+    sources.add(createSource("1951005-1", "15", "2"));
+    sources.add(createSource("1951005-2", "60", "2"));
+    sources.add(createSource("1951006-1", "15", "3"));
+    sources.add(createSource("994515-1", "60", null));
+    this.catalog = new SourceCatalog(null, SourceCatalog.DEFAULT_REFRESH_INTERVAL);
+    this.catalog.load(sources);
+  }
+
+  /**
+   * Creates a source.
+   *
+   * @param name Name of the source.
+   * @param interval Sampling interval of the source.
+   * @param meterType Meter type of the source, or null if the source does not have one.
+   * @return The source.
+   */
+  private static Source createSource(String name, String interval, String meterType) {
+    Source source = new Source(name, "user", true);
+    source.addProperty(new Property("samplingInterval", interval));
+    if (meterType != null) {
+      source.addProperty(new Property("meterType", meterType));
+    }
+    return source;
+  }
+
+  /**
+   * Returns the names of sources.
+   *
+   * @param sources The sources.
+   * @return The names of the sources.
+   */
+  private static List<String> names(List<Source> sources) {
+    List<String> names = new ArrayList<>();
+    for (Source s : sources) {
+      names.add(s.getName());
+    }
+    return names;
+  }
+
+  /**
+   * Passes if sources are found by name and all sources are sorted by name.
+   *
+   * @throws Exception if the catalog cannot be loaded.
+   */
+  @Test
+  public void testGet() throws Exception {
+    assertEquals("size", 4, this.catalog.size());
+    assertEquals("get", "1951006-1", this.catalog.get("1951006-1").getName());
+    assertNull("missing", this.catalog.get("123"));
+    assertEquals("all", "[1951005-1, 1951005-2, 1951006-1, 994515-1]",
+        names(this.catalog.getAll()).toString());
+  }
+
+  /**
+   * Passes if prefixes, indexed properties, the MTU ID, and missing properties filter sources.
+   *
+   * @throws Exception if the catalog cannot be loaded.
+   */
+  @Test
+  public void testQuery() throws Exception {
+    Map<String, String> filters = new HashMap<>();
+    assertEquals("prefix", "[1951005-1, 1951005-2]",
+        names(this.catalog.query("1951005", filters)).toString());
+
+    filters.put("samplingInterval", "60");
+    assertEquals("index", "[1951005-2, 994515-1]", names(this.catalog.query(null, filters))
+        .toString());
+    assertEquals("prefix and index", "[1951005-2]",
+        names(this.catalog.query("19", filters)).toString());
+
+    filters.clear();
+    filters.put(SourceCatalog.MTU, "1951005");
+    filters.put("meterType", "2");
+    assertEquals("mtu", "[1951005-1, 1951005-2]", names(this.catalog.query("", filters))
+        .toString());
+
+    filters.clear();
+    filters.put("meterType", "3");
+    filters.put("samplingInterval", "60");
+    assertEquals("no match", 0, this.catalog.query(null, filters).size());
+  }
+
+}
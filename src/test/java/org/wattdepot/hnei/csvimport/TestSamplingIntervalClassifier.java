@@ -0,0 +1,60 @@
+package org.wattdepot.hnei.csvimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+import org.wattdepot.hnei.export.SamplingInterval;
+import org.wattdepot.hnei.util.EpochTime;
+
+/**
+ * JUnit tests for the SamplingIntervalClassifier class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSamplingIntervalClassifier {
+
+  /**
+   * Returns evenly spaced timestamps.
+   *
+   * @param count Number of timestamps.
+   * @param interval Time between timestamps in milliseconds.
+   * @return Evenly spaced timestamps.
+   */
+  private static long[] times(int count, long interval) {
+    long[] times = new long[count];
+    for (int i = 0; i < count; i++) {
+      times[i] = i * interval;
+    }
+    return times;
+  }
+
+  /**
+   * Passes if hourly, daily, weekly, and monthly data is classified correctly.
+   */
+  @Test
+  public void testClassify() {
+    assertEquals("hourly", SamplingInterval.HOURLY,
+        SamplingIntervalClassifier.classify(times(24, EpochTime.MILLIS_PER_HOUR)));
+    assertEquals("15-minute data is hourly", SamplingInterval.HOURLY,
+        SamplingIntervalClassifier.classify(times(24, 15 * EpochTime.MILLIS_PER_MINUTE)));
+    assertEquals("daily", SamplingInterval.DAILY,
+        SamplingIntervalClassifier.classify(times(10, EpochTime.MILLIS_PER_DAY)));
+    assertEquals("weekly", SamplingInterval.WEEKLY,
+        SamplingIntervalClassifier.classify(times(5, 7 * EpochTime.MILLIS_PER_DAY)));
+    assertEquals("monthly", SamplingInterval.MONTHLY,
+        SamplingIntervalClassifier.classify(times(5, 30 * EpochTime.MILLIS_PER_DAY)));
+    assertNull("one data point", SamplingIntervalClassifier.classify(times(1, EpochTime.MILLIS_PER_DAY)));
+  }
+
+  /**
+   * Passes if a few gaps in daily data do not change its classification.
+   */
+  @Test
+  public void testGaps() {
+    long day = EpochTime.MILLIS_PER_DAY;
+    long[] times = { 0, day, 2 * day, 10 * day, 11 * day, 12 * day, 30 * day, 31 * day };
+    assertEquals("median delta is one day", day, SamplingIntervalClassifier.medianDelta(times));
+    assertEquals("daily", SamplingInterval.DAILY, SamplingIntervalClassifier.classify(times));
+  }
+
+}
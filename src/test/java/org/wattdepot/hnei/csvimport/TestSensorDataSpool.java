@@ -0,0 +1,152 @@
+package org.wattdepot.hnei.csvimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the SensorDataSpool class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSensorDataSpool {
+
+  /** Directory that contains the spool. */
+  private Path directory;
+
+  /**
+   * Creates a temporary directory for the spool.
+   *
+   * @throws IOException if the directory cannot be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("spool");
+  }
+
+  /**
+   * Deletes the temporary directory.
+   *
+   * @throws IOException if the directory cannot be deleted.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(p);
+      }
+    }
+  }
+
+  /**
+   * Returns a reading.
+   *
+   * @param time Time in milliseconds.
+   * @return A reading.
+   */
+  private static SensorData reading(long time) {
+    return new SensorData(EpochTime.toTimestamp(time, -600), "test", "http://server/sources/1-1",
+        new Property(SensorData.ENERGY_CONSUMED_TO_DATE, time / 1000));
+  }
+
+  /**
+   * Reads every record in the sealed segments.
+   *
+   * @return The records.
+   * @throws IOException if a segment cannot be read.
+   */
+  private List<SensorDataSpool.Record> readAll() throws IOException {
+    List<SensorDataSpool.Record> records = new ArrayList<>();
+    for (Path file : SensorDataSpool.getSealedSegments(this.directory)) {
+      try (SensorDataSpool.Reader reader = new SensorDataSpool.Reader(file)) {
+        SensorDataSpool.Record r;
+        while ((r = reader.next()) != null) {
+          records.add(r);
+        }
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Passes if records are split into segments, sealed, and read back in order.
+   *
+   * @throws IOException if the spool cannot be written or read.
+   */
+  @Test
+  public void testAppend() throws IOException {
+    Source source = new Source("1-1", "user", true);
+    source.addProperty(new Property("accountNumber", "12345"));
+    try (SensorDataSpool spool = new SensorDataSpool(this.directory, 1024)) {
+      spool.append(source, reading(1000000L));
+      for (int i = 1; i < 50; i++) {
+        spool.append(null, reading(1000000L + i * 1000L));
+      }
+      assertTrue("sealed", SensorDataSpool.getSealedSegments(this.directory).size() > 1);
+    }
+
+    List<SensorDataSpool.Record> records = this.readAll();
+    assertEquals("records", 50, records.size());
+    assertEquals("source", "1-1", records.get(0).getSource().getName());
+    assertEquals("property", "12345", records.get(0).getSource().getProperty("accountNumber"));
+    assertNull("no source", records.get(1).getSource());
+    for (int i = 0; i < records.size(); i++) {
+      SensorData data = records.get(i).getSensorData();
+      assertEquals("time", 1000000L + i * 1000L, EpochTime.toMillis(data.getTimestamp()));
+      assertEquals("counter", 1000 + i, data.getPropertyAsDouble(
+          SensorData.ENERGY_CONSUMED_TO_DATE), 0);
+    }
+  }
+
+  /**
+   * Passes if a segment that was left open with an incomplete record is truncated and sealed.
+   *
+   * @throws IOException if the spool cannot be written or read.
+   */
+  @Test
+  public void testRecover() throws IOException {
+    SensorDataSpool spool = new SensorDataSpool(this.directory);
+    for (int i = 0; i < 3; i++) {
+      spool.append(null, reading(1000000L + i * 1000L));
+    }
+    spool.seal();
+    spool.append(null, reading(2000000L));
+    spool.append(null, reading(2001000L));
+    spool.close();
+
+    // Simulate a crash while the second record of the second segment was being written.
+    Path open = this.directory.resolve("spool-000002" + SensorDataSpool.OPEN_EXTENSION);
+    Files.move(this.directory.resolve("spool-000002" + SensorDataSpool.SEALED_EXTENSION), open);
+    try (FileChannel channel = FileChannel.open(open, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 5);
+    }
+
+    try (SensorDataSpool reopened = new SensorDataSpool(this.directory)) {
+      assertEquals("segments", 2, SensorDataSpool.getSealedSegments(this.directory).size());
+      reopened.append(null, reading(3000000L));
+    }
+    List<SensorDataSpool.Record> records = this.readAll();
+    assertEquals("records", 5, records.size());
+    assertEquals("recovered", 2000000L, EpochTime.toMillis(records.get(3).getSensorData()
+        .getTimestamp()));
+    assertEquals("last", 3000000L, EpochTime.toMillis(records.get(4).getSensorData()
+        .getTimestamp()));
+  }
+
+}
@@ -0,0 +1,66 @@
+package org.wattdepot.hnei.csvimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the SourceRegistry class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSourceRegistry {
+
+  /** URI of the WattDepot server. */
+  private static final String SERVER_URI = "http://localhost:9001/";
+
+  /**
+   * Passes if sources get dense ids and the same name, URI, and Source object every time.
+   */
+  @Test
+  public void testRegister() {
+    SourceRegistry registry = new SourceRegistry(SERVER_URI, "user");
+    assertEquals("unknown", -1, registry.getId("1951005", "1"));
+    for (int i = 0; i < 40; i++) {
+      assertEquals("id", i, registry.register(Integer.toString(1000 + i / 2), Integer.toString(i % 2)));
+    }
+    assertEquals("size", 40, registry.size());
+    // A new string with the same contents finds the same source.
+    int id = registry.register(new String("1010"), "1");
+    assertEquals("existing id", 21, id);
+    assertEquals("getId", 21, registry.getId("1010", "1"));
+    assertEquals("name", "1010-1", registry.getName(id));
+    assertEquals("uri", Source.sourceToUri("1010-1", SERVER_URI), registry.getUri(id));
+
+    Source source = registry.getSource(id);
+    assertEquals("source name", "1010-1", source.getName());
+    assertEquals("owner", "user", source.getOwner());
+    assertSame("same source", source, registry.getSource(id));
+  }
+
+  /**
+   * Passes if the registry remembers which sources have been stored.
+   */
+  @Test
+  public void testStored() {
+    SourceRegistry registry = new SourceRegistry(SERVER_URI, "user");
+    int first = registry.register("1951005", "1");
+    int second = registry.register("1951005", "2");
+    assertFalse("not stored", registry.isStored(first));
+    registry.setStored(first);
+    assertTrue("stored", registry.isStored(first));
+    assertFalse("other not stored", registry.isStored(second));
+  }
+
+  /**
+   * Passes if an id that was not returned by the registry is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownId() {
+    new SourceRegistry(SERVER_URI, "user").getName(0);
+  }
+
+}
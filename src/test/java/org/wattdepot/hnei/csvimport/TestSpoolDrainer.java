@@ -0,0 +1,198 @@
+package org.wattdepot.hnei.csvimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.data.Status;
+import org.wattdepot.client.BadXmlException;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.OverwriteAttemptedException;
+import org.wattdepot.client.ResourceNotFoundException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the SpoolDrainer class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSpoolDrainer {
+
+  /** Reading that fails once because the server is unavailable, then is stored. */
+  private static final long RETRY_TIME = 1000000L;
+
+  /** Reading that is already on the server. */
+  private static final long EXISTING_TIME = 2000000L;
+
+  /** Reading that the server rejects. */
+  private static final long REJECTED_TIME = 3000000L;
+
+  /** Name of a source that the server rejects. */
+  private static final String BAD_SOURCE = "2-1";
+
+  /**
+   * A client that stores sources and sensor data in memory, and fails in a different way for each
+   * of the special readings.
+   */
+  private static final class FakeServer extends WattDepotClient {
+
+    /** Timestamps of the sensor data stored. */
+    private final List<Long> stored = Collections.synchronizedList(new ArrayList<>());
+
+    /** Names of the sources stored. */
+    private final List<String> sources = Collections.synchronizedList(new ArrayList<>());
+
+    /** Number of attempts to store each reading. */
+    private final ConcurrentHashMap<Long, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new FakeServer object.
+     */
+    FakeServer() {
+      super("http://localhost:8182/wattdepot/");
+    }
+
+    @Override
+    public boolean storeSource(Source source, boolean overwrite) throws BadXmlException {
+      if (BAD_SOURCE.equals(source.getName())) {
+        throw new BadXmlException(Status.CLIENT_ERROR_BAD_REQUEST);
+      }
+      this.sources.add(source.getName());
+      return true;
+    }
+
+    @Override
+    public boolean storeSensorData(SensorData data) throws ResourceNotFoundException,
+        OverwriteAttemptedException, MiscClientException {
+      long time = EpochTime.toMillis(data.getTimestamp());
+      int attempt = this.attempts.computeIfAbsent(time, t -> new AtomicInteger()).incrementAndGet();
+      if (time == RETRY_TIME && attempt == 1) {
+        throw new MiscClientException("Service unavailable.", null);
+      }
+      if (time == EXISTING_TIME) {
+        throw new OverwriteAttemptedException(Status.CLIENT_ERROR_CONFLICT);
+      }
+      if (time == REJECTED_TIME) {
+        throw new ResourceNotFoundException(Status.CLIENT_ERROR_NOT_FOUND);
+      }
+      this.stored.add(time);
+      return true;
+    }
+  }
+
+  /** Directory that contains the spool. */
+  private Path directory;
+
+  /**
+   * Creates a temporary directory for the spool.
+   *
+   * @throws IOException if the directory cannot be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("spool");
+  }
+
+  /**
+   * Deletes the temporary directory.
+   *
+   * @throws IOException if the directory cannot be deleted.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(p);
+      }
+    }
+  }
+
+  /**
+   * Returns a reading.
+   *
+   * @param time Time in milliseconds.
+   * @return A reading.
+   */
+  private static SensorData reading(long time) {
+    return new SensorData(EpochTime.toTimestamp(time, -600), "test", "http://server/sources/1-1",
+        new Property(SensorData.ENERGY_CONSUMED_TO_DATE, time / 1000));
+  }
+
+  /**
+   * Reads every record in the sealed segments of a spool.
+   *
+   * @param spool Directory of the spool.
+   * @return The records.
+   * @throws IOException if a segment cannot be read.
+   */
+  private static List<SensorDataSpool.Record> readAll(Path spool) throws IOException {
+    List<SensorDataSpool.Record> records = new ArrayList<>();
+    for (Path file : SensorDataSpool.getSealedSegments(spool)) {
+      try (SensorDataSpool.Reader reader = new SensorDataSpool.Reader(file)) {
+        SensorDataSpool.Record r;
+        while ((r = reader.next()) != null) {
+          records.add(r);
+        }
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Passes if readings are sent again after a retryable error, readings that are already on the
+   * server are acknowledged, and rejected records are kept in the failed spool instead of being
+   * deleted with the segment.
+   *
+   * @throws Exception if the spool cannot be written or read.
+   */
+  @Test(timeout = 30000)
+  public void testDrain() throws Exception {
+    try (SensorDataSpool spool = new SensorDataSpool(this.directory)) {
+      spool.append(new Source("1-1", "user", true), reading(500000L));
+      spool.append(null, reading(RETRY_TIME));
+      spool.append(null, reading(EXISTING_TIME));
+      spool.append(null, reading(REJECTED_TIME));
+      spool.append(new Source(BAD_SOURCE, "user", true), null);
+      spool.append(null, reading(4000000L));
+    }
+
+    FakeServer server = new FakeServer();
+    SpoolDrainer drainer = new SpoolDrainer(server, this.directory);
+    drainer.setBatchSize(4);
+    assertFalse("rejected records", drainer.drain());
+
+    assertEquals("sources", List.of("1-1"), server.sources);
+    List<Long> stored = new ArrayList<>(server.stored);
+    Collections.sort(stored);
+    assertEquals("stored", List.of(500000L, RETRY_TIME, 4000000L), stored);
+    assertEquals("retried", 2, server.attempts.get(RETRY_TIME).get());
+    assertTrue("stats", drainer.getStats().contains("Existing Data: 1, Failed: 1"));
+
+    assertTrue("segment deleted", SensorDataSpool.getSealedSegments(this.directory).isEmpty());
+    List<SensorDataSpool.Record> failed =
+        readAll(this.directory.resolve(SpoolDrainer.FAILED_DIRECTORY));
+    assertEquals("failed records", 2, failed.size());
+    assertEquals("rejected reading", REJECTED_TIME,
+        EpochTime.toMillis(failed.get(0).getSensorData().getTimestamp()));
+    assertEquals("rejected source", BAD_SOURCE, failed.get(1).getSource().getName());
+    assertNull("source only", failed.get(1).getSensorData());
+  }
+
+}
@@ -0,0 +1,141 @@
+package org.wattdepot.hnei.csvimport.hnei;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the AccountMtuAnalyzer class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestAccountMtuAnalyzer {
+
+  /** One hour in milliseconds. */
+  private static final long HOUR = 60L * 60L * 1000L;
+
+  /**
+   * Passes if accounts with more than one MTU are found.
+   */
+  @Test
+  public void testAccountsWithMultipleMtus() {
+    AccountMtuAnalyzer analyzer = new AccountMtuAnalyzer();
+    analyzer.addRow("994103718077", "111111", "1", HOUR, 100);
+    analyzer.addRow("994103718077", "111111", "1", 2 * HOUR, 200);
+    analyzer.addRow("994103718077", "222222", "1", HOUR, 100);
+    analyzer.addRow("994103718078", "333333", "1", HOUR, 100);
+
+    List<String> accounts = analyzer.getAccountsWithMultipleMtus();
+    assertEquals("one account has multiple MTUs", 1, accounts.size());
+    assertEquals("account is 994103718077", "994103718077", accounts.get(0));
+    assertEquals("number of rows is 4", 4, analyzer.getNumRows());
+  }
+
+  /**
+   * Passes if non-monotonically increasing data is detected whether rows are in ascending or
+   * descending order by timestamp.
+   */
+  @Test
+  public void testNonmonotonicallyIncreasingData() {
+    AccountMtuAnalyzer analyzer = new AccountMtuAnalyzer();
+    // Descending order, valid.
+    analyzer.addRow("994103718077", "111111", "1", 3 * HOUR, 300);
+    analyzer.addRow("994103718077", "111111", "1", 2 * HOUR, 200);
+    // Descending order, invalid.
+    analyzer.addRow("994103718077", "111111", "1", HOUR, 250);
+    // Ascending order, invalid.
+    analyzer.addRow("994103718078", "222222", "1", HOUR, 300);
+    analyzer.addRow("994103718078", "222222", "1", 2 * HOUR, 200);
+
+    assertEquals("111111 has 1", 1, analyzer.getNumNonmonoIncrVals(111111));
+    assertEquals("222222 has 1", 1, analyzer.getNumNonmonoIncrVals(222222));
+    assertEquals("total is 2", 2, analyzer.getNumNonmonoIncrVals());
+  }
+
+  /**
+   * Passes if rows whose MTU ID is not a number are counted and reported instead of being dropped
+   * silently, and fractional readings are compared without being truncated.
+   */
+  @Test
+  public void testRejectedRowsAndFractionalReadings() {
+    AccountMtuAnalyzer analyzer = new AccountMtuAnalyzer();
+    analyzer.addRow("994103718077", "N/A", "1", HOUR, 100);
+    analyzer.addRow("994103718077", "111111", "1", HOUR, 100.6);
+    analyzer.addRow("994103718077", "111111", "1", 2 * HOUR, 100.2);
+
+    assertEquals("rows analyzed", 2, analyzer.getNumRows());
+    assertEquals("rows rejected", 1, analyzer.getNumRejectedRows());
+    assertEquals("fractional decrease", 1, analyzer.getNumNonmonoIncrVals(111111));
+    assertTrue("report", analyzer.getReport().contains("Rows with Non-numeric MTU IDs      : 1"));
+
+    AccountMtuAnalyzer total = new AccountMtuAnalyzer();
+    total.merge(analyzer);
+    assertEquals("merged rows rejected", 1, total.getNumRejectedRows());
+  }
+
+  /**
+   * Passes if results from two files processed in parallel are merged correctly, including
+   * readings that are not monotonically increasing across the two files.
+   */
+  @Test
+  public void testMerge() {
+    AccountMtuAnalyzer first = new AccountMtuAnalyzer();
+    first.addRow("994103718077", "111111", "1", HOUR, 100);
+    first.addRow("994103718077", "111111", "1", 2 * HOUR, 200);
+
+    AccountMtuAnalyzer second = new AccountMtuAnalyzer();
+    second.addRow("994103718077", "222222", "1", 3 * HOUR, 300);
+    second.addRow("994103718077", "111111", "1", 3 * HOUR, 150);
+    second.addRow("994103718077", "111111", "1", 4 * HOUR, 400);
+
+    AccountMtuAnalyzer total = new AccountMtuAnalyzer();
+    total.merge(second);
+    total.merge(first);
+
+    assertEquals("number of rows is 5", 5, total.getNumRows());
+    assertEquals("one account has multiple MTUs", 1, total.getAccountsWithMultipleMtus().size());
+    assertEquals("boundary between files is checked", 1, total.getNumNonmonoIncrVals(111111));
+    assertTrue("report lists MTU", total.getReport().contains("111111 : 1 (account has multiple MTUs)"));
+  }
+
+  /**
+   * Passes if two analyzers can be merged into each other at the same time without deadlocking.
+   *
+   * @throws InterruptedException if the test is interrupted.
+   */
+  @Test(timeout = 10000)
+  public void testConcurrentMerge() throws InterruptedException {
+    AccountMtuAnalyzer first = new AccountMtuAnalyzer();
+    first.addRow("994103718077", "111111", "1", HOUR, 100);
+    AccountMtuAnalyzer second = new AccountMtuAnalyzer();
+    second.addRow("994103718077", "222222", "1", HOUR, 100);
+
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      AccountMtuAnalyzer from = i % 2 == 0 ? first : second;
+      AccountMtuAnalyzer to = i % 2 == 0 ? second : first;
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          to.merge(from);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals("second was merged into first", 1, first.getAccountsWithMultipleMtus().size());
+    assertEquals("first was merged into second", 1, second.getAccountsWithMultipleMtus().size());
+  }
+
+  /**
+   * Passes if an analyzer cannot be merged into itself.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeIntoItself() {
+    AccountMtuAnalyzer analyzer = new AccountMtuAnalyzer();
+    analyzer.merge(analyzer);
+  }
+
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertNotNull;
 import java.text.ParseException;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.wattdepot.hnei.csvimport.SourceRegistry;
 import org.wattdepot.resource.sensordata.jaxb.SensorData;
 
 /**
@@ -141,4 +142,24 @@ public class TestHneiRowParser {
     assertEquals("energy is " + energy, Double.valueOf(1000000.0), Double.valueOf(energy));
   }
 
+  /**
+   * Should pass if a parser with a registry takes the source name and URI from the registry.
+   */
+  @Test
+  public void testRegistry() {
+    HneiRowParser registryParser = new HneiRowParser("TestHneiRowParser", "http://localhost:9001", null);
+    SourceRegistry registry = new SourceRegistry("http://localhost:9001", "user");
+    registryParser.setRegistry(registry);
+    String[] row = setupRow();
+    SensorData data = registryParser.parseRow(row);
+    int id = registryParser.getSourceId();
+    assertEquals("id", registry.getId(row[2], row[3]), id);
+    assertEquals("uri", registry.getUri(id), data.getSource());
+    assertEquals("same uri as without registry", parser.parseRow(row).getSource(), data.getSource());
+    row[3] = "2";
+    registryParser.parseRow(row);
+    assertEquals("second source", 1, registryParser.getSourceId());
+    assertEquals("sources", 2, registry.size());
+  }
+
 }
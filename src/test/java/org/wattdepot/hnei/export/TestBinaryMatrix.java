@@ -0,0 +1,116 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the BinaryMatrixWriter and BinaryMatrixReader classes.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestBinaryMatrix {
+
+  /** Number of bins in each row. */
+  private static final int NUM_BINS = 13;
+
+  /**
+   * Returns the values for a row; every third bin is missing.
+   *
+   * @param row Index of the row.
+   * @return Values for the row.
+   */
+  private static double[] row(int row) {
+    double[] values = new double[NUM_BINS];
+    for (int i = 0; i < NUM_BINS; i++) {
+      values[i] = i % 3 == 0 ? Double.NaN : row * 100 + i * 0.25;
+    }
+    return values;
+  }
+
+  /**
+   * Writes a matrix with two rows per block to a file and reads it back in.
+   *
+   * @param compress True to compress blocks, false otherwise.
+   * @throws IOException if there are problems with the file.
+   */
+  private void testRoundTrip(boolean compress) throws IOException {
+    Path file = Files.createTempFile("matrix", ".hemx");
+    try {
+      List<String> names = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        names.add("1950" + i + "-1");
+      }
+      try (BinaryMatrixWriter writer =
+          new BinaryMatrixWriter(file, names, new MatrixBins(1000L, 900000L, -600, NUM_BINS),
+              compress, 256)) {
+        for (int i = 0; i < names.size(); i++) {
+          writer.writeRow(row(i));
+        }
+      }
+
+      try (BinaryMatrixReader reader = new BinaryMatrixReader(file)) {
+        assertEquals("names", names, reader.getSourceNames());
+        assertEquals("bins", NUM_BINS, reader.getNumBins());
+        assertEquals("bin start", 1000L, reader.getBinStart());
+        assertEquals("bin width", 900000L, reader.getBinWidth());
+        assertEquals("zone", -600, reader.getZoneOffset());
+        for (int i = names.size() - 1; i >= 0; i--) {
+          assertArrayEquals("row " + i, row(i), reader.getRow(i), 0);
+          assertTrue("bin 0 is missing", reader.isMissing(i, 0));
+          assertFalse("bin 1 is not missing", reader.isMissing(i, 1));
+          assertTrue("bin 12 is missing", reader.isMissing(i, 12));
+        }
+      }
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Passes if an uncompressed matrix is read back in correctly.
+   *
+   * @throws IOException if there are problems with the file.
+   */
+  @Test
+  public void testUncompressed() throws IOException {
+    this.testRoundTrip(false);
+  }
+
+  /**
+   * Passes if a compressed matrix is read back in correctly.
+   *
+   * @throws IOException if there are problems with the file.
+   */
+  @Test
+  public void testCompressed() throws IOException {
+    this.testRoundTrip(true);
+  }
+
+  /**
+   * Passes if a matrix without bins, i.e. whose start and end times are the same, is rejected
+   * before anything is written.
+   *
+   * @throws IOException if there are problems with the file.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoBins() throws IOException {
+    Path file = Files.createTempFile("matrix", ".hemx");
+    try {
+      new BinaryMatrixWriter(file, List.of("19500-1"), new MatrixBins(1000L, 900000L, -600, 0),
+          false).close();
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+}
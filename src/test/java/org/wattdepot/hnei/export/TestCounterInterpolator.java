@@ -0,0 +1,67 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the CounterInterpolator class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestCounterInterpolator {
+
+  /** Tolerance when comparing energy values. */
+  private static final double DELTA = 1e-9;
+
+  /**
+   * Passes if the counter is interpolated linearly at every bin boundary.
+   */
+  @Test
+  public void testInterpolate() {
+    long[] times = { 0, 100, 400 };
+    double[] counters = { 1000, 1100, 1700 };
+    double[] energy = CounterInterpolator.interpolate(times, counters, 50, 100, 3);
+    assertEquals("3 bins", 3, energy.length);
+    // Counter is 1050 at 50, 1200 at 150, 1400 at 250, and 1600 at 350.
+    assertEquals("first bin", 150, energy[0], DELTA);
+    assertEquals("second bin", 200, energy[1], DELTA);
+    assertEquals("third bin", 200, energy[2], DELTA);
+  }
+
+  /**
+   * Passes if bins whose boundaries are exactly on readings use those readings, and bins outside the
+   * range of the data are NaN.
+   */
+  @Test
+  public void testBoundaries() {
+    long[] times = { 100, 200, 300 };
+    double[] counters = { 10, 30, 60 };
+    double[] energy = CounterInterpolator.interpolate(times, counters, 0, 100, 4);
+    assertTrue("before data", Double.isNaN(energy[0]));
+    assertEquals("second bin", 20, energy[1], DELTA);
+    assertEquals("third bin", 30, energy[2], DELTA);
+    assertTrue("after data", Double.isNaN(energy[3]));
+    assertTrue("no data", Double.isNaN(CounterInterpolator.interpolate(new long[0], new double[0],
+        0, 100, 1)[0]));
+  }
+
+  /**
+   * Passes if the counter is interpolated at arbitrary times in one pass.
+   */
+  @Test
+  public void testCounterAt() {
+    long[] times = { 100, 200, 400 };
+    double[] counters = { 10, 30, 70 };
+    double[] values = CounterInterpolator.counterAt(times, counters, new long[] { 50, 100, 150, 150,
+        300, 400, 500 });
+    assertTrue("before data", Double.isNaN(values[0]));
+    assertEquals("on reading", 10, values[1], DELTA);
+    assertEquals("between readings", 20, values[2], DELTA);
+    assertEquals("repeated time", 20, values[3], DELTA);
+    assertEquals("long gap", 50, values[4], DELTA);
+    assertEquals("last reading", 70, values[5], DELTA);
+    assertTrue("after data", Double.isNaN(values[6]));
+  }
+
+}
@@ -0,0 +1,68 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the CsvRowWriter class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestCsvRowWriter {
+
+  /**
+   * Passes if text is encoded as UTF-8 correctly when the buffer fills up many times, and the echo
+   * stream receives the same bytes as the file.
+   *
+   * @throws IOException if there are problems writing to the streams.
+   */
+  @Test
+  public void testWrite() throws IOException {
+    StringBuilder expected = new StringBuilder("Sources,2011-01-01 01:00:00 AM");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream echo = new ByteArrayOutputStream();
+    try (CsvRowWriter writer = new CsvRowWriter(out, echo, 16)) {
+      writer.write(expected);
+      for (int i = 0; i < 100; i++) {
+        String row = "\nsource-" + i + ",1.25,N/A,\u00e9\u20ac\ud83d\ude00";
+        writer.write(row);
+        expected.append(row);
+      }
+      writer.write('\n');
+      expected.append('\n');
+      assertEquals("number of bytes", expected.toString().getBytes(StandardCharsets.UTF_8).length,
+          writer.getNumBytes());
+    }
+    assertEquals("file", expected.toString(), out.toString(StandardCharsets.UTF_8));
+    assertEquals("echo", expected.toString(), echo.toString(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Passes if rows in a window are returned in order and workers cannot get too far ahead.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  @Test
+  public void testRowWindow() throws InterruptedException {
+    RowWindow window = new RowWindow(2, 2);
+    double[] row0 = window.acquire(0);
+    double[] row1 = window.acquire(1);
+    row1[0] = 1;
+    row1[1] = 2;
+    window.complete(1, 2);
+    assertNull("row 0 is not complete", window.awaitNext(1));
+    row0[0] = 3;
+    row0[1] = 4;
+    window.complete(0, 2);
+    assertEquals("row 0", 3, window.awaitNext(1)[0], 0);
+    window.release();
+    assertEquals("row 1", 1, window.awaitNext(1)[0], 0);
+    window.fail();
+    assertNull("failed", window.acquire(5));
+  }
+
+}
@@ -0,0 +1,190 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the DayFacts and DayFactsStore classes, and for how QualityClassifier uses them.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestDayFacts {
+
+  /** Time zone offset in minutes (HST). */
+  private static final int ZONE = -600;
+
+  /** Number of a local day. */
+  private static final long DAY = 10774;
+
+  /**
+   * A client that returns a reading at the start of every hour, except on one day, and records
+   * the ranges that are requested.
+   */
+  private static final class HourlyServer extends WattDepotClient {
+
+    /** Start and end of each range requested, in milliseconds. */
+    private final List<long[]> requests = new ArrayList<>();
+
+    /** Local day on which there are no readings. */
+    private final long emptyDay;
+
+    /**
+     * Creates a new HourlyServer object.
+     *
+     * @param emptyDay Local day on which there are no readings.
+     */
+    HourlyServer(long emptyDay) {
+      super("http://localhost:8182/wattdepot/");
+      this.emptyDay = emptyDay;
+    }
+
+    @Override
+    public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime) {
+      long from = EpochTime.toMillis(startTime);
+      long to = EpochTime.toMillis(endTime);
+      this.requests.add(new long[] {from, to});
+      List<SensorData> datas = new ArrayList<>();
+      for (long time = from; time <= to; time += EpochTime.MILLIS_PER_HOUR) {
+        if (EpochTime.localDay(time, ZONE) != this.emptyDay) {
+          datas.add(reading(time, time / 1000));
+        }
+      }
+      return datas;
+    }
+  }
+
+  /**
+   * Returns a reading.
+   *
+   * @param time Time in milliseconds.
+   * @param counter Counter value.
+   * @return A reading.
+   */
+  private static SensorData reading(long time, double counter) {
+    return new SensorData(EpochTime.toTimestamp(time, ZONE), "test", "111111-1",
+        new Property(SensorData.ENERGY_CONSUMED_TO_DATE, counter));
+  }
+
+  /**
+   * Passes if readings are summarized per local day, including empty days and decreasing readings.
+   */
+  @Test
+  public void testSummarize() {
+    long start = DayFacts.dayStart(DAY, ZONE);
+    long hour = EpochTime.MILLIS_PER_HOUR;
+    List<SensorData> datas = new ArrayList<>();
+    datas.add(reading(start - 1, 1));
+    datas.add(reading(start, 10));
+    datas.add(reading(start + 2 * hour, 5));
+    datas.add(reading(start + 23 * hour, 20));
+    datas.add(reading(start + 2 * EpochTime.MILLIS_PER_DAY, 30));
+
+    List<DayFacts> days = DayFacts.summarize(datas, ZONE, DAY, DAY + 2);
+    assertEquals("days", 3, days.size());
+    DayFacts day = days.get(0);
+    assertEquals("count", 3, day.getCount());
+    assertEquals("first counter", 10, day.getFirstCounter(), 0);
+    assertEquals("last counter", 20, day.getLastCounter(), 0);
+    assertEquals("violation", start + 2 * hour, day.getViolationTime());
+    assertEquals("hours", 1 | 1 << 2 | 1 << 23, day.getHours());
+    assertEquals("empty day", 0, days.get(1).getCount());
+    assertEquals("last day", DayFacts.NO_VIOLATION, days.get(2).getViolationTime());
+  }
+
+  /**
+   * Passes if facts survive saving and loading, and are discarded for a different time zone.
+   *
+   * @throws Exception if there are problems with the file.
+   */
+  @Test
+  public void testStore() throws Exception {
+    Path directory = Files.createTempDirectory("facts");
+    Path file = directory.resolve("facts.dat");
+    try {
+      DayFactsStore store = new DayFactsStore(file, ZONE);
+      store.put("111111-1", new DayFacts(DAY, 2, new DayFacts.Reading(1, 3.5),
+          new DayFacts.Reading(2, 4.5), null, 6));
+      store.save();
+
+      store = new DayFactsStore(file, ZONE);
+      DayFacts day = store.get("111111-1", DAY);
+      assertEquals("count", 2, day.getCount());
+      assertEquals("last counter", 4.5, day.getLastCounter(), 0);
+      assertEquals("hours", 6, day.getHours());
+      assertNull("other day", store.get("111111-1", DAY + 1));
+
+      assertEquals("other zone", 0, new DayFactsStore(file, 0).size("111111-1"));
+    }
+    finally {
+      Files.deleteIfExists(file);
+      Files.delete(directory);
+    }
+  }
+
+  /**
+   * Passes if getDayFacts reuses the days in the store, fetches each run of missing days with one
+   * request, and stores the fetched days that have readings but not the empty ones.
+   *
+   * @throws Exception if there are problems with the file.
+   */
+  @Test
+  public void testGetDayFacts() throws Exception {
+    Path directory = Files.createTempDirectory("facts");
+    Path file = directory.resolve("facts.dat");
+    try {
+      DayFactsStore store = new DayFactsStore(file, ZONE);
+      DayFacts stored = new DayFacts(DAY + 1, 2, new DayFacts.Reading(1, 3.5),
+          new DayFacts.Reading(2, 4.5), null, 6);
+      store.put("111111-1", stored);
+
+      HourlyServer server = new HourlyServer(DAY + 3);
+      QualityClassifier classifier = new QualityClassifier();
+      classifier.client = server;
+      classifier.dateBeforeStartDate = EpochTime.toTimestamp(DayFacts.dayStart(DAY, ZONE), ZONE);
+      classifier.dateAfterEndDate =
+          EpochTime.toTimestamp(DayFacts.dayStart(DAY + 3, ZONE) + EpochTime.MILLIS_PER_HOUR, ZONE);
+      Source source = new Source("111111-1", "user", true);
+
+      List<DayFacts> days = classifier.getDayFacts(source, store);
+      assertEquals("days", 4, days.size());
+      assertSame("stored day", stored, days.get(1));
+      assertEquals("fetched day", 24, days.get(2).getCount());
+      assertEquals("empty day", 0, days.get(3).getCount());
+      assertEquals("requests", 2, server.requests.size());
+      assertArrayEquals("first gap",
+          new long[] {DayFacts.dayStart(DAY, ZONE), DayFacts.dayStart(DAY + 1, ZONE) - 1},
+          server.requests.get(0));
+      assertArrayEquals("second gap",
+          new long[] {DayFacts.dayStart(DAY + 2, ZONE), DayFacts.dayStart(DAY + 4, ZONE) - 1},
+          server.requests.get(1));
+      assertEquals("stored days", 3, store.size("111111-1"));
+      assertNull("empty day not stored", store.get("111111-1", DAY + 3));
+
+      days = classifier.getDayFacts(source, store);
+      assertEquals("only the empty day", 3, server.requests.size());
+      assertArrayEquals("empty day again",
+          new long[] {DayFacts.dayStart(DAY + 3, ZONE), DayFacts.dayStart(DAY + 4, ZONE) - 1},
+          server.requests.get(2));
+      assertEquals("same facts", 24, days.get(0).getCount());
+    }
+    finally {
+      Files.deleteIfExists(file);
+      Files.delete(directory);
+    }
+  }
+
+}
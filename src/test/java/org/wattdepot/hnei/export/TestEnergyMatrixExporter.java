@@ -0,0 +1,62 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the EnergyMatrixExporter class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestEnergyMatrixExporter {
+
+  /**
+   * Passes if rows filled in by several workers are handled in order.
+   *
+   * @throws IOException if a row cannot be handled.
+   */
+  @Test(timeout = 10000)
+  public void testRunWorkers() throws IOException {
+    EnergyMatrixExporter exporter = new EnergyMatrixExporter();
+    List<Integer> rows = new ArrayList<>();
+    boolean result = exporter.runWorkers(20, 3, false, 4, (cell, cells) -> {
+      cells[(int) (cell % 3)] = cell;
+      return 1;
+    }, (row, cells) -> {
+      rows.add(row);
+      assertArrayEquals("cells", new double[] { row * 3, row * 3 + 1, row * 3 + 2 }, cells, 0);
+    });
+    assertTrue("result", result);
+    assertEquals("rows", 20, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertEquals("order", i, rows.get(i).intValue());
+    }
+  }
+
+  /**
+   * Passes if a task that throws a runtime exception makes runWorkers return false instead of
+   * waiting for the row forever.
+   *
+   * @throws IOException if a row cannot be handled.
+   */
+  @Test(timeout = 10000)
+  public void testRuntimeException() throws IOException {
+    EnergyMatrixExporter exporter = new EnergyMatrixExporter();
+    List<Integer> rows = new ArrayList<>();
+    boolean result = exporter.runWorkers(10, 4, true, 2, (row, cells) -> {
+      if (row == 3) {
+        throw new IllegalStateException("Missing property.");
+      }
+      return cells.length;
+    }, (row, cells) -> rows.add(row));
+    assertFalse("result", result);
+    assertTrue("rows before the failure", rows.size() <= 3);
+  }
+
+}
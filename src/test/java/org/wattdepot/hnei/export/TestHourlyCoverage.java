@@ -0,0 +1,57 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.wattdepot.hnei.util.EpochTime;
+
+/**
+ * JUnit tests for the HourlyCoverage class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestHourlyCoverage {
+
+  /** Number of milliseconds in an hour. */
+  private static final long HOUR = EpochTime.MILLIS_PER_HOUR;
+
+  /**
+   * Passes if covered hours, the largest gap, and the gap histogram are computed correctly.
+   */
+  @Test
+  public void testCoverage() {
+    // 12 hours; readings in hours 0, 1 (twice), 4, and 11; readings outside the interval ignored.
+    long[] times = { -HOUR, 0, HOUR + 5, HOUR + 10, 4 * HOUR, 11 * HOUR + 1, 12 * HOUR };
+    HourlyCoverage coverage = new HourlyCoverage(times, 0, 12 * HOUR - 1);
+    assertEquals("hours", 12, coverage.getNumHours());
+    assertEquals("covered", 4, coverage.getNumCovered());
+    assertEquals("coverage", 4 / 12.0, coverage.getCoverage(), 1e-9);
+    assertEquals("largest gap", 6, coverage.getLargestGap());
+    assertTrue("hour 1", coverage.isCovered(1));
+    assertFalse("hour 2", coverage.isCovered(2));
+    // Gaps of 2 hours (2-3) and 6 hours (5-10).
+    assertEquals("histogram", "[0, 1, 1, 0, 0, 0, 0, 0]", Arrays.toString(coverage.getHistogram()));
+    assertEquals("bitmap", "318", coverage.toHex());
+  }
+
+  /**
+   * Passes if an interval without readings is one gap, and bitmaps longer than 64 hours work.
+   */
+  @Test
+  public void testNoData() {
+    HourlyCoverage coverage = new HourlyCoverage(new long[] { 70 * HOUR }, 0, 200 * HOUR - 1);
+    assertEquals("hours", 200, coverage.getNumHours());
+    assertTrue("hour 70", coverage.isCovered(70));
+    assertEquals("largest gap", 129, coverage.getLargestGap());
+    assertEquals("bitmap", String.join("", Collections.nCopies(17, "0")) + "4"
+        + String.join("", Collections.nCopies(32, "0")), coverage.toHex());
+
+    coverage = new HourlyCoverage(new long[0], 0, 200 * HOUR - 1);
+    assertEquals("no data", 200, coverage.getLargestGap());
+    assertEquals("long gap", 1, coverage.getHistogram()[HourlyCoverage.NUM_BUCKETS - 1]);
+  }
+
+}
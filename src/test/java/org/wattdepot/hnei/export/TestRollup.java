@@ -0,0 +1,167 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * JUnit tests for the Rollup class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestRollup {
+
+  /** Time zone offset in minutes (HST). */
+  private static final int ZONE = -600;
+
+  /** Tolerance when comparing energy values. */
+  private static final double DELTA = 1e-3;
+
+  /** Midnight HST on Monday, February 28, 2011. */
+  private static final long MONDAY = 1298887200000L;
+
+  /** One hour in milliseconds. */
+  private static final long HOUR = EpochTime.MILLIS_PER_HOUR;
+
+  /**
+   * Returns a reading.
+   *
+   * @param time Time in milliseconds.
+   * @param counter Counter value.
+   * @return A reading.
+   */
+  private static SensorData reading(long time, double counter) {
+    return new SensorData(EpochTime.toTimestamp(time, ZONE), "test", "111111-1",
+        new Property(SensorData.ENERGY_CONSUMED_TO_DATE, counter));
+  }
+
+  /**
+   * A client that returns a reading at every hour of the requested range from a meter that draws
+   * a constant 100 W.
+   */
+  private static final class HourlyClient extends WattDepotClient {
+
+    /**
+     * Creates a new HourlyClient object.
+     */
+    HourlyClient() {
+      super("http://localhost:8182/wattdepot/");
+    }
+
+    @Override
+    public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime) {
+      List<SensorData> datas = new ArrayList<>();
+      long end = EpochTime.toMillis(endTime);
+      for (long time = EpochTime.toMillis(startTime); time <= end; time += HOUR) {
+        datas.add(reading(time, time / HOUR * 100.0));
+      }
+      return datas;
+    }
+  }
+
+  /**
+   * Passes if periods start at local hours, days, Mondays, and months.
+   */
+  @Test
+  public void testFloor() {
+    long time = MONDAY + 2 * EpochTime.MILLIS_PER_DAY + 5 * HOUR + 1234;
+    assertEquals("hour", MONDAY + 2 * EpochTime.MILLIS_PER_DAY + 5 * HOUR,
+        Rollup.Level.HOURLY.floor(time, ZONE));
+    assertEquals("day", MONDAY + 2 * EpochTime.MILLIS_PER_DAY, Rollup.Level.DAILY.floor(time, ZONE));
+    assertEquals("week", MONDAY, Rollup.Level.WEEKLY.floor(time, ZONE));
+    assertEquals("month", MONDAY + EpochTime.MILLIS_PER_DAY, Rollup.Level.MONTHLY.floor(time, ZONE));
+    assertEquals("monday", MONDAY, Rollup.Level.WEEKLY.floor(MONDAY, ZONE));
+    assertEquals("interval", Rollup.Level.DAILY, Rollup.Level.forInterval(EpochTime.MILLIS_PER_DAY));
+    assertNull("no level", Rollup.Level.forInterval(15 * EpochTime.MILLIS_PER_MINUTE));
+  }
+
+  /**
+   * Passes if energy, power, and counts are computed for every level in one pass, and survive
+   * writing and reading.
+   *
+   * @throws Exception if there are problems with the file.
+   */
+  @Test
+  public void testAggregate() throws Exception {
+    Rollup rollup = new Rollup(MONDAY, MONDAY + 3 * HOUR, ZONE);
+    assertEquals("hours", 3, rollup.getNumPeriods(Rollup.Level.HOURLY));
+    assertEquals("days", 1, rollup.getNumPeriods(Rollup.Level.DAILY));
+
+    // 100 W until 01:30, then 300 W; the reading before midnight is outside the time period.
+    List<SensorData> datas = new ArrayList<>();
+    datas.add(reading(MONDAY - HOUR / 2, 950));
+    datas.add(reading(MONDAY + HOUR / 2, 1050));
+    datas.add(reading(MONDAY + HOUR / 2, 1050));
+    datas.add(reading(MONDAY + 3 * HOUR / 2, 1150));
+    datas.add(reading(MONDAY + 5 * HOUR / 2, 1450));
+    datas.add(reading(MONDAY + 7 * HOUR / 2, 1750));
+    rollup.put("111111-1", rollup.aggregate(datas.iterator()));
+
+    Rollup.Series hourly = rollup.getSeries("111111-1", Rollup.Level.HOURLY);
+    assertEquals("first hour", 100, hourly.getEnergy(0), DELTA);
+    assertEquals("second hour", 200, hourly.getEnergy(1), DELTA);
+    assertEquals("third hour", 300, hourly.getEnergy(2), DELTA);
+    assertEquals("readings", 1, hourly.getCount(0));
+    assertEquals("min power", 100, hourly.getMinPower(0), DELTA);
+    assertEquals("max power", 300, hourly.getMaxPower(2), DELTA);
+
+    // The day ends after the last reading, so its energy is unknown.
+    Rollup.Series daily = rollup.getSeries("111111-1", Rollup.Level.DAILY);
+    assertTrue("open day", Double.isNaN(daily.getEnergy(0)));
+    assertEquals("readings in day", 4, daily.getCount(0));
+    assertEquals("min power in day", 100, daily.getMinPower(0), DELTA);
+    assertEquals("max power in day", 300, daily.getMaxPower(0), DELTA);
+
+    assertTrue("covers", rollup.covers(Rollup.Level.HOURLY, MONDAY + HOUR, 2, ZONE));
+    assertFalse("past end", rollup.covers(Rollup.Level.HOURLY, MONDAY + HOUR, 3, ZONE));
+    assertFalse("not aligned", rollup.covers(Rollup.Level.HOURLY, MONDAY + 1, 1, ZONE));
+    assertFalse("other zone", rollup.covers(Rollup.Level.HOURLY, MONDAY, 1, 0));
+    assertTrue("contains", rollup.containsAll(List.of("111111-1")));
+    assertFalse("missing", rollup.containsAll(List.of("111111-1", "222222-1")));
+
+    Path file = Files.createTempFile("rollup", ".hru");
+    try {
+      rollup.write(file);
+      Rollup copy = Rollup.read(file);
+      assertEquals("sources", rollup.getSourceNames(), copy.getSourceNames());
+      double[] energy = copy.getEnergy("111111-1", Rollup.Level.HOURLY, MONDAY + HOUR, 2);
+      assertEquals("energy", 200, energy[0], DELTA);
+      assertEquals("energy", 300, energy[1], DELTA);
+      assertTrue("missing source",
+          Double.isNaN(copy.getEnergy("222222-1", Rollup.Level.HOURLY, MONDAY, 1)[0]));
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Passes if the first week and month are complete when the rollup starts on neither a Monday
+   * nor the first of a month, which needs readings from before the start.
+   */
+  @Test
+  public void testFetchUnalignedStart() {
+    long wednesday = MONDAY + 2 * EpochTime.MILLIS_PER_DAY;
+    Rollup rollup = new Rollup(wednesday, wednesday + 14 * EpochTime.MILLIS_PER_DAY, ZONE);
+    assertEquals("week starts on Monday", MONDAY, rollup.getPeriodStart(Rollup.Level.WEEKLY, 0));
+    assertTrue("fetch", rollup.fetch(new HourlyClient(), List.of("111111-1"), 1));
+
+    Rollup.Series weekly = rollup.getSeries("111111-1", Rollup.Level.WEEKLY);
+    assertEquals("first week", 7 * 24 * 100, weekly.getEnergy(0), DELTA);
+    Rollup.Series monthly = rollup.getSeries("111111-1", Rollup.Level.MONTHLY);
+    assertEquals("March", 31 * 24 * 100, monthly.getEnergy(0), DELTA);
+  }
+
+}
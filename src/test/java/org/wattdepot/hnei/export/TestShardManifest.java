@@ -0,0 +1,79 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the ShardManifest class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestShardManifest {
+
+  /**
+   * Passes if rows are split into contiguous shards of nearly equal size.
+   */
+  @Test
+  public void testFirstRow() {
+    assertEquals("first shard", 0, ShardManifest.firstRow(10, 3, 0));
+    assertEquals("second shard", 3, ShardManifest.firstRow(10, 3, 1));
+    assertEquals("third shard", 6, ShardManifest.firstRow(10, 3, 2));
+    assertEquals("end", 10, ShardManifest.firstRow(10, 3, 3));
+  }
+
+  /**
+   * Passes if a manifest survives writing and reading, and damaged or missing shards are found.
+   *
+   * @throws Exception if there are problems with the files.
+   */
+  @Test
+  public void testVerify() throws Exception {
+    Path directory = Files.createTempDirectory("shards");
+    Path shard0 = directory.resolve("matrix-0000.csv");
+    Path shard1 = directory.resolve("matrix-0001.csv");
+    Path manifestFile = directory.resolve("matrix.manifest");
+    try {
+      Files.write(shard0, "Sources,a\n1,2.00".getBytes(StandardCharsets.UTF_8));
+      Files.write(shard1, "Sources,a\n2,3.00".getBytes(StandardCharsets.UTF_8));
+      ShardManifest manifest = new ShardManifest(0, 3600000, 3600000, "csv", 3, 3);
+      for (int i = 0; i < 2; i++) {
+        Path file = i == 0 ? shard0 : shard1;
+        manifest.setShard(new ShardManifest.Shard(i, file.getFileName().toString(),
+            String.valueOf(i + 1), String.valueOf(i + 1), i, 1, ShardManifest.checksum(file)));
+      }
+      manifest.write(manifestFile);
+
+      manifest = ShardManifest.read(manifestFile);
+      assertEquals("shards", 3, manifest.getNumShards());
+      assertEquals("rows", 3, manifest.getNumRows());
+      assertEquals("format", "csv", manifest.getFormat());
+      assertEquals("file", "matrix-0001.csv", manifest.getShard(1).getFileName());
+      assertEquals("size", Files.size(shard1), manifest.getShard(1).getNumBytes());
+      assertEquals("checksum", ShardManifest.checksum(shard1), manifest.getShard(1).getFileChecksum());
+      assertNull("not written", manifest.getShard(2));
+      assertEquals("missing shard", Arrays.asList(2), manifest.verify(directory));
+      assertTrue("same sources", manifest.checkSources(List.of("1", "2", "3")).isEmpty());
+      assertEquals("other sources", Arrays.asList(1), manifest.checkSources(List.of("1", "4", "3")));
+      assertEquals("fewer sources", Arrays.asList(1), manifest.checkSources(List.of("1")));
+
+      Files.write(shard0, "Sources,a\n1,9.00".getBytes(StandardCharsets.UTF_8));
+      assertEquals("damaged shard", Arrays.asList(0, 2), manifest.verify(directory));
+      Files.delete(shard1);
+      assertTrue("deleted shard", manifest.verify(directory).contains(1));
+    }
+    finally {
+      Files.deleteIfExists(shard0);
+      Files.deleteIfExists(shard1);
+      Files.deleteIfExists(manifestFile);
+      Files.delete(directory);
+    }
+  }
+
+}
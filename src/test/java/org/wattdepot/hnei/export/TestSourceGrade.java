@@ -0,0 +1,115 @@
+package org.wattdepot.hnei.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.hnei.export.SourceGrade.Grade;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for grading a source with QualityClassifier from a single fetch of its sensor data.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSourceGrade {
+
+  /** Time zone offset in minutes (HST). */
+  private static final int ZONE = -600;
+
+  /** Start of the time interval: 1999-07-02T00:00:00.000-10:00. */
+  private static final long START = 930909600000L;
+
+  /** End of the time interval: 1999-07-02T23:59:59.000-10:00. */
+  private static final long END = START + EpochTime.MILLIS_PER_DAY - EpochTime.MILLIS_PER_SECOND;
+
+  /** Used to grade sources. */
+  private QualityClassifier classifier;
+
+  /**
+   * Sets up a classifier for a one-day time interval.
+   */
+  @Before
+  public void setup() {
+    this.classifier = new QualityClassifier();
+    this.classifier.startTimestamp = EpochTime.toTimestamp(START, ZONE);
+    this.classifier.endTimestamp = EpochTime.toTimestamp(END, ZONE);
+    this.classifier.dateBeforeStartDate =
+        EpochTime.toTimestamp(START - EpochTime.MILLIS_PER_DAY, ZONE);
+    this.classifier.dateAfterEndDate = EpochTime.toTimestamp(END + EpochTime.MILLIS_PER_DAY, ZONE);
+  }
+
+  /**
+   * Returns a daily source.
+   *
+   * @return A daily source.
+   */
+  private static Source dailySource() {
+    Source source = new Source("111111-1", "user", true);
+    source.addProperty(new Property(SamplingInterval.SAMPLING_INTERVAL, SamplingInterval.DAILY));
+    return source;
+  }
+
+  /**
+   * Returns one reading per day, starting at the day before the start date.
+   *
+   * @param readings Counter readings.
+   * @return Sensor data sorted by timestamp.
+   */
+  private static List<SensorData> daily(double... readings) {
+    List<SensorData> datas = new ArrayList<>();
+    for (int i = 0; i < readings.length; i++) {
+      long time = START - EpochTime.MILLIS_PER_DAY + i * EpochTime.MILLIS_PER_DAY + 3600000L;
+      datas.add(new SensorData(EpochTime.toTimestamp(time, ZONE), "test", "111111-1",
+          new Property(SensorData.ENERGY_CONSUMED_TO_DATE, readings[i])));
+    }
+    return datas;
+  }
+
+  /**
+   * Passes if a daily source with one reading per day is Grade A, even if the data is unsorted.
+   */
+  @Test
+  public void testGradeA() {
+    List<SensorData> datas = daily(1, 2, 3);
+    assertEquals("sorted", Grade.A_DAILY, this.classifier.grade(dailySource(), datas).getGrade());
+    Collections.reverse(datas);
+    SourceGrade grade = this.classifier.grade(dailySource(), datas);
+    assertEquals("unsorted", Grade.A_DAILY, grade.getGrade());
+    assertEquals("line", "111111-1", grade.getLine());
+  }
+
+  /**
+   * Passes if sources without data before or after the time interval are Grade B.
+   */
+  @Test
+  public void testGradeB() {
+    assertEquals("missing after", Grade.B,
+        this.classifier.grade(dailySource(), daily(1, 2)).getGrade());
+    List<SensorData> datas = daily(1, 2, 3);
+    datas.remove(0);
+    SourceGrade grade = this.classifier.grade(dailySource(), datas);
+    assertEquals("missing before", Grade.B, grade.getGrade());
+    assertTrue("reason", grade.getReason().startsWith("No data points exist before"));
+  }
+
+  /**
+   * Passes if sources without data or with decreasing data are Grade C.
+   */
+  @Test
+  public void testGradeC() {
+    assertEquals("no data", Grade.C,
+        this.classifier.grade(dailySource(), new ArrayList<>()).getGrade());
+    SourceGrade grade = this.classifier.grade(dailySource(), daily(1, 3, 2));
+    assertEquals("decreasing", Grade.C, grade.getGrade());
+    assertEquals("line", "111111-1\tContains data that are not monotonically increasing.",
+        grade.getLine());
+  }
+
+}
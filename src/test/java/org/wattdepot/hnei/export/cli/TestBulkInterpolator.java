@@ -0,0 +1,216 @@
+package org.wattdepot.hnei.export.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * JUnit tests for the BulkInterpolator class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestBulkInterpolator {
+
+  /** Midnight HST on Monday, February 28, 2011. */
+  private static final long START = 1298887200000L;
+
+  /** One hour. */
+  private static final long HOUR = EpochTime.MILLIS_PER_HOUR;
+
+  /** Source whose counter increases by 100 Wh an hour. */
+  private static final String STEADY = "111111-1";
+
+  /** Source whose counter increases by 300 Wh an hour. */
+  private static final String BUSY = "222222-1";
+
+  /** Source without data. */
+  private static final String EMPTY = "333333-1";
+
+  /** Source whose requests fail. */
+  private static final String BROKEN = "444444-1";
+
+  /**
+   * A client that returns hourly readings whose counter increases at a fixed rate for each source,
+   * and records the ranges that are requested.
+   */
+  private static final class RateServer extends WattDepotClient {
+
+    /** Start and end of each range requested, in milliseconds. */
+    private final List<long[]> requests = Collections.synchronizedList(new ArrayList<>());
+
+    /** Exception thrown for the broken source. */
+    private final MiscClientException failure = new MiscClientException("Server error.", null);
+
+    /**
+     * Creates a new RateServer object.
+     */
+    RateServer() {
+      super("http://localhost:8182/wattdepot/");
+    }
+
+    @Override
+    public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime) throws MiscClientException {
+      long from = EpochTime.toMillis(startTime);
+      long to = EpochTime.toMillis(endTime);
+      this.requests.add(new long[] {from, to});
+      if (BROKEN.equals(sourceName)) {
+        throw this.failure;
+      }
+      List<SensorData> datas = new ArrayList<>();
+      if (EMPTY.equals(sourceName)) {
+        return datas;
+      }
+      double rate = STEADY.equals(sourceName) ? 100 : 300;
+      for (long time = from; time <= to; time += HOUR) {
+        datas.add(new SensorData(EpochTime.toTimestamp(time, 0), "test", sourceName,
+            new Property(SensorData.ENERGY_CONSUMED_TO_DATE, rate * (time - START) / HOUR)));
+      }
+      return datas;
+    }
+  }
+
+  /** Fake client that receives the requests. */
+  private RateServer server;
+
+  /** Interpolator under test. */
+  private BulkInterpolator interpolator;
+
+  /**
+   * Creates the fake client and the interpolator.
+   */
+  @Before
+  public void setUp() {
+    this.server = new RateServer();
+    this.interpolator = new BulkInterpolator(this.server);
+    this.interpolator.setNumThreads(2);
+  }
+
+  /**
+   * Prints the energy consumed by some sources between some times.
+   *
+   * @param sourceNames Names of the sources.
+   * @param times Times in milliseconds.
+   * @param output Buffer that receives the output.
+   * @return The value returned by print.
+   * @throws UnsupportedEncodingException if UTF-8 is not supported.
+   */
+  private boolean print(List<String> sourceNames, long[] times, ByteArrayOutputStream output)
+      throws UnsupportedEncodingException {
+    try (PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8.name())) {
+      return this.interpolator.print(sourceNames, times, out);
+    }
+  }
+
+  /**
+   * Passes if the counters are interpolated at every time from one request per source that covers
+   * all times plus the margin, and are NaN for a source without data.
+   *
+   * @throws Exception if the data cannot be fetched.
+   */
+  @Test(timeout = 20000)
+  public void testGetCounters() throws Exception {
+    this.interpolator.setMargin(2 * HOUR);
+    long[] times = {START + HOUR / 2, START + 5 * HOUR / 2, START + 10 * HOUR};
+    double[][] counters = this.interpolator.getCounters(List.of(STEADY, BUSY, EMPTY), times);
+
+    assertArrayEquals("steady", new double[] {50, 250, 1000}, counters[0], 1e-9);
+    assertArrayEquals("busy", new double[] {150, 750, 3000}, counters[1], 1e-9);
+    assertTrue("no data", Double.isNaN(counters[2][0]));
+    assertEquals("one request per source", 3, this.server.requests.size());
+    for (long[] request : this.server.requests) {
+      assertArrayEquals("range", new long[] {times[0] - 2 * HOUR, times[2] + 2 * HOUR}, request);
+    }
+
+    assertArrayEquals("energy", new double[] {200, 750},
+        BulkInterpolator.getEnergy(counters[0]), 1e-9);
+    double[][] none = this.interpolator.getCounters(List.of(STEADY), new long[0]);
+    assertEquals("no times", 0, none[0].length);
+  }
+
+  /**
+   * Passes if times that are not sorted are rejected before any request is sent.
+   *
+   * @throws Exception if the data cannot be fetched.
+   */
+  @Test
+  public void testUnsortedTimes() throws Exception {
+    try {
+      this.interpolator.getCounters(List.of(STEADY), new long[] {START + HOUR, START});
+      fail("Expected an exception.");
+    }
+    catch (IllegalArgumentException e) {
+      assertEquals("message", "Times must be sorted in ascending order.", e.getMessage());
+    }
+    assertTrue("no requests", this.server.requests.isEmpty());
+  }
+
+  /**
+   * Passes if the exception of a failed request is thrown by getCounters, and is printed by print,
+   * which stops after the rows before the failed source.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test(timeout = 20000)
+  public void testFailure() throws Exception {
+    long[] times = {START + HOUR, START + 2 * HOUR};
+    try {
+      this.interpolator.getCounters(List.of(STEADY, BROKEN), times);
+      fail("Expected an exception.");
+    }
+    catch (MiscClientException e) {
+      assertSame("same exception", this.server.failure, e);
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertFalse("result", this.print(List.of(STEADY, BROKEN, BUSY), times, output));
+    String[] lines = output.toString(StandardCharsets.UTF_8.name()).split("\\R");
+    assertEquals("lines", 3, lines.length);
+    assertEquals("row before the failure", STEADY + ",100", lines[1]);
+    assertTrue("error", lines[2].contains("Server error."));
+  }
+
+  /**
+   * Passes if print writes a header with one column per period and one row per source in order,
+   * with empty cells where the energy is unknown.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test(timeout = 20000)
+  public void testPrint() throws Exception {
+    long[] times = {START + HOUR, START + 2 * HOUR, START + 4 * HOUR};
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertTrue("result", this.print(List.of(BUSY, EMPTY, STEADY), times, output));
+    String[] lines = output.toString(StandardCharsets.UTF_8.name()).split("\\R");
+    assertEquals("lines", 4, lines.length);
+    assertEquals("columns", 3, lines[0].split(",").length);
+    assertTrue("header", lines[0].startsWith("Source,"));
+    assertEquals("busy", BUSY + ",300,600", lines[1]);
+    assertEquals("empty", EMPTY + ",,", lines[2]);
+    assertEquals("steady", STEADY + ",100,200", lines[3]);
+
+    output.reset();
+    assertTrue("one time", this.print(List.of(STEADY), new long[] {START}, output));
+    assertEquals("message", "At least two times are needed.",
+        output.toString(StandardCharsets.UTF_8.name()).trim());
+  }
+
+}
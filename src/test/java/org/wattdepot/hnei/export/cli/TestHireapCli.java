@@ -0,0 +1,270 @@
+package org.wattdepot.hnei.export.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.data.Status;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.ResourceNotFoundException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.client.CachingWattDepotClient;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+import org.wattdepot.resource.source.jaxb.Source;
+
+/**
+ * JUnit tests for the HireapCli class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestHireapCli {
+
+  /** Name of the only source on the fake server. */
+  private static final String SOURCE_NAME = "111111-1";
+
+  /**
+   * A client with one source, whose energy requests succeed or fail as the test chooses.
+   */
+  private static final class FakeServer extends WattDepotClient {
+
+    /** True if energy requests fail. */
+    private volatile boolean failing;
+
+    /**
+     * Creates a new FakeServer object.
+     */
+    FakeServer() {
+      super("http://localhost:8182/wattdepot/");
+    }
+
+    /**
+     * Returns the only source.
+     *
+     * @return The source.
+     */
+    private static Source createSource() {
+      Source source = new Source(SOURCE_NAME, "user", true);
+      source.addProperty(new Property("samplingInterval", "60"));
+      return source;
+    }
+
+    @Override
+    public List<Source> getSources() {
+      List<Source> sources = new ArrayList<>();
+      sources.add(createSource());
+      return sources;
+    }
+
+    @Override
+    public Source getSource(String sourceName) throws ResourceNotFoundException {
+      if (!SOURCE_NAME.equals(sourceName)) {
+        throw new ResourceNotFoundException(Status.CLIENT_ERROR_NOT_FOUND);
+      }
+      return createSource();
+    }
+
+    @Override
+    public SensorData getEnergy(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime, int samplingInterval) throws MiscClientException {
+      if (this.failing) {
+        throw new MiscClientException("Server error.", null);
+      }
+      return new SensorData(endTime, "test", sourceName,
+          new Property(SensorData.ENERGY_CONSUMED, 1234.4));
+    }
+  }
+
+  /** Fake client that receives the requests. */
+  private FakeServer server;
+
+  /** Client under test. */
+  private HireapCli cli;
+
+  /**
+   * Creates the fake server and the client.
+   */
+  @Before
+  public void setUp() {
+    this.server = new FakeServer();
+    this.cli = new HireapCli(new CachingWattDepotClient(this.server));
+  }
+
+  /**
+   * The result of a command.
+   */
+  private static final class Result {
+
+    /** Value returned by execute. */
+    private final boolean ok;
+
+    /** Text printed by the command. */
+    private final String output;
+
+    /**
+     * Creates a new Result object.
+     *
+     * @param ok Value returned by execute.
+     * @param output Text printed by the command.
+     */
+    private Result(boolean ok, String output) {
+      this.ok = ok;
+      this.output = output;
+    }
+  }
+
+  /**
+   * Executes a command.
+   *
+   * @param line Command and its arguments separated by spaces.
+   * @return The result of the command.
+   * @throws UnsupportedEncodingException if UTF-8 is not supported.
+   */
+  private Result execute(String line) throws UnsupportedEncodingException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    boolean ok;
+    try (PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8.name())) {
+      ok = this.cli.execute(line.split("\\s"), out);
+    }
+    return new Result(ok, bytes.toString(StandardCharsets.UTF_8.name()));
+  }
+
+  /**
+   * Passes if help, invalid commands, and the cache command print their results.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test
+  public void testLocalCommands() throws Exception {
+    Result help = this.execute("h");
+    assertTrue("help", help.ok);
+    assertTrue("help text", help.output.contains(">> q | quit"));
+    assertTrue("retriever help", help.output.contains(">> interpolate"));
+
+    Result invalid = this.execute("bogus");
+    assertTrue("invalid", invalid.ok);
+    assertTrue("invalid text", invalid.output.startsWith("Invalid command."));
+    assertTrue("wrong arguments", this.execute("p").output.startsWith("Invalid command."));
+
+    assertTrue("stats", this.execute("c").output.contains("Hits"));
+    assertEquals("clear", "Cache cleared.", this.execute("c clear").output.trim());
+  }
+
+  /**
+   * Passes if the source commands print the sources and properties from the server, and a source
+   * that does not exist is reported without failing.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test
+  public void testSourceCommands() throws Exception {
+    Result all = this.execute("a 1111");
+    assertTrue("all sources", all.ok);
+    assertTrue("source", all.output.startsWith(SOURCE_NAME + " :"));
+    assertTrue("count", all.output.contains("1 sources"));
+    assertTrue("none", this.execute("a 2222").output.startsWith("0 sources"));
+
+    assertEquals("properties", "samplingInterval: 60", this.execute("p " + SOURCE_NAME).output.trim());
+    Result missing = this.execute("p 999999-1");
+    assertTrue("missing", missing.ok);
+    assertEquals("not found", "Source not found. Please try again.", missing.output.trim());
+  }
+
+  /**
+   * Passes if a bad date is reported on the output stream without failing, and a server error is
+   * reported on the output stream and makes execute return false.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test
+  public void testRetrieverErrors() throws Exception {
+    Result ok = this.execute("interpolate " + SOURCE_NAME + " 03/01/2011 03/02/2011");
+    assertTrue("interpolate", ok.ok);
+    assertTrue("energy", ok.output.contains("1234 Wh"));
+
+    Result badDate = this.execute("interpolate " + SOURCE_NAME + " 3-1-2011 03/02/2011");
+    assertTrue("bad date", badDate.ok);
+    assertTrue("date error", badDate.output.contains("3-1-2011"));
+
+    this.server.failing = true;
+    Result failed = this.execute("interpolate " + SOURCE_NAME + " 03/03/2011 03/04/2011");
+    assertFalse("server error", failed.ok);
+    assertTrue("error text", failed.output.contains("Server error."));
+  }
+
+  /**
+   * Passes if the rollup command reports an invalid level or a missing file without failing.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test
+  public void testRollupErrors() throws Exception {
+    Result level = this.execute("u rollup.hru " + SOURCE_NAME + " yearly");
+    assertTrue("invalid level", level.ok);
+    assertEquals("level", "Invalid level: yearly", level.output.trim());
+
+    Result file = this.execute("u /nonexistent/rollup.hru " + SOURCE_NAME + " daily");
+    assertTrue("missing file", file.ok);
+    assertTrue("file", file.output.startsWith("Unable to read /nonexistent/rollup.hru"));
+  }
+
+  /**
+   * Passes if dates are parsed as the start of each day and sorted, and an invalid date is rejected.
+   *
+   * @throws Exception if a valid date cannot be parsed.
+   */
+  @Test
+  public void testParseDates() throws Exception {
+    SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy", Locale.US);
+    long first = format.parse("02/28/2011").getTime();
+    long second = format.parse("03/01/2011").getTime();
+    assertArrayEquals("sorted", new long[] {first, second},
+        HireapCli.parseDates("03/01/2011,02/28/2011"));
+
+    try {
+      HireapCli.parseDates("02/28/2011,02/30/2011");
+      fail("Expected an exception.");
+    }
+    catch (ParseException e) {
+      assertTrue("invalid date", e.getMessage().contains("02/30/2011"));
+    }
+  }
+
+  /**
+   * Passes if source names are read from a list without empty names, from the sources that match a
+   * prefix, and from the non-blank lines of a file.
+   *
+   * @throws Exception if the names cannot be read.
+   */
+  @Test
+  public void testGetSourceNames() throws Exception {
+    assertEquals("list", List.of("a", "b", "c"), this.cli.getSourceNames("a,b,,c"));
+    assertEquals("prefix", List.of(SOURCE_NAME), this.cli.getSourceNames("1111*"));
+    assertTrue("no match", this.cli.getSourceNames("2*").isEmpty());
+
+    Path file = Files.createTempFile("sources", ".txt");
+    try {
+      Files.write(file, List.of(SOURCE_NAME, "", "  222222-1  ", "   "), StandardCharsets.UTF_8);
+      assertEquals("file", List.of(SOURCE_NAME, "222222-1"), this.cli.getSourceNames("@" + file));
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+}
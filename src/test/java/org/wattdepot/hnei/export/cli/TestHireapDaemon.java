@@ -0,0 +1,194 @@
+package org.wattdepot.hnei.export.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.client.CachingWattDepotClient;
+
+/**
+ * JUnit tests for the HireapDaemon and HireapDaemonClient classes.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestHireapDaemon {
+
+  /** Secret that clients must send. */
+  private static final String SECRET = "0123456789abcdef";
+
+  /** Daemon under test. */
+  private HireapDaemon daemon;
+
+  /** Thread that runs the daemon. */
+  private Thread serveThread;
+
+  /**
+   * Starts a daemon on a free port.
+   *
+   * @throws IOException if the port cannot be opened.
+   */
+  @Before
+  public void setUp() throws IOException {
+    WattDepotClient server = new WattDepotClient("http://localhost:8182/wattdepot/");
+    HireapCli cli = new HireapCli(new CachingWattDepotClient(server));
+    this.daemon = new HireapDaemon(cli, 0, SECRET);
+    this.serveThread = new Thread(this.daemon::serve);
+    this.serveThread.start();
+  }
+
+  /**
+   * Stops the daemon if a test did not.
+   *
+   * @throws Exception if the daemon cannot be stopped.
+   */
+  @After
+  public void tearDown() throws Exception {
+    if (this.serveThread.isAlive()) {
+      try (Socket socket = this.connect()) {
+        new HireapDaemonClient(socket, SECRET).send(HireapDaemon.SHUTDOWN, System.out);
+      }
+      this.serveThread.join(10000);
+    }
+  }
+
+  /**
+   * Connects to the daemon.
+   *
+   * @return A connection to the daemon.
+   * @throws IOException if the connection cannot be opened.
+   */
+  private Socket connect() throws IOException {
+    return new Socket(InetAddress.getLoopbackAddress(), this.daemon.getPort());
+  }
+
+  /**
+   * Sends a command and returns its results.
+   *
+   * @param client Connection to the daemon.
+   * @param command Command to send.
+   * @return The results, without the end of the response.
+   * @throws IOException if there are problems communicating with the daemon.
+   */
+  private static String send(HireapDaemonClient client, String command) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8.name())) {
+      assertTrue("complete response", client.send(command, out));
+    }
+    return bytes.toString(StandardCharsets.UTF_8.name());
+  }
+
+  /**
+   * Passes if each response on a connection ends with its own end-of-response line, so that a
+   * multi-line response and the responses after it are not mixed up.
+   *
+   * @throws Exception if there are problems communicating with the daemon.
+   */
+  @Test(timeout = 20000)
+  public void testFraming() throws Exception {
+    try (Socket socket = this.connect()) {
+      HireapDaemonClient client = new HireapDaemonClient(socket, SECRET);
+      String help = send(client, "h");
+      assertTrue("help", help.contains(">> q | quit"));
+      assertTrue("end of help", help.trim().endsWith("**********"));
+      assertFalse("no marker", help.contains(HireapDaemon.END_OF_RESPONSE));
+      assertEquals("next response",
+          "Invalid command. Please try again (type \"h\" for available commands).",
+          send(client, "bogus").trim());
+      assertEquals("same connection", "Invalid level: yearly",
+          send(client, "u rollup.hru 111111-1 yearly").trim());
+    }
+  }
+
+  /**
+   * Passes if a connection that does not send the secret is refused and cannot shut the daemon
+   * down, while clients that send it are served.
+   *
+   * @throws Exception if there are problems communicating with the daemon.
+   */
+  @Test(timeout = 20000)
+  public void testSecret() throws Exception {
+    try (Socket socket = this.connect()) {
+      new HireapDaemonClient(socket, "wrong");
+      fail("Expected an exception.");
+    }
+    catch (IOException e) {
+      assertEquals("rejected", "Not authorized.", e.getMessage());
+    }
+
+    try (Socket socket = this.connect();
+        Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8))) {
+      writer.write(HireapDaemon.SHUTDOWN + "\n");
+      writer.flush();
+      assertEquals("shutdown rejected", "Not authorized.", reader.readLine());
+      assertEquals("end of response", HireapDaemon.END_OF_RESPONSE, reader.readLine());
+      assertNull("closed", reader.readLine());
+    }
+    assertTrue("still serving", this.serveThread.isAlive());
+
+    try (Socket socket = this.connect()) {
+      HireapDaemonClient client = new HireapDaemonClient(socket, SECRET);
+      assertEquals("shutdown", "Shutting down.", send(client, HireapDaemon.SHUTDOWN).trim());
+    }
+    this.serveThread.join(10000);
+    assertFalse("stopped", this.serveThread.isAlive());
+  }
+
+  /**
+   * Passes if a new secret file is readable only by its owner, and a secret file that other users
+   * can read is refused.
+   *
+   * @throws Exception if the secret file cannot be created.
+   */
+  @Test
+  public void testSecretFile() throws Exception {
+    Path directory = Files.createTempDirectory("daemon");
+    Path file = directory.resolve("secret");
+    try {
+      String secret = HireapDaemon.createSecret(file);
+      assertEquals("length", 64, secret.length());
+      assertEquals("same secret", secret, HireapDaemon.createSecret(file));
+      assertEquals("read", secret, HireapDaemon.readSecret(file));
+
+      PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+      if (view != null) {
+        assertEquals("owner only", "rw-------",
+            PosixFilePermissions.toString(view.readAttributes().permissions()));
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r--r--"));
+        try {
+          HireapDaemon.readSecret(file);
+          fail("Expected an exception.");
+        }
+        catch (IOException e) {
+          assertTrue("permissions", e.getMessage().contains("chmod 600"));
+        }
+      }
+    }
+    finally {
+      Files.deleteIfExists(file);
+      Files.delete(directory);
+    }
+  }
+
+}
@@ -0,0 +1,61 @@
+package org.wattdepot.hnei.export.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * JUnit tests for the HireapDataValidator class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestHireapDataValidator {
+
+  /** Time zone offset in minutes (HST). */
+  private static final int ZONE = -600;
+
+  /**
+   * Returns a reading.
+   *
+   * @param hour Time of the reading in hours since the Unix epoch.
+   * @param counter Counter value.
+   * @return A reading.
+   */
+  private static SensorData reading(long hour, double counter) {
+    return new SensorData(EpochTime.toTimestamp(hour * EpochTime.MILLIS_PER_HOUR, ZONE), "test",
+        "111111-1", new Property(SensorData.ENERGY_CONSUMED_TO_DATE, counter));
+  }
+
+  /**
+   * Passes if decreasing readings are found within a chunk and across a chunk boundary.
+   */
+  @Test
+  public void testValidateChunk() {
+    List<String> violations = new ArrayList<>();
+    SensorData first = reading(1, 100);
+    SensorData last = reading(3, 120);
+    assertSame("last reading", last, HireapDataValidator.validateChunk("111111-1",
+        Arrays.asList(first, reading(2, 90), last), null, violations));
+    assertEquals("one violation", 1, violations.size());
+    assertEquals("violation", "111111-1," + reading(2, 90).getTimestamp(), violations.get(0));
+
+    violations.clear();
+    HireapDataValidator.validateChunk("111111-1", Arrays.asList(reading(4, 110), reading(5, 110)),
+        last, violations);
+    assertEquals("boundary violation", "[111111-1," + reading(4, 110).getTimestamp() + "]",
+        violations.toString());
+
+    violations.clear();
+    assertNull("empty chunk", HireapDataValidator.validateChunk("111111-1",
+        new ArrayList<SensorData>(), null, violations));
+    assertEquals("no violations", 0, violations.size());
+  }
+
+}
@@ -0,0 +1,178 @@
+package org.wattdepot.hnei.export.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Before;
+import org.junit.Test;
+import org.wattdepot.client.MiscClientException;
+import org.wattdepot.client.WattDepotClient;
+import org.wattdepot.hnei.util.EpochTime;
+import org.wattdepot.resource.property.jaxb.Property;
+import org.wattdepot.resource.sensordata.jaxb.SensorData;
+
+/**
+ * JUnit tests for the SourceSensorDatas class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestSourceSensorDatas {
+
+  /** Name of the test source. */
+  private static final String SOURCE_NAME = "111111-1";
+
+  /** Size of a window. */
+  private static final long WINDOW = 10 * EpochTime.MILLIS_PER_HOUR;
+
+  /**
+   * A client that returns a reading at the start of every hour and records the windows that are
+   * requested. One window can be made to fail.
+   */
+  private static final class HourlyServer extends WattDepotClient {
+
+    /** Start and end of each window requested, in milliseconds. */
+    private final List<long[]> requests = Collections.synchronizedList(new ArrayList<>());
+
+    /** Index of the request that fails, or -1 if none does. */
+    private volatile int failRequest = -1;
+
+    /**
+     * Creates a new HourlyServer object.
+     */
+    HourlyServer() {
+      super("http://localhost:8182/wattdepot/");
+    }
+
+    @Override
+    public List<SensorData> getSensorDatas(String sourceName, XMLGregorianCalendar startTime,
+        XMLGregorianCalendar endTime) throws MiscClientException {
+      long from = EpochTime.toMillis(startTime);
+      long to = EpochTime.toMillis(endTime);
+      int request;
+      synchronized (this.requests) {
+        request = this.requests.size();
+        this.requests.add(new long[] {from, to});
+      }
+      if (request == this.failRequest) {
+        throw new MiscClientException("Server error.", null);
+      }
+      List<SensorData> datas = new ArrayList<>();
+      for (long time = from; time <= to; time += EpochTime.MILLIS_PER_HOUR) {
+        datas.add(new SensorData(EpochTime.toTimestamp(time, EpochTime.zoneOffset(startTime)),
+            "test", sourceName, new Property(SensorData.ENERGY_CONSUMED_TO_DATE, time / 1000)));
+      }
+      return datas;
+    }
+  }
+
+  /** Fake client that receives the requests. */
+  private HourlyServer server;
+
+  /** Retriever under test. */
+  private SourceSensorDatas retriever;
+
+  /** Start of March 1, 2011 in the default time zone, which is how the dates are parsed. */
+  private long start;
+
+  /**
+   * Creates the fake client and the retriever.
+   *
+   * @throws Exception if the start date cannot be parsed.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.server = new HourlyServer();
+    this.retriever = new SourceSensorDatas(this.server);
+    this.retriever.setWindowSize(WINDOW);
+    this.start = new SimpleDateFormat("MM/dd/yyyy", Locale.US).parse("03/01/2011").getTime();
+  }
+
+  /**
+   * Prints the sensor data of a source on March 1 and 2, 2011.
+   *
+   * @param output Buffer that receives the output.
+   * @return The value returned by getSensorData.
+   * @throws UnsupportedEncodingException if UTF-8 is not supported.
+   */
+  private boolean print(ByteArrayOutputStream output) throws UnsupportedEncodingException {
+    try (PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8.name())) {
+      return this.retriever.getSensorData(SOURCE_NAME, "03/01/2011", "03/02/2011", null, out);
+    }
+  }
+
+  /**
+   * Passes if the interval is fetched in consecutive windows whose last one is clipped to the end
+   * of the interval, and every reading is printed once, in order.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test(timeout = 20000)
+  public void testWindows() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertTrue("result", this.print(output));
+
+    long end = this.start + 2 * EpochTime.MILLIS_PER_DAY - EpochTime.MILLIS_PER_SECOND;
+    assertEquals("windows", 5, this.server.requests.size());
+    for (int i = 0; i < 5; i++) {
+      long windowStart = this.start + i * WINDOW;
+      assertArrayEquals("window " + i,
+          new long[] {windowStart, Math.min(windowStart + WINDOW - 1, end)},
+          this.server.requests.get(i));
+    }
+
+    String[] lines = output.toString(StandardCharsets.UTF_8.name()).split("\\R");
+    assertEquals("header", "Timestamp            Energy (Wh)", lines[0]);
+    assertEquals("rows", 48, lines.length - 1);
+    for (int i = 1; i < lines.length; i++) {
+      String energy = lines[i].substring(lines[i].lastIndexOf(' ') + 1);
+      assertEquals("order", (this.start + (i - 1) * EpochTime.MILLIS_PER_HOUR) / 1000,
+          Long.parseLong(energy));
+    }
+  }
+
+  /**
+   * Passes if a failed window stops the output with the error, and no window after it is fetched.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test(timeout = 20000)
+  public void testFailure() throws Exception {
+    this.server.failRequest = 2;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertFalse("result", this.print(output));
+    assertEquals("no more windows", 3, this.server.requests.size());
+
+    String text = output.toString(StandardCharsets.UTF_8.name());
+    assertTrue("error", text.contains("Server error."));
+    String[] lines = text.split("\\R");
+    assertEquals("rows before the failure", 1 + 20 + 1, lines.length);
+  }
+
+  /**
+   * Passes if a date that cannot be parsed is reported without fetching anything.
+   *
+   * @throws Exception if the output cannot be decoded.
+   */
+  @Test
+  public void testBadDate() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8.name())) {
+      assertTrue("result", this.retriever.getSensorData(SOURCE_NAME, "March 1", "03/02/2011",
+          null, out));
+    }
+    assertTrue("error", output.toString(StandardCharsets.UTF_8.name()).contains("March 1"));
+    assertTrue("no requests", this.server.requests.isEmpty());
+  }
+
+}
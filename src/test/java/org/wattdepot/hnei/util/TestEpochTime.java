@@ -0,0 +1,120 @@
+package org.wattdepot.hnei.util;
+
+import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.Test;
+import org.wattdepot.util.tstamp.Tstamp;
+
+/**
+ * JUnit tests for the EpochTime class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestEpochTime {
+
+  /** A timestamp in Hawaii time. */
+  private static final String TIMESTAMP = "2011-02-28T23:15:30.250-10:00";
+
+  /**
+   * Passes if timestamps are converted to the same number of milliseconds as the Calendar classes
+   * return.
+   *
+   * @throws Exception if there are any problems making the timestamps.
+   */
+  @Test
+  public void testToMillis() throws Exception {
+    String[] timestamps =
+        { TIMESTAMP, "1999-07-01T00:00:00.000-10:00", "2012-02-29T12:00:00.000Z",
+            "1969-12-31T23:59:59.999+05:30", "2010-01-01T06:00:00-10:00" };
+    for (String s : timestamps) {
+      XMLGregorianCalendar timestamp = Tstamp.makeTimestamp(s);
+      long expected = timestamp.toGregorianCalendar().getTimeInMillis();
+      assertEquals("milliseconds for " + s, expected, EpochTime.toMillis(timestamp));
+    }
+  }
+
+  /**
+   * Passes if a time in milliseconds is converted back to the same timestamp.
+   *
+   * @throws Exception if there are any problems making the timestamps.
+   */
+  @Test
+  public void testToTimestamp() throws Exception {
+    XMLGregorianCalendar timestamp = Tstamp.makeTimestamp(TIMESTAMP);
+    long millis = EpochTime.toMillis(timestamp);
+    XMLGregorianCalendar result = EpochTime.toTimestamp(millis, -600);
+    assertEquals("timestamp is " + TIMESTAMP, timestamp, result);
+    assertEquals("time zone is -600", -600, result.getTimezone());
+    assertEquals("day is 28", 28, result.getDay());
+
+    // One hour later is March 1st.
+    result = EpochTime.toTimestamp(millis + EpochTime.MILLIS_PER_HOUR, -600);
+    assertEquals("month is 3", 3, result.getMonth());
+    assertEquals("day is 1", 1, result.getDay());
+    assertEquals("hour is 0", 0, result.getHour());
+  }
+
+  /**
+   * Passes if the number of days between two times is the same as the number that Tstamp returns.
+   *
+   * @throws Exception if there are any problems making the timestamps.
+   */
+  @Test
+  public void testDaysBetween() throws Exception {
+    XMLGregorianCalendar start = Tstamp.makeTimestamp("2011-05-02T23:00:00.000-10:00");
+    XMLGregorianCalendar end = Tstamp.makeTimestamp("2011-05-05T01:00:00.000-10:00");
+    long startTime = EpochTime.toMillis(start);
+    long endTime = EpochTime.toMillis(end);
+    int zone = EpochTime.zoneOffset(start);
+    assertEquals("days between", Tstamp.daysBetween(start, end),
+        EpochTime.daysBetween(startTime, endTime, zone));
+    // Tstamp converts timestamps to the default time zone, so use Hawaii time explicitly.
+    long midnight = EpochTime.toMillis(Tstamp.makeTimestamp("2011-05-02T00:00:00.000-10:00"));
+    assertEquals("start of day", midnight, EpochTime.startOfDay(startTime, -600));
+    assertEquals("local day", EpochTime.localDay(midnight, -600), EpochTime.localDay(startTime, -600));
+  }
+
+  /**
+   * Passes if the number of bins between two times is computed correctly.
+   */
+  @Test
+  public void testNumBins() {
+    long width = 15 * EpochTime.MILLIS_PER_MINUTE;
+    assertEquals("4 bins in an hour", 4, EpochTime.numBins(0, EpochTime.MILLIS_PER_HOUR, width));
+    assertEquals("5 bins if last bin is partial", 5,
+        EpochTime.numBins(0, EpochTime.MILLIS_PER_HOUR + 1, width));
+    assertEquals("0 bins if end is before start", 0, EpochTime.numBins(10, 0, width));
+  }
+
+  /**
+   * Passes if the start of the local month and of the next one are found across the end of a year.
+   *
+   * @throws Exception if there are any problems making the timestamps.
+   */
+  @Test
+  public void testStartOfNextMonth() throws Exception {
+    long time = EpochTime.toMillis(Tstamp.makeTimestamp(TIMESTAMP));
+    assertEquals("March", EpochTime.toMillis(Tstamp.makeTimestamp("2011-03-01T00:00:00.000-10:00")),
+        EpochTime.startOfNextMonth(time, -600));
+    time = EpochTime.toMillis(Tstamp.makeTimestamp("2010-12-01T00:00:00.000-10:00"));
+    assertEquals("January", EpochTime.toMillis(Tstamp.makeTimestamp(
+        "2011-01-01T00:00:00.000-10:00")), EpochTime.startOfNextMonth(time, -600));
+    assertEquals("same month", time, EpochTime.startOfMonth(time + 5 * EpochTime.MILLIS_PER_DAY,
+        -600));
+  }
+
+  /**
+   * Passes if a time period is split into contiguous chunks that cover it exactly.
+   */
+  @Test
+  public void testSplit() {
+    assertEquals("several chunks", "[100, 110, 120, 126]",
+        Arrays.toString(EpochTime.split(100, 125, 10)));
+    assertEquals("exact fit", "[100, 110, 120]", Arrays.toString(EpochTime.split(100, 119, 10)));
+    assertEquals("one chunk", "[100, 106]", Arrays.toString(EpochTime.split(100, 105, 10)));
+    assertEquals("single instant", "[100, 101]", Arrays.toString(EpochTime.split(100, 100, 10)));
+    assertEquals("empty", 0, EpochTime.split(100, 99, 10).length);
+  }
+
+}
@@ -0,0 +1,86 @@
+package org.wattdepot.hnei.util;
+
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the FleetArena class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestFleetArena {
+
+  /**
+   * Appends interleaved series that span several blocks and checks their contents.
+   *
+   * @param arena Arena to test.
+   * @throws IOException if the arena cannot allocate space.
+   */
+  private static void check(FleetArena arena) throws IOException {
+    int size = 3 * FleetArena.BLOCK_POINTS + 17;
+    long[] times = new long[100];
+    double[] values = new double[100];
+    for (int start = 0; start < size; start += times.length) {
+      int n = Math.min(times.length, size - start);
+      for (int id = 0; id < 3; id++) {
+        for (int i = 0; i < n; i++) {
+          times[i] = (start + i) * 1000L + id;
+          values[i] = (start + i) * 0.5 + id;
+        }
+        arena.append(id * 10, times, values, 0, n);
+      }
+    }
+    TimeSeries snapshot = arena.getSeries(10);
+    arena.append(10, -1, -1);
+
+    assertEquals("points", 3L * size + 1, arena.getNumPoints());
+    assertEquals("snapshot", size, snapshot.size());
+    assertEquals("appended later", size + 1, arena.getSeries(10).size());
+    assertEquals("empty", 0, arena.getSeries(5).size());
+    assertEquals("unknown", 0, arena.getSeries(1000).size());
+    for (int id = 0; id < 3; id++) {
+      TimeSeries series = arena.getSeries(id * 10);
+      for (int i = 0; i < size; i++) {
+        assertEquals("time", i * 1000L + id, series.getTime(i));
+        assertEquals("value", i * 0.5 + id, series.getValue(i), 0);
+      }
+    }
+    assertEquals("last", -1, arena.getSeries(10).getTime(size));
+
+    arena.clear(0);
+    assertEquals("cleared", 0, arena.getSeries(0).size());
+    assertEquals("points after clear", 2L * size + 1, arena.getNumPoints());
+  }
+
+  /**
+   * Passes if series in direct buffers are read back correctly.
+   *
+   * @throws IOException if the arena cannot allocate space.
+   */
+  @Test
+  public void testDirect() throws IOException {
+    try (FleetArena arena = new FleetArena()) {
+      check(arena);
+    }
+  }
+
+  /**
+   * Passes if series in a memory-mapped file are read back correctly.
+   *
+   * @throws IOException if the file cannot be created.
+   */
+  @Test
+  public void testMapped() throws IOException {
+    Path file = Files.createTempFile("arena", ".dat");
+    try (FleetArena arena = new FleetArena(file)) {
+      check(arena);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+}
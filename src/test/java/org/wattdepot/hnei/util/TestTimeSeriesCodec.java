@@ -0,0 +1,107 @@
+package org.wattdepot.hnei.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the TimeSeriesCodec class.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public class TestTimeSeriesCodec {
+
+  /** Number of points in each test series. */
+  private static final int SIZE = 5000;
+
+  /**
+   * Encodes and decodes a series, and checks that it is unchanged.
+   *
+   * @param times Timestamps.
+   * @param values Values.
+   * @param blockSize Number of points in a block.
+   * @return The encoded series.
+   */
+  private static byte[] roundTrip(long[] times, double[] values, int blockSize) {
+    byte[] data = TimeSeriesCodec.encode(times, values, 0, times.length, blockSize);
+    assertEquals("size", times.length, TimeSeriesCodec.size(data));
+    long[] decodedTimes = new long[times.length];
+    double[] decodedValues = new double[times.length];
+    assertEquals("decoded", times.length,
+        TimeSeriesCodec.decode(data, decodedTimes, decodedValues));
+    assertEquals("times", Arrays.toString(times), Arrays.toString(decodedTimes));
+    for (int i = 0; i < values.length; i++) {
+      assertEquals("value " + i, Double.doubleToRawLongBits(values[i]),
+          Double.doubleToRawLongBits(decodedValues[i]));
+    }
+    return data;
+  }
+
+  /**
+   * Passes if hourly counters with some jitter are stored losslessly in a fraction of their raw
+   * size.
+   */
+  @Test
+  public void testCounters() {
+    Random random = new Random(1);
+    long[] times = new long[SIZE];
+    double[] values = new double[SIZE];
+    long time = 1293876000000L;
+    double counter = 1000000;
+    for (int i = 0; i < SIZE; i++) {
+      times[i] = time + (random.nextInt(10) == 0 ? random.nextInt(5000) : 0);
+      values[i] = counter;
+      time += EpochTime.MILLIS_PER_HOUR;
+      counter += random.nextInt(2000);
+    }
+    byte[] data = roundTrip(times, values, TimeSeriesCodec.DEFAULT_BLOCK_SIZE);
+    assertTrue("compressed to " + data.length + " bytes", data.length * 5 < SIZE * 16);
+  }
+
+  /**
+   * Passes if fractional values, negative zero, NaN, and extreme values survive the XOR encoding,
+   * and extreme timestamp deltas survive the delta-of-delta encoding.
+   */
+  @Test
+  public void testFractionalValues() {
+    Random random = new Random(2);
+    long[] times = new long[SIZE];
+    double[] values = new double[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      times[i] = i * 60000L;
+      values[i] = i % 7 == 0 ? values[Math.max(0, i - 1)] : random.nextGaussian() * 1000;
+    }
+    values[10] = -0.0;
+    values[11] = Double.NaN;
+    values[12] = Double.MAX_VALUE;
+    values[13] = Double.NEGATIVE_INFINITY;
+    times[20] = Long.MIN_VALUE;
+    times[21] = Long.MAX_VALUE;
+    roundTrip(times, values, 100);
+    roundTrip(new long[0], new double[0], 100);
+    roundTrip(new long[] { 5 }, new double[] { 1.5 }, 100);
+  }
+
+  /**
+   * Passes if a range is decoded correctly when blocks are skipped.
+   */
+  @Test
+  public void testRange() {
+    long[] times = new long[SIZE];
+    double[] values = new double[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      times[i] = i * 1000L;
+      values[i] = i;
+    }
+    byte[] data = TimeSeriesCodec.encode(times, values, 0, SIZE, 64);
+    long[] decodedTimes = new long[SIZE];
+    double[] decodedValues = new double[SIZE];
+    int n = TimeSeriesCodec.decode(data, 1000500L, 1200000L, decodedTimes, decodedValues);
+    assertEquals("points in range", 200, n);
+    assertEquals("first time", 1001000L, decodedTimes[0]);
+    assertEquals("last value", 1200, decodedValues[n - 1], 0);
+  }
+
+}
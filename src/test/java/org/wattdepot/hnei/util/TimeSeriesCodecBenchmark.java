@@ -0,0 +1,141 @@
+package org.wattdepot.hnei.util;
+
+import java.util.Random;
+
+/**
+ * Measures the compression ratio and the encoding and decoding speed of TimeSeriesCodec on
+ * synthetic series shaped like HNEI hourly counters and Egauge one-minute readings. Not a unit
+ * test; run it with <code>java org.wattdepot.hnei.util.TimeSeriesCodecBenchmark</code>.
+ *
+ * @author BJ Peter DeLaCruz
+ */
+public final class TimeSeriesCodecBenchmark {
+
+  /** Number of points in each series: a year of hourly data. */
+  private static final int SIZE = 8760;
+
+  /** Number of series that are encoded and decoded in each timed run. */
+  private static final int NUM_SERIES = 200;
+
+  /** Number of untimed runs that warm up the JIT. */
+  private static final int WARMUP_RUNS = 5;
+
+  /** Number of timed runs. */
+  private static final int RUNS = 10;
+
+  /** Size in bytes of a point in a CSV file, e.g. "01/01/2011 00:00:00,1234567". */
+  private static final int CSV_POINT_SIZE = 28;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private TimeSeriesCodecBenchmark() {
+  }
+
+  /**
+   * Creates hourly whole-number counters with a daily load shape, where about one reading in
+   * twenty is a few seconds late.
+   *
+   * @param random Random number generator.
+   * @param times Array that receives the timestamps.
+   * @param values Array that receives the counters.
+   */
+  private static void hourlyCounters(Random random, long[] times, double[] values) {
+    long time = 1293876000000L;
+    double counter = random.nextInt(10000000);
+    for (int i = 0; i < times.length; i++) {
+      boolean late = random.nextInt(20) == 0;
+      times[i] = time + (late ? random.nextInt(30) * EpochTime.MILLIS_PER_SECOND : 0);
+      values[i] = counter;
+      time += EpochTime.MILLIS_PER_HOUR;
+      double load = 600 + 400 * Math.sin(2 * Math.PI * (i % 24) / 24.0);
+      counter += Math.round(load + random.nextGaussian() * 50);
+    }
+  }
+
+  /**
+   * Creates one-minute power readings in watts with one decimal place.
+   *
+   * @param random Random number generator.
+   * @param times Array that receives the timestamps.
+   * @param values Array that receives the readings.
+   */
+  private static void minutePower(Random random, long[] times, double[] values) {
+    long time = 1293876000000L;
+    double power = 800;
+    for (int i = 0; i < times.length; i++) {
+      times[i] = time;
+      time += EpochTime.MILLIS_PER_MINUTE;
+      if (random.nextInt(4) == 0) {
+        power = Math.max(0, power + random.nextGaussian() * 20);
+      }
+      values[i] = Math.round(power * 10) / 10.0;
+    }
+  }
+
+  /**
+   * Encodes and decodes the series repeatedly and prints the results.
+   *
+   * @param name Name of the data set.
+   * @param times Timestamps of each series.
+   * @param values Values of each series.
+   */
+  private static void run(String name, long[][] times, double[][] values) {
+    byte[][] encoded = new byte[NUM_SERIES][];
+    long[] decodedTimes = new long[SIZE];
+    double[] decodedValues = new double[SIZE];
+    long encodeNanos = 0;
+    long decodeNanos = 0;
+    long checksum = 0;
+    for (int run = 0; run < WARMUP_RUNS + RUNS; run++) {
+      long start = System.nanoTime();
+      for (int s = 0; s < NUM_SERIES; s++) {
+        encoded[s] = TimeSeriesCodec.encode(times[s], values[s]);
+      }
+      long middle = System.nanoTime();
+      for (int s = 0; s < NUM_SERIES; s++) {
+        checksum += TimeSeriesCodec.decode(encoded[s], decodedTimes, decodedValues);
+        checksum += decodedTimes[SIZE - 1];
+      }
+      long end = System.nanoTime();
+      if (run >= WARMUP_RUNS) {
+        encodeNanos += middle - start;
+        decodeNanos += end - middle;
+      }
+    }
+
+    long bytes = 0;
+    for (byte[] e : encoded) {
+      bytes += e.length;
+    }
+    double points = (double) NUM_SERIES * SIZE;
+    System.out.println(String.format("%-16s %8.2f %8.1fx %8.1fx %10.1f %10.1f", name,
+        bytes / points, points * 16 / bytes, points * CSV_POINT_SIZE / bytes,
+        points * RUNS * 1000 / encodeNanos, points * RUNS * 1000 / decodeNanos));
+    if (checksum == 42) {
+      System.out.println();
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args Not used.
+   */
+  public static void main(String[] args) {
+    Random random = new Random(1);
+    long[][] times = new long[NUM_SERIES][SIZE];
+    double[][] values = new double[NUM_SERIES][SIZE];
+    System.out.println(String.format("%-16s %8s %9s %9s %10s %10s", "Data set", "B/point",
+        "vs. raw", "vs. CSV", "Enc Mpt/s", "Dec Mpt/s"));
+    for (int s = 0; s < NUM_SERIES; s++) {
+      hourlyCounters(random, times[s], values[s]);
+    }
+    run("Hourly counters", times, values);
+    for (int s = 0; s < NUM_SERIES; s++) {
+      minutePower(random, times[s], values[s]);
+    }
+    run("Minute power", times, values);
+  }
+
+}